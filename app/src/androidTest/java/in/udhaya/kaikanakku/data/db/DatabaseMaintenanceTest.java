@@ -0,0 +1,84 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link DatabaseMaintenance}, on a database file, since an in-memory
+ * database has no file to compact.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMaintenanceTest {
+
+    private static final String NAME = "maintenance-test.db";
+
+    private Context context;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(NAME);
+        db = Room.databaseBuilder(context, AppDatabase.class, NAME)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(NAME);
+    }
+
+    @Test
+    public void run_enablesIncrementalVacuumAndGivesBackFreedSpace() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            entries.add(new HistoryEntry("(" + i + " kol) + (" + i + " viral)", i + " kol " + i + " viral", i, i, false));
+        }
+        db.runInTransaction(() -> db.historyDao().insertAll(entries));
+
+        DatabaseMaintenance.Report first = new DatabaseMaintenance(db).run();
+        assertTrue(first.enabledIncrementalVacuum);
+        assertEquals(2, pragma("PRAGMA auto_vacuum"));
+
+        db.historyDao().deleteOlderThan(4000, 5000);
+        assertTrue(pragma("PRAGMA freelist_count") > 0);
+
+        DatabaseMaintenance.Report second = new DatabaseMaintenance(db).run();
+        assertFalse(second.enabledIncrementalVacuum);
+        assertEquals(0, pragma("PRAGMA freelist_count"));
+        assertTrue(second.freedBytes() > 0);
+        assertTrue(second.bytesAfter < first.bytesAfter);
+        assertEquals(1000, db.historyDao().queryHistory(HistoryFilter.ALL.toQuery()).blockingFirst().size());
+    }
+
+    @Test
+    public void isAtLeast_comparesMajorAndMinor() {
+        assertTrue(DatabaseMaintenance.isAtLeast("3.18.0", 3, 18));
+        assertTrue(DatabaseMaintenance.isAtLeast("3.32.2", 3, 18));
+        assertFalse(DatabaseMaintenance.isAtLeast("3.9.2", 3, 18));
+        assertFalse(DatabaseMaintenance.isAtLeast("unknown", 3, 18));
+    }
+
+    private long pragma(String sql) {
+        try (Cursor cursor = db.getOpenHelper().getReadableDatabase().query(sql)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+}
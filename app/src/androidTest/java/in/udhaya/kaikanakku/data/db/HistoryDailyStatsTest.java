@@ -0,0 +1,150 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the triggers that keep {@link HistoryDailyStats} up to date.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryDailyStatsTest {
+
+    private static final long MAY_1 = noon(2024, Calendar.MAY, 1);
+    private static final long MAY_2 = noon(2024, Calendar.MAY, 2);
+
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        db = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                        AppDatabase.class)
+                .addCallback(AppDatabase.CREATE_TRIGGERS)
+                .allowMainThreadQueries()
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void insert_addsToItsDay() {
+        insert(100, MAY_1);
+        insert(250, MAY_1 + 1000);
+        insert(40, MAY_2);
+
+        List<HistoryDailyStats> days = days();
+        assertEquals(2, days.size());
+        assertDay(days.get(0), "2024-05-02", 1, 40, 40);
+        assertDay(days.get(1), "2024-05-01", 2, 350, 250);
+
+        HistoryStatsSummary summary = db.historyDao().getStatsSummary().blockingFirst();
+        assertEquals(2, summary.days);
+        assertEquals(3, summary.entryCount);
+        assertEquals(390, summary.totalCm, 0.001);
+        assertEquals(250, summary.maxCm, 0.001);
+    }
+
+    @Test
+    public void delete_recomputesLargestAndDropsEmptyDays() {
+        HistoryEntry small = insert(100, MAY_1);
+        HistoryEntry large = insert(250, MAY_1 + 1000);
+        HistoryEntry other = insert(40, MAY_2);
+
+        db.historyDao().delete(large);
+        assertDay(days().get(1), "2024-05-01", 1, 100, 100);
+
+        db.historyDao().delete(other);
+        db.historyDao().delete(small);
+        assertTrue(days().isEmpty());
+    }
+
+    @Test
+    public void update_movesTheEntryAndIgnoresFavorites() {
+        HistoryEntry entry = insert(100, MAY_1);
+        insert(30, MAY_1);
+
+        entry.setFavorite(true);
+        db.historyDao().update(entry);
+        assertDay(days().get(0), "2024-05-01", 2, 130, 100);
+
+        HistoryEntry moved = new HistoryEntry(entry.getInputText(), entry.getOutputText(), 70, MAY_2, true);
+        moved.setId(entry.getId());
+        db.historyDao().update(moved);
+
+        List<HistoryDailyStats> days = days();
+        assertDay(days.get(0), "2024-05-02", 1, 70, 70);
+        assertDay(days.get(1), "2024-05-01", 1, 30, 30);
+    }
+
+    @Test
+    public void markDeleted_removesFromItsDayUntilRestored() {
+        insert(100, MAY_1);
+        HistoryEntry large = insert(250, MAY_1 + 1000);
+
+        db.historyDao().markDeleted(large.getId(), MAY_2);
+        assertDay(days().get(0), "2024-05-01", 1, 100, 100);
+
+        db.historyDao().restore(large.getId());
+        assertDay(days().get(0), "2024-05-01", 2, 350, 250);
+
+        // Purging a deleted entry leaves the day as it is.
+        db.historyDao().markDeleted(large.getId(), MAY_2);
+        db.historyDao().purgeDeleted(Long.MAX_VALUE, 10);
+        assertDay(days().get(0), "2024-05-01", 1, 100, 100);
+    }
+
+    @Test
+    public void rebuild_matchesTheTriggers() {
+        insert(100, MAY_1);
+        HistoryEntry large = insert(250, MAY_1);
+        insert(40, MAY_2);
+        db.historyDao().delete(large);
+        List<HistoryDailyStats> kept = days();
+
+        HistoryDailyStats.rebuild(db.getOpenHelper().getWritableDatabase());
+
+        List<HistoryDailyStats> rebuilt = days();
+        assertEquals(kept.size(), rebuilt.size());
+        for (int i = 0; i < kept.size(); i++) {
+            HistoryDailyStats day = kept.get(i);
+            assertDay(rebuilt.get(i), day.getDay(), day.getEntryCount(), day.getTotalCm(), day.getMaxCm());
+        }
+    }
+
+    private HistoryEntry insert(double totalCm, long timestamp) {
+        HistoryEntry entry = new HistoryEntry(totalCm + " cm", totalCm + " cm", totalCm, timestamp, false);
+        entry.setId(db.historyDao().insert(entry));
+        return entry;
+    }
+
+    private List<HistoryDailyStats> days() {
+        return db.historyDao().getDailyStats(10).blockingFirst();
+    }
+
+    private static void assertDay(HistoryDailyStats day, String date, int count, double total, double max) {
+        assertEquals(date, day.getDay());
+        assertEquals(count, day.getEntryCount());
+        assertEquals(total, day.getTotalCm(), 0.001);
+        assertEquals(max, day.getMaxCm(), 0.001);
+    }
+
+    private static long noon(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, 12, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,136 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteProgram;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that the history queries, as built by {@link HistoryFilter},
+ * are served by the indices declared on {@link HistoryEntry}, so a changed query or index
+ * cannot quietly fall back to scanning and sorting the whole table.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryQueryPlanTest {
+
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        db = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                AppDatabase.class).build();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void sortedFilters_readInIndexOrder() {
+        HistoryFilter all = HistoryFilter.ALL;
+        assertUsesIndex(all, "index_history_table_deletedAt_timestamp");
+        assertUsesIndex(all.withSortOrder(HistoryFilter.SortOrder.BY_SIZE_ASC), "index_history_table_deletedAt_totalCm");
+        assertUsesIndex(all.withSortOrder(HistoryFilter.SortOrder.BY_SIZE_DESC), "index_history_table_deletedAt_totalCm");
+        // The paging library wraps each query in LIMIT/OFFSET.
+        assertUsesIndex("SELECT * FROM ( " + all.sql() + " ) LIMIT 40 OFFSET 80", "index_history_table_deletedAt_timestamp");
+    }
+
+    @Test
+    public void favoritesFilter_searchesIndex() {
+        HistoryFilter favorites = HistoryFilter.ALL.withFavoritesOnly(true);
+        List<String> plan = assertUsesIndex(favorites, "index_history_table_deletedAt_isFavorite_timestamp");
+        assertTrue(plan.toString(), plan.get(0).startsWith("SEARCH"));
+        assertUsesIndex(favorites.withSortOrder(HistoryFilter.SortOrder.BY_SIZE_DESC), "index_history_table_deletedAt_isFavorite_totalCm");
+    }
+
+    @Test
+    public void rangeFilters_searchIndex() {
+        assertUsesIndex(HistoryFilter.ALL.withDateRange(0, 1000), "index_history_table_deletedAt_timestamp");
+        assertUsesIndex(HistoryFilter.ALL.withSizeRange(100, 200).withSortOrder(HistoryFilter.SortOrder.BY_SIZE_ASC),
+                "index_history_table_deletedAt_totalCm");
+    }
+
+    @Test
+    public void searchFilter_usesFullTextIndex() {
+        // The matched rows are sorted in a temporary B-tree, so only check that the FTS index
+        // drives the query and rows are then fetched by primary key.
+        String plan = explain(HistoryFilter.ALL.withSearchText("6 kol").withFavoritesOnly(true).toQuery()).toString();
+        assertTrue(plan, plan.contains("history_fts VIRTUAL TABLE"));
+        assertTrue(plan, plan.contains("INTEGER PRIMARY KEY"));
+    }
+
+    @Test
+    public void retentionDelete_searchesIndex() {
+        assertUsesIndex("DELETE FROM history_table WHERE deletedAt = 0 AND timestamp < 1",
+                "index_history_table_deletedAt_timestamp");
+    }
+
+    @Test
+    public void purge_searchesIndex() {
+        assertUsesIndex("SELECT id FROM history_table WHERE deletedAt > 0 AND deletedAt < 1",
+                "index_history_table_deletedAt_");
+    }
+
+    @Test
+    public void duplicateCheck_searchesUniqueIndex() {
+        assertUsesIndex("SELECT id FROM history_table WHERE contentHash = 1", "index_history_table_contentHash");
+    }
+
+    private List<String> assertUsesIndex(HistoryFilter filter, String index) {
+        return assertUsesIndex(new SimpleSQLiteQuery(filter.sql(), filter.args()), index);
+    }
+
+    private List<String> assertUsesIndex(String sql, String index) {
+        return assertUsesIndex(new SimpleSQLiteQuery(sql), index);
+    }
+
+    private List<String> assertUsesIndex(SimpleSQLiteQuery query, String index) {
+        List<String> plan = explain(query);
+        String text = plan.toString();
+        assertTrue(query.getSql() + " -> " + text, text.contains(index));
+        assertFalse(query.getSql() + " -> " + text, text.contains("TEMP B-TREE"));
+        return plan;
+    }
+
+    private List<String> explain(SupportSQLiteQuery query) {
+        List<String> plan = new ArrayList<>();
+        SupportSQLiteQuery explain = new SupportSQLiteQuery() {
+            @Override
+            public String getSql() {
+                return "EXPLAIN QUERY PLAN " + query.getSql();
+            }
+
+            @Override
+            public void bindTo(SupportSQLiteProgram statement) {
+                query.bindTo(statement);
+            }
+
+            @Override
+            public int getArgCount() {
+                return query.getArgCount();
+            }
+        };
+        try (Cursor cursor = db.getOpenHelper().getReadableDatabase().query(explain)) {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        }
+        return plan;
+    }
+}
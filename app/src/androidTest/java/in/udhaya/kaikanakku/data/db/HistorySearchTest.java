@@ -0,0 +1,71 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for the history full-text search.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistorySearchTest {
+
+    private AppDatabase db;
+    private HistoryDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.historyDao();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void search_matchesPrefixesAndRanksPhraseHits() {
+        dao.insert(new HistoryEntry("6 kol", "432.00 cm", 432, 1, false));
+        dao.insert(new HistoryEntry("2 kol 6 viral", "162.00 cm", 162, 2, false));
+        dao.insert(new HistoryEntry("12 viral", "36.00 cm", 36, 3, false));
+
+        // Both kol entries match every word, but only the older one holds the phrase "6 ko".
+        List<HistoryEntry> results = search("6 ko");
+        assertEquals(2, results.size());
+        assertEquals("6 kol", results.get(0).getInputText());
+        assertEquals("2 kol 6 viral", results.get(1).getInputText());
+
+        // Numbers glued to units still find the spaced-out history text.
+        assertEquals(1, search("12vir").size());
+        assertTrue(search("feet").isEmpty());
+    }
+
+    @Test
+    public void search_dropsDeletedEntries() {
+        HistoryEntry entry = new HistoryEntry("3 kol", "216.00 cm", 216, 1, false);
+        dao.insert(entry);
+        entry = search("3 kol").get(0);
+
+        dao.delete(entry);
+        assertTrue(search("3 kol").isEmpty());
+    }
+
+    private List<HistoryEntry> search(String text) {
+        return dao.queryHistory(HistoryFilter.ALL.withSearchText(text).toQuery()).blockingFirst();
+    }
+}
@@ -0,0 +1,176 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link HistoryWriter} against a real database.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryWriterBatchTest {
+
+    private AppDatabase db;
+    private ScheduledExecutorService executor;
+    private HistoryWriter writer;
+
+    @Before
+    public void setUp() {
+        db = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                AppDatabase.class).build();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        writer = new HistoryWriter(db, executor, 20);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        db.close();
+    }
+
+    @Test
+    public void flush_commitsEveryQueuedWrite() throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            writer.insert(new HistoryEntry(i + " viral", (i * 3) + ".00 cm", i * 3, i, false));
+        }
+        writer.flush();
+        List<HistoryEntry> all = all();
+        assertEquals(500, all.size());
+
+        HistoryEntry newest = all.get(0);
+        newest.setFavorite(true);
+        writer.update(newest);
+        writer.delete(all.get(1));
+        writer.flush();
+        assertEquals(1, db.historyDao().queryHistory(HistoryFilter.ALL.withFavoritesOnly(true).toQuery()).blockingFirst().size());
+        assertEquals(499, all().size());
+
+        writer.deleteAll();
+        writer.flush();
+        assertTrue(all().isEmpty());
+    }
+
+    @Test
+    public void concurrentWriters_neverStoreDuplicates() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    writer.insert(new HistoryEntry(i + " kol", (i * 72) + ".00 cm", i * 72, i, false));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writer.flush();
+        assertEquals(100, all().size());
+    }
+
+    @Test
+    public void deleteOlderThan_deletesInChunksOldestFirst() throws Exception {
+        for (int i = 0; i < 250; i++) {
+            writer.insert(new HistoryEntry(i + " viral", (i * 3) + ".00 cm", i * 3, i, false));
+        }
+        // Queued before the delete, so committed first, and old enough to be deleted by it.
+        assertEquals(100, (int) writer.deleteOlderThan(200, 100).get());
+        assertEquals(100, (int) writer.deleteOlderThan(200, 100).get());
+        assertEquals(0, (int) writer.deleteOlderThan(200, 100).get());
+
+        List<HistoryEntry> left = all();
+        assertEquals(50, left.size());
+        assertEquals(200, left.get(left.size() - 1).getTimestamp());
+    }
+
+    @Test
+    public void bulkActions_changeTheSelectionInOneStatement() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            writer.insert(new HistoryEntry(i + " viral", (i * 3) + ".00 cm", i * 3, i, false));
+        }
+        writer.flush();
+
+        // More ids than SQLite allows arguments in one statement.
+        HistorySelection picked = HistorySelection.NONE;
+        for (HistoryEntry entry : all().subList(0, 1500)) {
+            picked = picked.toggle(entry.getId());
+        }
+        assertEquals(1500, (int) writer.setFavorite(picked, true).get());
+        assertEquals(0, (int) writer.setFavorite(picked, true).get());
+
+        HistorySelection favorites = HistorySelection.allMatching(HistoryFilter.ALL.withFavoritesOnly(true))
+                .toggle(all().get(0).getId());
+        assertEquals(1499, (int) writer.deleteSelected(favorites, 1000).get());
+        assertEquals(501, all().size());
+
+        assertEquals(1499, (int) writer.restoreDeletedAt(1000).get());
+        assertEquals(2000, all().size());
+    }
+
+    @Test
+    public void delete_canBeRestoredUntilPurged() throws Exception {
+        writer.insert(new HistoryEntry("1 viral", "3.00 cm", 3, 1, false));
+        writer.insert(new HistoryEntry("2 viral", "6.00 cm", 6, 2, false));
+        writer.flush();
+        HistoryEntry first = all().get(1);
+
+        writer.delete(first);
+        writer.flush();
+        assertEquals(1, all().size());
+        writer.restore(first);
+        writer.flush();
+        assertEquals(first.getId(), all().get(1).getId());
+
+        // Inserting the same calculation again brings the deleted row back as the newest.
+        writer.delete(first);
+        writer.insert(new HistoryEntry("1 viral", "3.00 cm", 3, 5, false));
+        writer.flush();
+        assertEquals(first.getId(), all().get(0).getId());
+
+        writer.delete(first);
+        writer.flush();
+        assertEquals(1, (int) writer.purgeDeleted(Long.MAX_VALUE, 100).get());
+        writer.restore(first);
+        writer.flush();
+        assertEquals(1, all().size());
+    }
+
+    @Test
+    public void setFavorite_leavesDeletedEntriesDeleted() throws Exception {
+        writer.insert(new HistoryEntry("1 viral", "3.00 cm", 3, 1, false));
+        writer.flush();
+        HistoryEntry entry = all().get(0);
+
+        writer.setFavorite(entry, true);
+        writer.flush();
+        assertTrue(all().get(0).isFavorite());
+        assertFalse(entry.isFavorite());
+
+        // A toggle from a list that still shows the entry must not bring it back.
+        writer.delete(entry);
+        writer.flush();
+        writer.setFavorite(entry, false);
+        writer.flush();
+        assertTrue(all().isEmpty());
+        writer.restore(entry);
+        writer.flush();
+        assertTrue(all().get(0).isFavorite());
+    }
+
+    private List<HistoryEntry> all() {
+        return db.historyDao().queryHistory(HistoryFilter.ALL.toQuery()).blockingFirst();
+    }
+}
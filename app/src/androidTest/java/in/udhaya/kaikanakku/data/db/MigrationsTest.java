@@ -0,0 +1,102 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import in.udhaya.kaikanakku.util.Length;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link Migrations}. Each test writes an old schema by hand, as an
+ * older app version would have left it, and opens it with the current {@link AppDatabase};
+ * Room then runs the migrations and validates the result against the entities.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationsTest {
+
+    private static final String TEST_DB = "migration-test.db";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrateFromVersion1_indexesDeduplicatesAndClassifiesExistingRows() {
+        SQLiteDatabase old = context.openOrCreateDatabase(TEST_DB, Context.MODE_PRIVATE, null);
+        old.execSQL("CREATE TABLE IF NOT EXISTS `history_table` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                + "`inputText` TEXT NOT NULL, `outputText` TEXT NOT NULL, `totalCm` REAL NOT NULL, "
+                + "`timestamp` INTEGER NOT NULL, `isFavorite` INTEGER NOT NULL)");
+        old.execSQL("INSERT INTO history_table (inputText, outputText, totalCm, timestamp, isFavorite) "
+                + "VALUES ('2 kol 4 viral', '156.00 cm', 156, 1, 0)");
+        // A duplicate left behind by two racing inserts; only the copy is a favorite.
+        old.execSQL("INSERT INTO history_table (inputText, outputText, totalCm, timestamp, isFavorite) "
+                + "VALUES ('2 kol 4 viral', '156.00 cm', 156, 2, 1)");
+        old.execSQL("INSERT INTO history_table (inputText, outputText, totalCm, timestamp, isFavorite) "
+                + "VALUES ('3 viral', '9.00 cm', 9, 3, 0)");
+        old.setVersion(1);
+        old.close();
+
+        AppDatabase migrated = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
+                .addMigrations(Migrations.ALL)
+                .allowMainThreadQueries()
+                .build();
+        try {
+            HistoryDao dao = migrated.historyDao();
+            List<HistoryEntry> all = dao.queryHistory(HistoryFilter.ALL.toQuery()).blockingFirst();
+            assertEquals(2, all.size());
+            HistoryEntry merged = all.get(1);
+            assertEquals(1, merged.getTimestamp());
+            assertTrue(merged.isFavorite());
+            assertEquals(ContentHash.of("2 kol 4 viral", "156.00 cm"), merged.getContentHash());
+
+            // Version 5 classified the old rows from their text.
+            assertEquals(HistoryEntry.KIND_KOL_TO_CM, merged.getKind());
+            assertEquals(Length.of(2, 4, 0).getUnits(), merged.getOperandA());
+            assertTrue(merged.isPrecision());
+            assertFalse(merged.isRounded());
+
+            // Version 6 summed the rows up by day.
+            HistoryStatsSummary summary = dao.getStatsSummary().blockingFirst();
+            assertEquals(2, summary.entryCount);
+            assertEquals(165, summary.totalCm, 0.001);
+            assertEquals(156, summary.maxCm, 0.001);
+
+            // Version 7 deletes by marking, and the statistics follow.
+            assertEquals(1, dao.markDeleted(merged.getId(), 10));
+            assertEquals(1, dao.getStatsSummary().blockingFirst().entryCount);
+            assertEquals(1, dao.queryHistory(HistoryFilter.ALL.toQuery()).blockingFirst().size());
+            assertEquals(1, dao.restore(merged.getId()));
+
+            // The backfilled hashes are enforced from now on.
+            assertEquals(-1, dao.insert(new HistoryEntry("3 viral", "9.00 cm", 9, 4, false)));
+
+            List<HistoryEntry> found = dao.queryHistory(HistoryFilter.ALL.withSearchText("4 vir").toQuery())
+                    .blockingFirst();
+            assertEquals(1, found.size());
+            assertEquals("156.00 cm", found.get(0).getOutputText());
+        } finally {
+            migrated.close();
+        }
+    }
+}
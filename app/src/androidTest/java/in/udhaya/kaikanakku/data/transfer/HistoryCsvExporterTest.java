@@ -0,0 +1,89 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import in.udhaya.kaikanakku.data.db.AppDatabase;
+import in.udhaya.kaikanakku.data.db.HistoryDao;
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.data.db.HistoryFilter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link HistoryCsvExporter}, reading from a real Room cursor.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryCsvExporterTest {
+
+    private static final int ROWS = HistoryCsvExporter.CHUNK_ROWS * 2 + 10;
+
+    private AppDatabase db;
+    private HistoryDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.historyDao();
+        db.runInTransaction(() -> {
+            for (int i = 1; i <= ROWS; i++) {
+                dao.insert(new HistoryEntry(i + " cm", "out, " + i, i, i, i % 2 == 0));
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void export_writesEveryRowInFilterOrderAndReportsProgress() throws Exception {
+        StringWriter out = new StringWriter();
+        List<HistoryCsvExporter.Progress> progress = new ArrayList<>();
+        int written;
+        try (Cursor cursor = dao.queryHistoryCursor(HistoryFilter.ALL.toQuery())) {
+            written = HistoryCsvExporter.export(cursor, out, progress::add, () -> false);
+        }
+
+        assertEquals(ROWS, written);
+        String[] lines = out.toString().split("\r\n");
+        assertEquals(ROWS + 1, lines.length);
+        assertEquals(HistoryCsv.HEADER, lines[0]);
+        // Newest first, as on screen; the comma in the output is quoted.
+        assertEquals(ROWS + " cm,\"out, " + ROWS + "\",true," + ROWS + ".00," + ROWS, lines[1]);
+
+        assertEquals(4, progress.size());
+        assertEquals(0, progress.get(0).written);
+        assertEquals(HistoryCsvExporter.CHUNK_ROWS, progress.get(1).written);
+        assertEquals(ROWS, progress.get(3).written);
+        assertEquals(100, progress.get(3).percent());
+    }
+
+    @Test
+    public void export_stopsWhenCancelled() throws Exception {
+        StringWriter out = new StringWriter();
+        int written;
+        try (Cursor cursor = dao.queryHistoryCursor(HistoryFilter.ALL.toQuery())) {
+            written = HistoryCsvExporter.export(cursor, out, p -> {}, () -> true);
+        }
+        assertEquals(-1, written);
+        assertEquals(HistoryCsvExporter.CHUNK_ROWS + 1, out.toString().split("\r\n").length);
+    }
+}
@@ -0,0 +1,146 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import in.udhaya.kaikanakku.data.db.AppDatabase;
+import in.udhaya.kaikanakku.data.db.HistoryDao;
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.data.db.HistoryFilter;
+import in.udhaya.kaikanakku.data.db.HistoryWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link HistoryImporter}, writing through a real {@link HistoryWriter}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryImporterTest {
+
+    private AppDatabase db;
+    private HistoryDao dao;
+    private ScheduledExecutorService executor;
+    private HistoryWriter writer;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.historyDao();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        writer = new HistoryWriter(db, executor, 20);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        db.close();
+    }
+
+    @Test
+    public void importCsv_skipsDuplicatesAndReportsRejectedLines() throws Exception {
+        dao.insert(new HistoryEntry("3 kol", "216.00 cm", 216, 1, false));
+        String csv = HistoryCsv.HEADER + "\r\n"
+                + "3 kol,216.00 cm,false,216.00,1\r\n"        // already saved
+                + "2 viral,6.00 cm,true,6.00,2\r\n"
+                + "2 viral,6.00 cm,true,6.00,2\r\n"           // repeated in the file
+                + ",no input,false,0,3\r\n"                   // rejected
+                + "\"1 kol, 2 viral\",78.00 cm,false,,4\r\n"; // total read from the output
+
+        HistoryImporter.Progress result = run(csv, HistoryImporter.Format.CSV);
+
+        assertEquals(5, result.read);
+        assertEquals(2, result.inserted);
+        assertEquals(2, result.duplicates());
+        assertEquals(1, result.rejected);
+        assertEquals(5, result.rejections.get(0).line);
+        assertEquals(3, all().size());
+    }
+
+    @Test
+    public void importCsv_commitsInChunks() throws Exception {
+        int rows = HistoryImporter.CHUNK_ROWS * 2 + 1;
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= rows; i++) {
+            csv.append(i).append(" viral\n");
+        }
+        List<HistoryImporter.Progress> progress = new ArrayList<>();
+        HistoryImporter.Progress result = new HistoryImporter(writer).run(stream(csv.toString()),
+                HistoryImporter.Format.CSV, csv.length(), 0, progress::add, () -> false);
+
+        assertEquals(rows, result.inserted);
+        assertEquals(rows, all().size());
+        // One report per full chunk, then the result.
+        assertEquals(3, progress.size());
+        assertTrue(progress.get(2).done);
+    }
+
+    @Test
+    public void importCsv_stopsWhenCancelled() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 1; i <= HistoryImporter.CHUNK_ROWS * 3; i++) {
+            csv.append(i).append(" cm\n");
+        }
+        HistoryImporter.Progress result = new HistoryImporter(writer).run(stream(csv.toString()),
+                HistoryImporter.Format.CSV, -1, 0, p -> {}, () -> true);
+
+        assertNull(result);
+        assertTrue(all().isEmpty());
+    }
+
+    @Test
+    public void importJsonLines() throws Exception {
+        String jsonl = "{\"inputText\":\"2 kol\",\"outputText\":\"144.00 cm\",\"totalCm\":144,\"timestamp\":9,\"isFavorite\":true}\n"
+                + "\n"
+                + "not json\n"
+                + "{\"inputText\":\"5 viral\"}\n";
+
+        HistoryImporter.Progress result = run(jsonl, HistoryImporter.Format.JSON_LINES);
+
+        assertEquals(2, result.inserted);
+        assertEquals(1, result.rejected);
+        assertEquals(3, result.rejections.get(0).line);
+        List<HistoryEntry> all = all();
+        assertEquals(9, all.get(1).getTimestamp());
+        assertTrue(all.get(1).isFavorite());
+        assertEquals("15.00 cm", all.get(0).getOutputText());
+    }
+
+    @Test
+    public void format_isGuessedFromTypeAndName() {
+        assertEquals(HistoryImporter.Format.JSON_LINES, HistoryImporter.Format.of("application/x-ndjson", null));
+        assertEquals(HistoryImporter.Format.JSON_LINES, HistoryImporter.Format.of("application/octet-stream", "history.jsonl"));
+        assertEquals(HistoryImporter.Format.CSV, HistoryImporter.Format.of("text/csv", "history.csv"));
+        assertEquals(HistoryImporter.Format.CSV, HistoryImporter.Format.of(null, null));
+    }
+
+    private HistoryImporter.Progress run(String text, HistoryImporter.Format format) throws Exception {
+        return new HistoryImporter(writer).run(stream(text), format, text.length(), 1000, p -> {}, () -> false);
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<HistoryEntry> all() {
+        return dao.queryHistory(HistoryFilter.ALL.toQuery()).blockingFirst();
+    }
+}
@@ -16,6 +16,7 @@ import java.util.concurrent.TimeUnit;
 import in.udhaya.kaikanakku.data.repository.SettingsRepository;
 import in.udhaya.kaikanakku.util.LocaleHelper;
 import in.udhaya.kaikanakku.workers.AutoDeleteWorker;
+import in.udhaya.kaikanakku.workers.DatabaseMaintenanceWorker;
 
 public class KaiKanakkuApp extends Application implements Configuration.Provider {
 
@@ -35,6 +36,7 @@ public class KaiKanakkuApp extends Application implements Configuration.Provider
     public void onCreate() {
         super.onCreate();
         scheduleAutoDeleteWorker();
+        scheduleMaintenanceWorker();
     }
 
     private void scheduleAutoDeleteWorker() {
@@ -55,6 +57,25 @@ public class KaiKanakkuApp extends Application implements Configuration.Provider
         );
     }
 
+    private void scheduleMaintenanceWorker() {
+        // Only while idle and charging: the first run rewrites the whole database file.
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .build();
+
+        PeriodicWorkRequest maintenanceWorkRequest =
+                new PeriodicWorkRequest.Builder(DatabaseMaintenanceWorker.class, 1, TimeUnit.DAYS)
+                        .setConstraints(constraints)
+                        .build();
+
+        WorkManager.getInstance(this).enqueueUniquePeriodicWork(
+                "databaseMaintenanceWork",
+                ExistingPeriodicWorkPolicy.KEEP,
+                maintenanceWorkRequest
+        );
+    }
+
     @NonNull
     @Override
     public Configuration getWorkManagerConfiguration() {
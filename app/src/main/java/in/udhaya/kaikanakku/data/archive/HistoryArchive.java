@@ -0,0 +1,196 @@
+package in.udhaya.kaikanakku.data.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+
+/**
+ * Old history, moved out of the database into compact, append-only segment files (see
+ * {@link HistoryArchiveSegment}) so the history table stays small. Archived entries are
+ * read-only: they can be searched and exported, but not edited or reused by id.
+ *
+ * Segments are numbered in the order they are written and never change once written. A new
+ * segment is first written to a temporary file and only becomes part of the archive when
+ * {@link PendingSegment#commit()} renames it, which the caller does in the same transaction
+ * that deletes the rows from the database; an entry is therefore always in exactly one of the two.
+ *
+ * Only segment files are read; nothing is kept in memory between calls.
+ */
+public final class HistoryArchive {
+
+    /** The most rows written to one segment. */
+    public static final int SEGMENT_ROWS = 10_000;
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".kka";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /** Receives archived entries one at a time. */
+    public interface EntryConsumer {
+        void accept(HistoryEntry entry) throws IOException;
+    }
+
+    /** A segment that is written but not yet part of the archive. */
+    public static final class PendingSegment {
+        private final File temp;
+        private final File target;
+
+        PendingSegment(File temp, File target) {
+            this.temp = temp;
+            this.target = target;
+        }
+
+        /** Adds the segment to the archive. */
+        public void commit() throws IOException {
+            if (!temp.renameTo(target)) {
+                throw new IOException("Could not move " + temp + " to " + target);
+            }
+        }
+
+        /** Deletes the segment, e.g. because the database transaction failed. */
+        public void discard() {
+            temp.delete();
+        }
+    }
+
+    private final File dir;
+
+    public HistoryArchive(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Writes {@code entries}, sorted by timestamp and at most {@link #SEGMENT_ROWS} of them, as
+     * the next segment. The file is synced to disk before this returns, so once the caller
+     * commits it and deletes the rows, the entries survive a crash.
+     */
+    public synchronized PendingSegment prepare(List<HistoryEntry> entries) throws IOException {
+        if (entries.size() > SEGMENT_ROWS) {
+            throw new IllegalArgumentException("At most " + SEGMENT_ROWS + " entries fit in a segment");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        // Left behind by a crash before commit; their rows are still in the database.
+        File[] stale = dir.listFiles((d, name) -> name.endsWith(TEMP_SUFFIX));
+        if (stale != null) {
+            for (File file : stale) file.delete();
+        }
+
+        File[] segments = segments();
+        long next = segments.length == 0 ? 1 : sequenceOf(segments[segments.length - 1]) + 1;
+        String name = PREFIX + String.format(Locale.ROOT, "%010d", next) + SUFFIX;
+        File target = new File(dir, name);
+        File temp = new File(dir, name + TEMP_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            BufferedOutputStream out = new BufferedOutputStream(file);
+            HistoryArchiveSegment.write(entries, out);
+            out.flush();
+            file.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        return new PendingSegment(temp, target);
+    }
+
+    /**
+     * Finds archived entries whose input or output contains {@code text}, ignoring case, newest
+     * first. Each distinct calculation is returned once, at its latest time. Segments are read
+     * newest first and the search stops once {@code limit} entries are found.
+     *
+     * @throws IOException if a segment cannot be read.
+     */
+    public List<HistoryEntry> search(String text, int limit) throws IOException {
+        String query = text.trim().toLowerCase(Locale.ROOT);
+        HistoryArchiveSegment.RowFilter filter = new HistoryArchiveSegment.RowFilter() {
+            @Override
+            public boolean matchesText(String candidate) {
+                return candidate.toLowerCase(Locale.ROOT).contains(query);
+            }
+
+            @Override
+            public boolean matchesRow(long timestamp, boolean inputMatched, boolean outputMatched) {
+                return inputMatched || outputMatched;
+            }
+        };
+        List<HistoryEntry> found = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        File[] segments = segments();
+        for (int s = segments.length - 1; s >= 0 && found.size() < limit; s--) {
+            List<HistoryEntry> matches = read(segments[s], filter);
+            for (int i = matches.size() - 1; i >= 0 && found.size() < limit; i--) {
+                HistoryEntry entry = matches.get(i);
+                if (seen.add(entry.getContentHash())) {
+                    found.add(entry);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Passes every archived entry to {@code consumer}, oldest first, one segment in memory at a
+     * time.
+     *
+     * @return The number of entries.
+     */
+    public int forEach(EntryConsumer consumer) throws IOException {
+        int count = 0;
+        for (File segment : segments()) {
+            for (HistoryEntry entry : read(segment, HistoryArchiveSegment.ALL)) {
+                consumer.accept(entry);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** The number of archived entries, from the segment headers alone. */
+    public int count() throws IOException {
+        int count = 0;
+        for (File segment : segments()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment), 64))) {
+                count += HistoryArchiveSegment.readHeader(in).rowCount;
+            }
+        }
+        return count;
+    }
+
+    private static List<HistoryEntry> read(File segment, HistoryArchiveSegment.RowFilter filter) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(segment))) {
+            return HistoryArchiveSegment.read(in, filter);
+        } catch (IOException e) {
+            throw new IOException("Could not read " + segment.getName(), e);
+        }
+    }
+
+    /** The committed segments, oldest first. */
+    private File[] segments() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        // Sequence numbers are zero-padded, so names sort in the order the segments were written.
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    private static long sequenceOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
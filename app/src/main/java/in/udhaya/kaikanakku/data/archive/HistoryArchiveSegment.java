@@ -0,0 +1,348 @@
+package in.udhaya.kaikanakku.data.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.util.Length;
+
+/**
+ * The file format of one archive segment: a batch of history entries, stored column by column.
+ *
+ * A segment starts with a small uncompressed header (magic, version, row count, the oldest and
+ * newest timestamp, the body length and its CRC-32), so a segment can be counted, or checked
+ * before it is inflated. The deflated body holds:
+ * <ol>
+ *     <li>a dictionary of every distinct input and output text, each once;</li>
+ *     <li>the timestamps, in ascending order, as the first value and then the gaps;</li>
+ *     <li>the input and output of each row as indexes into the dictionary;</li>
+ *     <li>the total, operands, kind and flags of each row, lengths in fixed-point units
+ *     ({@link Length}), so no precision is lost;</li>
+ *     <li>the multiplier, only for rows that are multiplications.</li>
+ * </ol>
+ * Integers are variable-length and signed ones zigzag-encoded, so the small values that make up
+ * most columns take a byte or two, and a column of similar values deflates well.
+ *
+ * Ids are not stored: archived entries are read-only and are told apart by their content.
+ */
+final class HistoryArchiveSegment {
+
+    static final int MAGIC = 0x4b4b4152; // "KKAR"
+    static final int VERSION = 1;
+
+    private static final int FLAG_FAVORITE = 1;
+    private static final int FLAG_PRECISION = 1 << 1;
+    private static final int FLAG_ROUNDED = 1 << 2;
+
+    /** What a reader can learn about a segment without inflating it. */
+    static final class Header {
+        final int rowCount;
+        final long minTimestamp;
+        final long maxTimestamp;
+        final int bodyLength;
+        final int crc;
+
+        Header(int rowCount, long minTimestamp, long maxTimestamp, int bodyLength, int crc) {
+            this.rowCount = rowCount;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.bodyLength = bodyLength;
+            this.crc = crc;
+        }
+    }
+
+    /** Chooses the rows a read returns, looking only at the cheap columns first. */
+    interface RowFilter {
+        /** Whether a dictionary text matches; asked once per distinct text. */
+        boolean matchesText(String text);
+
+        /**
+         * Whether a row matches, given its timestamp and whether its input and output matched
+         * {@link #matchesText}.
+         */
+        boolean matchesRow(long timestamp, boolean inputMatched, boolean outputMatched);
+    }
+
+    /** Every row. */
+    static final RowFilter ALL = new RowFilter() {
+        @Override
+        public boolean matchesText(String text) {
+            return true;
+        }
+
+        @Override
+        public boolean matchesRow(long timestamp, boolean inputMatched, boolean outputMatched) {
+            return true;
+        }
+    };
+
+    private HistoryArchiveSegment() {}
+
+    /**
+     * Writes {@code entries}, which must be sorted by timestamp, as one segment.
+     */
+    static void write(List<HistoryEntry> entries, OutputStream out) throws IOException {
+        int rows = entries.size();
+        if (rows == 0) {
+            throw new IllegalArgumentException("A segment needs at least one entry");
+        }
+
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        int[] inputs = new int[rows];
+        int[] outputs = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            HistoryEntry entry = entries.get(i);
+            inputs[i] = indexOf(entry.getInputText(), indexes, dictionary);
+            outputs[i] = indexOf(entry.getOutputText(), indexes, dictionary);
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(rows * 8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            DataOutputStream body = new DataOutputStream(new DeflaterOutputStream(compressed, deflater, 8192));
+            writeVarInt(body, dictionary.size());
+            for (String text : dictionary) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(body, bytes.length);
+                body.write(bytes);
+            }
+            long previous = 0;
+            for (int i = 0; i < rows; i++) {
+                long timestamp = entries.get(i).getTimestamp();
+                if (i > 0 && timestamp < previous) {
+                    throw new IllegalArgumentException("Entries must be sorted by timestamp");
+                }
+                writeVarLong(body, i == 0 ? zigzag(timestamp) : timestamp - previous);
+                previous = timestamp;
+            }
+            for (int i = 0; i < rows; i++) writeVarInt(body, inputs[i]);
+            for (int i = 0; i < rows; i++) writeVarInt(body, outputs[i]);
+            for (HistoryEntry entry : entries) writeVarLong(body, zigzag(Length.cmToUnits(entry.getTotalCm())));
+            for (HistoryEntry entry : entries) body.writeByte(entry.getKind());
+            for (HistoryEntry entry : entries) body.writeByte(flagsOf(entry));
+            for (HistoryEntry entry : entries) writeVarLong(body, zigzag(entry.getOperandA()));
+            for (HistoryEntry entry : entries) writeVarLong(body, zigzag(entry.getOperandB()));
+            for (HistoryEntry entry : entries) {
+                if (entry.getKind() == HistoryEntry.KIND_MULTIPLY) body.writeDouble(entry.getMultiplier());
+            }
+            body.close();
+        } finally {
+            deflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(compressed.toByteArray(), 0, compressed.size());
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.writeInt(rows);
+        header.writeLong(entries.get(0).getTimestamp());
+        header.writeLong(entries.get(rows - 1).getTimestamp());
+        header.writeInt(compressed.size());
+        header.writeInt((int) crc.getValue());
+        compressed.writeTo(header);
+        header.flush();
+    }
+
+    /** Reads the header, leaving {@code in} at the start of the body. */
+    static Header readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an archive segment");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive segment version " + version);
+        }
+        int rows = in.readInt();
+        long min = in.readLong();
+        long max = in.readLong();
+        int length = in.readInt();
+        int crc = in.readInt();
+        if (rows <= 0 || length <= 0 || min > max) {
+            throw new IOException("Corrupt archive segment header");
+        }
+        return new Header(rows, min, max, length, crc);
+    }
+
+    /**
+     * Reads a whole segment, returning the rows {@code filter} accepts in ascending timestamp
+     * order. Rows that do not match are never turned into entries.
+     *
+     * @throws IOException if the segment is damaged.
+     */
+    static List<HistoryEntry> read(InputStream stream, RowFilter filter) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        Header header = readHeader(in);
+        byte[] compressed = new byte[header.bodyLength];
+        in.readFully(compressed);
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, compressed.length);
+        if ((int) crc.getValue() != header.crc) {
+            throw new IOException("Archive segment checksum mismatch");
+        }
+        return decode(new DataInputStream(new ByteArrayInputStream(inflate(compressed))), header.rowCount, filter);
+    }
+
+    private static List<HistoryEntry> decode(DataInputStream body, int rows, RowFilter filter) throws IOException {
+        int size = readVarInt(body);
+        String[] dictionary = new String[size];
+        boolean[] matched = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            byte[] bytes = new byte[readVarInt(body)];
+            body.readFully(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+            matched[i] = filter.matchesText(dictionary[i]);
+        }
+
+        long[] timestamps = new long[rows];
+        long previous = 0;
+        for (int i = 0; i < rows; i++) {
+            previous = i == 0 ? unzigzag(readVarLong(body)) : previous + readVarLong(body);
+            timestamps[i] = previous;
+        }
+        int[] inputs = readIndexes(body, rows, size);
+        int[] outputs = readIndexes(body, rows, size);
+
+        // Decide which rows are wanted before decoding the rest, which is then only kept for them.
+        boolean[] wanted = new boolean[rows];
+        int count = 0;
+        for (int i = 0; i < rows; i++) {
+            wanted[i] = filter.matchesRow(timestamps[i], matched[inputs[i]], matched[outputs[i]]);
+            if (wanted[i]) count++;
+        }
+
+        long[] totals = new long[rows];
+        for (int i = 0; i < rows; i++) totals[i] = unzigzag(readVarLong(body));
+        byte[] kinds = new byte[rows];
+        body.readFully(kinds);
+        byte[] flags = new byte[rows];
+        body.readFully(flags);
+        long[] operandsA = new long[rows];
+        for (int i = 0; i < rows; i++) operandsA[i] = unzigzag(readVarLong(body));
+        long[] operandsB = new long[rows];
+        for (int i = 0; i < rows; i++) operandsB[i] = unzigzag(readVarLong(body));
+
+        List<HistoryEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < rows; i++) {
+            double multiplier = 1;
+            if (kinds[i] == HistoryEntry.KIND_MULTIPLY) {
+                multiplier = body.readDouble();
+            }
+            if (!wanted[i]) {
+                continue;
+            }
+            entries.add(new HistoryEntry(dictionary[inputs[i]], dictionary[outputs[i]], Length.unitsToCm(totals[i]),
+                    timestamps[i], (flags[i] & FLAG_FAVORITE) != 0, kinds[i], operandsA[i], operandsB[i],
+                    multiplier, (flags[i] & FLAG_PRECISION) != 0, (flags[i] & FLAG_ROUNDED) != 0));
+        }
+        return entries;
+    }
+
+    private static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Truncated archive segment");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive segment", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int[] readIndexes(DataInputStream body, int rows, int size) throws IOException {
+        int[] indexes = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            indexes[i] = readVarInt(body);
+            if (indexes[i] >= size) {
+                throw new IOException("Corrupt archive segment");
+            }
+        }
+        return indexes;
+    }
+
+    private static int indexOf(String text, Map<String, Integer> indexes, List<String> dictionary) {
+        String key = text == null ? "" : text;
+        Integer index = indexes.get(key);
+        if (index == null) {
+            index = dictionary.size();
+            indexes.put(key, index);
+            dictionary.add(key);
+        }
+        return index;
+    }
+
+    private static int flagsOf(HistoryEntry entry) {
+        return (entry.isFavorite() ? FLAG_FAVORITE : 0)
+                | (entry.isPrecision() ? FLAG_PRECISION : 0)
+                | (entry.isRounded() ? FLAG_ROUNDED : 0);
+    }
+
+    // --- Variable-length integers: 7 bits a byte, low bits first ---
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt archive segment");
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt archive segment");
+        }
+        return (int) value;
+    }
+}
@@ -1,11 +1,13 @@
 package in.udhaya.kaikanakku.data.db;
 
 import android.content.Context;
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
-import java.util.concurrent.ExecutorService;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * The main database class for the application, built using AndroidX Room.
@@ -16,7 +18,7 @@ import java.util.concurrent.Executors;
  * It defines the database configuration and serves as the main access point to the
  * persisted data.
  */
-@Database(entities = {HistoryEntry.class}, version = 1, exportSchema = false)
+@Database(entities = {HistoryEntry.class, HistoryFts.class, HistoryDailyStats.class}, version = 7, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     // Abstract method to get the Data Access Object (DAO) for the HistoryEntry table.
@@ -27,12 +29,24 @@ public abstract class AppDatabase extends RoomDatabase {
     // are immediately visible to all threads. This is crucial for the singleton pattern.
     private static volatile AppDatabase INSTANCE;
 
-    // A fixed-size thread pool for running database write operations asynchronously.
-    // This prevents database operations (which can be slow) from blocking the main UI thread,
-    // which would cause the app to freeze or crash.
-    private static final int NUMBER_OF_THREADS = 4;
-    public static final ExecutorService databaseWriteExecutor =
-            Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+    // The single thread that writes to the database. SQLite allows only one writer at a time,
+    // so more threads would just wait on each other for the write lock; keeping writes off the
+    // main thread is what matters. It is scheduled so that HistoryWriter can gather a burst of
+    // writes into one transaction.
+    public static final ScheduledExecutorService databaseWriteExecutor =
+            Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "database-writer"));
+
+    /**
+     * Creates what Room does not when it creates a new database: the triggers that keep
+     * history_daily_stats up to date (see {@link HistoryDailyStats}). Migrations create them
+     * for existing databases. Any other builder, e.g. in tests, must add this too.
+     */
+    public static final Callback CREATE_TRIGGERS = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            HistoryDailyStats.createTriggers(db);
+        }
+    };
 
     /**
      * Returns the singleton instance of the AppDatabase.
@@ -50,9 +64,9 @@ public abstract class AppDatabase extends RoomDatabase {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "kaikanakku_database")
-                            // In a production app with schema changes (e.g., adding a new column
-                            // in version 2), a migration strategy would be added here using .addMigrations().
-                            // For version 1, this is sufficient.
+                            // Every schema change ships with a migration, so history is never lost on update.
+                            .addMigrations(Migrations.ALL)
+                            .addCallback(CREATE_TRIGGERS)
                             .build();
                 }
             }
@@ -0,0 +1,40 @@
+package in.udhaya.kaikanakku.data.db;
+
+/**
+ * 64-bit hash of a history entry's text, stored in history_table.contentHash under a UNIQUE
+ * index so a duplicate calculation is rejected by the insert itself ({@code INSERT OR IGNORE})
+ * instead of a separate lookup. The two strings are hashed with their lengths, so ("ab", "c")
+ * and ("a", "bc") differ; the result is FNV-1a over the UTF-16 chars, finished with the
+ * SplitMix64 mixer so that similar texts spread over the whole range.
+ *
+ * The value is persisted, so this function must never change without a migration that
+ * recomputes the column.
+ */
+public final class ContentHash {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ContentHash() {}
+
+    public static long of(String inputText, String outputText) {
+        long h = FNV_OFFSET;
+        h = update(h, inputText);
+        h = update(h, outputText);
+        return mix(h);
+    }
+
+    private static long update(long h, String text) {
+        h = (h ^ text.length()) * FNV_PRIME;
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,129 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import java.io.File;
+
+/**
+ * Housekeeping that keeps the database file compact and its query plans good, meant to run
+ * in the background while the device is idle (see DatabaseMaintenanceWorker):
+ * <ol>
+ *     <li>switches the database to {@code auto_vacuum=INCREMENTAL}, once; an existing database
+ *     only takes the setting with a full VACUUM, which is why this is done here and not when
+ *     the database is opened;</li>
+ *     <li>returns the pages freed by deletes to the file system with {@code incremental_vacuum};</li>
+ *     <li>refreshes the statistics the query planner uses, with {@code PRAGMA optimize} where
+ *     SQLite has it (3.18, Android 8) and {@code ANALYZE} before that;</li>
+ *     <li>recomputes history_daily_stats (see {@link HistoryDailyStats}), so the days follow
+ *     the current time zone;</li>
+ *     <li>checkpoints the write-ahead log and truncates it.</li>
+ * </ol>
+ * None of this changes the history. VACUUM cannot run inside a transaction, so the steps are
+ * not wrapped in one; each takes the write lock only for its own duration.
+ */
+public final class DatabaseMaintenance {
+
+    private static final int AUTO_VACUUM_INCREMENTAL = 2;
+
+    /** What one run did. */
+    public static final class Report {
+        public final long finishedAt;
+        public final long durationMillis;
+        /** Size of the database file and its write-ahead log, before and after. */
+        public final long bytesBefore;
+        public final long bytesAfter;
+        /** Whether this run switched the database to incremental vacuum. */
+        public final boolean enabledIncrementalVacuum;
+
+        public Report(long finishedAt, long durationMillis, long bytesBefore, long bytesAfter,
+                      boolean enabledIncrementalVacuum) {
+            this.finishedAt = finishedAt;
+            this.durationMillis = durationMillis;
+            this.bytesBefore = bytesBefore;
+            this.bytesAfter = bytesAfter;
+            this.enabledIncrementalVacuum = enabledIncrementalVacuum;
+        }
+
+        public long freedBytes() {
+            return Math.max(0, bytesBefore - bytesAfter);
+        }
+    }
+
+    private final AppDatabase database;
+
+    public DatabaseMaintenance(AppDatabase database) {
+        this.database = database;
+    }
+
+    /** Runs every step, blocking. Call on a background thread. */
+    public Report run() {
+        long start = System.nanoTime();
+        SupportSQLiteDatabase db = database.getOpenHelper().getWritableDatabase();
+        long before = sizeOnDisk(db);
+
+        boolean enabled = false;
+        if (longValue(db, "PRAGMA auto_vacuum") != AUTO_VACUUM_INCREMENTAL) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            enabled = true;
+        }
+        // Frees every page on the free list. Pragmas that do work have to be stepped to the end.
+        consume(db, "PRAGMA incremental_vacuum");
+
+        if (isAtLeast(stringValue(db, "SELECT sqlite_version()"), 3, 18)) {
+            consume(db, "PRAGMA optimize");
+        } else {
+            db.execSQL("ANALYZE");
+        }
+
+        HistoryDailyStats.rebuild(db);
+
+        consume(db, "PRAGMA wal_checkpoint(TRUNCATE)");
+
+        long after = sizeOnDisk(db);
+        long duration = (System.nanoTime() - start) / 1_000_000;
+        return new Report(System.currentTimeMillis(), duration, before, after, enabled);
+    }
+
+    /** Whether a version such as "3.22.0" is at least {@code major.minor}. */
+    static boolean isAtLeast(String version, int major, int minor) {
+        String[] parts = version.split("\\.");
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static long sizeOnDisk(SupportSQLiteDatabase db) {
+        String path = db.getPath();
+        if (path == null) {
+            return 0; // In memory.
+        }
+        return new File(path).length() + new File(path + "-wal").length();
+    }
+
+    private static long longValue(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
+    private static String stringValue(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : "";
+        }
+    }
+
+    private static void consume(SupportSQLiteDatabase db, String sql) {
+        try (Cursor cursor = db.query(sql)) {
+            while (cursor.moveToNext()) {
+                // Stepping is what runs it.
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package in.udhaya.kaikanakku.data.db;
+
+import java.util.Locale;
+
+/**
+ * Turns what the user types in the history search box into an FTS4 MATCH expression.
+ * Every word becomes a quoted prefix phrase, so "6 ko" finds "6 kol 22 viral", and all words
+ * must match. Numbers glued to units ("6kol", "2.5cm") are split the way history text is
+ * written ("6 kol", "2.5 cm"). Quotes and FTS operators typed by the user are taken literally,
+ * so no input can produce an invalid expression.
+ */
+public final class FtsQuery {
+
+    private FtsQuery() {}
+
+    /**
+     * @return the MATCH expression, or null if the text contains nothing searchable.
+     */
+    public static String toMatchExpression(String text) {
+        if (text == null) return null;
+        StringBuilder match = new StringBuilder(text.length() + 8);
+        StringBuilder word = new StringBuilder();
+        int length = text.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (isWordChar(c)) {
+                // Split at a digit/letter boundary, keeping '.' with the number it belongs to.
+                if (word.length() > 0 && isBoundary(word.charAt(word.length() - 1), c)) {
+                    word.append(' ');
+                }
+                word.append(c);
+            } else if (word.length() > 0) {
+                appendPrefixPhrase(match, word);
+                word.setLength(0);
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * The search text normalised for ranking: trimmed and lower-cased, so it can be compared
+     * against lower(column) in SQL.
+     */
+    public static String toRankPhrase(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static void appendPrefixPhrase(StringBuilder match, CharSequence word) {
+        if (match.length() > 0) match.append(' ');
+        match.append('"').append(word).append("*\"");
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '.' || isMark(c);
+    }
+
+    private static boolean isMark(char c) {
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+
+    private static boolean isBoundary(char previous, char c) {
+        boolean previousNumeric = Character.isDigit(previous) || previous == '.';
+        boolean numeric = Character.isDigit(c) || c == '.';
+        return previousNumeric != numeric && previous != '.' && c != '.';
+    }
+}
@@ -0,0 +1,99 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * One committed change to the history, as reported by {@link HistoryWriter}, for lists kept in
+ * memory that apply the change themselves instead of querying again (see
+ * {@link HistoryChangeFeed}). Where the change lands in a particular list depends on that
+ * list's order, so each list works out the positions itself.
+ */
+public final class HistoryChange {
+
+    public enum Kind {
+        /** {@link #getEntry()} is new, or was deleted and is back. */
+        INSERTED,
+        /** The row with {@link #getId()} now holds {@link #getEntry()}. */
+        UPDATED,
+        DELETED,
+        /** Every entry older than {@link #getTimestamp()} is gone. */
+        DELETED_OLDER_THAN,
+        /** Every entry is gone. */
+        CLEARED,
+        /** Rows changed in a way the other kinds cannot describe; lists must read theirs again. */
+        INVALIDATED
+    }
+
+    private static final HistoryChange CLEARED = new HistoryChange(Kind.CLEARED, 0, null, 0);
+    private static final HistoryChange INVALIDATED = new HistoryChange(Kind.INVALIDATED, 0, null, 0);
+
+    private final Kind kind;
+    private final long id;
+    @Nullable
+    private final HistoryEntry entry;
+    private final long timestamp;
+
+    private HistoryChange(Kind kind, long id, @Nullable HistoryEntry entry, long timestamp) {
+        this.kind = kind;
+        this.id = id;
+        this.entry = entry;
+        this.timestamp = timestamp;
+    }
+
+    /** The entry must already carry its id, and not be changed afterwards. */
+    public static HistoryChange inserted(@NonNull HistoryEntry entry) {
+        return new HistoryChange(Kind.INSERTED, entry.getId(), entry, 0);
+    }
+
+    /** The entry must not be changed afterwards. */
+    public static HistoryChange updated(@NonNull HistoryEntry entry) {
+        return new HistoryChange(Kind.UPDATED, entry.getId(), entry, 0);
+    }
+
+    public static HistoryChange deleted(long id) {
+        return new HistoryChange(Kind.DELETED, id, null, 0);
+    }
+
+    public static HistoryChange deletedOlderThan(long timestamp) {
+        return new HistoryChange(Kind.DELETED_OLDER_THAN, 0, null, timestamp);
+    }
+
+    public static HistoryChange cleared() {
+        return CLEARED;
+    }
+
+    public static HistoryChange invalidated() {
+        return INVALIDATED;
+    }
+
+    @NonNull
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** The changed row, for {@link Kind#INSERTED}, {@link Kind#UPDATED} and {@link Kind#DELETED}. */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * The row as it now is, for {@link Kind#INSERTED} and {@link Kind#UPDATED}; null otherwise.
+     * Shared by every receiver of the change, so never modify it.
+     */
+    @Nullable
+    public HistoryEntry getEntry() {
+        return entry;
+    }
+
+    /** The cutoff, for {@link Kind#DELETED_OLDER_THAN}. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return kind + " " + (kind == Kind.DELETED_OLDER_THAN ? timestamp : id);
+    }
+}
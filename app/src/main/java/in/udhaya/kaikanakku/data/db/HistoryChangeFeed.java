@@ -0,0 +1,69 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.annotation.NonNull;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.PublishProcessor;
+
+/**
+ * Publishes what {@link HistoryWriter} commits as a stream of {@link HistoryChange}s. A list
+ * kept in memory applies each change in place, which costs a lookup in that list, where a Room
+ * query would run again and be diffed against the old list in full after every write.
+ *
+ * Changes are emitted on the writer thread, in commit order, right after each commit. They
+ * carry copies of the written entries, since the originals belong to whoever queued the write.
+ *
+ * Only the converter screen's recent-history strip follows the feed, through a
+ * {@code HistoryListModel} of {@code HistoryRepository.RECENT_HISTORY_SIZE} rows that refills
+ * gaps from {@link RecentHistoryCache}. The history screen, which can hold the whole history,
+ * still pages it with Paging 3: a PagingSource cannot take deltas, so there each write still
+ * invalidates the source and reloads and diffs the pages loaded so far.
+ */
+public final class HistoryChangeFeed implements HistoryWriter.Listener {
+
+    private final FlowableProcessor<HistoryChange> changes = PublishProcessor.<HistoryChange>create().toSerialized();
+
+    /**
+     * The changes committed from the moment of subscription on. Hot: nothing is replayed, so
+     * subscribe before reading the list the changes are applied to. Never completes.
+     */
+    public Flowable<HistoryChange> getChanges() {
+        return changes.onBackpressureBuffer();
+    }
+
+    @Override
+    public void onInserted(@NonNull HistoryEntry entry, long id) {
+        changes.onNext(HistoryChange.inserted(entry.copyWithId(id)));
+    }
+
+    @Override
+    public void onUpdated(@NonNull HistoryEntry entry) {
+        changes.onNext(HistoryChange.updated(entry.copyWithId(entry.getId())));
+    }
+
+    @Override
+    public void onDeleted(long id) {
+        changes.onNext(HistoryChange.deleted(id));
+    }
+
+    @Override
+    public void onRestored(@NonNull HistoryEntry entry) {
+        changes.onNext(HistoryChange.inserted(entry.copyWithId(entry.getId())));
+    }
+
+    @Override
+    public void onDeletedAll() {
+        changes.onNext(HistoryChange.cleared());
+    }
+
+    @Override
+    public void onDeletedOlderThan(long timestamp) {
+        changes.onNext(HistoryChange.deletedOlderThan(timestamp));
+    }
+
+    @Override
+    public void onChanged() {
+        changes.onNext(HistoryChange.invalidated());
+    }
+}
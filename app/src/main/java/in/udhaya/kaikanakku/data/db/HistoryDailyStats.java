@@ -0,0 +1,161 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * One day of history, summed up: how many entries there are and their total and largest
+ * length. The "history_daily_stats" table holds a row per day that has entries and is never
+ * written by the app; triggers on history_table keep it up to date as entries are inserted,
+ * updated and deleted, so statistics are read from a few hundred rows instead of every entry.
+ *
+ * Days are calendar days in the device's time zone. A row's day is taken when it is written,
+ * so after a time zone change the totals can drift by the entries near midnight;
+ * {@link #rebuild} recomputes them, and is run by migrations and by DatabaseMaintenance.
+ *
+ * Entries marked deleted (see {@link HistoryEntry#getDeletedAt()}) are not counted: marking
+ * one takes it off its day and restoring it adds it back, and purging it later changes
+ * nothing. Keeping the largest length when an entry goes needs the other entries of the day,
+ * which are found through the (deletedAt, timestamp) index; every other change is a
+ * single-row update.
+ *
+ * Only the live history is counted. Archiving ({@code HistoryRepository.archiveOlderThan})
+ * deletes the rows it moves, so their days drop out here as well, and {@link #rebuild} cannot
+ * bring them back from the archive files; the statistics screen says so.
+ */
+@Entity(tableName = "history_daily_stats")
+public class HistoryDailyStats {
+
+    /** The day, as "YYYY-MM-DD". */
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "day")
+    private final String day;
+
+    @ColumnInfo(name = "entryCount")
+    private final int entryCount;
+
+    @ColumnInfo(name = "totalCm")
+    private final double totalCm;
+
+    @ColumnInfo(name = "maxCm")
+    private final double maxCm;
+
+    public HistoryDailyStats(@NonNull String day, int entryCount, double totalCm, double maxCm) {
+        this.day = day;
+        this.entryCount = entryCount;
+        this.totalCm = totalCm;
+        this.maxCm = maxCm;
+    }
+
+    @NonNull
+    public String getDay() {
+        return day;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public double getTotalCm() {
+        return totalCm;
+    }
+
+    public double getMaxCm() {
+        return maxCm;
+    }
+
+    public double getAverageCm() {
+        return entryCount == 0 ? 0 : totalCm / entryCount;
+    }
+
+    // --- Triggers ---
+
+    private static String dayOf(String row) {
+        return "date(" + row + ".`timestamp` / 1000, 'unixepoch', 'localtime')";
+    }
+
+    // Adds a row to its day. INSERT OR IGNORE and UPDATE rather than an upsert, which SQLite
+    // only has from 3.24 (Android 11).
+    private static String add(String row) {
+        return "INSERT OR IGNORE INTO `history_daily_stats` (`day`, `entryCount`, `totalCm`, `maxCm`) "
+                + "VALUES (" + dayOf(row) + ", 0, 0, 0); "
+                + "UPDATE `history_daily_stats` SET `entryCount` = `entryCount` + 1, "
+                + "`totalCm` = `totalCm` + " + row + ".`totalCm`, "
+                + "`maxCm` = MAX(`maxCm`, " + row + ".`totalCm`) "
+                + "WHERE `day` = " + dayOf(row) + "; ";
+    }
+
+    // Takes a row off its day, which must already be gone from history_table or marked
+    // deleted. The largest length is only looked up again if the row had it.
+    private static String remove(String row) {
+        String day = dayOf(row);
+        return "UPDATE `history_daily_stats` SET `entryCount` = `entryCount` - 1, "
+                + "`totalCm` = `totalCm` - " + row + ".`totalCm`, "
+                + "`maxCm` = CASE WHEN " + row + ".`totalCm` < `maxCm` THEN `maxCm` ELSE "
+                + "IFNULL((SELECT MAX(`totalCm`) FROM `history_table` "
+                + "WHERE `deletedAt` = 0 AND `timestamp` >= strftime('%s', " + day + ", 'utc') * 1000 "
+                + "AND `timestamp` < strftime('%s', " + day + ", '+1 day', 'utc') * 1000), 0) END "
+                + "WHERE `day` = " + day + "; "
+                + "DELETE FROM `history_daily_stats` WHERE `day` = " + day + " AND `entryCount` <= 0; ";
+    }
+
+    private static final String[] TRIGGER_NAMES = {
+            "history_daily_stats_AFTER_INSERT",
+            "history_daily_stats_AFTER_DELETE",
+            "history_daily_stats_AFTER_UPDATE",
+            "history_daily_stats_AFTER_MARK_DELETED",
+            "history_daily_stats_AFTER_RESTORE"
+    };
+
+    private static final String[] CREATE_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS history_daily_stats_AFTER_INSERT "
+                    + "AFTER INSERT ON `history_table` WHEN NEW.`deletedAt` = 0 BEGIN " + add("NEW") + "END",
+            // Purging an entry marked deleted: it was taken off its day already.
+            "CREATE TRIGGER IF NOT EXISTS history_daily_stats_AFTER_DELETE "
+                    + "AFTER DELETE ON `history_table` WHEN OLD.`deletedAt` = 0 BEGIN " + remove("OLD") + "END",
+            // Room's @Update sets every column, so the WHEN clause keeps favorite toggles free.
+            "CREATE TRIGGER IF NOT EXISTS history_daily_stats_AFTER_UPDATE "
+                    + "AFTER UPDATE OF `timestamp`, `totalCm` ON `history_table` "
+                    + "WHEN (OLD.`timestamp` != NEW.`timestamp` OR OLD.`totalCm` != NEW.`totalCm`) "
+                    + "AND OLD.`deletedAt` = 0 AND NEW.`deletedAt` = 0 BEGIN "
+                    + remove("OLD") + add("NEW") + "END",
+            "CREATE TRIGGER IF NOT EXISTS history_daily_stats_AFTER_MARK_DELETED "
+                    + "AFTER UPDATE OF `deletedAt` ON `history_table` "
+                    + "WHEN OLD.`deletedAt` = 0 AND NEW.`deletedAt` != 0 BEGIN " + remove("OLD") + "END",
+            "CREATE TRIGGER IF NOT EXISTS history_daily_stats_AFTER_RESTORE "
+                    + "AFTER UPDATE OF `deletedAt` ON `history_table` "
+                    + "WHEN OLD.`deletedAt` != 0 AND NEW.`deletedAt` = 0 BEGIN " + add("NEW") + "END"
+    };
+
+    /** Creates the triggers that keep the table up to date. The table must exist. */
+    static void createTriggers(@NonNull SupportSQLiteDatabase db) {
+        for (String sql : CREATE_TRIGGERS) {
+            db.execSQL(sql);
+        }
+    }
+
+    /** Drops the triggers, so a migration can create their current versions. */
+    static void dropTriggers(@NonNull SupportSQLiteDatabase db) {
+        for (String name : TRIGGER_NAMES) {
+            db.execSQL("DROP TRIGGER IF EXISTS " + name);
+        }
+    }
+
+    /** Recomputes every day from history_table, in one pass over it. */
+    static void rebuild(@NonNull SupportSQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM `history_daily_stats`");
+            db.execSQL("INSERT INTO `history_daily_stats` (`day`, `entryCount`, `totalCm`, `maxCm`) "
+                    + "SELECT " + dayOf("`history_table`") + ", COUNT(*), SUM(`totalCm`), MAX(`totalCm`) "
+                    + "FROM `history_table` WHERE `deletedAt` = 0 GROUP BY 1");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -1,15 +1,21 @@
 package in.udhaya.kaikanakku.data.db;
 
+import android.database.Cursor;
+
+import androidx.paging.PagingSource;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import java.util.List;
 
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
 
 /**
  * Data Access Object (DAO) for the history_table.
@@ -21,51 +27,163 @@ import io.reactivex.rxjava3.core.Flowable;
 @Dao
 public interface HistoryDao {
 
+    /**
+     * Inserts the entry unless one with the same text already exists; the UNIQUE index on
+     * contentHash turns this into a single INSERT OR IGNORE, so concurrent writers cannot
+     * both add the same calculation.
+     * @return The new row id, or -1 if the entry was a duplicate.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insert(HistoryEntry historyEntry);
+
+    /**
+     * Inserts many entries with one prepared statement, skipping duplicates as
+     * {@link #insert} does. Call inside a transaction so the whole list commits, and
+     * invalidates observers, once.
+     * @return The new row ids, with -1 for each duplicate.
+     */
     @Insert(onConflict = OnConflictStrategy.IGNORE)
-    void insert(HistoryEntry historyEntry);
+    long[] insertAll(List<HistoryEntry> historyEntries);
+
+    /**
+     * If an entry with this content hash is deleted but not yet purged, brings it back with a
+     * new timestamp. Called when {@link #insert} found a duplicate, since a deleted row still
+     * holds its text in the unique index.
+     * @return 1 if an entry was brought back, otherwise 0.
+     */
+    @Query("UPDATE history_table SET deletedAt = 0, timestamp = :timestamp"
+            + " WHERE contentHash = :contentHash AND deletedAt != 0")
+    int revive(long contentHash, long timestamp);
 
+    /** @return 1 if the row was there to update, 0 if not. */
     @Update
-    void update(HistoryEntry historyEntry);
+    int update(HistoryEntry historyEntry);
 
+    /**
+     * Sets only the favorite flag, and only while the entry is not deleted; an {@link #update}
+     * writes every column, so a stale copy could undo a delete.
+     *
+     * @return 1 if the entry was there to change, 0 if not.
+     */
+    @Query("UPDATE history_table SET isFavorite = :favorite WHERE id = :id AND deletedAt = 0")
+    int setFavorite(long id, boolean favorite);
+
+    /**
+     * Deletes an entry by marking it, see {@link HistoryEntry#getDeletedAt()}. Reads skip it
+     * from then on; {@link #restore} undoes this and {@link #purgeDeleted} makes it final.
+     */
+    @Query("UPDATE history_table SET deletedAt = :deletedAt WHERE id = :id AND deletedAt = 0")
+    int markDeleted(long id, long deletedAt);
+
+    /** Undoes {@link #markDeleted}; the entry is back with its id, and in its place in the list. */
+    @Query("UPDATE history_table SET deletedAt = 0 WHERE id = :id")
+    int restore(long id);
+
+    /** Restores every entry deleted at exactly {@code deletedAt}, e.g. by one bulk delete. */
+    @Query("UPDATE history_table SET deletedAt = 0 WHERE deletedAt = :deletedAt")
+    int restoreDeletedAt(long deletedAt);
+
+    /**
+     * Removes at most {@code limit} entries deleted before {@code cutoff} for good. Searches
+     * the deletedAt indices, so it only touches deleted rows.
+     * @return The number of entries removed; fewer than {@code limit} once none are left.
+     */
+    @Query("DELETE FROM history_table WHERE id IN"
+            + " (SELECT id FROM history_table WHERE deletedAt > 0 AND deletedAt < :cutoff LIMIT :limit)")
+    int purgeDeleted(long cutoff, int limit);
+
+    /** Removes the row at once. The app deletes through {@link #markDeleted} instead. */
     @Delete
     void delete(HistoryEntry historyEntry);
 
     @Query("DELETE FROM history_table")
     void deleteAll();
 
-    @Query("DELETE FROM history_table WHERE timestamp < :timestamp")
-    void deleteOlderThan(long timestamp);
+    /**
+     * Deletes at most {@code limit} of the oldest entries from before {@code timestamp} for
+     * good; entries already marked deleted are left to {@link #purgeDeleted}. The
+     * subquery walks the timestamp index, so each call only touches the rows it deletes and
+     * holds the write lock briefly; retention calls it repeatedly, see
+     * {@link HistoryWriter#deleteOlderThan}.
+     *
+     * @return The number of entries deleted; fewer than {@code limit} once none are left.
+     */
+    @Query("DELETE FROM history_table WHERE id IN"
+            + " (SELECT id FROM history_table WHERE deletedAt = 0 AND timestamp < :timestamp"
+            + " ORDER BY timestamp LIMIT :limit)")
+    int deleteOlderThan(long timestamp, int limit);
+
+    /**
+     * The oldest entries from before {@code timestamp}, oldest first, for the archive. The
+     * order is total, so {@link #deleteArchived} can delete exactly these rows.
+     */
+    @Query("SELECT * FROM history_table WHERE deletedAt = 0 AND timestamp < :timestamp"
+            + " ORDER BY timestamp, id LIMIT :limit")
+    List<HistoryEntry> getOldestBefore(long timestamp, int limit);
 
-    @Query("SELECT * FROM history_table ORDER BY timestamp DESC")
-    Flowable<List<HistoryEntry>> getAllEntriesSortedByDate();
+    /**
+     * Deletes the entries from before {@code timestamp} up to and including the last one
+     * returned by {@link #getOldestBefore}, given by its timestamp and id.
+     */
+    @Query("DELETE FROM history_table WHERE deletedAt = 0 AND timestamp < :timestamp"
+            + " AND (timestamp < :lastTimestamp OR (timestamp = :lastTimestamp AND id <= :lastId))")
+    int deleteArchived(long timestamp, long lastTimestamp, long lastId);
 
-    @Query("SELECT * FROM history_table ORDER BY totalCm ASC")
-    Flowable<List<HistoryEntry>> getAllEntriesSortedBySizeAsc();
+    /**
+     * The entries {@link #deleteArchived} with the same arguments would delete, in the order of
+     * {@link #getOldestBefore}; only what can have changed since that read, so it is cheap.
+     */
+    @Query("SELECT id, isFavorite FROM history_table WHERE deletedAt = 0 AND timestamp < :timestamp"
+            + " AND (timestamp < :lastTimestamp OR (timestamp = :lastTimestamp AND id <= :lastId))"
+            + " ORDER BY timestamp, id")
+    List<HistoryRowState> getArchivedRows(long timestamp, long lastTimestamp, long lastId);
 
-    @Query("SELECT * FROM history_table ORDER BY totalCm DESC")
-    Flowable<List<HistoryEntry>> getAllEntriesSortedBySizeDesc();
+    // --- Statistics, from the daily rows kept by triggers (see HistoryDailyStats) ---
 
-    @Query("SELECT * FROM history_table WHERE isFavorite = 1 ORDER BY timestamp DESC")
-    Flowable<List<HistoryEntry>> getFavoriteEntries();
+    /** The last {@code days} days that have entries, newest first. */
+    @Query("SELECT * FROM history_daily_stats ORDER BY day DESC LIMIT :days")
+    Flowable<List<HistoryDailyStats>> getDailyStats(int days);
 
-    @Query("SELECT * FROM history_table WHERE inputText LIKE :query OR outputText LIKE :query ORDER BY timestamp DESC")
-    Flowable<List<HistoryEntry>> searchHistory(String query);
+    /** Totals over the whole history. */
+    @Query("SELECT COUNT(*) AS days, IFNULL(SUM(entryCount), 0) AS entryCount,"
+            + " IFNULL(SUM(totalCm), 0) AS totalCm, IFNULL(MAX(maxCm), 0) AS maxCm FROM history_daily_stats")
+    Flowable<HistoryStatsSummary> getStatsSummary();
+
+    /**
+     * The history list for a {@link HistoryFilter}: search, favorites, ranges and sort order
+     * in one statement, see {@link HistoryFilter#toQuery()}. Observes history_fts as well,
+     * since a search joins it.
+     */
+    @RawQuery(observedEntities = {HistoryEntry.class, HistoryFts.class})
+    Flowable<List<HistoryEntry>> queryHistory(SupportSQLiteQuery query);
+
+    /**
+     * Paged form of {@link #queryHistory}; this backs the history screen. Room loads one page
+     * at a time with LIMIT/OFFSET and invalidates the PagingSource when the table changes, so
+     * only the visible window of rows is ever held in memory, however large the history grows.
+     */
+    @RawQuery(observedEntities = {HistoryEntry.class, HistoryFts.class})
+    PagingSource<Integer, HistoryEntry> queryPagedHistory(SupportSQLiteQuery query);
+
+    /**
+     * {@link #queryHistory} as a Cursor, for reading every row once without holding them all,
+     * e.g. for export. Must be called off the main thread; the caller closes the cursor.
+     */
+    @RawQuery
+    Cursor queryHistoryCursor(SupportSQLiteQuery query);
 
     /**
-     * Retrieves the most recent history entries, limited by the given count.
-     * This is a new method to support showing recent conversions on the main screen.
+     * The most recent entries, newest first, read once. Loads {@link RecentHistoryCache},
+     * which keeps them up to date from then on; entries with the same timestamp are ordered
+     * by id, as the cache orders them.
      * @param limit The maximum number of recent entries to retrieve.
-     * @return A Flowable list of the most recent HistoryEntry objects.
      */
-    @Query("SELECT * FROM history_table ORDER BY timestamp DESC LIMIT :limit")
-    Flowable<List<HistoryEntry>> getRecentEntries(int limit);
+    @Query("SELECT * FROM history_table WHERE deletedAt = 0 ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    List<HistoryEntry> getRecentEntries(int limit);
 
     /**
-     * Checks if a history entry with the given input and output text already exists.
-     * @param inputText The input text to check.
-     * @param outputText The output text to check.
-     * @return The number of existing entries with the same input and output text.
+     * One entry by primary key, for reusing it. Completes empty if it has been deleted.
      */
-    @Query("SELECT COUNT(*) FROM history_table WHERE inputText = :inputText AND outputText = :outputText")
-    int entryExists(String inputText, String outputText);
-}
\ No newline at end of file
+    @Query("SELECT * FROM history_table WHERE id = :id AND deletedAt = 0")
+    Maybe<HistoryEntry> getEntryById(long id);
+}
@@ -3,15 +3,40 @@ package in.udhaya.kaikanakku.data.db;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
+import in.udhaya.kaikanakku.util.Length;
+
 /**
  * Represents a single entry in the conversion history database.
  * This class is a Room Entity that defines the schema for the "history_table".
  * Each instance of this class corresponds to a single row in the table.
  * It is designed to be a simple, immutable data-holding class (POJO).
+ *
+ * The indices match the queries in {@link HistoryDao}: every sort and the favorites filter
+ * read rows in index order instead of scanning and sorting the table, and the unique
+ * contentHash index makes duplicate inserts a no-op.
+ *
+ * Deleting an entry only sets {@link #getDeletedAt() deletedAt}, so that undo is a single
+ * update and the row keeps its id; the row is removed for good once the grace period has
+ * passed (see {@link HistoryDao#purgeDeleted}). Every read skips deleted rows, which is why
+ * deletedAt leads each of the sorting indices: "deletedAt = 0" then selects a prefix of the
+ * index, still in order.
+ *
+ * Besides the display text, each entry records what was calculated as numbers: the
+ * {@link #getKind() kind} of operation, its operands in {@link Length} units, the multiplier
+ * and the formatting settings in effect. Reusing an entry reads these, never the text.
  */
-@Entity(tableName = "history_table")
+@Entity(tableName = "history_table",
+        indices = {
+                @Index(value = "contentHash", unique = true),
+                @Index({"deletedAt", "timestamp"}),
+                @Index({"deletedAt", "totalCm"}),
+                @Index({"deletedAt", "isFavorite", "timestamp"}),
+                @Index({"deletedAt", "isFavorite", "totalCm"})
+        })
 public class HistoryEntry {
 
     /**
@@ -58,8 +83,94 @@ public class HistoryEntry {
     private boolean isFavorite;
 
     /**
-     * Constructor for creating a new HistoryEntry.
+     * Hash of inputText and outputText, see {@link ContentHash}. Derived from the text, so it
+     * is computed here rather than passed in.
+     */
+    @ColumnInfo(name = "contentHash", defaultValue = "0")
+    private long contentHash;
+
+    /**
+     * What kind of calculation produced the entry; one of the KIND_ constants.
+     */
+    @ColumnInfo(name = "kind", defaultValue = "0")
+    private final int kind;
+
+    /**
+     * The first (or only) operand in {@link Length} units: the converted length for
+     * conversions, value A for calculations. For {@link #KIND_EXPRESSION} and
+     * {@link #KIND_UNKNOWN} it holds the result.
+     */
+    @ColumnInfo(name = "operandA", defaultValue = "0")
+    private final long operandA;
+
+    /**
+     * Value B of an addition or subtraction in {@link Length} units, otherwise 0.
+     */
+    @ColumnInfo(name = "operandB", defaultValue = "0")
+    private final long operandB;
+
+    /**
+     * The multiplier of a {@link #KIND_MULTIPLY} entry, otherwise 1.
+     */
+    @ColumnInfo(name = "multiplier", defaultValue = "1")
+    private final double multiplier;
+
+    /**
+     * Whether the result was formatted in precision mode (cm remainder with a decimal place).
+     */
+    @ColumnInfo(name = "isPrecision", defaultValue = "1")
+    private final boolean isPrecision;
+
+    /**
+     * Whether the cm remainder was rounded to whole centimetres rather than truncated; only
+     * used when {@link #isPrecision} is false.
+     */
+    @ColumnInfo(name = "isRounded", defaultValue = "0")
+    private final boolean isRounded;
+
+    /**
+     * When the entry was deleted, in epoch milliseconds, or 0 if it is not deleted.
+     */
+    @ColumnInfo(name = "deletedAt", defaultValue = "0")
+    private long deletedAt;
+
+    // --- Kinds of entry. These are stored, so existing values must never change. ---
+
+    /** Saved before the kind was recorded and not recognised from its text. */
+    public static final int KIND_UNKNOWN = 0;
+    /** Converter, centimetres to Kol. */
+    public static final int KIND_CM_TO_KOL = 1;
+    /** Converter, Kol/Viral/cm to centimetres. */
+    public static final int KIND_KOL_TO_CM = 2;
+    public static final int KIND_ADD = 3;
+    public static final int KIND_SUBTRACT = 4;
+    public static final int KIND_MULTIPLY = 5;
+    /** Calculator expression; only the result is kept as a number. */
+    public static final int KIND_EXPRESSION = 6;
+
+    /**
+     * Constructor used by Room, and by the factory methods below.
      * The ID is not included as it's auto-generated by Room.
+     */
+    public HistoryEntry(@NonNull String inputText, @NonNull String outputText, double totalCm, long timestamp, boolean isFavorite,
+                        int kind, long operandA, long operandB, double multiplier, boolean isPrecision, boolean isRounded) {
+        this.inputText = inputText;
+        this.outputText = outputText;
+        this.totalCm = totalCm;
+        this.timestamp = timestamp;
+        this.isFavorite = isFavorite;
+        this.contentHash = ContentHash.of(inputText, outputText);
+        this.kind = kind;
+        this.operandA = operandA;
+        this.operandB = operandB;
+        this.multiplier = multiplier;
+        this.isPrecision = isPrecision;
+        this.isRounded = isRounded;
+    }
+
+    /**
+     * Creates an entry from its text alone, e.g. one imported from a file. The numbers are
+     * recovered from the text once, here, by {@link LegacyEntryParser}.
      *
      * @param inputText  The original text input by the user. Cannot be null.
      * @param outputText The calculated result text. Cannot be null.
@@ -67,12 +178,52 @@ public class HistoryEntry {
      * @param timestamp  The time of the calculation.
      * @param isFavorite Whether the entry is marked as a favorite.
      */
+    @Ignore
     public HistoryEntry(@NonNull String inputText, @NonNull String outputText, double totalCm, long timestamp, boolean isFavorite) {
-        this.inputText = inputText;
-        this.outputText = outputText;
-        this.totalCm = totalCm;
-        this.timestamp = timestamp;
-        this.isFavorite = isFavorite;
+        this(inputText, outputText, totalCm, timestamp, isFavorite, LegacyEntryParser.parsed(inputText, totalCm));
+    }
+
+    private HistoryEntry(String inputText, String outputText, double totalCm, long timestamp, boolean isFavorite,
+                         LegacyEntryParser parsed) {
+        this(inputText, outputText, totalCm, timestamp, isFavorite, parsed.getKind(), parsed.getOperandA(),
+                parsed.getOperandB(), parsed.getMultiplier(), true, false);
+    }
+
+    /** A centimetres-to-Kol conversion, formatted with the given settings. */
+    public static HistoryEntry cmToKol(Length cm, String inputText, String outputText, boolean isPrecision, boolean isRounded,
+                                       long timestamp) {
+        return new HistoryEntry(inputText, outputText, cm.toCm(), timestamp, false,
+                KIND_CM_TO_KOL, cm.getUnits(), 0, 1, isPrecision, isRounded);
+    }
+
+    /** A Kol/Viral/cm-to-centimetres conversion. */
+    public static HistoryEntry kolToCm(Length length, String inputText, String outputText, long timestamp) {
+        return new HistoryEntry(inputText, outputText, length.toCm(), timestamp, false,
+                KIND_KOL_TO_CM, length.getUnits(), 0, 1, true, false);
+    }
+
+    /**
+     * A calculator result. {@code kind} is {@link #KIND_ADD} or {@link #KIND_SUBTRACT} with
+     * both operands, {@link #KIND_MULTIPLY} with operand A and the multiplier, or
+     * {@link #KIND_EXPRESSION} with neither.
+     */
+    public static HistoryEntry calculation(int kind, Length a, Length b, double multiplier, Length result,
+                                           String inputText, String outputText, long timestamp) {
+        long operandA = kind == KIND_EXPRESSION ? result.getUnits() : a.getUnits();
+        long operandB = kind == KIND_ADD || kind == KIND_SUBTRACT ? b.getUnits() : 0;
+        return new HistoryEntry(inputText, outputText, result.toCm(), timestamp, false,
+                kind, operandA, operandB, kind == KIND_MULTIPLY ? multiplier : 1, true, false);
+    }
+
+    /**
+     * A live copy of this entry with the given id, for keeping an entry in memory that its
+     * owner may still change.
+     */
+    HistoryEntry copyWithId(long id) {
+        HistoryEntry copy = new HistoryEntry(inputText, outputText, totalCm, timestamp, isFavorite,
+                kind, operandA, operandB, multiplier, isPrecision, isRounded);
+        copy.setId(id);
+        return copy;
     }
 
     // --- Getters ---
@@ -103,6 +254,43 @@ public class HistoryEntry {
         return isFavorite;
     }
 
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public long getOperandA() {
+        return operandA;
+    }
+
+    public long getOperandB() {
+        return operandB;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public boolean isPrecision() {
+        return isPrecision;
+    }
+
+    public boolean isRounded() {
+        return isRounded;
+    }
+
+    public long getDeletedAt() {
+        return deletedAt;
+    }
+
+    /** The result as an exact length. */
+    public Length getResult() {
+        return Length.ofCm(totalCm);
+    }
+
     // --- Setters ---
 
     /**
@@ -113,6 +301,22 @@ public class HistoryEntry {
         this.id = id;
     }
 
+    /**
+     * Room uses this setter when reading a row back; the stored value always equals the one
+     * computed by the constructor.
+     */
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Room uses this setter when reading a row back. Entries are deleted and restored through
+     * {@link HistoryDao#markDeleted} and {@link HistoryDao#restore}, never by updating them.
+     */
+    public void setDeletedAt(long deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     public void setFavorite(boolean favorite) {
         isFavorite = favorite;
     }
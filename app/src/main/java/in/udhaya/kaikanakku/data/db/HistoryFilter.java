@@ -0,0 +1,254 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Everything the history screen can filter and sort by, as one immutable value: search text,
+ * favorites only, sort order, and optional date and size ranges. {@link #toQuery()} turns it
+ * into a single SQL statement for {@link HistoryDao#queryHistory}, so all filters apply
+ * together and the indices on {@link HistoryEntry} serve them. Deleted entries are always
+ * left out.
+ *
+ * The SQL text only depends on which filters are present, never on their values, which are
+ * bound as arguments. So there are few distinct statements, each built once and kept in
+ * {@link #SQL_BY_SHAPE}, and SQLite's per-connection statement cache finds them already
+ * compiled when a filter is used again.
+ */
+public final class HistoryFilter {
+
+    public enum SortOrder {
+        BY_DATE,
+        BY_SIZE_ASC,
+        BY_SIZE_DESC
+    }
+
+    /** All entries, newest first. */
+    public static final HistoryFilter ALL = new HistoryFilter("", false, SortOrder.BY_DATE,
+            Long.MIN_VALUE, Long.MAX_VALUE, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    // Bits of a statement's shape; the sort order is stored above them.
+    private static final int SEARCH = 1;
+    private static final int NOTHING_SEARCHABLE = 1 << 1;
+    private static final int FAVORITES = 1 << 2;
+    private static final int FROM_TIME = 1 << 3;
+    private static final int TO_TIME = 1 << 4;
+    private static final int MIN_SIZE = 1 << 5;
+    private static final int MAX_SIZE = 1 << 6;
+    private static final int SORT_SHIFT = 7;
+
+    private static final AtomicReferenceArray<String> SQL_BY_SHAPE =
+            new AtomicReferenceArray<>(SortOrder.values().length << SORT_SHIFT);
+    // The id subqueries do not depend on the sort order.
+    private static final AtomicReferenceArray<String> ID_SQL_BY_SHAPE =
+            new AtomicReferenceArray<>(1 << SORT_SHIFT);
+
+    @NonNull
+    private final String searchText;
+    private final boolean favoritesOnly;
+    @NonNull
+    private final SortOrder sortOrder;
+    private final long fromTime;
+    private final long toTime;
+    private final double minCm;
+    private final double maxCm;
+
+    private HistoryFilter(@NonNull String searchText, boolean favoritesOnly, @NonNull SortOrder sortOrder,
+                          long fromTime, long toTime, double minCm, double maxCm) {
+        this.searchText = searchText;
+        this.favoritesOnly = favoritesOnly;
+        this.sortOrder = sortOrder;
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+        this.minCm = minCm;
+        this.maxCm = maxCm;
+    }
+
+    // --- Copies with one filter changed ---
+
+    public HistoryFilter withSearchText(String text) {
+        return new HistoryFilter(text == null ? "" : text.trim(), favoritesOnly, sortOrder, fromTime, toTime, minCm, maxCm);
+    }
+
+    public HistoryFilter withFavoritesOnly(boolean favoritesOnly) {
+        return new HistoryFilter(searchText, favoritesOnly, sortOrder, fromTime, toTime, minCm, maxCm);
+    }
+
+    public HistoryFilter withSortOrder(@NonNull SortOrder sortOrder) {
+        return new HistoryFilter(searchText, favoritesOnly, sortOrder, fromTime, toTime, minCm, maxCm);
+    }
+
+    /**
+     * Only entries from {@code fromTime} (inclusive) to {@code toTime} (exclusive), in epoch
+     * milliseconds; pass Long.MIN_VALUE or Long.MAX_VALUE for an open end.
+     */
+    public HistoryFilter withDateRange(long fromTime, long toTime) {
+        return new HistoryFilter(searchText, favoritesOnly, sortOrder, fromTime, toTime, minCm, maxCm);
+    }
+
+    /**
+     * Only entries whose result is between {@code minCm} and {@code maxCm} inclusive; pass an
+     * infinity for an open end.
+     */
+    public HistoryFilter withSizeRange(double minCm, double maxCm) {
+        return new HistoryFilter(searchText, favoritesOnly, sortOrder, fromTime, toTime, minCm, maxCm);
+    }
+
+    @NonNull
+    public String getSearchText() {
+        return searchText;
+    }
+
+    public boolean isFavoritesOnly() {
+        return favoritesOnly;
+    }
+
+    @NonNull
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    // --- SQL ---
+
+    public SupportSQLiteQuery toQuery() {
+        return new SimpleSQLiteQuery(sql(), args());
+    }
+
+    /** The statement for this filter's shape; the same String instance for equal shapes. */
+    String sql() {
+        int shape = shape();
+        String sql = SQL_BY_SHAPE.get(shape);
+        return sql != null ? sql : cached(SQL_BY_SHAPE, shape, buildSql(shape));
+    }
+
+    /**
+     * A statement selecting the ids of the matching entries, in no particular order, to be
+     * used as a subquery, e.g. by {@link HistorySelection}. Its values are {@link #whereArgs()}.
+     */
+    String idSql() {
+        int shape = shape() & ((1 << SORT_SHIFT) - 1);
+        String sql = ID_SQL_BY_SHAPE.get(shape);
+        return sql != null ? sql : cached(ID_SQL_BY_SHAPE, shape, buildIdSql(shape));
+    }
+
+    /** Stores a newly built statement unless another thread got there first; returns the stored one. */
+    private static String cached(AtomicReferenceArray<String> cache, int shape, String sql) {
+        cache.compareAndSet(shape, null, sql);
+        return cache.get(shape);
+    }
+
+    /** The values to bind, in the order of the placeholders in {@link #sql()}. */
+    Object[] args() {
+        List<Object> args = new ArrayList<>(7);
+        addWhereArgs(args);
+        if ((shape() & SEARCH) != 0 && sortOrder == SortOrder.BY_DATE) {
+            String phrase = FtsQuery.toRankPhrase(searchText);
+            args.add(phrase);
+            args.add(phrase);
+        }
+        return args.toArray();
+    }
+
+    /** The values to bind in {@link #idSql()}. */
+    Object[] whereArgs() {
+        List<Object> args = new ArrayList<>(5);
+        addWhereArgs(args);
+        return args.toArray();
+    }
+
+    private void addWhereArgs(List<Object> args) {
+        int shape = shape();
+        if ((shape & SEARCH) != 0) {
+            args.add(FtsQuery.toMatchExpression(searchText));
+        }
+        if ((shape & FROM_TIME) != 0) args.add(fromTime);
+        if ((shape & TO_TIME) != 0) args.add(toTime);
+        if ((shape & MIN_SIZE) != 0) args.add(minCm);
+        if ((shape & MAX_SIZE) != 0) args.add(maxCm);
+    }
+
+    private int shape() {
+        int shape = sortOrder.ordinal() << SORT_SHIFT;
+        if (!searchText.isEmpty()) {
+            shape |= FtsQuery.toMatchExpression(searchText) != null ? SEARCH : NOTHING_SEARCHABLE;
+        }
+        if (favoritesOnly) shape |= FAVORITES;
+        if (fromTime != Long.MIN_VALUE) shape |= FROM_TIME;
+        if (toTime != Long.MAX_VALUE) shape |= TO_TIME;
+        if (minCm != Double.NEGATIVE_INFINITY) shape |= MIN_SIZE;
+        if (maxCm != Double.POSITIVE_INFINITY) shape |= MAX_SIZE;
+        return shape;
+    }
+
+    private static String buildSql(int shape) {
+        StringBuilder sql = new StringBuilder("SELECT history_table.* FROM history_table");
+        appendJoinAndWhere(sql, shape);
+
+        SortOrder order = SortOrder.values()[shape >>> SORT_SHIFT];
+        sql.append(" ORDER BY ");
+        switch (order) {
+            case BY_SIZE_ASC -> sql.append("history_table.totalCm ASC");
+            case BY_SIZE_DESC -> sql.append("history_table.totalCm DESC");
+            default -> {
+                if ((shape & SEARCH) != 0) {
+                    // In the default order a search lists entries holding the whole phrase first.
+                    sql.append("(instr(lower(history_table.inputText), ?) > 0) "
+                            + "+ (instr(lower(history_table.outputText), ?) > 0) DESC, ");
+                }
+                sql.append("history_table.timestamp DESC");
+            }
+        }
+        return sql.toString();
+    }
+
+    private static String buildIdSql(int shape) {
+        StringBuilder sql = new StringBuilder("SELECT history_table.id FROM history_table");
+        appendJoinAndWhere(sql, shape);
+        return sql.toString();
+    }
+
+    private static void appendJoinAndWhere(StringBuilder sql, int shape) {
+        List<String> where = new ArrayList<>();
+        if ((shape & SEARCH) != 0) {
+            sql.append(" JOIN history_fts ON history_fts.rowid = history_table.id");
+            where.add("history_fts MATCH ?");
+        }
+        // Deleted entries are kept for a while for undo, but never listed.
+        where.add("history_table.deletedAt = 0");
+        if ((shape & NOTHING_SEARCHABLE) != 0) {
+            // Search text with no words in it (only punctuation) matches nothing.
+            where.add("0");
+        }
+        if ((shape & FAVORITES) != 0) where.add("history_table.isFavorite = 1");
+        if ((shape & FROM_TIME) != 0) where.add("history_table.timestamp >= ?");
+        if ((shape & TO_TIME) != 0) where.add("history_table.timestamp < ?");
+        if ((shape & MIN_SIZE) != 0) where.add("history_table.totalCm >= ?");
+        if ((shape & MAX_SIZE) != 0) where.add("history_table.totalCm <= ?");
+        sql.append(" WHERE ").append(String.join(" AND ", where));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HistoryFilter)) return false;
+        HistoryFilter other = (HistoryFilter) o;
+        return favoritesOnly == other.favoritesOnly
+                && fromTime == other.fromTime
+                && toTime == other.toTime
+                && Double.compare(minCm, other.minCm) == 0
+                && Double.compare(maxCm, other.maxCm) == 0
+                && searchText.equals(other.searchText)
+                && sortOrder == other.sortOrder;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(searchText, favoritesOnly, sortOrder, fromTime, toTime, minCm, maxCm);
+    }
+}
@@ -0,0 +1,58 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index over the input and output text of {@link HistoryEntry}.
+ * It is an external-content FTS4 table: the text itself stays in history_table, and Room
+ * keeps this index in sync with triggers on history_table, so inserts, updates and deletes
+ * need no extra code. FTS4 is used because FTS5 is not available in the platform SQLite on
+ * every supported Android version.
+ *
+ * The unicode61 tokenizer splits "6 kol 22 viral 2.5 cm" into the words and numbers, with
+ * '.' kept inside tokens so decimals such as "2.5" stay whole.
+ */
+@Fts4(contentEntity = HistoryEntry.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61, tokenizerArgs = {"tokenchars=."})
+@Entity(tableName = "history_fts")
+public class HistoryFts {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private long rowId;
+
+    @NonNull
+    @ColumnInfo(name = "inputText")
+    private final String inputText;
+
+    @NonNull
+    @ColumnInfo(name = "outputText")
+    private final String outputText;
+
+    public HistoryFts(@NonNull String inputText, @NonNull String outputText) {
+        this.inputText = inputText;
+        this.outputText = outputText;
+    }
+
+    public long getRowId() {
+        return rowId;
+    }
+
+    public void setRowId(long rowId) {
+        this.rowId = rowId;
+    }
+
+    @NonNull
+    public String getInputText() {
+        return inputText;
+    }
+
+    @NonNull
+    public String getOutputText() {
+        return outputText;
+    }
+}
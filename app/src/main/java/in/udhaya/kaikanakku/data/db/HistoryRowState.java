@@ -0,0 +1,21 @@
+package in.udhaya.kaikanakku.data.db;
+
+/**
+ * The parts of a history row that can change after it is written, read by
+ * {@link HistoryDao#getArchivedRows} to check that rows are still as they were read.
+ */
+public class HistoryRowState {
+
+    public final long id;
+    public final boolean isFavorite;
+
+    public HistoryRowState(long id, boolean isFavorite) {
+        this.id = id;
+        this.isFavorite = isFavorite;
+    }
+
+    /** Whether {@code entry} is the row this was read from, as it is now. */
+    public boolean matches(HistoryEntry entry) {
+        return id == entry.getId() && isFavorite == entry.isFavorite();
+    }
+}
@@ -0,0 +1,137 @@
+package in.udhaya.kaikanakku.data.db;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The entries picked on the history screen for a bulk action, as one immutable value: either
+ * a set of ids, or everything matching a {@link HistoryFilter} except some ids ("select all"
+ * on the current filter, with a few unticked again). Each bulk action turns it into a single
+ * set-based statement, so acting on ten thousand entries is one write, one commit and one
+ * refresh of the list, like acting on one.
+ *
+ * The ids are written into the statements as numbers instead of being bound: SQLite before
+ * 3.32 (Android 11) allows at most 999 arguments per statement, and a selection can hold
+ * more. They are longs, so there is nothing to escape.
+ */
+public final class HistorySelection {
+
+    /** Nothing selected. */
+    public static final HistorySelection NONE = new HistorySelection(null, Collections.emptySet());
+
+    // With a filter, everything it matches is selected and ids holds the exceptions;
+    // without one, ids holds what is selected.
+    @Nullable
+    private final HistoryFilter filter;
+    @NonNull
+    private final Set<Long> ids;
+
+    private HistorySelection(@Nullable HistoryFilter filter, @NonNull Set<Long> ids) {
+        this.filter = filter;
+        this.ids = ids;
+    }
+
+    /** Every entry the filter matches, now and when the action runs. */
+    public static HistorySelection allMatching(@NonNull HistoryFilter filter) {
+        return new HistorySelection(filter, Collections.emptySet());
+    }
+
+    /** A copy with the entry selected if it was not, and unselected if it was. */
+    public HistorySelection toggle(long id) {
+        Set<Long> toggled = new HashSet<>(ids);
+        if (!toggled.remove(id)) {
+            toggled.add(id);
+        }
+        return new HistorySelection(filter, Collections.unmodifiableSet(toggled));
+    }
+
+    public boolean contains(long id) {
+        return filter != null ? !ids.contains(id) : ids.contains(id);
+    }
+
+    public boolean isEmpty() {
+        return filter == null && ids.isEmpty();
+    }
+
+    /** Whether this is {@link #allMatching} a filter, possibly with some entries unselected. */
+    public boolean isAllMatching() {
+        return filter != null;
+    }
+
+    /** How many entries are selected, or for {@link #allMatching}, how many are left out. */
+    public int getIdCount() {
+        return ids.size();
+    }
+
+    // --- SQL ---
+
+    /** The selected entries, newest first, e.g. to export them. */
+    public SupportSQLiteQuery toQuery() {
+        return statement("SELECT * FROM history_table WHERE ", " ORDER BY timestamp DESC");
+    }
+
+    /**
+     * Marks the selected entries as deleted at {@code deletedAt} (see
+     * {@link HistoryEntry#getDeletedAt()}), so {@link HistoryDao#restoreDeletedAt} can undo it.
+     */
+    SupportSQLiteQuery toDeleteStatement(long deletedAt) {
+        return statement("UPDATE history_table SET deletedAt = " + deletedAt + " WHERE ", "");
+    }
+
+    /**
+     * Marks the selected entries as favorites or not. Entries already in that state are left
+     * out, so they are not rewritten, nor is their search index row.
+     */
+    SupportSQLiteQuery toFavoriteStatement(boolean favorite) {
+        return statement("UPDATE history_table SET isFavorite = " + (favorite ? 1 : 0)
+                + " WHERE isFavorite = " + (favorite ? 0 : 1) + " AND ", "");
+    }
+
+    private SupportSQLiteQuery statement(String prefix, String suffix) {
+        // Deleted entries are never selected; for a filter, its subquery says so as well.
+        StringBuilder sql = new StringBuilder(prefix).append("deletedAt = 0 AND ");
+        Object[] args;
+        if (filter == null) {
+            appendIdList(sql.append("id IN "));
+            args = new Object[0];
+        } else {
+            sql.append("id IN (").append(filter.idSql()).append(')');
+            if (!ids.isEmpty()) {
+                appendIdList(sql.append(" AND id NOT IN "));
+            }
+            args = filter.whereArgs();
+        }
+        return new SimpleSQLiteQuery(sql.append(suffix).toString(), args);
+    }
+
+    private void appendIdList(StringBuilder sql) {
+        sql.append('(');
+        boolean first = true;
+        for (long id : ids) {
+            if (!first) sql.append(',');
+            sql.append(id);
+            first = false;
+        }
+        sql.append(')');
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HistorySelection)) return false;
+        HistorySelection other = (HistorySelection) o;
+        return Objects.equals(filter, other.filter) && ids.equals(other.ids);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filter, ids);
+    }
+}
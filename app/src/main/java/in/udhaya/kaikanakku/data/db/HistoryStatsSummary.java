@@ -0,0 +1,25 @@
+package in.udhaya.kaikanakku.data.db;
+
+/**
+ * Statistics over the whole history, summed from the {@link HistoryDailyStats} rows by
+ * {@link HistoryDao#getStatsSummary()}.
+ */
+public class HistoryStatsSummary {
+
+    /** The number of days that have entries. */
+    public final int days;
+    public final int entryCount;
+    public final double totalCm;
+    public final double maxCm;
+
+    public HistoryStatsSummary(int days, int entryCount, double totalCm, double maxCm) {
+        this.days = days;
+        this.entryCount = entryCount;
+        this.totalCm = totalCm;
+        this.maxCm = maxCm;
+    }
+
+    public double getAverageCm() {
+        return entryCount == 0 ? 0 : totalCm / entryCount;
+    }
+}
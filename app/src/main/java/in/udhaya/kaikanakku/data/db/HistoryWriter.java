@@ -0,0 +1,490 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The single writer for history_table. SQLite only ever lets one connection write, so
+ * instead of many threads queueing for the write lock, every insert, update and delete is
+ * queued here and applied by {@link AppDatabase#databaseWriteExecutor} in batches. Each batch
+ * is one transaction, i.e. one commit and one invalidation of the Room observers, so a burst
+ * of calculations refreshes the UI once.
+ *
+ * A batch is started {@link #BATCH_WINDOW_MS} after the first write into an empty queue, and
+ * whatever arrives while a batch is committing goes into the next one. Before a batch runs,
+ * operations that cannot change the result are dropped (see {@link #coalesce(List)}).
+ *
+ * Since every write goes through here, the writer also tells its {@link Listener}s what each
+ * commit changed, so in-memory copies of the history can follow without querying it again.
+ */
+public final class HistoryWriter {
+
+    private static final String TAG = "HistoryWriter";
+
+    /** How long the first write waits for others to join its batch; about one frame. */
+    static final long BATCH_WINDOW_MS = 16;
+
+    enum Kind {
+        INSERT,
+        UPDATE,
+        /** Sets only isFavorite, and only on a row that is not deleted. */
+        FAVORITE,
+        /** Marks the row deleted, see {@link HistoryEntry#getDeletedAt()}. */
+        DELETE,
+        /** Undoes a DELETE. */
+        RESTORE,
+        DELETE_ALL
+    }
+
+    /** One queued write. {@code entry} is null only for {@link Kind#DELETE_ALL}. */
+    static final class Op {
+        final Kind kind;
+        final HistoryEntry entry;
+        /** The value a {@link Kind#FAVORITE} sets. */
+        final boolean favorite;
+        /** When the write was requested; a DELETE marks the row with this time. */
+        final long queuedAt = System.currentTimeMillis();
+
+        Op(Kind kind, HistoryEntry entry) {
+            this(kind, entry, false);
+        }
+
+        Op(Kind kind, HistoryEntry entry, boolean favorite) {
+            this.kind = kind;
+            this.entry = entry;
+            this.favorite = favorite;
+        }
+    }
+
+    /**
+     * Told what every write changed, on the writer thread right after it is committed, in the
+     * order the writes were applied. A write that changed nothing is not reported. Entries
+     * passed in belong to whoever queued the write; copy them before keeping them.
+     */
+    public interface Listener {
+        /** A new row, with its new id. */
+        void onInserted(@NonNull HistoryEntry entry, long id);
+
+        /** The row with this entry's id now holds the entry. */
+        void onUpdated(@NonNull HistoryEntry entry);
+
+        void onDeleted(long id);
+
+        /** The row with this entry's id was deleted and is back. */
+        void onRestored(@NonNull HistoryEntry entry);
+
+        void onDeletedAll();
+
+        /** Every entry older than {@code timestamp} is gone. */
+        void onDeletedOlderThan(long timestamp);
+
+        /** Rows changed in a way the other methods cannot describe, e.g. by a bulk action. */
+        void onChanged();
+    }
+
+    private final AppDatabase db;
+    private final HistoryDao historyDao;
+    private final ScheduledExecutorService executor;
+    private final int maxInsertsReported;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Object lock = new Object();
+    private List<Op> pending = new ArrayList<>();
+    private boolean drainScheduled;
+
+    /**
+     * @param maxInsertsReported The most entries any listener keeps in memory. An
+     *                           {@link #insertAll} that inserts more is reported as one
+     *                           {@link Listener#onChanged()} instead of an insert per entry.
+     */
+    public HistoryWriter(AppDatabase db, ScheduledExecutorService executor, int maxInsertsReported) {
+        this.db = db;
+        this.historyDao = db.historyDao();
+        this.executor = executor;
+        this.maxInsertsReported = maxInsertsReported;
+    }
+
+    /** Starts telling {@code listener} about every write committed from now on. */
+    public void addListener(@NonNull Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Tells the listeners that every entry older than {@code timestamp} is gone, for deletes
+     * made without the writer, e.g. when archiving. Call it after they are committed.
+     */
+    public void reportDeletedOlderThan(long timestamp) {
+        notifyListeners(listener -> listener.onDeletedOlderThan(timestamp));
+    }
+
+    /** Like {@link #reportDeletedOlderThan}, for changes the listeners cannot follow. */
+    public void reportChanged() {
+        notifyListeners(Listener::onChanged);
+    }
+
+    public void insert(@NonNull HistoryEntry entry) {
+        submit(new Op(Kind.INSERT, entry));
+    }
+
+    public void update(@NonNull HistoryEntry entry) {
+        submit(new Op(Kind.UPDATE, entry));
+    }
+
+    /**
+     * Marks the entry as a favorite or not. Only that column is written, and not if the entry
+     * has been deleted meanwhile, so unlike {@link #update} this cannot undo a delete or
+     * overwrite other columns with what {@code entry} held when it was read.
+     */
+    public void setFavorite(@NonNull HistoryEntry entry, boolean favorite) {
+        submit(new Op(Kind.FAVORITE, entry, favorite));
+    }
+
+    /** Deletes the entry so that {@link #restore} can bring it back, until it is purged. */
+    public void delete(@NonNull HistoryEntry entry) {
+        submit(new Op(Kind.DELETE, entry));
+    }
+
+    /** Undoes {@link #delete}: one update, and the entry keeps its id. */
+    public void restore(@NonNull HistoryEntry entry) {
+        submit(new Op(Kind.RESTORE, entry));
+    }
+
+    public void deleteAll() {
+        submit(new Op(Kind.DELETE_ALL, null));
+    }
+
+    /**
+     * Inserts a chunk of entries, e.g. from an import, as one transaction on the writer
+     * thread. Writes queued before it are committed first. Unlike the other writes this one
+     * is not batched, since it is a batch already; the caller can prepare the next chunk while
+     * this one commits and wait on the result before submitting it. A chunk that inserts more
+     * entries than the listeners keep is reported as one {@link Listener#onChanged()}: they
+     * read their lists again, rather than receive and drop most of the chunk one by one.
+     *
+     * @return The number of entries inserted; duplicates are skipped.
+     */
+    public Future<Integer> insertAll(@NonNull List<HistoryEntry> entries) {
+        return executor.submit(() -> {
+            drain();
+            long[] ids = db.runInTransaction(() -> historyDao.insertAll(entries));
+            int inserted = 0;
+            for (long id : ids) {
+                if (id != -1) inserted++;
+            }
+            if (inserted > maxInsertsReported) {
+                notifyListeners(Listener::onChanged);
+                return inserted;
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == -1) continue;
+                HistoryEntry entry = entries.get(i);
+                long id = ids[i];
+                notifyListeners(listener -> listener.onInserted(entry, id));
+            }
+            return inserted;
+        });
+    }
+
+    /**
+     * Deletes at most {@code limit} of the oldest entries from before {@code timestamp} on the
+     * writer thread, after the writes queued before it. Retention deletes in chunks through
+     * this rather than in one statement, so writes from the UI queued meanwhile are committed
+     * between chunks instead of waiting for the whole delete.
+     *
+     * @return The number of entries deleted; fewer than {@code limit} once none are left.
+     */
+    public Future<Integer> deleteOlderThan(long timestamp, int limit) {
+        return executor.submit(() -> {
+            drain();
+            int deleted = historyDao.deleteOlderThan(timestamp, limit);
+            // Listeners only hear of it once a chunk finds nothing more to delete: until then
+            // some entries older than the cutoff are still there.
+            if (deleted < limit) {
+                notifyListeners(listener -> listener.onDeletedOlderThan(timestamp));
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Deletes every entry in {@code selection} with one statement in one transaction, on the
+     * writer thread after the writes queued before it. However many entries are selected, the
+     * observers of the history are invalidated once. The entries are marked with
+     * {@code deletedAt}, so {@link #restoreDeletedAt} with the same time undoes this.
+     *
+     * @return The number of entries deleted.
+     */
+    public Future<Integer> deleteSelected(@NonNull HistorySelection selection, long deletedAt) {
+        return execute(selection.toDeleteStatement(deletedAt));
+    }
+
+    /**
+     * Restores the entries deleted by {@link #deleteSelected} at {@code deletedAt}, again
+     * with one statement.
+     *
+     * @return The number of entries restored.
+     */
+    public Future<Integer> restoreDeletedAt(long deletedAt) {
+        return executor.submit(() -> {
+            drain();
+            return changed(historyDao.restoreDeletedAt(deletedAt));
+        });
+    }
+
+    /**
+     * Removes for good at most {@code limit} entries deleted before {@code cutoff}, on the
+     * writer thread after the writes queued before it; like {@link #deleteOlderThan}, the
+     * caller repeats this until fewer than {@code limit} are removed. Only entries already
+     * deleted are removed, so listeners are not told.
+     *
+     * @return The number of entries removed.
+     */
+    public Future<Integer> purgeDeleted(long cutoff, int limit) {
+        return executor.submit(() -> {
+            drain();
+            return historyDao.purgeDeleted(cutoff, limit);
+        });
+    }
+
+    /**
+     * Marks every entry in {@code selection} as a favorite or not, like
+     * {@link #deleteSelected}.
+     *
+     * @return The number of entries changed; those already in that state are not counted.
+     */
+    public Future<Integer> setFavorite(@NonNull HistorySelection selection, boolean favorite) {
+        return execute(selection.toFavoriteStatement(favorite));
+    }
+
+    private Future<Integer> execute(SupportSQLiteQuery statement) {
+        return executor.submit(() -> {
+            drain();
+            return changed(db.runInTransaction(() -> {
+                try (SupportSQLiteStatement compiled = db.compileStatement(statement.getSql())) {
+                    statement.bindTo(compiled);
+                    return compiled.executeUpdateDelete();
+                }
+            }));
+        });
+    }
+
+    /**
+     * Blocks until every write submitted before this call has been committed. Meant for tests
+     * and for background work that has to read its own writes; never call it on the main
+     * thread or on the writer thread itself.
+     */
+    public void flush() throws InterruptedException {
+        try {
+            executor.submit(this::drain).get();
+        } catch (ExecutionException e) {
+            // drain() handles its own failures, so this only happens if the executor is broken.
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void submit(Op op) {
+        synchronized (lock) {
+            pending.add(op);
+            if (!drainScheduled) {
+                drainScheduled = true;
+                executor.schedule(this::drain, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** Runs on the writer thread: takes everything queued so far and commits it as one batch. */
+    private void drain() {
+        List<Op> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+            drainScheduled = false;
+        }
+        if (batch.isEmpty()) return;
+        List<Op> ops = coalesce(batch);
+        List<Consumer<Listener>> changes = new ArrayList<>(ops.size());
+        try {
+            db.runInTransaction(() -> {
+                for (Op op : ops) {
+                    Consumer<Listener> change = apply(op);
+                    if (change != null) changes.add(change);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Don't let one bad write take the whole batch with it: retry them one by one.
+            Log.e(TAG, "Batch of " + ops.size() + " writes failed, retrying individually.", e);
+            for (Op op : ops) {
+                Consumer<Listener> change;
+                try {
+                    change = apply(op);
+                } catch (RuntimeException single) {
+                    Log.e(TAG, "Dropped a " + op.kind + " that could not be written.", single);
+                    continue;
+                }
+                if (change != null) notifyListeners(change);
+            }
+            return;
+        }
+        for (Consumer<Listener> change : changes) {
+            notifyListeners(change);
+        }
+    }
+
+    /** Applies one write and returns what to tell the listeners once it is committed, if anything. */
+    @Nullable
+    private Consumer<Listener> apply(Op op) {
+        switch (op.kind) {
+            case INSERT -> {
+                long id = historyDao.insert(op.entry);
+                if (id != -1) {
+                    return listener -> listener.onInserted(op.entry, id);
+                }
+                // A duplicate; if its twin is only marked deleted, this brings it back. Which
+                // row that is is not known here, so listeners get the general notice.
+                if (historyDao.revive(op.entry.getContentHash(), op.entry.getTimestamp()) > 0) {
+                    return Listener::onChanged;
+                }
+                return null;
+            }
+            case UPDATE -> {
+                return historyDao.update(op.entry) > 0 ? listener -> listener.onUpdated(op.entry) : null;
+            }
+            case FAVORITE -> {
+                if (historyDao.setFavorite(op.entry.getId(), op.favorite) == 0) return null;
+                HistoryEntry updated = op.entry.copyWithId(op.entry.getId());
+                updated.setFavorite(op.favorite);
+                return listener -> listener.onUpdated(updated);
+            }
+            case DELETE -> {
+                long id = op.entry.getId();
+                return historyDao.markDeleted(id, op.queuedAt) > 0 ? listener -> listener.onDeleted(id) : null;
+            }
+            case RESTORE -> {
+                return historyDao.restore(op.entry.getId()) > 0 ? listener -> listener.onRestored(op.entry) : null;
+            }
+            case DELETE_ALL -> {
+                historyDao.deleteAll();
+                return Listener::onDeletedAll;
+            }
+        }
+        throw new IllegalArgumentException("Unknown write " + op.kind);
+    }
+
+    /** Tells the listeners that a set-based statement changed {@code count} rows, if any. */
+    private int changed(int count) {
+        if (count > 0) {
+            notifyListeners(Listener::onChanged);
+        }
+        return count;
+    }
+
+    private void notifyListeners(Consumer<Listener> change) {
+        for (Listener listener : listeners) {
+            change.accept(listener);
+        }
+    }
+
+    /**
+     * Drops the operations in a batch that cannot change the outcome, keeping the rest in
+     * order:
+     * <ul>
+     *     <li>everything before a delete-all;</li>
+     *     <li>a repeated insert of the same text (the unique index would ignore it anyway);</li>
+     *     <li>an insert whose row is deleted again later in the batch;</li>
+     *     <li>all but the last update of a row, and all but the last favorite toggle;</li>
+     *     <li>updates and repeated deletes after a row has been deleted, until it is restored;
+     *     an update writes the whole row, so it would undo the delete. Favorite toggles are
+     *     dropped as well, since they would not change a deleted row anyway.</li>
+     * </ul>
+     * An insert that follows a delete of the same text (which brings the row back) is kept, as
+     * is that delete. Updates before a delete are kept, since the row may be restored.
+     */
+    static List<Op> coalesce(List<Op> batch) {
+        Op[] kept = batch.toArray(new Op[0]);
+        Map<Long, Integer> insertByHash = new HashMap<>();
+        Map<Long, Integer> updateById = new HashMap<>();
+        Map<Long, Integer> favoriteById = new HashMap<>();
+        Set<Long> deletedIds = new HashSet<>();
+        Set<Long> deletedHashes = new HashSet<>();
+
+        for (int i = 0; i < kept.length; i++) {
+            Op op = kept[i];
+            switch (op.kind) {
+                case DELETE_ALL -> {
+                    for (int j = 0; j < i; j++) kept[j] = null;
+                    insertByHash.clear();
+                    updateById.clear();
+                    favoriteById.clear();
+                    deletedIds.clear();
+                    deletedHashes.clear();
+                }
+                case INSERT -> {
+                    // A re-insert under the old id brings a deleted row back.
+                    deletedIds.remove(op.entry.getId());
+                    long hash = op.entry.getContentHash();
+                    if (insertByHash.containsKey(hash)) {
+                        kept[i] = null;
+                    } else if (!deletedHashes.contains(hash)) {
+                        insertByHash.put(hash, i);
+                    } else {
+                        // A re-insert after a delete; it must stay, so mark the text as taken.
+                        insertByHash.put(hash, -1);
+                    }
+                }
+                case UPDATE -> {
+                    long id = op.entry.getId();
+                    if (deletedIds.contains(id)) {
+                        kept[i] = null;
+                    } else {
+                        Integer previous = updateById.put(id, i);
+                        if (previous != null) kept[previous] = null;
+                    }
+                }
+                case FAVORITE -> {
+                    long id = op.entry.getId();
+                    if (deletedIds.contains(id)) {
+                        kept[i] = null;
+                    } else {
+                        Integer previous = favoriteById.put(id, i);
+                        if (previous != null) kept[previous] = null;
+                    }
+                }
+                case DELETE -> {
+                    long id = op.entry.getId();
+                    if (!deletedIds.add(id)) {
+                        kept[i] = null;
+                        break;
+                    }
+                    long hash = op.entry.getContentHash();
+                    Integer insert = insertByHash.remove(hash);
+                    if (insert != null && insert >= 0) kept[insert] = null;
+                    deletedHashes.add(hash);
+                }
+                case RESTORE -> deletedIds.remove(op.entry.getId());
+            }
+        }
+
+        List<Op> result = new ArrayList<>(kept.length);
+        for (Op op : kept) {
+            if (op != null) result.add(op);
+        }
+        return result;
+    }
+}
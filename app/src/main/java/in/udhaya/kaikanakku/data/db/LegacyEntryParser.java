@@ -0,0 +1,130 @@
+package in.udhaya.kaikanakku.data.db;
+
+import java.text.ParseException;
+
+import in.udhaya.kaikanakku.util.Length;
+import in.udhaya.kaikanakku.util.MeasurementExpression;
+import in.udhaya.kaikanakku.util.MeasurementParser;
+
+/**
+ * Recovers the kind and operands of a history entry from its input text, for entries that were
+ * saved before they were recorded as numbers (see {@link Migrations#MIGRATION_4_5}) and for
+ * entries created from text alone. It recognises the text the converter and calculator write:
+ * <ul>
+ *     <li>"151.00 cm": centimetres to Kol. Only this path writes two decimal places.</li>
+ *     <li>"2 kol 1 viral 1.5 cm", "2.5 cm": Kol/Viral/cm to centimetres.</li>
+ *     <li>"(A) + (B)" and "(A) - (B)", with A and B such measurements.</li>
+ *     <li>"(A) * 2.5".</li>
+ *     <li>anything else that compiles as a {@link MeasurementExpression}.</li>
+ * </ul>
+ * For an expression, or text that is not recognised at all, only the result is kept, taken from
+ * the stored totalCm.
+ *
+ * Like {@link MeasurementParser}, an instance keeps its last result in primitive fields and
+ * can be reused for every row; it is not thread-safe.
+ */
+final class LegacyEntryParser {
+
+    private static final String PLUS = ") + (";
+    private static final String MINUS = ") - (";
+    private static final String TIMES = ") * ";
+
+    private final MeasurementParser parser = new MeasurementParser();
+
+    private int kind;
+    private long operandA;
+    private long operandB;
+    private double multiplier;
+
+    /** A new parser that has already parsed {@code inputText}. */
+    static LegacyEntryParser parsed(String inputText, double totalCm) {
+        LegacyEntryParser parser = new LegacyEntryParser();
+        parser.parse(inputText, totalCm);
+        return parser;
+    }
+
+    /**
+     * Classifies one entry.
+     *
+     * @return the kind, one of the HistoryEntry.KIND_ constants; the operands are then read
+     *         through the getters.
+     */
+    int parse(String inputText, double totalCm) {
+        kind = HistoryEntry.KIND_UNKNOWN;
+        operandA = Length.cmToUnits(totalCm);
+        operandB = 0;
+        multiplier = 1;
+        if (inputText == null) {
+            return kind;
+        }
+        String text = inputText.trim();
+
+        if (parser.parseMeasurement(text) == MeasurementParser.OK) {
+            operandA = parser.getTotalUnits();
+            boolean cmOnly = parser.getKol() == 0 && parser.getViral() == 0;
+            kind = cmOnly && hasTwoDecimals(text) ? HistoryEntry.KIND_CM_TO_KOL : HistoryEntry.KIND_KOL_TO_CM;
+            return kind;
+        }
+
+        if (text.startsWith("(") && text.endsWith(")")) {
+            int split = text.indexOf(PLUS);
+            int op = HistoryEntry.KIND_ADD;
+            if (split < 0) {
+                split = text.indexOf(MINUS);
+                op = HistoryEntry.KIND_SUBTRACT;
+            }
+            if (split > 0
+                    && parser.parseMeasurement(text, 1, split) == MeasurementParser.OK) {
+                long a = parser.getTotalUnits();
+                if (parser.parseMeasurement(text, split + PLUS.length(), text.length() - 1) == MeasurementParser.OK) {
+                    kind = op;
+                    operandA = a;
+                    operandB = parser.getTotalUnits();
+                    return kind;
+                }
+            }
+        }
+
+        int times = text.indexOf(TIMES);
+        if (text.startsWith("(") && times > 0
+                && parser.parseMeasurement(text, 1, times) == MeasurementParser.OK) {
+            long a = parser.getTotalUnits();
+            if (parser.parseNumber(text.substring(times + TIMES.length())) == MeasurementParser.OK) {
+                kind = HistoryEntry.KIND_MULTIPLY;
+                operandA = a;
+                multiplier = parser.getDouble();
+                return kind;
+            }
+        }
+
+        try {
+            MeasurementExpression.compileCached(text);
+            kind = HistoryEntry.KIND_EXPRESSION;
+        } catch (ParseException e) {
+            // Not something this app wrote; keep it as an unknown entry with just its result.
+        }
+        return kind;
+    }
+
+    int getKind() {
+        return kind;
+    }
+
+    long getOperandA() {
+        return operandA;
+    }
+
+    long getOperandB() {
+        return operandB;
+    }
+
+    double getMultiplier() {
+        return multiplier;
+    }
+
+    /** Whether text ending in " cm" has exactly two decimal places, as "151.00 cm" does. */
+    private static boolean hasTwoDecimals(String text) {
+        int dot = text.length() - " cm".length() - 3;
+        return text.endsWith(" cm") && dot > 0 && text.charAt(dot) == '.';
+    }
+}
@@ -0,0 +1,186 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+/**
+ * Schema migrations for {@link AppDatabase}, one per version step.
+ * Each migration must leave the schema exactly as Room would create it for the new version,
+ * so the SQL here mirrors the Room-generated statements.
+ */
+public final class Migrations {
+
+    private Migrations() {}
+
+    // The triggers that reindex a row in history_fts when it is updated. Room creates the
+    // same ones for HistoryFts; they are kept here because MIGRATION_4_5 recreates them.
+    private static final String CREATE_FTS_BEFORE_UPDATE_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_BEFORE_UPDATE "
+                    + "BEFORE UPDATE ON `history_table` BEGIN DELETE FROM `history_fts` WHERE `docid`=OLD.`rowid`; END";
+    private static final String CREATE_FTS_AFTER_UPDATE_TRIGGER =
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_AFTER_UPDATE "
+                    + "AFTER UPDATE ON `history_table` BEGIN INSERT INTO `history_fts`(`docid`, `inputText`, `outputText`) "
+                    + "VALUES (NEW.`rowid`, NEW.`inputText`, NEW.`outputText`); END";
+
+    /**
+     * Version 2 adds the history_fts full-text index (see {@link HistoryFts}), the triggers
+     * that keep it in sync with history_table, and fills it from the existing rows.
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `history_fts` USING FTS4("
+                    + "`inputText` TEXT NOT NULL, `outputText` TEXT NOT NULL, "
+                    + "tokenize=unicode61 `tokenchars=.`, content=`history_table`)");
+            db.execSQL(CREATE_FTS_BEFORE_UPDATE_TRIGGER);
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_BEFORE_DELETE "
+                    + "BEFORE DELETE ON `history_table` BEGIN DELETE FROM `history_fts` WHERE `docid`=OLD.`rowid`; END");
+            db.execSQL(CREATE_FTS_AFTER_UPDATE_TRIGGER);
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_history_fts_AFTER_INSERT "
+                    + "AFTER INSERT ON `history_table` BEGIN INSERT INTO `history_fts`(`docid`, `inputText`, `outputText`) "
+                    + "VALUES (NEW.`rowid`, NEW.`inputText`, NEW.`outputText`); END");
+            // Index every existing row.
+            db.execSQL("INSERT INTO `history_fts`(`history_fts`) VALUES('rebuild')");
+        }
+    };
+
+    /**
+     * Version 3 adds history_table.contentHash with a UNIQUE index, plus the indices behind
+     * the sorted and favorites queries. Existing rows get their hash computed here, since
+     * SQLite cannot; rows that turn out to be duplicates (possible when two inserts raced
+     * past the old existence check) are merged into the oldest copy, keeping its favorite flag.
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `contentHash` INTEGER NOT NULL DEFAULT 0");
+
+            SupportSQLiteStatement setHash = db.compileStatement("UPDATE `history_table` SET `contentHash` = ? WHERE `id` = ?");
+            try (Cursor cursor = db.query("SELECT `id`, `inputText`, `outputText` FROM `history_table`")) {
+                while (cursor.moveToNext()) {
+                    setHash.bindLong(1, ContentHash.of(cursor.getString(1), cursor.getString(2)));
+                    setHash.bindLong(2, cursor.getLong(0));
+                    setHash.executeUpdateDelete();
+                }
+            }
+
+            db.execSQL("UPDATE `history_table` SET `isFavorite` = 1 WHERE `isFavorite` = 0 AND `id` IN ("
+                    + "SELECT MIN(`id`) FROM `history_table` GROUP BY `contentHash` HAVING MAX(`isFavorite`) = 1)");
+            db.execSQL("DELETE FROM `history_table` WHERE `id` NOT IN ("
+                    + "SELECT MIN(`id`) FROM `history_table` GROUP BY `contentHash`)");
+
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_history_table_contentHash` ON `history_table` (`contentHash`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_timestamp` ON `history_table` (`timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_totalCm` ON `history_table` (`totalCm`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_isFavorite_timestamp` ON `history_table` (`isFavorite`, `timestamp`)");
+        }
+    };
+
+    /**
+     * Version 4 adds an index for the favorites list sorted by size, now that the favorites
+     * filter and the sort order are applied together (see {@link HistoryFilter}).
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_isFavorite_totalCm` ON `history_table` (`isFavorite`, `totalCm`)");
+        }
+    };
+
+    /**
+     * Version 5 records each entry's calculation as numbers: its kind, operands in Length
+     * units, multiplier and formatting flags (see {@link HistoryEntry}), so reusing an entry
+     * no longer parses its text. Existing rows are classified from their input text once, here,
+     * in a single pass over a cursor (see {@link LegacyEntryParser}).
+     *
+     * The backfill leaves the text alone, so the FTS update triggers are dropped while it runs;
+     * otherwise every row would be removed from and re-added to history_fts for nothing.
+     * Earlier versions always formatted with precision on and rounding off, which are the
+     * column defaults.
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `kind` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `operandA` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `operandB` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `multiplier` REAL NOT NULL DEFAULT 1");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `isPrecision` INTEGER NOT NULL DEFAULT 1");
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `isRounded` INTEGER NOT NULL DEFAULT 0");
+
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_history_fts_BEFORE_UPDATE");
+            db.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_history_fts_AFTER_UPDATE");
+
+            LegacyEntryParser parser = new LegacyEntryParser();
+            SupportSQLiteStatement setNumbers = db.compileStatement("UPDATE `history_table` "
+                    + "SET `kind` = ?, `operandA` = ?, `operandB` = ?, `multiplier` = ? WHERE `id` = ?");
+            try (Cursor cursor = db.query("SELECT `id`, `inputText`, `totalCm` FROM `history_table`")) {
+                while (cursor.moveToNext()) {
+                    setNumbers.bindLong(1, parser.parse(cursor.getString(1), cursor.getDouble(2)));
+                    setNumbers.bindLong(2, parser.getOperandA());
+                    setNumbers.bindLong(3, parser.getOperandB());
+                    setNumbers.bindDouble(4, parser.getMultiplier());
+                    setNumbers.bindLong(5, cursor.getLong(0));
+                    setNumbers.executeUpdateDelete();
+                }
+            }
+
+            db.execSQL(CREATE_FTS_BEFORE_UPDATE_TRIGGER);
+            db.execSQL(CREATE_FTS_AFTER_UPDATE_TRIGGER);
+        }
+    };
+
+    /**
+     * Version 6 adds history_daily_stats (see {@link HistoryDailyStats}). Its triggers and its
+     * first fill are left to {@link #MIGRATION_6_7}: their SQL reads history_table.deletedAt,
+     * which only exists from version 7. Installs that reached version 6 with an earlier app
+     * have the version 6 triggers, which that migration replaces.
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `history_daily_stats` (`day` TEXT NOT NULL, "
+                    + "`entryCount` INTEGER NOT NULL, `totalCm` REAL NOT NULL, `maxCm` REAL NOT NULL, "
+                    + "PRIMARY KEY(`day`))");
+        }
+    };
+
+    /**
+     * Version 7 deletes entries by marking them with history_table.deletedAt, so that undo is
+     * a single update (see {@link HistoryEntry}). deletedAt leads every sorting index, so
+     * those are replaced. The daily statistics triggers are created in their current form,
+     * which skips marked entries, and the table is filled from the existing rows in one pass;
+     * no entry is marked yet, so an install that had the statistics keeps the same totals.
+     */
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `history_table` ADD COLUMN `deletedAt` INTEGER NOT NULL DEFAULT 0");
+
+            db.execSQL("DROP INDEX IF EXISTS `index_history_table_timestamp`");
+            db.execSQL("DROP INDEX IF EXISTS `index_history_table_totalCm`");
+            db.execSQL("DROP INDEX IF EXISTS `index_history_table_isFavorite_timestamp`");
+            db.execSQL("DROP INDEX IF EXISTS `index_history_table_isFavorite_totalCm`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_deletedAt_timestamp` "
+                    + "ON `history_table` (`deletedAt`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_deletedAt_totalCm` "
+                    + "ON `history_table` (`deletedAt`, `totalCm`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_deletedAt_isFavorite_timestamp` "
+                    + "ON `history_table` (`deletedAt`, `isFavorite`, `timestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_history_table_deletedAt_isFavorite_totalCm` "
+                    + "ON `history_table` (`deletedAt`, `isFavorite`, `totalCm`)");
+
+            HistoryDailyStats.dropTriggers(db);
+            HistoryDailyStats.createTriggers(db);
+            HistoryDailyStats.rebuild(db);
+        }
+    };
+
+    /** Every migration, in order; pass to {@code addMigrations}. */
+    public static final Migration[] ALL = {MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6,
+            MIGRATION_6_7};
+}
@@ -0,0 +1,228 @@
+package in.udhaya.kaikanakku.data.db;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.processors.BehaviorProcessor;
+
+/**
+ * The newest entries of the history, kept in memory for the recent-history strip on the
+ * converter screen. They are read from the database once, then kept up to date by
+ * {@link HistoryWriter} as a {@link HistoryWriter.Listener}: each commit is applied to the
+ * list on the writer thread right after it happens, with no query. A Room query would instead
+ * be run again after every write to history_table, whatever it changed.
+ *
+ * A few more entries are kept than are shown, so that deleting one of them does not leave a
+ * gap. The list is only read again when it cannot follow a change: a bulk action, or more
+ * deletes than the spare entries cover. That read runs on the reload executor, never on the
+ * writer thread, and is done again if a commit lands while it runs.
+ */
+public final class RecentHistoryCache implements HistoryWriter.Listener {
+
+    private static final String TAG = "RecentHistoryCache";
+
+    /** Newest first, as {@link HistoryDao#getRecentEntries} orders them. */
+    private static final Comparator<HistoryEntry> NEWEST_FIRST =
+            Comparator.comparingLong(HistoryEntry::getTimestamp).thenComparingLong(HistoryEntry::getId).reversed();
+
+    private final int size;
+    private final int capacity;
+    private final IntFunction<List<HistoryEntry>> loader;
+    private final Executor reloadExecutor;
+    private final BehaviorProcessor<List<HistoryEntry>> recent = BehaviorProcessor.create();
+
+    // All guarded by this. entries are the cache's own copies, newest first.
+    private final List<HistoryEntry> entries = new ArrayList<>();
+    // Whether entries are what the database holds; false until the first load and after a
+    // change that could not be applied.
+    private boolean loaded;
+    // Whether entries are every entry there is, so nothing older is missing from the end.
+    private boolean complete;
+    // Bumped by every change, so a load can tell whether it raced one.
+    private long generation;
+    private boolean reloading;
+    // The last list emitted. The processor replays it even after a change the cache could not
+    // follow, so getRecent() only lets it through while it is still this one and loaded.
+    private List<HistoryEntry> published;
+
+    /**
+     * @param size           How many entries {@link #getRecent()} emits.
+     * @param capacity       How many are kept; the difference absorbs deletes.
+     * @param loader         Reads the newest entries, e.g. {@link HistoryDao#getRecentEntries}.
+     * @param reloadExecutor Where the loader runs; not the writer thread.
+     */
+    public RecentHistoryCache(int size, int capacity, @NonNull IntFunction<List<HistoryEntry>> loader,
+                              @NonNull Executor reloadExecutor) {
+        this.size = size;
+        this.capacity = capacity;
+        this.loader = loader;
+        this.reloadExecutor = reloadExecutor;
+    }
+
+    /**
+     * The newest entries, newest first. Hot: it emits the current list on subscription, once
+     * it is loaded, and then after every commit. While a reload after
+     * {@link #onChanged()} runs, a new subscriber waits for its result rather than getting
+     * the list from before the change. Never completes.
+     */
+    public Flowable<List<HistoryEntry>> getRecent() {
+        return recent.filter(this::isCurrent).onBackpressureLatest();
+    }
+
+    private synchronized boolean isCurrent(List<HistoryEntry> list) {
+        return loaded && list == published;
+    }
+
+    /** Reads the list from the database, e.g. at startup, and publishes it. */
+    public void reload() {
+        synchronized (this) {
+            if (reloading) return;
+            reloading = true;
+        }
+        reloadExecutor.execute(this::load);
+    }
+
+    private void load() {
+        while (true) {
+            long start;
+            synchronized (this) {
+                start = generation;
+            }
+            List<HistoryEntry> fresh;
+            try {
+                fresh = loader.apply(capacity);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Could not load the recent history.", e);
+                synchronized (this) {
+                    reloading = false;
+                }
+                return;
+            }
+            synchronized (this) {
+                if (generation != start) continue;
+                entries.clear();
+                entries.addAll(fresh);
+                loaded = true;
+                complete = fresh.size() < capacity;
+                reloading = false;
+                publish();
+                return;
+            }
+        }
+    }
+
+    // --- HistoryWriter.Listener, on the writer thread ---
+
+    @Override
+    public synchronized void onInserted(@NonNull HistoryEntry entry, long id) {
+        generation++;
+        if (loaded && add(entry.copyWithId(id))) publish();
+    }
+
+    @Override
+    public synchronized void onUpdated(@NonNull HistoryEntry entry) {
+        generation++;
+        if (!loaded) return;
+        boolean removed = remove(entry.getId());
+        if (add(entry.copyWithId(entry.getId())) || removed) {
+            publish();
+            refillIfShort();
+        }
+    }
+
+    @Override
+    public synchronized void onDeleted(long id) {
+        generation++;
+        if (!loaded || !remove(id)) return;
+        publish();
+        refillIfShort();
+    }
+
+    @Override
+    public synchronized void onRestored(@NonNull HistoryEntry entry) {
+        generation++;
+        if (loaded && add(entry.copyWithId(entry.getId()))) publish();
+    }
+
+    @Override
+    public synchronized void onDeletedAll() {
+        generation++;
+        entries.clear();
+        loaded = true;
+        complete = true;
+        publish();
+    }
+
+    @Override
+    public synchronized void onDeletedOlderThan(long timestamp) {
+        generation++;
+        if (!loaded) return;
+        // Anything missing from the end is older than what is here, so if any entry here was
+        // old enough to go, everything missing went as well.
+        if (entries.removeIf(entry -> entry.getTimestamp() < timestamp)) {
+            complete = true;
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void onChanged() {
+        generation++;
+        loaded = false;
+        reload();
+    }
+
+    // --- List upkeep, with the lock held ---
+
+    /** Puts the entry in its place, unless it belongs after entries that are missing. */
+    private boolean add(HistoryEntry entry) {
+        int index = Collections.binarySearch(entries, entry, NEWEST_FIRST);
+        if (index >= 0) return false;
+        index = -index - 1;
+        if (index == entries.size() && !complete) return false;
+        entries.add(index, entry);
+        if (entries.size() > capacity) {
+            entries.remove(entries.size() - 1);
+            complete = false;
+        }
+        return true;
+    }
+
+    private void refillIfShort() {
+        if (entries.size() < size && !complete) {
+            // Out of spare entries; the ones that now belong at the end are only in the database.
+            reload();
+        }
+    }
+
+    private boolean remove(long id) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getId() == id) {
+                entries.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void publish() {
+        // Copies again, so the cached entries stay the cache's own whatever the UI does.
+        int count = Math.min(size, entries.size());
+        List<HistoryEntry> shown = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HistoryEntry entry = entries.get(i);
+            shown.add(entry.copyWithId(entry.getId()));
+        }
+        published = Collections.unmodifiableList(shown);
+        recent.onNext(published);
+    }
+}
@@ -1,14 +1,52 @@
 package in.udhaya.kaikanakku.data.repository;
 
 import android.app.Application;
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
 
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.rxjava3.PagingRx;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import in.udhaya.kaikanakku.data.archive.HistoryArchive;
 import in.udhaya.kaikanakku.data.db.AppDatabase;
+import in.udhaya.kaikanakku.data.db.DatabaseMaintenance;
+import in.udhaya.kaikanakku.data.db.HistoryDailyStats;
 import in.udhaya.kaikanakku.data.db.HistoryDao;
 import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.data.db.HistoryFilter;
+import in.udhaya.kaikanakku.data.db.HistoryRowState;
+import in.udhaya.kaikanakku.data.db.HistorySelection;
+import in.udhaya.kaikanakku.data.db.HistoryStatsSummary;
+import in.udhaya.kaikanakku.data.db.HistoryChange;
+import in.udhaya.kaikanakku.data.db.HistoryChangeFeed;
+import in.udhaya.kaikanakku.data.db.HistoryWriter;
+import in.udhaya.kaikanakku.data.db.RecentHistoryCache;
+import in.udhaya.kaikanakku.data.transfer.HistoryCsv;
+import in.udhaya.kaikanakku.data.transfer.HistoryCsvExporter;
+import in.udhaya.kaikanakku.data.transfer.HistoryImporter;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
+import io.reactivex.rxjava3.core.BackpressureStrategy;
 import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
 /**
  * Repository for handling all data operations related to the HistoryEntry entity.
@@ -19,22 +57,53 @@ import io.reactivex.rxjava3.core.Flowable;
  */
 public class HistoryRepository {
 
+    private final AppDatabase db;
     private final HistoryDao historyDao;
+    private final HistoryWriter historyWriter;
+    private final RecentHistoryCache recentHistory;
+    private final HistoryChangeFeed changeFeed = new HistoryChangeFeed();
+    private final HistoryArchive archive;
+    private final ContentResolver contentResolver;
     private static volatile HistoryRepository INSTANCE;
 
-    public enum SortOrder {
-        BY_DATE,
-        BY_SIZE_ASC,
-        BY_SIZE_DESC
-    }
+    // Paging configuration for the history screen. maxSize caps how many rows are kept in
+    // memory; pages scrolled far away are dropped and replaced by placeholders.
+    private static final int PAGE_SIZE = 40;
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE;
+    private static final int INITIAL_LOAD_SIZE = PAGE_SIZE * 2;
+    private static final int MAX_CACHED_ROWS = PAGE_SIZE * 5;
+
+    // Rows deleted per statement by retention; small enough that a chunk commits in a few
+    // milliseconds even on slow storage.
+    private static final int RETENTION_CHUNK_ROWS = 500;
+
+    /** How many entries the converter screen shows, see {@link #getRecentHistory()}. */
+    public static final int RECENT_HISTORY_SIZE = 5;
+    // How many the cache keeps, so deletes rarely need a query to fill the gap.
+    private static final int RECENT_HISTORY_CAPACITY = 20;
+
+    /**
+     * How long deleted entries are kept, so their deletion can still be undone, before
+     * {@link #purgeDeleted} removes them for good.
+     */
+    public static final long DELETED_GRACE_PERIOD_MS = 24 * 60 * 60 * 1000L;
 
     /**
      * Private constructor to enforce the singleton pattern.
      * @param application The application context, used to get a database instance.
      */
     private HistoryRepository(Application application) {
-        AppDatabase db = AppDatabase.getDatabase(application);
+        this.db = AppDatabase.getDatabase(application);
         this.historyDao = db.historyDao();
+        this.historyWriter = new HistoryWriter(db, AppDatabase.databaseWriteExecutor, RECENT_HISTORY_CAPACITY);
+        this.recentHistory = new RecentHistoryCache(RECENT_HISTORY_SIZE, RECENT_HISTORY_CAPACITY,
+                historyDao::getRecentEntries, Schedulers.io()::scheduleDirect);
+        // The cache first, so a list that sees a change and reads the cache finds it there.
+        historyWriter.addListener(recentHistory);
+        historyWriter.addListener(changeFeed);
+        recentHistory.reload();
+        this.archive = new HistoryArchive(new File(application.getFilesDir(), "archive"));
+        this.contentResolver = application.getContentResolver();
     }
 
     /**
@@ -56,63 +125,387 @@ public class HistoryRepository {
 
     // --- Reactive Read Operations from DAO ---
     // Room and RxJava handle the background threading for these Flowable queries.
+    // Search, favorites, ranges and sort order all come from one HistoryFilter and are
+    // applied together by a single query.
 
-    public Flowable<List<HistoryEntry>> getHistory(SortOrder sortOrder) {
-        return switch (sortOrder) {
-            case BY_SIZE_ASC -> historyDao.getAllEntriesSortedBySizeAsc();
-            case BY_SIZE_DESC -> historyDao.getAllEntriesSortedBySizeDesc();
-            default -> historyDao.getAllEntriesSortedByDate();
-        };
-    }
-
-    public Flowable<List<HistoryEntry>> getFavoriteEntries() {
-        return historyDao.getFavoriteEntries();
+    /**
+     * The whole filtered list, loaded at once. Only use this when every row is needed,
+     * e.g. for export; lists on screen should use {@link #getPagedHistory(HistoryFilter)}.
+     */
+    public Flowable<List<HistoryEntry>> getHistory(HistoryFilter filter) {
+        return historyDao.queryHistory(filter.toQuery());
     }
 
-    public Flowable<List<HistoryEntry>> searchHistory(String query) {
-        // Add wildcards for the LIKE query in the DAO.
-        return historyDao.searchHistory("%" + query + "%");
+    /**
+     * The filtered list one page at a time, so only the rows around what is on screen are
+     * ever loaded. Callers should apply PagingRx.cachedIn() in their ViewModel scope.
+     */
+    public Flowable<PagingData<HistoryEntry>> getPagedHistory(HistoryFilter filter) {
+        PagingConfig config = new PagingConfig(PAGE_SIZE, PREFETCH_DISTANCE, true, INITIAL_LOAD_SIZE, MAX_CACHED_ROWS);
+        SupportSQLiteQuery query = filter.toQuery();
+        return PagingRx.getFlowable(new Pager<>(config, () -> historyDao.queryPagedHistory(query)));
     }
 
     /**
      * Retrieves the 5 most recent history entries to display on the main converter screen.
+     * They come from a {@link RecentHistoryCache} that the writer updates as it commits, so
+     * writes elsewhere in the history cost no query here, and a list following
+     * {@link #getHistoryChanges()} fills a gap from it: the cache keeps more entries than it
+     * shows, so that is rarely a query either. The Flowable is hot and replays the latest list
+     * to each new subscriber.
      * @return A Flowable list of the 5 most recent entries.
      */
     public Flowable<List<HistoryEntry>> getRecentHistory() {
-        return historyDao.getRecentEntries(5);
+        return recentHistory.getRecent();
     }
 
+    /**
+     * Every change committed to the history from now on, as it happens (see
+     * {@link HistoryChangeFeed}). For lists kept in memory: subscribe, then read the list, and
+     * apply each change to it in place. Emitted on the writer thread.
+     */
+    public Flowable<HistoryChange> getHistoryChanges() {
+        return changeFeed.getChanges();
+    }
+
+    /**
+     * Statistics for each of the last {@code days} days with entries, newest first. Read from
+     * the trigger-maintained history_daily_stats table, so this never scans the history.
+     */
+    public Flowable<List<HistoryDailyStats>> getDailyStats(int days) {
+        return historyDao.getDailyStats(days);
+    }
+
+    /** Statistics over the whole history, summed from the daily rows. */
+    public Flowable<HistoryStatsSummary> getStatsSummary() {
+        return historyDao.getStatsSummary();
+    }
+
+    /**
+     * A single entry by id, e.g. to reuse it in the converter. Empty if it no longer exists.
+     */
+    public Maybe<HistoryEntry> getEntry(long id) {
+        return historyDao.getEntryById(id);
+    }
+
+    /**
+     * Exports the filtered history to {@code file} as CSV, streaming rows from a cursor (see
+     * {@link HistoryCsvExporter}). Nothing happens until subscribed; subscribe on a background
+     * scheduler. Emits progress as it goes and completes once the file is in place. Cancelling
+     * the subscription stops the export and leaves no file behind.
+     */
+    public Flowable<HistoryCsvExporter.Progress> exportCsv(HistoryFilter filter, File file) {
+        return exportCsv(filter.toQuery(), file);
+    }
+
+    /** Like {@link #exportCsv(HistoryFilter, File)}, for the selected entries, newest first. */
+    public Flowable<HistoryCsvExporter.Progress> exportCsv(HistorySelection selection, File file) {
+        return exportCsv(selection.toQuery(), file);
+    }
+
+    private Flowable<HistoryCsvExporter.Progress> exportCsv(SupportSQLiteQuery query, File file) {
+        return Flowable.create(emitter -> {
+            // Written next to the target and renamed at the end, so a failed or cancelled
+            // export never leaves a partial file where a complete one is expected.
+            File partial = new File(file.getPath() + ".part");
+            int written;
+            try (Cursor cursor = historyDao.queryHistoryCursor(query);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partial), StandardCharsets.UTF_8))) {
+                written = HistoryCsvExporter.export(cursor, out, emitter::onNext, emitter::isCancelled);
+            } catch (IOException | RuntimeException e) {
+                partial.delete();
+                emitter.tryOnError(e);
+                return;
+            }
+            if (written < 0) {
+                partial.delete();
+                return;
+            }
+            if (!partial.renameTo(file)) {
+                partial.delete();
+                emitter.tryOnError(new IOException("Could not move the export to " + file));
+                return;
+            }
+            emitter.onComplete();
+        }, BackpressureStrategy.LATEST);
+    }
+
+    /**
+     * Imports a CSV or JSON Lines file (see {@link HistoryImporter}), picking the format from
+     * its type and name. Nothing happens until subscribed; subscribe on a background
+     * scheduler. Emits progress as it goes, the last emission carrying the totals and the
+     * rejected lines, then completes. Cancelling the subscription stops after the current
+     * chunk; what was committed by then stays imported.
+     */
+    public Flowable<HistoryImporter.Progress> importHistory(Uri uri) {
+        return Flowable.create(emitter -> {
+            String name = null;
+            long size = -1;
+            try (Cursor cursor = contentResolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE},
+                    null, null, null)) {
+                if (cursor != null && cursor.moveToFirst()) {
+                    name = cursor.getString(0);
+                    if (!cursor.isNull(1)) size = cursor.getLong(1);
+                }
+            }
+            HistoryImporter.Format format = HistoryImporter.Format.of(contentResolver.getType(uri), name);
+            try (InputStream in = contentResolver.openInputStream(uri)) {
+                if (in == null) {
+                    throw new IOException("Could not open " + uri);
+                }
+                new HistoryImporter(historyWriter).run(in, format, size, System.currentTimeMillis(),
+                        emitter::onNext, emitter::isCancelled);
+            } catch (IOException | RuntimeException e) {
+                emitter.tryOnError(e);
+                return;
+            } catch (InterruptedException e) {
+                // Cancelled while waiting for a chunk to commit.
+                Thread.currentThread().interrupt();
+                return;
+            }
+            emitter.onComplete();
+        }, BackpressureStrategy.LATEST);
+    }
 
     // --- Write Operations (Executed on a background thread) ---
-    // These methods use the ExecutorService from the AppDatabase to ensure they
-    // do not run on the main thread.
+    // Writes are queued on the HistoryWriter, which commits them in batches on the database
+    // writer thread, so these methods return at once.
 
+    /**
+     * Saves an entry unless the same calculation is already in the history. The check is done
+     * by the database in the same statement (see {@link HistoryDao#insert}), so it holds even
+     * when several writes run at once.
+     */
     public void insert(HistoryEntry historyEntry) {
-        AppDatabase.databaseWriteExecutor.execute(() -> {
-            if (historyDao.entryExists(historyEntry.getInputText(), historyEntry.getOutputText()) == 0) {
-                historyDao.insert(historyEntry);
-            }
-        });
+        historyWriter.insert(historyEntry);
     }
 
     public void update(HistoryEntry historyEntry) {
-        AppDatabase.databaseWriteExecutor.execute(() -> historyDao.update(historyEntry));
+        historyWriter.update(historyEntry);
+    }
+
+    /** Marks one entry as a favorite or not, without touching its other columns. */
+    public void setFavorite(HistoryEntry historyEntry, boolean favorite) {
+        historyWriter.setFavorite(historyEntry, favorite);
     }
 
+    /**
+     * Marks the entry deleted (see {@link HistoryEntry#getDeletedAt()}); it disappears from
+     * every list at once and is removed for good after {@link #DELETED_GRACE_PERIOD_MS}.
+     */
     public void delete(HistoryEntry historyEntry) {
-        AppDatabase.databaseWriteExecutor.execute(() -> historyDao.delete(historyEntry));
+        historyWriter.delete(historyEntry);
+    }
+
+    /** Undoes {@link #delete}, keeping the entry's id and its place in the list. */
+    public void restore(HistoryEntry historyEntry) {
+        historyWriter.restore(historyEntry);
     }
 
     public void deleteAll() {
-        AppDatabase.databaseWriteExecutor.execute(historyDao::deleteAll);
+        historyWriter.deleteAll();
+    }
+
+    // Bulk actions on a selection. Each is a single statement in a single transaction on the
+    // writer thread (see HistoryWriter#deleteSelected), queued when subscribed; subscribe on a
+    // background scheduler, as waiting for the result blocks. They emit the number of entries
+    // changed.
+
+    /**
+     * Marks the selected entries deleted at {@code deletedAt}, which the caller keeps to undo
+     * it with {@link #restoreDeletedAt}.
+     */
+    public Single<Integer> deleteSelected(HistorySelection selection, long deletedAt) {
+        return Single.defer(() -> Single.fromFuture(historyWriter.deleteSelected(selection, deletedAt)));
+    }
+
+    /** Brings back every entry deleted by the {@link #deleteSelected} call given {@code deletedAt}. */
+    public Single<Integer> restoreDeletedAt(long deletedAt) {
+        return Single.defer(() -> Single.fromFuture(historyWriter.restoreDeletedAt(deletedAt)));
+    }
+
+    public Single<Integer> setFavorite(HistorySelection selection, boolean favorite) {
+        return Single.defer(() -> Single.fromFuture(historyWriter.setFavorite(selection, favorite)));
     }
 
     /**
-     * This method is specifically for the AutoDeleteWorker and runs synchronously
-     * on the worker's background thread, so it doesn't need its own executor.
+     * Blocks until all writes queued so far are committed. For tests and background work only.
+     */
+    public void flushWrites() throws InterruptedException {
+        historyWriter.flush();
+    }
+
+    /**
+     * This method is specifically for the AutoDeleteWorker and blocks the worker's background
+     * thread until it is done. The entries are deleted {@link #RETENTION_CHUNK_ROWS} at a time
+     * on the writer thread (see {@link HistoryWriter#deleteOlderThan}), so however many there
+     * are, the write lock is only ever held for one short chunk and other writes go in between.
      * @param timestamp The cutoff time. Entries older than this will be deleted.
+     * @return The number of entries deleted.
      */
-    public void deleteOlderThan(long timestamp) {
-        historyDao.deleteOlderThan(timestamp);
+    public int deleteOlderThan(long timestamp) throws InterruptedException {
+        int deleted = 0;
+        int chunk;
+        do {
+            try {
+                chunk = historyWriter.deleteOlderThan(timestamp, RETENTION_CHUNK_ROWS).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not delete old entries", e.getCause());
+            }
+            deleted += chunk;
+        } while (chunk == RETENTION_CHUNK_ROWS);
+        return deleted;
+    }
+
+    /**
+     * For the AutoDeleteWorker: removes for good the entries deleted before {@code cutoff},
+     * {@link #RETENTION_CHUNK_ROWS} at a time like {@link #deleteOlderThan}. Blocks until done.
+     * @return The number of entries removed.
+     */
+    public int purgeDeleted(long cutoff) throws InterruptedException {
+        int purged = 0;
+        int chunk;
+        do {
+            try {
+                chunk = historyWriter.purgeDeleted(cutoff, RETENTION_CHUNK_ROWS).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Could not purge deleted entries", e.getCause());
+            }
+            purged += chunk;
+        } while (chunk == RETENTION_CHUNK_ROWS);
+        return purged;
+    }
+
+    /**
+     * Compacts the database file and refreshes its statistics (see {@link DatabaseMaintenance}).
+     * For the DatabaseMaintenanceWorker; runs synchronously on the calling thread.
+     */
+    public DatabaseMaintenance.Report runMaintenance() {
+        return new DatabaseMaintenance(db).run();
+    }
+
+    /**
+     * Like {@link #deleteOlderThan}, for the AutoDeleteWorker, but moves the entries to the
+     * {@link HistoryArchive} instead of deleting them. Runs synchronously, one segment of at
+     * most {@link HistoryArchive#SEGMENT_ROWS} entries at a time. Each segment file is read,
+     * written and synced before its transaction starts, so the transaction only checks that
+     * the rows are still the ones read, deletes them and renames the file into the archive;
+     * other writes are never held up for more than that. A failure at any point loses nothing;
+     * at worst the last segment's entries are in both places until they are archived again.
+     *
+     * @param timestamp The cutoff time. Entries older than this will be archived.
+     * @return The number of entries archived.
+     */
+    public int archiveOlderThan(long timestamp) throws IOException {
+        int archived = 0;
+        int moved;
+        do {
+            try {
+                moved = archiveSegment(timestamp);
+            } catch (UncheckedIOException e) {
+                // Some segments may have gone already, so lists in memory must be read again.
+                historyWriter.reportChanged();
+                throw e.getCause();
+            } catch (IOException | RuntimeException e) {
+                historyWriter.reportChanged();
+                throw e;
+            }
+            archived += moved;
+        } while (moved == HistoryArchive.SEGMENT_ROWS);
+        // The segments were deleted without the writer, so it has to be told.
+        historyWriter.reportDeletedOlderThan(timestamp);
+        return archived;
+    }
+
+    private int archiveSegment(long timestamp) throws IOException {
+        while (true) {
+            List<HistoryEntry> entries = historyDao.getOldestBefore(timestamp, HistoryArchive.SEGMENT_ROWS);
+            if (entries.isEmpty()) {
+                return 0;
+            }
+            HistoryEntry last = entries.get(entries.size() - 1);
+            HistoryArchive.PendingSegment segment = archive.prepare(entries);
+            boolean moved;
+            try {
+                moved = db.runInTransaction(() -> {
+                    // The exact rows read, as they were read: an entry imported into the range
+                    // meanwhile would be deleted without being archived, one deleted would be
+                    // archived anyway, and a favorite toggled would be archived without it.
+                    List<HistoryRowState> rows =
+                            historyDao.getArchivedRows(timestamp, last.getTimestamp(), last.getId());
+                    if (!isUnchanged(entries, rows)) {
+                        return false;
+                    }
+                    historyDao.deleteArchived(timestamp, last.getTimestamp(), last.getId());
+                    try {
+                        segment.commit();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                });
+            } catch (RuntimeException e) {
+                segment.discard();
+                throw e;
+            }
+            if (moved) {
+                return entries.size();
+            }
+            // Read the range again and write a new segment for it.
+            segment.discard();
+        }
+    }
+
+    private static boolean isUnchanged(List<HistoryEntry> entries, List<HistoryRowState> rows) {
+        if (rows.size() != entries.size()) {
+            return false;
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            if (!rows.get(i).matches(entries.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // --- Archive (read-only) ---
+
+    /**
+     * Searches the archive for entries whose input or output contains {@code text}, newest
+     * first (see {@link HistoryArchive#search}). Subscribe on a background scheduler.
+     */
+    public Single<List<HistoryEntry>> searchArchive(String text, int limit) {
+        return Single.fromCallable(() -> archive.search(text, limit));
+    }
+
+    /**
+     * Exports the whole archive to {@code file} as CSV, in the same format as
+     * {@link #exportCsv}, oldest first. Subscribe on a background scheduler. Emits the number
+     * of entries written; the file is only put in place if the export succeeds.
+     */
+    public Single<Integer> exportArchiveCsv(File file) {
+        return Single.fromCallable(() -> {
+            File partial = new File(file.getPath() + ".part");
+            int written;
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partial), StandardCharsets.UTF_8))) {
+                out.write(HistoryCsv.HEADER);
+                out.write(HistoryCsv.LINE_END);
+                StringBuilder row = new StringBuilder(128);
+                written = archive.forEach(entry -> {
+                    row.setLength(0);
+                    HistoryCsv.appendRow(row, entry.getInputText(), entry.getOutputText(), entry.isFavorite(),
+                            entry.getTotalCm(), entry.getTimestamp());
+                    out.append(row);
+                });
+            } catch (IOException | RuntimeException e) {
+                partial.delete();
+                throw e;
+            }
+            if (!partial.renameTo(file)) {
+                partial.delete();
+                throw new IOException("Could not move the export to " + file);
+            }
+            return written;
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package in.udhaya.kaikanakku.data.repository;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import in.udhaya.kaikanakku.util.MeasurementSheet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+
+import io.reactivex.rxjava3.core.BackpressureStrategy;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+
+/**
+ * Repository for evaluating measurement sheets (long lists of measurements sent in from a site).
+ * The heavy lifting is done by {@link MeasurementSheet} on the fork/join pool; this class opens
+ * the sheet and exposes the evaluation as a {@link Flowable} of progress updates that ends with
+ * the result. Cancelling the subscription stops the evaluation after the current chunk.
+ * It is implemented as a singleton, like the other repositories.
+ */
+public class MeasurementSheetRepository {
+
+    private final ContentResolver contentResolver;
+    private static volatile MeasurementSheetRepository INSTANCE;
+
+    /**
+     * One update from a running evaluation. The last update of a successful run carries the
+     * result; all earlier ones only report progress.
+     */
+    public static final class SheetProgress {
+        public final long linesDone;
+        @Nullable
+        public final MeasurementSheet.Result result;
+
+        SheetProgress(long linesDone, @Nullable MeasurementSheet.Result result) {
+            this.linesDone = linesDone;
+            this.result = result;
+        }
+
+        public boolean isDone() {
+            return result != null;
+        }
+    }
+
+    /** Opens the sheet to evaluate; called on the background thread. */
+    private interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private MeasurementSheetRepository(Application application) {
+        this.contentResolver = application.getContentResolver();
+    }
+
+    /**
+     * Returns the singleton instance of the MeasurementSheetRepository.
+     * Uses double-checked locking to ensure thread-safe initialization.
+     * @param application The application context.
+     * @return The singleton MeasurementSheetRepository instance.
+     */
+    public static MeasurementSheetRepository getInstance(final Application application) {
+        if (INSTANCE == null) {
+            synchronized (MeasurementSheetRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new MeasurementSheetRepository(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Evaluates a sheet picked by the user, e.g. through the system file picker.
+     */
+    public Flowable<SheetProgress> evaluate(Uri uri) {
+        return evaluate(() -> {
+            InputStream in = contentResolver.openInputStream(uri);
+            if (in == null) {
+                throw new FileNotFoundException("Cannot open " + uri);
+            }
+            return in;
+        });
+    }
+
+    public Flowable<SheetProgress> evaluate(File file) {
+        return evaluate(() -> new FileInputStream(file));
+    }
+
+    private Flowable<SheetProgress> evaluate(StreamOpener opener) {
+        return Flowable.<SheetProgress>create(emitter -> {
+            MeasurementSheet.Listener listener = new MeasurementSheet.Listener() {
+                @Override
+                public void onProgress(long linesDone) {
+                    emitter.onNext(new SheetProgress(linesDone, null));
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return emitter.isCancelled();
+                }
+            };
+            try (InputStream in = opener.open()) {
+                MeasurementSheet.Result result = MeasurementSheet.parallel().evaluate(in, listener);
+                emitter.onNext(new SheetProgress(result.getLineCount(), result));
+                emitter.onComplete();
+            } catch (CancellationException e) {
+                // The subscriber went away; there is no one left to tell.
+            } catch (IOException | ArithmeticException e) {
+                emitter.tryOnError(e);
+            }
+        }, BackpressureStrategy.LATEST)
+                .subscribeOn(Schedulers.io());
+    }
+}
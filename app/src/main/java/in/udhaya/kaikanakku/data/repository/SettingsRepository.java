@@ -8,6 +8,9 @@ import androidx.datastore.preferences.core.PreferencesKeys;
 import androidx.datastore.preferences.rxjava3.RxPreferenceDataStoreBuilder;
 import androidx.datastore.rxjava3.RxDataStore;
 
+import java.util.Optional;
+
+import in.udhaya.kaikanakku.data.db.DatabaseMaintenance;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.core.Single;
@@ -33,8 +36,15 @@ public class SettingsRepository {
     public static final Preferences.Key<Boolean> KEY_IS_PRECISION_ENABLED = PreferencesKeys.booleanKey("precision_mode_enabled");
     public static final Preferences.Key<String> KEY_ROUNDING_MODE = PreferencesKeys.stringKey("rounding_mode");
     public static final Preferences.Key<Integer> KEY_AUTO_DELETE_DAYS = PreferencesKeys.intKey("auto_delete_days");
+    public static final Preferences.Key<Boolean> KEY_ARCHIVE_OLD_HISTORY = PreferencesKeys.booleanKey("archive_old_history");
     public static final Preferences.Key<String> KEY_LANGUAGE = PreferencesKeys.stringKey("app_language");
 
+    // The last database maintenance run, recorded by DatabaseMaintenanceWorker.
+    public static final Preferences.Key<Long> KEY_MAINTENANCE_FINISHED_AT = PreferencesKeys.longKey("maintenance_finished_at");
+    public static final Preferences.Key<Long> KEY_MAINTENANCE_DURATION_MS = PreferencesKeys.longKey("maintenance_duration_ms");
+    public static final Preferences.Key<Long> KEY_MAINTENANCE_BYTES_BEFORE = PreferencesKeys.longKey("maintenance_bytes_before");
+    public static final Preferences.Key<Long> KEY_MAINTENANCE_BYTES_AFTER = PreferencesKeys.longKey("maintenance_bytes_after");
+
     // Constants for rounding modes to ensure consistency.
     public static final String ROUND_MODE = "ROUND";
     public static final String TRUNCATE_MODE = "TRUNCATE";
@@ -90,6 +100,15 @@ public class SettingsRepository {
         });
     }
 
+    /** Whether history older than the auto-delete period is archived rather than deleted. */
+    public Flowable<Boolean> isArchiveOldHistoryEnabled() {
+        return dataStore.data().map(prefs -> {
+            Boolean value = prefs.get(KEY_ARCHIVE_OLD_HISTORY);
+            // Default is false: old entries are deleted, as before.
+            return value == null ? false : value;
+        });
+    }
+
     public Flowable<String> getLanguage() {
         return dataStore.data().map(prefs -> {
             String value = prefs.get(KEY_LANGUAGE);
@@ -98,6 +117,27 @@ public class SettingsRepository {
         });
     }
 
+    /**
+     * The last database maintenance run. Emits an empty Optional until one has run.
+     */
+    public Flowable<Optional<DatabaseMaintenance.Report>> getLastMaintenance() {
+        return dataStore.data().map(prefs -> {
+            Long finishedAt = prefs.get(KEY_MAINTENANCE_FINISHED_AT);
+            if (finishedAt == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new DatabaseMaintenance.Report(finishedAt,
+                    orZero(prefs.get(KEY_MAINTENANCE_DURATION_MS)),
+                    orZero(prefs.get(KEY_MAINTENANCE_BYTES_BEFORE)),
+                    orZero(prefs.get(KEY_MAINTENANCE_BYTES_AFTER)),
+                    false));
+        });
+    }
+
+    private static long orZero(Long value) {
+        return value == null ? 0 : value;
+    }
+
     // --- Methods to update preferences ---
     // These methods return a Completable, allowing the caller to know when the
     // asynchronous write operation has finished.
@@ -134,6 +174,14 @@ public class SettingsRepository {
         }).ignoreElement();
     }
 
+    public Completable updateArchiveOldHistory(boolean isEnabled) {
+        return dataStore.updateDataAsync(prefsIn -> {
+            MutablePreferences mutablePreferences = prefsIn.toMutablePreferences();
+            mutablePreferences.set(KEY_ARCHIVE_OLD_HISTORY, isEnabled);
+            return Single.just(mutablePreferences);
+        }).ignoreElement();
+    }
+
     public Completable updateLanguage(String languageCode) {
         return dataStore.updateDataAsync(prefsIn -> {
             MutablePreferences mutablePreferences = prefsIn.toMutablePreferences();
@@ -142,6 +190,17 @@ public class SettingsRepository {
         }).ignoreElement();
     }
 
+    public Completable recordMaintenance(DatabaseMaintenance.Report report) {
+        return dataStore.updateDataAsync(prefsIn -> {
+            MutablePreferences mutablePreferences = prefsIn.toMutablePreferences();
+            mutablePreferences.set(KEY_MAINTENANCE_FINISHED_AT, report.finishedAt);
+            mutablePreferences.set(KEY_MAINTENANCE_DURATION_MS, report.durationMillis);
+            mutablePreferences.set(KEY_MAINTENANCE_BYTES_BEFORE, report.bytesBefore);
+            mutablePreferences.set(KEY_MAINTENANCE_BYTES_AFTER, report.bytesAfter);
+            return Single.just(mutablePreferences);
+        }).ignoreElement();
+    }
+
     public Completable resetAllPreferences() {
         return dataStore.updateDataAsync(prefsIn -> {
             MutablePreferences mutablePreferences = prefsIn.toMutablePreferences();
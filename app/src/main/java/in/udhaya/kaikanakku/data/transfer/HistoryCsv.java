@@ -0,0 +1,169 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import in.udhaya.kaikanakku.util.Length;
+import in.udhaya.kaikanakku.util.MeasurementFormatter;
+
+/**
+ * The CSV form of the history, as written by {@link HistoryCsvExporter} and read back by
+ * {@link RecordReader}. Fields follow RFC 4180: a field holding a comma, quote or line break is
+ * quoted, with quotes doubled, and rows end in CRLF. Numbers are written without locale
+ * formatting, so a file reads back the same everywhere.
+ *
+ * Rows are appended to a caller-owned StringBuilder, so one buffer can be reused for every row
+ * of an export.
+ */
+public final class HistoryCsv {
+
+    /** The header row. The first three columns are those of earlier exports. */
+    public static final String HEADER = "Input,Output,Is Favorite,Total cm,Timestamp";
+
+    public static final String LINE_END = "\r\n";
+
+    private HistoryCsv() {}
+
+    /** Appends one entry as a CSV row, including the line end. */
+    public static StringBuilder appendRow(StringBuilder out, String inputText, String outputText, boolean isFavorite,
+                                          double totalCm, long timestamp) {
+        appendField(out, inputText).append(',');
+        appendField(out, outputText).append(',');
+        out.append(isFavorite).append(',');
+        MeasurementFormatter.appendFixed(out, Length.cmToUnits(totalCm), 2).append(',');
+        return out.append(timestamp).append(LINE_END);
+    }
+
+    /** Appends a text field, quoting it only when it needs to be. A null field is empty. */
+    public static StringBuilder appendField(StringBuilder out, String value) {
+        if (value == null) {
+            return out;
+        }
+        if (!needsQuotes(value)) {
+            return out.append(value);
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        return out.append('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        // Leading or trailing spaces are quoted so spreadsheet programs keep them.
+        if (value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ') {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads CSV records one at a time from a stream, straight out of its own char buffer, so a
+     * file of any size is read in constant memory. Accepts what {@link #appendField} writes and
+     * what spreadsheet programs save: quoted fields with doubled quotes and line breaks, and
+     * LF or CRLF line ends. A UTF-8 byte order mark at the start is skipped.
+     */
+    public static final class RecordReader {
+
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder field = new StringBuilder(64);
+        private int position;
+        private int limit;
+        private int line = 1;
+        private int recordLine;
+        private boolean started;
+
+        public RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * Reads the next record into {@code fields}, replacing its contents. Blank lines are
+         * skipped.
+         *
+         * @return false at the end of the input.
+         * @throws IOException if reading fails, or a quoted field is never closed.
+         */
+        public boolean next(List<String> fields) throws IOException {
+            fields.clear();
+            int c = read();
+            if (!started) {
+                started = true;
+                if (c == '\uFEFF') c = read();
+            }
+            while (c == '\n' || c == '\r') {
+                c = read();
+            }
+            if (c < 0) {
+                return false;
+            }
+            recordLine = line;
+            field.setLength(0);
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        throw new IOException("Unclosed quote in the record starting on line " + recordLine);
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c != '"') {
+                            quoted = false;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c < 0 || c == '\n' || c == '\r') {
+                    fields.add(field.toString());
+                    if (c == '\r') {
+                        c = read();
+                        if (c != '\n' && c >= 0) position--;
+                    }
+                    return true;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        /** The line the last record read started on, counting from 1. */
+        public int getLine() {
+            return recordLine;
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            char c = buffer[position++];
+            if (c == '\n') line++;
+            return c;
+        }
+    }
+}
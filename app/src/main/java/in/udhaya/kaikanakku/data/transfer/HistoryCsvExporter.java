@@ -0,0 +1,90 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import android.database.Cursor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Writes history rows from a Cursor as CSV (see {@link HistoryCsv}). Rows are read one at a
+ * time from the cursor's window, formatted into a single reused buffer and passed to the
+ * writer, so memory use stays the same however many entries there are. Every
+ * {@link #CHUNK_ROWS} rows the writer is flushed, progress is reported and cancellation is
+ * checked.
+ */
+public final class HistoryCsvExporter {
+
+    static final int CHUNK_ROWS = 500;
+
+    /** How far an export has got. */
+    public static final class Progress {
+        public final int written;
+        public final int total;
+
+        public Progress(int written, int total) {
+            this.written = written;
+            this.total = total;
+        }
+
+        /** Completion from 0 to 100. An empty export is complete. */
+        public int percent() {
+            return total == 0 ? 100 : (int) (100L * written / total);
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    private HistoryCsvExporter() {}
+
+    /**
+     * Writes the header and every row of {@code cursor}, which must have the columns of
+     * history_table. Does not close the cursor or the writer.
+     *
+     * @param isCancelled checked between chunks; once it returns true the export stops.
+     * @return The number of rows written, or -1 if the export was cancelled.
+     */
+    public static int export(Cursor cursor, Writer out, ProgressListener listener, BooleanSupplier isCancelled)
+            throws IOException {
+        int inputColumn = cursor.getColumnIndexOrThrow("inputText");
+        int outputColumn = cursor.getColumnIndexOrThrow("outputText");
+        int favoriteColumn = cursor.getColumnIndexOrThrow("isFavorite");
+        int totalCmColumn = cursor.getColumnIndexOrThrow("totalCm");
+        int timestampColumn = cursor.getColumnIndexOrThrow("timestamp");
+
+        // Counting walks the result once without keeping it, like reading it does.
+        int total = cursor.getCount();
+        out.write(HistoryCsv.HEADER);
+        out.write(HistoryCsv.LINE_END);
+        listener.onProgress(new Progress(0, total));
+
+        StringBuilder row = new StringBuilder(128);
+        int written = 0;
+        while (cursor.moveToNext()) {
+            row.setLength(0);
+            HistoryCsv.appendRow(row,
+                    cursor.getString(inputColumn),
+                    cursor.getString(outputColumn),
+                    cursor.getInt(favoriteColumn) != 0,
+                    cursor.getDouble(totalCmColumn),
+                    cursor.getLong(timestampColumn));
+            out.append(row);
+            written++;
+
+            if (written % CHUNK_ROWS == 0) {
+                if (isCancelled.getAsBoolean()) {
+                    return -1;
+                }
+                out.flush();
+                listener.onProgress(new Progress(written, total));
+            }
+        }
+        out.flush();
+        if (written % CHUNK_ROWS != 0) {
+            listener.onProgress(new Progress(written, total));
+        }
+        return written;
+    }
+}
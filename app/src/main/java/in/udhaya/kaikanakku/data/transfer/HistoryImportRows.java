@@ -0,0 +1,154 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import java.util.List;
+import java.util.Locale;
+
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.util.ConversionUtils;
+import in.udhaya.kaikanakku.util.Length;
+import in.udhaya.kaikanakku.util.MeasurementParser;
+
+/**
+ * Turns the fields of one imported line into a {@link HistoryEntry}, whatever the file format.
+ * Only the input is required:
+ * <ul>
+ *     <li>without an output, the input must be a measurement such as "3 kol 4 viral", and is
+ *     imported as a conversion to cm, as if it had been typed into the converter;</li>
+ *     <li>without a total, it is read from the output, which is always a measurement;</li>
+ *     <li>without a timestamp, the time of the import is used.</li>
+ * </ul>
+ * A line that cannot be used is rejected with a {@link RowException} saying why.
+ *
+ * Instances hold a {@link MeasurementParser} and are not thread-safe; use one per import.
+ */
+public final class HistoryImportRows {
+
+    // Positions in the array returned by columnsOf().
+    public static final int INPUT = 0;
+    public static final int OUTPUT = 1;
+    public static final int FAVORITE = 2;
+    public static final int TOTAL_CM = 3;
+    public static final int TIMESTAMP = 4;
+
+    /** Column positions of a CSV file without a header: the order {@link HistoryCsv} writes. */
+    public static final int[] DEFAULT_COLUMNS = {0, 1, 2, 3, 4};
+
+    /** A line that was not imported. */
+    public static final class RowException extends Exception {
+        public RowException(String reason) {
+            super(reason);
+        }
+    }
+
+    private final MeasurementParser parser = new MeasurementParser();
+
+    /**
+     * Maps a CSV header row to column positions, indexed by {@link #INPUT} etc., with -1 for
+     * a column the file does not have.
+     *
+     * @return null if the row is not a header, i.e. has no "Input" column.
+     */
+    public static int[] columnsOf(List<String> header) {
+        int[] columns = {-1, -1, -1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "input", "inputtext" -> columns[INPUT] = i;
+                case "output", "outputtext" -> columns[OUTPUT] = i;
+                case "is favorite", "isfavorite", "favorite" -> columns[FAVORITE] = i;
+                case "total cm", "totalcm" -> columns[TOTAL_CM] = i;
+                case "timestamp" -> columns[TIMESTAMP] = i;
+                default -> {
+                    // Other columns are ignored.
+                }
+            }
+        }
+        return columns[INPUT] < 0 ? null : columns;
+    }
+
+    /** The field of {@code fields} in {@code column}, or null if there is none. */
+    public static String field(List<String> fields, int[] columns, int column) {
+        int index = columns[column];
+        return index >= 0 && index < fields.size() ? fields.get(index) : null;
+    }
+
+    /**
+     * Builds an entry from text fields; any but {@code input} may be null or empty.
+     *
+     * @param now The timestamp to use when the line has none.
+     */
+    public HistoryEntry toEntry(String input, String output, String isFavorite, String totalCm, String timestamp, long now)
+            throws RowException {
+        input = input == null ? "" : input.trim();
+        output = output == null ? "" : output.trim();
+        if (input.isEmpty()) {
+            throw new RowException("No input");
+        }
+        boolean favorite = parseFavorite(isFavorite);
+        long time = isBlank(timestamp) ? now : parseLong(timestamp, "Timestamp");
+
+        HistoryEntry entry;
+        if (output.isEmpty()) {
+            if (parser.parseMeasurement(input) != MeasurementParser.OK) {
+                throw new RowException("No output, and the input is not a measurement");
+            }
+            Length length = Length.ofUnits(parser.getTotalUnits());
+            entry = HistoryEntry.kolToCm(length, input, ConversionUtils.formatCm(length.toCm()), time);
+        } else {
+            double cm;
+            if (!isBlank(totalCm)) {
+                cm = parseDouble(totalCm, "Total cm");
+            } else if (parser.parseMeasurement(output) == MeasurementParser.OK) {
+                cm = Length.unitsToCm(parser.getTotalUnits());
+            } else {
+                throw new RowException("No total, and the output is not a measurement");
+            }
+            entry = new HistoryEntry(input, output, cm, time, false);
+        }
+        entry.setFavorite(favorite);
+        return entry;
+    }
+
+    private static boolean parseFavorite(String text) throws RowException {
+        if (isBlank(text)) {
+            return false;
+        }
+        switch (text.trim().toLowerCase(Locale.ROOT)) {
+            case "true", "1", "yes" -> {
+                return true;
+            }
+            case "false", "0", "no" -> {
+                return false;
+            }
+            default -> throw new RowException("Is Favorite must be true or false");
+        }
+    }
+
+    private static long parseLong(String text, String name) throws RowException {
+        try {
+            long value = Long.parseLong(text.trim());
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        throw new RowException(name + " must be a whole number of milliseconds");
+    }
+
+    private static double parseDouble(String text, String name) throws RowException {
+        try {
+            double value = Double.parseDouble(text.trim());
+            if (value >= 0 && !Double.isInfinite(value)) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        throw new RowException(name + " must be a number of at least 0");
+    }
+
+    private static boolean isBlank(String text) {
+        return text == null || text.trim().isEmpty();
+    }
+}
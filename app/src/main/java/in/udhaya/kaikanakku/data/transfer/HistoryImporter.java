@@ -0,0 +1,300 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.data.db.HistoryWriter;
+
+/**
+ * Imports history from a CSV file (as exported, or saved from a spreadsheet) or a JSON Lines
+ * file with one object per line, keyed by the history_table column names.
+ *
+ * The stream is read and parsed on the calling thread, one line at a time, into chunks of
+ * {@link #CHUNK_ROWS} entries. Each chunk is inserted by {@link HistoryWriter#insertAll} as one
+ * transaction with one prepared statement, so the database commits, and the UI refreshes, once
+ * per chunk. While a chunk commits on the writer thread the next one is parsed here; at most
+ * two chunks are held in memory. Duplicates, within the file or of entries already saved, are
+ * skipped by the unique contentHash index. Lines that cannot be imported are counted and the
+ * first {@link #MAX_REPORTED_REJECTIONS} are reported with their line numbers.
+ */
+public final class HistoryImporter {
+
+    static final int CHUNK_ROWS = 2000;
+    static final int MAX_REPORTED_REJECTIONS = 100;
+
+    public enum Format {
+        CSV,
+        JSON_LINES;
+
+        /** Guesses the format from a file's MIME type and name; CSV unless either says JSON. */
+        public static Format of(String mimeType, String displayName) {
+            String type = mimeType == null ? "" : mimeType.toLowerCase(Locale.ROOT);
+            String name = displayName == null ? "" : displayName.toLowerCase(Locale.ROOT);
+            if (type.contains("json") || name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) {
+                return JSON_LINES;
+            }
+            return CSV;
+        }
+    }
+
+    /** A line that was not imported. */
+    public static final class Rejection {
+        public final int line;
+        public final String reason;
+
+        Rejection(int line, String reason) {
+            this.line = line;
+            this.reason = reason;
+        }
+    }
+
+    /** How far an import has got; the last one reported has {@link #done} set. */
+    public static final class Progress {
+        public final long bytesRead;
+        /** The size of the file, or -1 if unknown. */
+        public final long totalBytes;
+        /** Lines read, not counting a header or blank lines. */
+        public final int read;
+        public final int inserted;
+        public final int rejected;
+        /** The first rejected lines, at most {@link #MAX_REPORTED_REJECTIONS}. */
+        public final List<Rejection> rejections;
+        public final boolean done;
+
+        Progress(long bytesRead, long totalBytes, int read, int inserted, int rejected, List<Rejection> rejections,
+                 boolean done) {
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.read = read;
+            this.inserted = inserted;
+            this.rejected = rejected;
+            this.rejections = rejections;
+            this.done = done;
+        }
+
+        /** Lines that were valid but already in the history, or repeated in the file. */
+        public int duplicates() {
+            return read - rejected - inserted;
+        }
+
+        /** Completion from 0 to 100, by bytes read; 0 while the size is unknown. */
+        public int percent() {
+            if (done) return 100;
+            return totalBytes > 0 ? (int) Math.min(99, 100 * bytesRead / totalBytes) : 0;
+        }
+    }
+
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    private final HistoryWriter writer;
+    private final HistoryImportRows rows = new HistoryImportRows();
+
+    private CountingInputStream counted;
+    private long totalBytes;
+    private long now;
+    private ProgressListener listener;
+
+    private List<HistoryEntry> chunk = new ArrayList<>(CHUNK_ROWS);
+    private Future<Integer> committing;
+    private int read;
+    private int inserted;
+    private int rejected;
+    private final List<Rejection> rejections = new ArrayList<>();
+
+    /** An importer for one file; create a new one for each import. */
+    public HistoryImporter(HistoryWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Runs the import, blocking until the last chunk is committed. Call on a background thread.
+     * If cancelled, the chunks already committed stay imported.
+     *
+     * @param totalBytes  The size of the stream, for progress; -1 if unknown.
+     * @param now         The timestamp for lines without one.
+     * @param isCancelled checked between chunks.
+     * @return The final progress, or null if cancelled.
+     */
+    public Progress run(InputStream in, Format format, long totalBytes, long now, ProgressListener listener,
+                        BooleanSupplier isCancelled) throws IOException, InterruptedException {
+        this.counted = new CountingInputStream(in);
+        this.totalBytes = totalBytes;
+        this.now = now;
+        this.listener = listener;
+        Reader reader = new InputStreamReader(counted, StandardCharsets.UTF_8);
+        boolean completed = format == Format.CSV ? readCsv(reader, isCancelled) : readJsonLines(reader, isCancelled);
+        if (!completed) {
+            waitForCommit();
+            return null;
+        }
+        commitChunk();
+        waitForCommit();
+        Progress result = progress(true);
+        listener.onProgress(result);
+        return result;
+    }
+
+    private boolean readCsv(Reader reader, BooleanSupplier isCancelled) throws IOException, InterruptedException {
+        HistoryCsv.RecordReader records = new HistoryCsv.RecordReader(reader);
+        List<String> fields = new ArrayList<>();
+        if (!records.next(fields)) {
+            return true;
+        }
+        int[] columns = HistoryImportRows.columnsOf(fields);
+        boolean hasRow = columns == null;
+        if (columns == null) {
+            columns = HistoryImportRows.DEFAULT_COLUMNS;
+        }
+        while (hasRow || records.next(fields)) {
+            hasRow = false;
+            try {
+                add(rows.toEntry(
+                        HistoryImportRows.field(fields, columns, HistoryImportRows.INPUT),
+                        HistoryImportRows.field(fields, columns, HistoryImportRows.OUTPUT),
+                        HistoryImportRows.field(fields, columns, HistoryImportRows.FAVORITE),
+                        HistoryImportRows.field(fields, columns, HistoryImportRows.TOTAL_CM),
+                        HistoryImportRows.field(fields, columns, HistoryImportRows.TIMESTAMP),
+                        now));
+            } catch (HistoryImportRows.RowException e) {
+                reject(records.getLine(), e.getMessage());
+            }
+            if (chunk.size() == CHUNK_ROWS && !commitChunk(isCancelled)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readJsonLines(Reader reader, BooleanSupplier isCancelled) throws IOException, InterruptedException {
+        BufferedReader lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                JSONObject object = new JSONObject(line);
+                add(rows.toEntry(
+                        text(object, "inputText"),
+                        text(object, "outputText"),
+                        text(object, "isFavorite"),
+                        text(object, "totalCm"),
+                        text(object, "timestamp"),
+                        now));
+            } catch (JSONException e) {
+                reject(lineNumber, "Not a JSON object");
+            } catch (HistoryImportRows.RowException e) {
+                reject(lineNumber, e.getMessage());
+            }
+            if (chunk.size() == CHUNK_ROWS && !commitChunk(isCancelled)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String text(JSONObject object, String key) {
+        Object value = object.opt(key);
+        return value == null || value == JSONObject.NULL ? null : value.toString();
+    }
+
+    private void add(HistoryEntry entry) {
+        read++;
+        chunk.add(entry);
+    }
+
+    private void reject(int line, String reason) {
+        read++;
+        rejected++;
+        if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+            rejections.add(new Rejection(line, reason));
+        }
+    }
+
+    /** Hands a full chunk to the writer and reports progress; false if cancelled instead. */
+    private boolean commitChunk(BooleanSupplier isCancelled) throws InterruptedException {
+        if (isCancelled.getAsBoolean()) {
+            return false;
+        }
+        commitChunk();
+        listener.onProgress(progress(false));
+        return true;
+    }
+
+    private void commitChunk() throws InterruptedException {
+        // Wait for the previous chunk first, so no more than one is queued at a time.
+        waitForCommit();
+        if (!chunk.isEmpty()) {
+            committing = writer.insertAll(chunk);
+            chunk = new ArrayList<>(CHUNK_ROWS);
+        }
+    }
+
+    private void waitForCommit() throws InterruptedException {
+        if (committing == null) {
+            return;
+        }
+        try {
+            inserted += committing.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not save imported entries", e.getCause());
+        } finally {
+            committing = null;
+        }
+    }
+
+    private Progress progress(boolean done) {
+        return new Progress(counted.count, totalBytes, read, inserted, rejected,
+                Collections.unmodifiableList(new ArrayList<>(rejections)), done);
+    }
+
+    /** Counts the bytes read, for progress. */
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
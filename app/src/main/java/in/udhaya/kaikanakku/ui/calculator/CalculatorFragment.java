@@ -2,7 +2,6 @@ package in.udhaya.kaikanakku.ui.calculator;
 
 import android.os.Bundle;
 import android.text.Editable;
-import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -20,6 +19,7 @@ import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.tabs.TabLayout;
 import in.udhaya.kaikanakku.R;
 import in.udhaya.kaikanakku.util.CalculatorUtils;
+import in.udhaya.kaikanakku.util.MeasurementParser;
 
 /**
  * A fragment that provides a UI for users to perform addition, subtraction, and multiplication on
@@ -33,11 +33,13 @@ public class CalculatorFragment extends Fragment {
     private EditText kolInputB, viralInputB, cmInputB;
     private EditText kolInputMultiply, viralInputMultiply, cmInputMultiply;
     private EditText multiplierInput;
-    private Button addButton, subtractButton, multiplyButton;
+    private EditText expressionInput;
+    private Button addButton, subtractButton, multiplyButton, evaluateButton;
     private CardView resultCard;
-    private TextView resultTextView;
+    private TextView resultTextView, expressionPreviewText;
     private TabLayout tabLayout;
-    private LinearLayout addSubtractLayout, multiplyLayout;
+    private LinearLayout addSubtractLayout, multiplyLayout, expressionLayout;
+    private final MeasurementParser parser = new MeasurementParser();
 
     public CalculatorFragment() {
         // Required empty public constructor
@@ -92,6 +94,11 @@ public class CalculatorFragment extends Fragment {
         tabLayout = view.findViewById(R.id.tab_layout);
         addSubtractLayout = view.findViewById(R.id.add_subtract_layout);
         multiplyLayout = view.findViewById(R.id.multiply_layout);
+
+        expressionLayout = view.findViewById(R.id.expression_layout);
+        expressionInput = view.findViewById(R.id.edit_text_expression);
+        expressionPreviewText = view.findViewById(R.id.text_view_expression_preview);
+        evaluateButton = view.findViewById(R.id.button_evaluate);
     }
 
     /**
@@ -101,6 +108,7 @@ public class CalculatorFragment extends Fragment {
         addButton.setOnClickListener(v -> performCalculation(CalculatorViewModel.Operation.ADD));
         subtractButton.setOnClickListener(v -> performCalculation(CalculatorViewModel.Operation.SUBTRACT));
         multiplyButton.setOnClickListener(v -> performCalculation(CalculatorViewModel.Operation.MULTIPLY));
+        evaluateButton.setOnClickListener(v -> performCalculation(CalculatorViewModel.Operation.EXPRESSION));
     }
 
     /**
@@ -121,6 +129,10 @@ public class CalculatorFragment extends Fragment {
             }
         });
 
+        viewModel.getExpressionPreview().observe(getViewLifecycleOwner(), preview -> {
+            expressionPreviewText.setText(preview != null ? preview : "");
+        });
+
         viewModel.getSaveStatus().observe(getViewLifecycleOwner(), message -> {
             if (message != null && !message.isEmpty()) {
                 // A subtle confirmation that the result was saved.
@@ -220,13 +232,10 @@ public class CalculatorFragment extends Fragment {
         tabLayout.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
             @Override
             public void onTabSelected(TabLayout.Tab tab) {
-                if (tab.getPosition() == 0) {
-                    addSubtractLayout.setVisibility(View.VISIBLE);
-                    multiplyLayout.setVisibility(View.GONE);
-                } else {
-                    addSubtractLayout.setVisibility(View.GONE);
-                    multiplyLayout.setVisibility(View.VISIBLE);
-                }
+                int position = tab.getPosition();
+                addSubtractLayout.setVisibility(position == 0 ? View.VISIBLE : View.GONE);
+                multiplyLayout.setVisibility(position == 1 ? View.VISIBLE : View.GONE);
+                expressionLayout.setVisibility(position == 2 ? View.VISIBLE : View.GONE);
             }
 
             @Override
@@ -246,22 +255,22 @@ public class CalculatorFragment extends Fragment {
     private void performCalculation(CalculatorViewModel.Operation operation) {
         resultCard.setVisibility(View.GONE);
 
-        if (operation == CalculatorViewModel.Operation.MULTIPLY) {
+        if (operation == CalculatorViewModel.Operation.EXPRESSION) {
+            viewModel.calculate(operation, expressionInput.getText());
+        } else if (operation == CalculatorViewModel.Operation.MULTIPLY) {
             CalculatorUtils.Measurement measurement = readAndValidateMeasurement(kolInputMultiply, viralInputMultiply, cmInputMultiply);
             if (measurement == null) return; // Validation failed
 
-            double multiplier;
-            try {
-                String multiplierStr = multiplierInput.getText().toString();
-                if (TextUtils.isEmpty(multiplierStr)) {
-                    viewModel.calculate(operation, measurement, 0);
-                    return;
-                }
-                multiplier = Double.parseDouble(multiplierStr);
-            } catch (NumberFormatException e) {
+            int status = parser.parseNumber(multiplierInput.getText());
+            if (status == MeasurementParser.EMPTY) {
+                viewModel.calculate(operation, measurement, 0);
+                return;
+            }
+            if (status != MeasurementParser.OK) {
                 Snackbar.make(requireView(), R.string.error_invalid_multiplier, Snackbar.LENGTH_LONG).show();
                 return;
             }
+            double multiplier = parser.getDouble();
 
             viewModel.calculate(operation, measurement, multiplier);
 
@@ -282,50 +291,59 @@ public class CalculatorFragment extends Fragment {
      * @return A valid Measurement object, or null if parsing or validation fails.
      */
     private CalculatorUtils.Measurement readAndValidateMeasurement(EditText kolEditText, EditText viralEditText, EditText cmEditText) {
-        int kol = 0;
-        int viral = 0;
-        double cm = 0.0;
-
-        try {
-            String kolStr = kolEditText.getText().toString();
-            if (!TextUtils.isEmpty(kolStr)) {
-                kol = Integer.parseInt(kolStr);
-            }
-
-            String viralStr = viralEditText.getText().toString();
-            if (!TextUtils.isEmpty(viralStr)) {
-                viral = Integer.parseInt(viralStr);
-            }
-
-            String cmStr = cmEditText.getText().toString();
-            if (!TextUtils.isEmpty(cmStr)) {
-                cm = Double.parseDouble(cmStr);
-            }
-
-            // --- Input Validation ---
-            if (viral > 23) {
-                Snackbar.make(requireView(), R.string.error_invalid_viral_input, Snackbar.LENGTH_LONG).show();
-                viralEditText.requestFocus();
-                viralEditText.setError(getString(R.string.error_invalid_viral_input));
-                return null;
-            }
+        // The shared parser reads each Editable directly, without creating Strings or throwing.
+        int kol = readInt(kolEditText);
+        int viral = readInt(viralEditText);
+        int cmStatus = parser.parseNumber(cmEditText.getText());
+        if (kol < 0 || viral < 0 || (cmStatus != MeasurementParser.OK && cmStatus != MeasurementParser.EMPTY)) {
+            Snackbar.make(requireView(), R.string.error_invalid_number_format, Snackbar.LENGTH_LONG).show();
+            return null;
+        }
+        double cm = parser.getDouble();
 
-            if (cm >= 3.0) {
-                Snackbar.make(requireView(), R.string.error_invalid_kol_cm_input, Snackbar.LENGTH_LONG).show();
-                cmEditText.requestFocus();
-                cmEditText.setError(getString(R.string.error_invalid_kol_cm_input));
-                return null;
-            }
+        // --- Input Validation ---
+        if (viral > 23) {
+            Snackbar.make(requireView(), R.string.error_invalid_viral_input, Snackbar.LENGTH_LONG).show();
+            viralEditText.requestFocus();
+            viralEditText.setError(getString(R.string.error_invalid_viral_input));
+            return null;
+        }
 
-        } catch (NumberFormatException e) {
-            Snackbar.make(requireView(), R.string.error_invalid_number_format, Snackbar.LENGTH_LONG).show();
+        if (cm >= 3.0) {
+            Snackbar.make(requireView(), R.string.error_invalid_kol_cm_input, Snackbar.LENGTH_LONG).show();
+            cmEditText.requestFocus();
+            cmEditText.setError(getString(R.string.error_invalid_kol_cm_input));
             return null;
         }
 
         return new CalculatorUtils.Measurement(kol, viral, cm);
     }
 
+    /**
+     * Reads a whole-number field. An empty field counts as 0.
+     * @return The value, or -1 if the field does not hold a valid whole number.
+     */
+    private int readInt(EditText editText) {
+        int status = parser.parseNumber(editText.getText());
+        if (status == MeasurementParser.EMPTY) {
+            return 0;
+        }
+        return status == MeasurementParser.OK ? parser.getInt() : -1;
+    }
+
     private void setupInputValidation() {
+        // The expression tab shows its result live while typing.
+        expressionInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override
+            public void afterTextChanged(Editable s) {
+                viewModel.previewExpression(s);
+            }
+        });
+
         addDecimalValidation(cmInputA);
         addDecimalValidation(cmInputB);
         addDecimalValidation(cmInputMultiply);
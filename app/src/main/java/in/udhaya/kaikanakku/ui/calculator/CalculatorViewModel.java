@@ -10,6 +10,10 @@ import in.udhaya.kaikanakku.data.db.HistoryEntry;
 import in.udhaya.kaikanakku.data.repository.HistoryRepository;
 import in.udhaya.kaikanakku.util.CalculatorUtils;
 import in.udhaya.kaikanakku.util.ConversionUtils;
+import in.udhaya.kaikanakku.util.Length;
+import in.udhaya.kaikanakku.util.MeasurementExpression;
+
+import java.text.ParseException;
 
 /**
  * ViewModel for the CalculatorFragment. It handles all business logic for performing
@@ -21,7 +25,8 @@ public class CalculatorViewModel extends AndroidViewModel {
     public enum Operation {
         ADD,
         SUBTRACT,
-        MULTIPLY
+        MULTIPLY,
+        EXPRESSION
     }
 
     private final HistoryRepository historyRepository;
@@ -29,11 +34,10 @@ public class CalculatorViewModel extends AndroidViewModel {
     private final MutableLiveData<String> result = new MutableLiveData<>();
     private final MutableLiveData<String> error = new MutableLiveData<>();
     private final MutableLiveData<String> saveStatus = new MutableLiveData<>();
+    private final MutableLiveData<String> expressionPreview = new MutableLiveData<>();
 
     // Holds the details of the last successful calculation for history saving.
-    private String lastInputText = null;
-    private String lastOutputText = null;
-    private double lastTotalCm = 0.0;
+    private HistoryEntry lastEntry = null;
 
     public CalculatorViewModel(@NonNull Application application) {
         super(application);
@@ -54,10 +58,17 @@ public class CalculatorViewModel extends AndroidViewModel {
         return saveStatus;
     }
 
+    /**
+     * The live result of the expression being typed, or null while it is incomplete or invalid.
+     */
+    public LiveData<String> getExpressionPreview() {
+        return expressionPreview;
+    }
+
 
     /**
      * Performs the core calculation (add or subtract) on two measurements.
-     * It converts both measurements to a base unit (cm) for accuracy, performs
+     * It converts both measurements to exact fixed-point lengths, performs
      * the operation, formats the result, and automatically saves it to history.
      *
      * @param operation    The operation to perform (ADD or SUBTRACT).
@@ -65,42 +76,42 @@ public class CalculatorViewModel extends AndroidViewModel {
      * @param b            The second measurement (Value B).
      */
     public void calculate(Operation operation, CalculatorUtils.Measurement a, CalculatorUtils.Measurement b) {
-        // Convert both inputs to the base unit (cm) before calculation.
-        double cmA = ConversionUtils.kolToCm(a.kol, a.viral, a.cm);
-        double cmB = ConversionUtils.kolToCm(b.kol, b.viral, b.cm);
+        // Convert both inputs to exact lengths before calculation.
+        Length lengthA = a.toLength();
+        Length lengthB = b.toLength();
 
-        if (cmA < 0 || cmB < 0) {
+        if (lengthA.isNegative() || lengthB.isNegative()) {
             error.setValue(getApplication().getString(R.string.error_negative_input));
             return;
         }
 
-        double resultCm;
+        Length resultLength;
         String operationSymbol;
 
         if (operation == Operation.ADD) {
-            resultCm = CalculatorUtils.add(cmA, cmB);
+            resultLength = CalculatorUtils.add(lengthA, lengthB);
             operationSymbol = " + ";
         } else { // SUBTRACT
-            if (cmB > cmA) {
+            if (lengthB.compareTo(lengthA) > 0) {
                 error.setValue(getApplication().getString(R.string.error_b_greater_than_a));
                 return;
             }
-            resultCm = CalculatorUtils.subtract(cmA, cmB);
+            resultLength = CalculatorUtils.subtract(lengthA, lengthB);
             operationSymbol = " - ";
         }
 
         // Format the result back into the Kol system for display.
-        String formattedResult = ConversionUtils.cmToKolFormatted(resultCm, true, false);
+        String formattedResult = ConversionUtils.cmToKolFormatted(resultLength, true, false);
         result.setValue(formattedResult);
 
-        if (cmA > 0 && cmB > 0) {
+        if (!lengthA.isZero() && !lengthB.isZero()) {
             // Prepare the text for history logging.
             String inputA = ConversionUtils.formatKolViralCmInput(a.kol, a.viral, a.cm);
             String inputB = ConversionUtils.formatKolViralCmInput(b.kol, b.viral, b.cm);
 
-            lastInputText = "(" + inputA + ")" + operationSymbol + "(" + inputB + ")";
-            lastOutputText = formattedResult;
-            lastTotalCm = resultCm;
+            int kind = operation == Operation.ADD ? HistoryEntry.KIND_ADD : HistoryEntry.KIND_SUBTRACT;
+            lastEntry = HistoryEntry.calculation(kind, lengthA, lengthB, 1, resultLength,
+                    "(" + inputA + ")" + operationSymbol + "(" + inputB + ")", formattedResult, System.currentTimeMillis());
 
             // Automatically save the successful calculation.
             saveLastResultToHistory();
@@ -119,8 +130,8 @@ public class CalculatorViewModel extends AndroidViewModel {
             return;
         }
 
-        double cm = ConversionUtils.kolToCm(measurement.kol, measurement.viral, measurement.cm);
-        if (cm < 0) {
+        Length length = measurement.toLength();
+        if (length.isNegative()) {
             error.setValue(getApplication().getString(R.string.error_negative_input));
             return;
         }
@@ -130,38 +141,93 @@ public class CalculatorViewModel extends AndroidViewModel {
             return;
         }
 
-        double resultCm = cm * multiplier;
-        String formattedResult = ConversionUtils.cmToKolFormatted(resultCm, true, false);
+        Length resultLength = CalculatorUtils.multiply(length, multiplier);
+        String formattedResult = ConversionUtils.cmToKolFormatted(resultLength, true, false);
         result.setValue(formattedResult);
 
-        if (cm > 0) {
+        if (!length.isZero()) {
             String inputText = ConversionUtils.formatKolViralCmInput(measurement.kol, measurement.viral, measurement.cm);
-            lastInputText = "(" + inputText + ") * " + multiplier;
-            lastOutputText = formattedResult;
-            lastTotalCm = resultCm;
+            lastEntry = HistoryEntry.calculation(HistoryEntry.KIND_MULTIPLY, length, Length.ZERO, multiplier, resultLength,
+                    "(" + inputText + ") * " + multiplier, formattedResult, System.currentTimeMillis());
+
+            saveLastResultToHistory();
+        }
+    }
+
+    /**
+     * Re-evaluates the expression being typed, for the live preview. Compiled expressions are
+     * cached by source text, so calling this on every keystroke only compiles new text once.
+     * Nothing is saved to history and no error is reported.
+     *
+     * @param source The expression text, e.g. "(3 kol 4 viral) + 2 × (1 kol 10 viral) − 5 cm".
+     */
+    public void previewExpression(CharSequence source) {
+        Length value = evaluateExpression(source);
+        if (value == null || value.isNegative()) {
+            expressionPreview.setValue(null);
+        } else {
+            expressionPreview.setValue(ConversionUtils.cmToKolFormatted(value, true, false));
+        }
+    }
+
+    /**
+     * Evaluates a multi-operand measurement expression, shows the result and saves it to history.
+     *
+     * @param operation The operation to perform (EXPRESSION).
+     * @param source    The expression text.
+     */
+    public void calculate(Operation operation, CharSequence source) {
+        if (operation != Operation.EXPRESSION) {
+            return;
+        }
+
+        Length resultLength = evaluateExpression(source);
+        if (resultLength == null) {
+            error.setValue(getApplication().getString(R.string.error_invalid_expression));
+            return;
+        }
+        if (resultLength.isNegative()) {
+            error.setValue(getApplication().getString(R.string.error_negative_result));
+            return;
+        }
+
+        String formattedResult = ConversionUtils.cmToKolFormatted(resultLength, true, false);
+        result.setValue(formattedResult);
+
+        if (!resultLength.isZero()) {
+            lastEntry = HistoryEntry.calculation(HistoryEntry.KIND_EXPRESSION, Length.ZERO, Length.ZERO, 1, resultLength,
+                    source.toString().trim(), formattedResult, System.currentTimeMillis());
 
             saveLastResultToHistory();
         }
     }
 
+    /**
+     * Compiles (or fetches from the cache) and evaluates an expression.
+     * @return The result, or null if the expression is invalid or cannot be evaluated.
+     */
+    private Length evaluateExpression(CharSequence source) {
+        if (source == null) {
+            return null;
+        }
+        try {
+            return MeasurementExpression.compileCached(source).evaluateLength();
+        } catch (ParseException | ArithmeticException e) {
+            return null;
+        }
+    }
+
     /**
      * Saves the last successfully calculated result to the history database.
      * This is now called automatically after each successful calculation.
      */
     private void saveLastResultToHistory() {
-        if (lastInputText == null || lastOutputText == null || lastInputText.trim().isEmpty() || lastOutputText.trim().isEmpty() || lastTotalCm == 0.0) {
+        if (lastEntry == null || lastEntry.getInputText().trim().isEmpty() || lastEntry.getOutputText().trim().isEmpty() || lastEntry.getTotalCm() == 0.0) {
             return;
         }
 
-        HistoryEntry entry = new HistoryEntry(
-                lastInputText,
-                lastOutputText,
-                lastTotalCm,
-                System.currentTimeMillis(),
-                false // New entries are not favorited by default.
-        );
-
-        historyRepository.insert(entry);
+        // New entries are not favorited by default.
+        historyRepository.insert(lastEntry);
         saveStatus.setValue(getApplication().getString(R.string.status_saved_to_history));
         clearLastCalculation();
     }
@@ -178,8 +244,6 @@ public class CalculatorViewModel extends AndroidViewModel {
      * Resets the details of the last calculation to prevent duplicate saves.
      */
     private void clearLastCalculation() {
-        lastInputText = null;
-        lastOutputText = null;
-        lastTotalCm = 0.0;
+        lastEntry = null;
     }
 }
\ No newline at end of file
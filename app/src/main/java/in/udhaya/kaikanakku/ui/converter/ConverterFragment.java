@@ -15,6 +15,7 @@ import androidx.annotation.Nullable;
 import androidx.cardview.widget.CardView;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -25,13 +26,18 @@ import com.google.android.material.switchmaterial.SwitchMaterial;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textview.MaterialTextView;
 
-import java.util.Objects;
-
 import in.udhaya.kaikanakku.R;
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
 import in.udhaya.kaikanakku.ui.history.HistoryAdapter;
+import in.udhaya.kaikanakku.ui.history.HistoryListModel;
+import in.udhaya.kaikanakku.util.Length;
+import in.udhaya.kaikanakku.util.MeasurementParser;
 
 public class ConverterFragment extends Fragment {
 
+    /** Argument: id of a history entry to load into the converter and convert again. */
+    public static final String ARG_HISTORY_ENTRY_ID = "historyEntryId";
+
     private ConverterViewModel viewModel;
     private TextInputEditText cmInput, kolInput, viralInput, kolCmInput;
     private LinearLayout cmToKolLayout, kolToCmLayout;
@@ -42,6 +48,7 @@ public class ConverterFragment extends Fragment {
     private RecyclerView recentHistoryRecyclerView;
     private HistoryAdapter recentHistoryAdapter;
     private ChipGroup recommendationChipGroup;
+    private final MeasurementParser parser = new MeasurementParser();
 
     @Nullable
     @Override
@@ -98,27 +105,42 @@ public class ConverterFragment extends Fragment {
 
     private void setupConvertButton() {
         convertButton.setOnClickListener(v -> {
-            try {
-                if (modeSwitch.isChecked()) { // Kol to CM
-                    int kol = Integer.parseInt(Objects.requireNonNull(kolInput.getText()).toString().isEmpty() ? "0" : kolInput.getText().toString());
-                    int viral = Integer.parseInt(Objects.requireNonNull(viralInput.getText()).toString().isEmpty() ? "0" : viralInput.getText().toString());
-                    double cm = Double.parseDouble(Objects.requireNonNull(kolCmInput.getText()).toString().isEmpty() ? "0.0" : kolCmInput.getText().toString());
-                    viewModel.convertKolToCm(kol, viral, cm);
-                } else { // CM to Kol
-                    String cmText = Objects.requireNonNull(cmInput.getText()).toString();
-                    if(cmText.isEmpty()){
-                        viewModel.convertCmToKol(0);
-                        return;
-                    }
-                    double cm = Double.parseDouble(cmText);
-                    viewModel.convertCmToKol(cm);
+            if (modeSwitch.isChecked()) { // Kol to CM
+                int kol = readInt(kolInput);
+                int viral = readInt(viralInput);
+                int cmStatus = parser.parseNumber(kolCmInput.getText());
+                if (kol < 0 || viral < 0 || (cmStatus != MeasurementParser.OK && cmStatus != MeasurementParser.EMPTY)) {
+                    Snackbar.make(requireView(), R.string.error_invalid_number_format, Snackbar.LENGTH_SHORT).show();
+                    return;
+                }
+                viewModel.convertKolToCm(kol, viral, parser.getDouble());
+            } else { // CM to Kol
+                int status = parser.parseNumber(cmInput.getText());
+                if (status == MeasurementParser.EMPTY) {
+                    viewModel.convertCmToKol(0);
+                    return;
                 }
-            } catch (NumberFormatException e) {
-                Snackbar.make(requireView(), R.string.error_invalid_number_format, Snackbar.LENGTH_SHORT).show();
+                if (status != MeasurementParser.OK) {
+                    Snackbar.make(requireView(), R.string.error_invalid_number_format, Snackbar.LENGTH_SHORT).show();
+                    return;
+                }
+                viewModel.convertCmToKol(parser.getDouble());
             }
         });
     }
 
+    /**
+     * Reads a whole-number field. An empty field counts as 0.
+     * @return The value, or -1 if the field does not hold a valid whole number.
+     */
+    private int readInt(EditText editText) {
+        int status = parser.parseNumber(editText.getText());
+        if (status == MeasurementParser.EMPTY) {
+            return 0;
+        }
+        return status == MeasurementParser.OK ? parser.getInt() : -1;
+    }
+
     private void setupInputAutoAdvance() {
         kolInput.addTextChangedListener(new TextWatcher() {
             @Override
@@ -145,8 +167,42 @@ public class ConverterFragment extends Fragment {
 
     private void setupRecentHistory() {
         recentHistoryRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
-        recentHistoryAdapter = new HistoryAdapter(null);
+        HistoryListModel recentHistory = viewModel.getRecentHistory();
+        recentHistoryAdapter = new HistoryAdapter(null, recentHistory);
         recentHistoryRecyclerView.setAdapter(recentHistoryAdapter);
+        // The list changes in place, row by row; the strip is only shown while it has entries.
+        recentHistory.setCallback(new AdapterListUpdateCallback(recentHistoryAdapter));
+        recentHistoryAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                updateRecentHistoryVisibility();
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                updateRecentHistoryVisibility();
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                updateRecentHistoryVisibility();
+            }
+        });
+        updateRecentHistoryVisibility();
+    }
+
+    private void updateRecentHistoryVisibility() {
+        View fragmentView = getView();
+        if (fragmentView == null) return;
+        boolean isEmpty = viewModel.getRecentHistory().isEmpty();
+        fragmentView.findViewById(R.id.layout_recent_history).setVisibility(isEmpty ? View.GONE : View.VISIBLE);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // The list outlives the view; stop it from updating an adapter that is gone.
+        viewModel.getRecentHistory().setCallback(null);
     }
 
     private void observeViewModel() {
@@ -157,41 +213,49 @@ public class ConverterFragment extends Fragment {
             }
         });
 
+        viewModel.getReusedEntry().observe(getViewLifecycleOwner(), entry -> {
+            if (entry != null) {
+                reuseEntry(entry);
+                viewModel.clearReusedEntry();
+            }
+        });
+
         viewModel.getError().observe(getViewLifecycleOwner(), error -> {
             if (error != null && !error.isEmpty()) {
                 Snackbar.make(requireView(), error, Snackbar.LENGTH_LONG).show();
                 viewModel.clearError();
             }
         });
-
-        viewModel.getRecentHistory().observe(getViewLifecycleOwner(), historyEntries -> {
-            View fragmentView = getView(); // Get the root view of the fragment
-            if (fragmentView == null) return; // Exit if the view is not available
-
-            if (historyEntries != null && !historyEntries.isEmpty()) {
-                recentHistoryAdapter.submitList(historyEntries);
-                fragmentView.findViewById(R.id.layout_recent_history).setVisibility(View.VISIBLE);
-            } else {
-                fragmentView.findViewById(R.id.layout_recent_history).setVisibility(View.GONE);
-            }
-        });
     }
 
     private void handleArguments() {
         Bundle args = getArguments();
-        if (args != null) {
-            boolean isKolToCm = args.getBoolean("IS_KOL_TO_CM", false);
-            modeSwitch.setChecked(isKolToCm);
-
-            if (isKolToCm) {
-                kolInput.setText(String.valueOf(args.getInt("KOL", 0)));
-                viralInput.setText(String.valueOf(args.getInt("VIRAL", 0)));
-                kolCmInput.setText(String.valueOf(args.getDouble("CM", 0.0)));
-            } else {
-                cmInput.setText(String.valueOf(args.getDouble("CM_TOTAL", 0.0)));
-            }
-            convertButton.performClick();
+        if (args != null && args.getLong(ARG_HISTORY_ENTRY_ID, -1) >= 0) {
+            viewModel.loadEntryForReuse(args.getLong(ARG_HISTORY_ENTRY_ID));
+            // Handled once; don't load it again when the view is recreated.
+            args.remove(ARG_HISTORY_ENTRY_ID);
+        }
+    }
+
+    /**
+     * Fills the inputs from a history entry's stored numbers and converts. Conversions go back
+     * the way they were made; calculator results are converted from their total in cm.
+     */
+    private void reuseEntry(HistoryEntry entry) {
+        boolean isKolToCm = entry.getKind() == HistoryEntry.KIND_KOL_TO_CM;
+        modeSwitch.setChecked(isKolToCm);
+
+        if (isKolToCm) {
+            Length length = Length.ofUnits(entry.getOperandA());
+            kolInput.setText(String.valueOf(length.getKol()));
+            viralInput.setText(String.valueOf(length.getViral()));
+            kolCmInput.setText(String.valueOf(length.getCm()));
+        } else if (entry.getKind() == HistoryEntry.KIND_CM_TO_KOL) {
+            cmInput.setText(String.valueOf(Length.unitsToCm(entry.getOperandA())));
+        } else {
+            cmInput.setText(String.valueOf(entry.getTotalCm()));
         }
+        convertButton.performClick();
     }
 
     private void clearInputsAndResult() {
@@ -1,21 +1,20 @@
 package in.udhaya.kaikanakku.ui.converter;
 
-import android.annotation.SuppressLint;
 import android.app.Application;
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
-import androidx.lifecycle.LiveDataReactiveStreams;
-
-import java.util.List;
-import java.util.Locale;
 
 import in.udhaya.kaikanakku.R;
 import in.udhaya.kaikanakku.data.db.HistoryEntry;
 import in.udhaya.kaikanakku.data.repository.HistoryRepository;
 import in.udhaya.kaikanakku.data.repository.SettingsRepository;
+import in.udhaya.kaikanakku.ui.history.HistoryListModel;
 import in.udhaya.kaikanakku.util.ConversionUtils;
+import in.udhaya.kaikanakku.util.Length;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
 import io.reactivex.rxjava3.core.Flowable;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
@@ -23,23 +22,45 @@ import io.reactivex.rxjava3.schedulers.Schedulers;
 
 public class ConverterViewModel extends AndroidViewModel {
 
+    private static final String TAG = "ConverterViewModel";
+
     private final HistoryRepository historyRepository;
     private final SettingsRepository settingsRepository;
     private final CompositeDisposable disposables = new CompositeDisposable();
 
     private final MutableLiveData<String> result = new MutableLiveData<>();
     private final MutableLiveData<String> error = new MutableLiveData<>();
-    private final LiveData<List<HistoryEntry>> recentHistory;
-
-    private String lastInputText = null;
-    private String lastOutputText = null;
-    private double lastTotalCm = 0.0;
+    private final HistoryListModel recentHistory = new HistoryListModel(HistoryRepository.RECENT_HISTORY_SIZE);
+    private final MutableLiveData<HistoryEntry> reusedEntry = new MutableLiveData<>();
 
     public ConverterViewModel(@NonNull Application application) {
         super(application);
         historyRepository = HistoryRepository.getInstance(application);
         settingsRepository = SettingsRepository.getInstance(application);
-        recentHistory = LiveDataReactiveStreams.fromPublisher(historyRepository.getRecentHistory());
+        // Changes first, so none is missed while the list is read; they are applied in place.
+        disposables.add(historyRepository.getHistoryChanges()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(change -> {
+                    if (!recentHistory.apply(change)) {
+                        readRecentHistory();
+                    }
+                }));
+        readRecentHistory();
+    }
+
+    // From the cache, which has applied every change the feed has emitted so far; it only
+    // queries the database once its spare entries run out.
+    private void readRecentHistory() {
+        disposables.add(historyRepository.getRecentHistory().firstOrError()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        entries -> {
+                            if (!recentHistory.replace(entries)) {
+                                readRecentHistory();
+                            }
+                        },
+                        // The strip keeps what it shows; it is not worth an error message.
+                        throwable -> Log.e(TAG, "Could not read the recent history.", throwable)));
     }
 
     public LiveData<String> getResult() {
@@ -50,32 +71,66 @@ public class ConverterViewModel extends AndroidViewModel {
         return error;
     }
 
-    public LiveData<List<HistoryEntry>> getRecentHistory() {
+    /**
+     * The newest entries, kept up to date in place. Set the adapter showing them as its
+     * callback while the view exists, and clear it when the view goes.
+     */
+    public HistoryListModel getRecentHistory() {
         return recentHistory;
     }
 
+    /**
+     * A history entry loaded by {@link #loadEntryForReuse(long)}, to be put back into the
+     * inputs. Cleared with {@link #clearReusedEntry()} once handled.
+     */
+    public LiveData<HistoryEntry> getReusedEntry() {
+        return reusedEntry;
+    }
+
+    /**
+     * Loads a history entry by id. Nothing happens if it has been deleted in the meantime.
+     */
+    public void loadEntryForReuse(long id) {
+        disposables.add(
+                historyRepository.getEntry(id)
+                        .subscribeOn(Schedulers.io())
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                reusedEntry::setValue,
+                                throwable -> error.setValue(getApplication().getString(R.string.error_conversion_failed))
+                        )
+        );
+    }
+
+    public void clearReusedEntry() {
+        reusedEntry.setValue(null);
+    }
+
     public void convertCmToKol(double cmValue) {
         if (cmValue < 0) {
             error.setValue(getApplication().getString(R.string.error_negative_input));
             return;
         }
 
+        Length cm = Length.ofCm(cmValue);
         disposables.add(
                 Flowable.combineLatest(
                                 settingsRepository.isPrecisionEnabled(),
                                 settingsRepository.getRoundingMode(),
-                                (isPrecision, roundingMode) -> ConversionUtils.cmToKolFormatted(cmValue, isPrecision, roundingMode.equals(SettingsRepository.ROUND_MODE))
+                                (isPrecision, roundingMode) -> {
+                                    boolean isRounded = roundingMode.equals(SettingsRepository.ROUND_MODE);
+                                    String formatted = ConversionUtils.cmToKolFormatted(cm, isPrecision, isRounded);
+                                    return HistoryEntry.cmToKol(cm, ConversionUtils.formatCm(cmValue), formatted,
+                                            isPrecision, isRounded, System.currentTimeMillis());
+                                }
                         )
                         .subscribeOn(Schedulers.io())
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(
-                                formattedResult -> {
-                                    result.setValue(formattedResult);
-                                    if (cmValue > 0) {
-                                        lastInputText = String.format(Locale.US, "%.2f cm", cmValue);
-                                        lastOutputText = formattedResult;
-                                        lastTotalCm = cmValue;
-                                        saveLastConversionToHistory();
+                                entry -> {
+                                    result.setValue(entry.getOutputText());
+                                    if (!cm.isZero()) {
+                                        saveToHistory(entry);
                                     }
                                 },
                                 throwable -> {
@@ -100,46 +155,29 @@ public class ConverterViewModel extends AndroidViewModel {
             return;
         }
 
-        double totalCm = ConversionUtils.kolToCm(kol, viral, cm);
-        @SuppressLint("DefaultLocale") String formattedResult = String.format(Locale.US, "%.2f cm", totalCm);
+        Length total = Length.of(kol, viral, cm);
+        double totalCm = total.toCm();
+        String formattedResult = ConversionUtils.formatCm(totalCm);
 
         result.setValue(formattedResult);
 
-        if (totalCm > 0) {
-            lastInputText = ConversionUtils.formatKolViralCmInput(kol, viral, cm);
-            lastOutputText = formattedResult;
-            lastTotalCm = totalCm;
-            saveLastConversionToHistory();
+        if (!total.isZero()) {
+            saveToHistory(HistoryEntry.kolToCm(total, ConversionUtils.formatKolViralCmInput(kol, viral, cm),
+                    formattedResult, System.currentTimeMillis()));
         }
     }
 
-    private void saveLastConversionToHistory() {
-        if (lastInputText == null || lastOutputText == null || lastInputText.trim().isEmpty() || lastOutputText.trim().isEmpty() || lastTotalCm == 0.0) {
+    private void saveToHistory(HistoryEntry entry) {
+        if (entry.getInputText().trim().isEmpty() || entry.getOutputText().trim().isEmpty()) {
             return;
         }
-
-        HistoryEntry entry = new HistoryEntry(
-                lastInputText,
-                lastOutputText,
-                lastTotalCm,
-                System.currentTimeMillis(),
-                false
-        );
-
         historyRepository.insert(entry);
-        clearLastConversion();
     }
 
     public void clearError() {
         error.setValue(null);
     }
 
-    private void clearLastConversion() {
-        lastInputText = null;
-        lastOutputText = null;
-        lastTotalCm = 0.0;
-    }
-
     @Override
     protected void onCleared() {
         super.onCleared();
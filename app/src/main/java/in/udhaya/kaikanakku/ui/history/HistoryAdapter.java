@@ -10,8 +10,8 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
+import com.google.android.material.card.MaterialCardView;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -22,16 +22,20 @@ import in.udhaya.kaikanakku.R;
 import in.udhaya.kaikanakku.data.db.HistoryEntry;
 
 /**
- * Adapter for the history RecyclerView. It uses a ListAdapter with a DiffUtil callback
- * for efficient updates when the list of history entries changes.
+ * Adapter for a short list of history entries, e.g. the recent history on the converter
+ * screen. It shows a {@link HistoryListModel}, which reports every change to it row by row
+ * (set an AdapterListUpdateCallback for this adapter as its callback), so nothing is diffed.
  */
-public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.HistoryViewHolder> {
+public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.HistoryViewHolder> {
 
     private final OnHistoryItemInteractionListener listener;
+    private final HistoryListModel entries;
     private int highlightedPosition = -1;
 
     // A payload object to indicate that only the highlight state has changed.
-    private static final Object HIGHLIGHT_PAYLOAD = new Object();
+    static final Object HIGHLIGHT_PAYLOAD = new Object();
+    // Likewise for the selected state, see HistoryPagingAdapter#setSelection.
+    static final Object SELECTION_PAYLOAD = new Object();
 
     /**
      * Interface for handling interactions with items in the history list.
@@ -40,19 +44,33 @@ public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.His
         void onFavoriteClicked(HistoryEntry entry);
         void onItemCopied(HistoryEntry entry, int position);
         void onItemReused(HistoryEntry entry);
+        void onItemLongPressed(HistoryEntry entry);
     }
 
-    public HistoryAdapter(OnHistoryItemInteractionListener listener) {
-        super(DIFF_CALLBACK);
+    public HistoryAdapter(OnHistoryItemInteractionListener listener, @NonNull HistoryListModel entries) {
         this.listener = listener;
+        this.entries = entries;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public int getItemCount() {
+        return entries.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return entries.get(position).getId();
+    }
+
+    public HistoryEntry getItem(int position) {
+        return entries.get(position);
     }
 
     @NonNull
     @Override
     public HistoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        View itemView = LayoutInflater.from(parent.getContext())
-                .inflate(R.layout.item_history, parent, false);
-        return new HistoryViewHolder(itemView);
+        return HistoryViewHolder.create(parent);
     }
 
     /**
@@ -61,9 +79,9 @@ public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.His
     @Override
     public void onBindViewHolder(@NonNull HistoryViewHolder holder, int position) {
         HistoryEntry entry = getItem(position);
-        holder.bind(entry);
+        holder.bind(entry, listener);
         // Set the background based on the highlighted state.
-        holder.updateHighlight();
+        holder.updateHighlight(position == highlightedPosition);
     }
 
     /**
@@ -74,7 +92,7 @@ public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.His
     @Override
     public void onBindViewHolder(@NonNull HistoryViewHolder holder, int position, @NonNull List<Object> payloads) {
         if (payloads.contains(HIGHLIGHT_PAYLOAD)) {
-            holder.updateHighlight();
+            holder.updateHighlight(position == highlightedPosition);
         } else {
             // No specific payload, do a full re-bind.
             super.onBindViewHolder(holder, position, payloads);
@@ -104,16 +122,17 @@ public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.His
     }
 
     /**
-     * The ViewHolder for a single history item.
+     * The ViewHolder for a single history item. It is shared with {@link HistoryPagingAdapter},
+     * so it only depends on the entry it is bound to, not on the adapter.
      */
-    class HistoryViewHolder extends RecyclerView.ViewHolder {
+    static class HistoryViewHolder extends RecyclerView.ViewHolder {
         private final TextView inputText;
         private final TextView outputText;
         private final TextView timestampText;
         private final ImageButton favoriteButton;
         private final ImageButton reuseButton;
 
-        public HistoryViewHolder(@NonNull View itemView) {
+        HistoryViewHolder(@NonNull View itemView) {
             super(itemView);
             inputText = itemView.findViewById(R.id.text_view_input);
             outputText = itemView.findViewById(R.id.text_view_output);
@@ -122,11 +141,18 @@ public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.His
             reuseButton = itemView.findViewById(R.id.button_reuse);
         }
 
+        static HistoryViewHolder create(@NonNull ViewGroup parent) {
+            View itemView = LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.item_history, parent, false);
+            return new HistoryViewHolder(itemView);
+        }
+
         /**
          * Binds a HistoryEntry object to the views in the ViewHolder.
          * @param entry The HistoryEntry to display.
+         * @param listener Receives clicks on the item, or null for a read-only list.
          */
-        public void bind(final HistoryEntry entry) {
+        void bind(final HistoryEntry entry, final OnHistoryItemInteractionListener listener) {
             inputText.setText(entry.getInputText());
             outputText.setText(entry.getOutputText());
 
@@ -142,17 +168,42 @@ public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.His
 
             // Set up click listeners if a listener is provided.
             if (listener != null) {
-                favoriteButton.setOnClickListener(v -> listener.onFavoriteClicked(getItem(getAdapterPosition())));
-                reuseButton.setOnClickListener(v -> listener.onItemReused(getItem(getAdapterPosition())));
-                itemView.setOnClickListener(v -> listener.onItemCopied(getItem(getAdapterPosition()), getAdapterPosition()));
+                favoriteButton.setOnClickListener(v -> listener.onFavoriteClicked(entry));
+                reuseButton.setOnClickListener(v -> listener.onItemReused(entry));
+                itemView.setOnClickListener(v -> listener.onItemCopied(entry, getBindingAdapterPosition()));
+                itemView.setOnLongClickListener(v -> {
+                    listener.onItemLongPressed(entry);
+                    return true;
+                });
             }
         }
 
+        /**
+         * Shows an empty row for an entry that has not been loaded yet (a paging placeholder).
+         */
+        void bindPlaceholder() {
+            inputText.setText(null);
+            outputText.setText(null);
+            timestampText.setText(null);
+            favoriteButton.setImageResource(R.drawable.ic_star_outline);
+            favoriteButton.setOnClickListener(null);
+            reuseButton.setOnClickListener(null);
+            itemView.setOnClickListener(null);
+            itemView.setOnLongClickListener(null);
+        }
+
+        /**
+         * Shows whether the entry is selected for a bulk action, as the card's checked state.
+         */
+        void updateSelected(boolean selected) {
+            ((MaterialCardView) itemView).setChecked(selected);
+        }
+
         /**
          * Updates the background of the item view based on whether it is highlighted.
          */
-        public void updateHighlight() {
-            if (getAdapterPosition() == highlightedPosition) {
+        void updateHighlight(boolean highlighted) {
+            if (highlighted) {
                 // Use a color from resources for better theme support.
                 itemView.setBackgroundColor(ContextCompat.getColor(itemView.getContext(), R.color.highlight_color));
             } else {
@@ -163,9 +214,9 @@ public class HistoryAdapter extends ListAdapter<HistoryEntry, HistoryAdapter.His
     }
 
     /**
-     * The DiffUtil.ItemCallback used by the ListAdapter to calculate list differences.
+     * The DiffUtil.ItemCallback used by the paging adapter to calculate list differences.
      */
-    private static final DiffUtil.ItemCallback<HistoryEntry> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryEntry>() {
+    static final DiffUtil.ItemCallback<HistoryEntry> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryEntry>() {
         @Override
         public boolean areItemsTheSame(@NonNull HistoryEntry oldItem, @NonNull HistoryEntry newItem) {
             return oldItem.getId() == newItem.getId();
@@ -15,37 +15,57 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.LinearLayout;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.view.ActionMode;
 import androidx.appcompat.widget.SearchView;
 import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.NavController;
 import androidx.navigation.Navigation;
+import androidx.paging.LoadState;
 import androidx.recyclerview.widget.ItemTouchHelper;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.snackbar.Snackbar;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
 import in.udhaya.kaikanakku.R;
 import in.udhaya.kaikanakku.data.db.HistoryEntry;
-import in.udhaya.kaikanakku.data.repository.HistoryRepository;
+import in.udhaya.kaikanakku.data.db.HistoryFilter;
+import in.udhaya.kaikanakku.data.db.HistorySelection;
+import in.udhaya.kaikanakku.data.transfer.HistoryCsvExporter;
+import in.udhaya.kaikanakku.data.transfer.HistoryImporter;
+import in.udhaya.kaikanakku.ui.converter.ConverterFragment;
+import kotlin.Unit;
 
 public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistoryItemInteractionListener {
 
     private HistoryViewModel historyViewModel;
     private RecyclerView recyclerView;
     private LinearLayout emptyView;
-    private HistoryAdapter adapter;
+    private HistoryPagingAdapter adapter;
     private boolean favoritesVisible = false;
+    private Snackbar progressSnackbar;
+    // Shown while entries are selected for a bulk action; null otherwise.
+    private ActionMode actionMode;
+
+    // CSV or JSON Lines; spreadsheets and file managers are not consistent about the type.
+    private static final String[] IMPORT_MIME_TYPES = {
+            "text/*", "application/json", "application/x-ndjson", "application/octet-stream"
+    };
+    private final ActivityResultLauncher<String[]> openImportFile = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) historyViewModel.importHistory(uri);
+            });
 
     @Nullable
     @Override
@@ -65,24 +85,77 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
         setupItemTouchHelper();
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        // The snackbar belongs to this view; a new one is shown if the export is still running.
+        progressSnackbar = null;
+        // Likewise the action mode, which is started again for the kept selection.
+        if (actionMode != null) {
+            ActionMode mode = actionMode;
+            actionMode = null;
+            mode.finish();
+        }
+    }
+
     private void setupRecyclerView(View view) {
         recyclerView = view.findViewById(R.id.recycler_view_history);
         emptyView = view.findViewById(R.id.layout_empty_history);
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.setHasFixedSize(true);
-        adapter = new HistoryAdapter(this);
+        adapter = new HistoryPagingAdapter(this);
         recyclerView.setAdapter(adapter);
     }
 
     private void setupObservers() {
-        historyViewModel.getFilteredHistory().observe(getViewLifecycleOwner(), entries -> {
-            adapter.submitList(entries);
-            if (entries == null || entries.isEmpty()) {
-                recyclerView.setVisibility(View.GONE);
-                emptyView.setVisibility(View.VISIBLE);
-            } else {
-                recyclerView.setVisibility(View.VISIBLE);
-                emptyView.setVisibility(View.GONE);
+        historyViewModel.getPagedHistory().observe(getViewLifecycleOwner(), pagingData ->
+                adapter.submitData(getViewLifecycleOwner().getLifecycle(), pagingData));
+
+        // With paging the adapter only knows it is empty once the first load has finished.
+        adapter.addLoadStateListener(loadStates -> {
+            if (loadStates.getRefresh() instanceof LoadState.NotLoading) {
+                boolean isEmpty = adapter.getItemCount() == 0;
+                recyclerView.setVisibility(isEmpty ? View.GONE : View.VISIBLE);
+                emptyView.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
+            }
+            return Unit.INSTANCE;
+        });
+
+        historyViewModel.getExportProgress().observe(getViewLifecycleOwner(), this::showExportProgress);
+        historyViewModel.getExportedFile().observe(getViewLifecycleOwner(), file -> {
+            if (file != null) {
+                shareExportedFile(file);
+                historyViewModel.clearExportedFile();
+            }
+        });
+        historyViewModel.getImportProgress().observe(getViewLifecycleOwner(), this::showImportProgress);
+        historyViewModel.getImportResult().observe(getViewLifecycleOwner(), result -> {
+            if (result != null) {
+                showImportResult(result);
+                historyViewModel.clearImportResult();
+            }
+        });
+        historyViewModel.getArchiveMatches().observe(getViewLifecycleOwner(), matches -> {
+            if (matches != null) {
+                showArchiveMatches(matches);
+                historyViewModel.clearArchiveMatches();
+            }
+        });
+        historyViewModel.getSelection().observe(getViewLifecycleOwner(), this::showSelection);
+        historyViewModel.getBulkActionMessage().observe(getViewLifecycleOwner(), message -> {
+            if (message != null) {
+                Snackbar snackbar = Snackbar.make(requireView(), message, Snackbar.LENGTH_LONG);
+                if (historyViewModel.canUndoDeleteSelected()) {
+                    snackbar.setAction(R.string.undo, v -> historyViewModel.undoDeleteSelected());
+                }
+                snackbar.show();
+                historyViewModel.clearBulkActionMessage();
+            }
+        });
+        historyViewModel.getFileError().observe(getViewLifecycleOwner(), error -> {
+            if (error != null) {
+                Snackbar.make(requireView(), error, Snackbar.LENGTH_SHORT).show();
+                historyViewModel.clearFileError();
             }
         });
     }
@@ -94,14 +167,25 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
                 return false;
             }
 
+            @Override
+            public int getSwipeDirs(@NonNull RecyclerView recyclerView, @NonNull RecyclerView.ViewHolder viewHolder) {
+                // No swiping rows away while picking them.
+                return actionMode != null ? 0 : super.getSwipeDirs(recyclerView, viewHolder);
+            }
+
             @Override
             public void onSwiped(@NonNull RecyclerView.ViewHolder viewHolder, int direction) {
-                int position = viewHolder.getAdapterPosition();
-                HistoryEntry entryToDelete = adapter.getCurrentList().get(position);
+                int position = viewHolder.getBindingAdapterPosition();
+                HistoryEntry entryToDelete = adapter.peek(position);
+                if (entryToDelete == null) {
+                    // A placeholder row that has not loaded yet; put it back.
+                    adapter.notifyItemChanged(position);
+                    return;
+                }
                 historyViewModel.delete(entryToDelete);
 
                 Snackbar.make(requireView(), R.string.entry_deleted, Snackbar.LENGTH_LONG)
-                        .setAction(R.string.undo, v -> historyViewModel.insert(entryToDelete))
+                        .setAction(R.string.undo, v -> historyViewModel.restore(entryToDelete))
                         .show();
             }
         }).attachToRecyclerView(recyclerView);
@@ -118,6 +202,8 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             @Override
             public boolean onQueryTextSubmit(String query) {
+                // Older entries may have been archived; look there too, once per submitted search.
+                historyViewModel.searchArchive(query);
                 return false;
             }
             @Override
@@ -132,13 +218,13 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         int itemId = item.getItemId();
         if (itemId == R.id.action_sort_date) {
-            historyViewModel.setSortOrder(HistoryRepository.SortOrder.BY_DATE);
+            historyViewModel.setSortOrder(HistoryFilter.SortOrder.BY_DATE);
             return true;
         } else if (itemId == R.id.action_sort_size_asc) {
-            historyViewModel.setSortOrder(HistoryRepository.SortOrder.BY_SIZE_ASC);
+            historyViewModel.setSortOrder(HistoryFilter.SortOrder.BY_SIZE_ASC);
             return true;
         } else if (itemId == R.id.action_sort_size_desc) {
-            historyViewModel.setSortOrder(HistoryRepository.SortOrder.BY_SIZE_DESC);
+            historyViewModel.setSortOrder(HistoryFilter.SortOrder.BY_SIZE_DESC);
             return true;
         } else if (itemId == R.id.action_clear_all) {
             showClearAllConfirmationDialog();
@@ -146,6 +232,12 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
         } else if (itemId == R.id.action_export_csv) {
             exportHistoryToCsv();
             return true;
+        } else if (itemId == R.id.action_export_archive) {
+            historyViewModel.exportArchive();
+            return true;
+        } else if (itemId == R.id.action_import_history) {
+            openImportFile.launch(IMPORT_MIME_TYPES);
+            return true;
         } else if (itemId == R.id.action_show_favorites) {
             favoritesVisible = !favoritesVisible;
             item.setChecked(favoritesVisible);
@@ -157,16 +249,15 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
 
     @Override
     public void onFavoriteClicked(HistoryEntry entry) {
-        entry.setFavorite(!entry.isFavorite());
-        historyViewModel.update(entry);
-        if (entry.isFavorite()) {
-            historyViewModel.delete(entry);
-            Snackbar.make(requireView(), "Moved to favorites", Snackbar.LENGTH_SHORT).show();
-        }
+        historyViewModel.setFavorite(entry, !entry.isFavorite());
     }
 
     @Override
     public void onItemCopied(HistoryEntry entry, int position) {
+        if (actionMode != null) {
+            historyViewModel.toggleSelection(entry);
+            return;
+        }
         ClipboardManager clipboard = (ClipboardManager) requireContext().getSystemService(Context.CLIPBOARD_SERVICE);
         ClipData clip = ClipData.newPlainText(getString(R.string.clipboard_label), entry.getOutputText());
         clipboard.setPrimaryClip(clip);
@@ -178,31 +269,88 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
 
     @Override
     public void onItemReused(HistoryEntry entry) {
+        // Only the id is passed; the converter loads the entry and reads its stored numbers.
         Bundle args = new Bundle();
-        String inputText = entry.getInputText();
+        args.putLong(ConverterFragment.ARG_HISTORY_ENTRY_ID, entry.getId());
 
-        if (inputText.contains("cm") && !inputText.contains("kol")) {
-            args.putBoolean("IS_KOL_TO_CM", false);
-            args.putDouble("CM_TOTAL", entry.getTotalCm());
+        NavController navController = Navigation.findNavController(requireActivity(), R.id.nav_host_fragment);
+        navController.navigate(R.id.converterFragment, args);
+    }
+
+    @Override
+    public void onItemLongPressed(HistoryEntry entry) {
+        historyViewModel.toggleSelection(entry);
+    }
+
+    private void showSelection(HistorySelection selection) {
+        adapter.setSelection(selection);
+        if (selection.isEmpty()) {
+            if (actionMode != null) actionMode.finish();
+            return;
+        }
+        if (actionMode == null) {
+            actionMode = ((AppCompatActivity) requireActivity()).startSupportActionMode(selectionCallback);
+            if (actionMode == null) return;
+        }
+        if (!selection.isAllMatching()) {
+            actionMode.setTitle(getString(R.string.selection_count, selection.getIdCount()));
+        } else if (selection.getIdCount() == 0) {
+            actionMode.setTitle(R.string.selection_all);
         } else {
-            args.putBoolean("IS_KOL_TO_CM", true);
-            Pattern p = Pattern.compile("(\\d+)\\s*kol|(\\d+)\\s*viral|(\\d*\\.?\\d+)\\s*cm");
-            Matcher m = p.matcher(inputText);
-            int kol = 0;
-            int viral = 0;
-            double cm = 0.0;
-            while(m.find()){
-                if(m.group(1) != null) kol = Integer.parseInt(Objects.requireNonNull(m.group(1)));
-                if(m.group(2) != null) viral = Integer.parseInt(Objects.requireNonNull(m.group(2)));
-                if(m.group(3) != null) cm = Double.parseDouble(Objects.requireNonNull(m.group(3)));
+            actionMode.setTitle(getString(R.string.selection_all_except, selection.getIdCount()));
+        }
+    }
+
+    private final ActionMode.Callback selectionCallback = new ActionMode.Callback() {
+        @Override
+        public boolean onCreateActionMode(ActionMode mode, Menu menu) {
+            mode.getMenuInflater().inflate(R.menu.history_selection_menu, menu);
+            return true;
+        }
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
+            return false;
+        }
+
+        @Override
+        public boolean onActionItemClicked(ActionMode mode, MenuItem item) {
+            int itemId = item.getItemId();
+            if (itemId == R.id.action_select_all) {
+                historyViewModel.selectAll();
+            } else if (itemId == R.id.action_favorite_selected) {
+                historyViewModel.setSelectedFavorite(true);
+            } else if (itemId == R.id.action_unfavorite_selected) {
+                historyViewModel.setSelectedFavorite(false);
+            } else if (itemId == R.id.action_delete_selected) {
+                showDeleteSelectedConfirmationDialog();
+            } else if (itemId == R.id.action_export_selected) {
+                historyViewModel.exportSelected();
+                mode.finish();
+            } else {
+                return false;
             }
-            args.putInt("KOL", kol);
-            args.putInt("VIRAL", viral);
-            args.putDouble("CM", cm);
+            return true;
         }
 
-        NavController navController = Navigation.findNavController(requireActivity(), R.id.nav_host_fragment);
-        navController.navigate(R.id.converterFragment, args);
+        @Override
+        public void onDestroyActionMode(ActionMode mode) {
+            // Closed by the user rather than by onDestroyView: the selection ends with it.
+            if (actionMode == mode) {
+                actionMode = null;
+                historyViewModel.clearSelection();
+            }
+        }
+    };
+
+    private void showDeleteSelectedConfirmationDialog() {
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.dialog_delete_selected_title)
+                .setMessage(R.string.dialog_delete_selected_message)
+                .setPositiveButton(R.string.action_delete_selected, (dialog, which) -> historyViewModel.deleteSelected())
+                .setNegativeButton(android.R.string.cancel, null)
+                .setIcon(R.drawable.ic_delete_forever)
+                .show();
     }
 
     private void showClearAllConfirmationDialog() {
@@ -216,40 +364,91 @@ public class HistoryFragment extends Fragment implements HistoryAdapter.OnHistor
     }
 
     private void exportHistoryToCsv() {
-        historyViewModel.getFilteredHistory().observe(getViewLifecycleOwner(), historyEntries -> {
-            if (historyEntries == null || historyEntries.isEmpty()) {
-                Snackbar.make(requireView(), R.string.history_empty_for_export, Snackbar.LENGTH_SHORT).show();
-                return;
-            }
+        // The export runs in the ViewModel; its progress and result are observed in
+        // setupObservers(), once for the lifetime of the view.
+        historyViewModel.exportHistory();
+    }
 
-            StringBuilder csvContent = new StringBuilder("Input,Output,Is Favorite\n");
-            for (HistoryEntry entry : historyEntries) {
-                csvContent.append(String.format("\"%s\",\"%s\",%s\n",
-                        entry.getInputText(),
-                        entry.getOutputText(),
-                        entry.isFavorite()));
-            }
+    private void showExportProgress(HistoryCsvExporter.Progress progress) {
+        showProgress(progress == null ? null : getString(R.string.exporting_history_progress, progress.percent()),
+                v -> historyViewModel.cancelExport());
+    }
 
-            try {
-                File path = new File(requireContext().getCacheDir(), "exports");
-                if (!path.exists()) {
-                    path.mkdirs();
-                }
-                File file = new File(path, "history.csv");
-                FileOutputStream stream = new FileOutputStream(file);
-                stream.write(csvContent.toString().getBytes());
-                stream.close();
-
-                Uri uri = FileProvider.getUriForFile(requireContext(), "in.udhaya.kaikanakku.fileprovider", file);
-                Intent intent = new Intent(Intent.ACTION_SEND);
-                intent.setType("text/csv");
-                intent.putExtra(Intent.EXTRA_STREAM, uri);
-                intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                startActivity(Intent.createChooser(intent, "Export History"));
-
-            } catch (IOException e) {
-                Snackbar.make(requireView(), "Failed to export history", Snackbar.LENGTH_SHORT).show();
+    private void showImportProgress(HistoryImporter.Progress progress) {
+        showProgress(progress == null ? null : getString(R.string.importing_history_progress, progress.read),
+                v -> historyViewModel.cancelImport());
+    }
+
+    /** Shows or updates the snackbar of a running export or import; null text dismisses it. */
+    private void showProgress(String text, View.OnClickListener cancel) {
+        if (text == null) {
+            if (progressSnackbar != null) {
+                progressSnackbar.dismiss();
+                progressSnackbar = null;
             }
-        });
+            return;
+        }
+        if (progressSnackbar == null) {
+            progressSnackbar = Snackbar.make(requireView(), text, Snackbar.LENGTH_INDEFINITE)
+                    .setAction(R.string.cancel, cancel);
+            progressSnackbar.show();
+        } else {
+            progressSnackbar.setText(text);
+        }
+    }
+
+    private void showImportResult(HistoryImporter.Progress result) {
+        String message = getString(R.string.import_result, result.inserted, result.duplicates(), result.rejected);
+        Snackbar snackbar = Snackbar.make(requireView(), message, Snackbar.LENGTH_LONG);
+        if (!result.rejections.isEmpty()) {
+            snackbar.setAction(R.string.action_details, v -> showRejectedLines(result.rejections));
+        }
+        snackbar.show();
+    }
+
+    private void showRejectedLines(List<HistoryImporter.Rejection> rejections) {
+        StringBuilder lines = new StringBuilder();
+        for (HistoryImporter.Rejection rejection : rejections) {
+            if (lines.length() > 0) lines.append('\n');
+            lines.append(getString(R.string.rejected_line, rejection.line, rejection.reason));
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.dialog_rejected_lines_title)
+                .setMessage(lines)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    private void showArchiveMatches(List<HistoryEntry> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        Snackbar.make(requireView(), getString(R.string.archive_matches, matches.size()), Snackbar.LENGTH_LONG)
+                .setAction(R.string.action_show, v -> showArchivedEntries(matches))
+                .show();
+    }
+
+    private void showArchivedEntries(List<HistoryEntry> entries) {
+        DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.MEDIUM);
+        StringBuilder lines = new StringBuilder();
+        for (HistoryEntry entry : entries) {
+            if (lines.length() > 0) lines.append('\n');
+            lines.append(getString(R.string.archived_entry, entry.getInputText(), entry.getOutputText(),
+                    dateFormat.format(new Date(entry.getTimestamp()))));
+        }
+        new AlertDialog.Builder(requireContext())
+                .setTitle(R.string.dialog_archive_matches_title)
+                .setMessage(lines)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+
+    private void shareExportedFile(File file) {
+        Uri uri = FileProvider.getUriForFile(requireContext(), "in.udhaya.kaikanakku.fileprovider", file);
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("text/csv");
+        intent.putExtra(Intent.EXTRA_STREAM, uri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(intent, "Export History"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,205 @@
+package in.udhaya.kaikanakku.ui.history;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import in.udhaya.kaikanakku.data.db.HistoryChange;
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+
+/**
+ * The newest entries of the history, newest first, kept by a ViewModel and changed in place by
+ * each {@link HistoryChange} from the repository's change feed. Every change is passed on to
+ * the {@link ListUpdateCallback}, normally the adapter showing the list, as the rows it
+ * inserted, moved, changed or removed; an insert is one binary search and one
+ * notifyItemInserted, where a re-emitted list would be diffed against the old one in full.
+ *
+ * Only the newest {@code limit} entries are kept. When a change leaves a gap at the end that
+ * only the database can fill, or cannot be followed at all, {@link #apply} returns false and
+ * the owner reads the list again and hands it to {@link #replace}. Changes arriving meanwhile
+ * are held back and applied on top of it; applying a change twice does no harm, so it does
+ * not matter whether the list read already had them.
+ *
+ * Not thread safe; use it on the main thread.
+ */
+public final class HistoryListModel {
+
+    /** The order of {@code HistoryDao#getRecentEntries}. */
+    private static final Comparator<HistoryEntry> NEWEST_FIRST =
+            Comparator.comparingLong(HistoryEntry::getTimestamp).thenComparingLong(HistoryEntry::getId).reversed();
+
+    private final int limit;
+    private final List<HistoryEntry> entries = new ArrayList<>();
+    // Whether entries are every entry there is, so nothing is missing from the end.
+    private boolean complete;
+    // Whether the list is being read; until the first replace(), it is.
+    private boolean reading = true;
+    private final List<HistoryChange> heldBack = new ArrayList<>();
+    @Nullable
+    private ListUpdateCallback callback;
+
+    public HistoryListModel(int limit) {
+        this.limit = limit;
+    }
+
+    /** Where to report changes from now on, e.g. an AdapterListUpdateCallback; null for nowhere. */
+    public void setCallback(@Nullable ListUpdateCallback callback) {
+        this.callback = callback;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public HistoryEntry get(int position) {
+        return entries.get(position);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Applies a committed change to the list.
+     *
+     * @return False if the list has to be read again and passed to {@link #replace}.
+     */
+    public boolean apply(@NonNull HistoryChange change) {
+        if (reading) {
+            heldBack.add(change);
+            return true;
+        }
+        if (applyNow(change)) {
+            return true;
+        }
+        reading = true;
+        return false;
+    }
+
+    /**
+     * Takes the list as just read, newest first, then applies the changes that arrived while
+     * it was read. Only the rows that differ are reported, so filling a gap at the end is an
+     * insert.
+     *
+     * @return False if the list has to be read again, as for {@link #apply}.
+     */
+    public boolean replace(@NonNull List<HistoryEntry> newest) {
+        List<HistoryEntry> fresh = newest.size() > limit ? newest.subList(0, limit) : newest;
+        int same = 0;
+        while (same < entries.size() && same < fresh.size() && isSameRow(entries.get(same), fresh.get(same))) {
+            same++;
+        }
+        int removed = entries.size() - same;
+        int added = fresh.size() - same;
+        entries.subList(same, entries.size()).clear();
+        entries.addAll(fresh.subList(same, fresh.size()));
+        complete = newest.size() < limit;
+        reading = false;
+        if (callback != null) {
+            int changed = Math.min(removed, added);
+            if (changed > 0) callback.onChanged(same, changed, null);
+            if (removed > changed) callback.onRemoved(same + changed, removed - changed);
+            if (added > changed) callback.onInserted(same + changed, added - changed);
+        }
+
+        List<HistoryChange> pending = new ArrayList<>(heldBack);
+        heldBack.clear();
+        for (HistoryChange change : pending) {
+            if (!applyNow(change)) {
+                // What is left was committed before the next read, so that read has it.
+                reading = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean applyNow(HistoryChange change) {
+        switch (change.getKind()) {
+            case INSERTED, UPDATED -> {
+                return put(change.getEntry());
+            }
+            case DELETED -> {
+                int position = indexOf(change.getId());
+                if (position < 0) return true;
+                entries.remove(position);
+                if (callback != null) callback.onRemoved(position, 1);
+                // The entry that now belongs at the end has to be read again.
+                return complete;
+            }
+            case DELETED_OLDER_THAN -> {
+                // The oldest entries are at the end.
+                int from = entries.size();
+                while (from > 0 && entries.get(from - 1).getTimestamp() < change.getTimestamp()) from--;
+                if (from < entries.size()) {
+                    removeFrom(from);
+                    // Whatever was missing was older still, so it went as well.
+                    complete = true;
+                }
+                return true;
+            }
+            case CLEARED -> {
+                removeFrom(0);
+                complete = true;
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    /** Puts an inserted or updated entry in its place, or takes it out if it no longer has one. */
+    private boolean put(HistoryEntry entry) {
+        int from = indexOf(entry.getId());
+        if (from >= 0) entries.remove(from);
+        // Never found: ids are unique, and this one was just taken out.
+        int to = -Collections.binarySearch(entries, entry, NEWEST_FIRST) - 1;
+        if (to == entries.size() && !complete) {
+            // It belongs among the entries that are not kept.
+            if (from < 0) return true;
+            if (callback != null) callback.onRemoved(from, 1);
+            return false;
+        }
+        entries.add(to, entry);
+        if (from >= 0) {
+            if (callback != null) {
+                if (from != to) callback.onMoved(from, to);
+                callback.onChanged(to, 1, null);
+            }
+            return true;
+        }
+        if (callback != null) callback.onInserted(to, 1);
+        if (entries.size() > limit) {
+            entries.remove(limit);
+            complete = false;
+            if (callback != null) callback.onRemoved(limit, 1);
+        }
+        return true;
+    }
+
+    private void removeFrom(int from) {
+        int count = entries.size() - from;
+        if (count == 0) return;
+        entries.subList(from, entries.size()).clear();
+        if (callback != null) callback.onRemoved(from, count);
+    }
+
+    private int indexOf(long id) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getId() == id) return i;
+        }
+        return -1;
+    }
+
+    // Whether a row can stay as it is: the same entry, with what the list shows unchanged.
+    private static boolean isSameRow(HistoryEntry a, HistoryEntry b) {
+        return a.getId() == b.getId() && a.getTimestamp() == b.getTimestamp() && a.isFavorite() == b.isFavorite()
+                && a.getInputText().equals(b.getInputText()) && a.getOutputText().equals(b.getOutputText());
+    }
+}
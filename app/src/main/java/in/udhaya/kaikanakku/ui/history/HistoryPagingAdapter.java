@@ -0,0 +1,87 @@
+package in.udhaya.kaikanakku.ui.history;
+
+import android.view.ViewGroup;
+import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+
+import java.util.List;
+
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.data.db.HistorySelection;
+
+/**
+ * Paged adapter for the history screen. It shows the same rows as {@link HistoryAdapter}, but
+ * receives its entries as PagingData, so only the pages around the visible window are loaded
+ * and kept in memory. Rows that are not loaded yet are shown as empty placeholders.
+ */
+public class HistoryPagingAdapter extends PagingDataAdapter<HistoryEntry, HistoryAdapter.HistoryViewHolder> {
+
+    private final HistoryAdapter.OnHistoryItemInteractionListener listener;
+    private int highlightedPosition = -1;
+    private HistorySelection selection = HistorySelection.NONE;
+
+    public HistoryPagingAdapter(HistoryAdapter.OnHistoryItemInteractionListener listener) {
+        super(HistoryAdapter.DIFF_CALLBACK);
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public HistoryAdapter.HistoryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return HistoryAdapter.HistoryViewHolder.create(parent);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HistoryAdapter.HistoryViewHolder holder, int position) {
+        HistoryEntry entry = getItem(position);
+        if (entry == null) {
+            holder.bindPlaceholder();
+        } else {
+            holder.bind(entry, listener);
+        }
+        holder.updateHighlight(position == highlightedPosition);
+        holder.updateSelected(entry != null && selection.contains(entry.getId()));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HistoryAdapter.HistoryViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(HistoryAdapter.HIGHLIGHT_PAYLOAD) || payloads.contains(HistoryAdapter.SELECTION_PAYLOAD)) {
+            HistoryEntry entry = peek(position);
+            holder.updateHighlight(position == highlightedPosition);
+            holder.updateSelected(entry != null && selection.contains(entry.getId()));
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    /**
+     * Marks the entries in {@code selection} as selected. Only the checked state of the rows
+     * is rebound, in one pass, however many entries the selection holds.
+     */
+    public void setSelection(HistorySelection selection) {
+        if (!this.selection.equals(selection)) {
+            this.selection = selection;
+            notifyItemRangeChanged(0, getItemCount(), HistoryAdapter.SELECTION_PAYLOAD);
+        }
+    }
+
+    /**
+     * Temporarily highlights an item at a given position to provide visual feedback.
+     * @param position The adapter position of the item to highlight.
+     */
+    public void showCopyHighlight(int position) {
+        highlightedPosition = position;
+        notifyItemChanged(position, HistoryAdapter.HIGHLIGHT_PAYLOAD);
+    }
+
+    /**
+     * Clears the highlight from the previously highlighted item.
+     */
+    public void clearCopyHighlight() {
+        if (highlightedPosition != -1) {
+            int oldPosition = highlightedPosition;
+            highlightedPosition = -1;
+            notifyItemChanged(oldPosition, HistoryAdapter.HIGHLIGHT_PAYLOAD);
+        }
+    }
+}
@@ -1,17 +1,33 @@
 package in.udhaya.kaikanakku.ui.history;
 
 import android.app.Application;
+import android.net.Uri;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.MediatorLiveData;
-import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.LiveDataReactiveStreams;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.PagingData;
+import androidx.paging.rxjava3.PagingRx;
 
+import java.io.File;
 import java.util.List;
+import java.util.function.UnaryOperator;
+import in.udhaya.kaikanakku.R;
 import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.data.db.HistoryFilter;
+import in.udhaya.kaikanakku.data.db.HistorySelection;
 import in.udhaya.kaikanakku.data.repository.HistoryRepository;
+import in.udhaya.kaikanakku.data.transfer.HistoryCsvExporter;
+import in.udhaya.kaikanakku.data.transfer.HistoryImporter;
+import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.disposables.CompositeDisposable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.processors.BehaviorProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 
 /**
  * ViewModel for the HistoryFragment. It is responsible for preparing and managing the data
@@ -23,71 +39,350 @@ public class HistoryViewModel extends AndroidViewModel {
     private final HistoryRepository historyRepository;
     private final CompositeDisposable disposables = new CompositeDisposable();
 
-    // LiveData objects to hold the current state of UI filters.
-    private final MutableLiveData<HistoryRepository.SortOrder> sortOrder = new MutableLiveData<>(HistoryRepository.SortOrder.BY_DATE);
-    private final MutableLiveData<String> searchQuery = new MutableLiveData<>("");
-    private final MutableLiveData<Boolean> showFavoritesOnly = new MutableLiveData<>(false);
+    // The current search, favorites filter and sort order, as one value. Every change emits a
+    // new filter; the streams below switch to its query, so there is always exactly one query
+    // running and one Room observer, whatever the filters are.
+    private final BehaviorProcessor<HistoryFilter> filter = BehaviorProcessor.createDefault(HistoryFilter.ALL);
+
+    // The paged stream is cached in the ViewModel scope, so loaded pages survive
+    // configuration changes and are shared by new observers.
+    private final LiveData<PagingData<HistoryEntry>> pagedHistory;
+
+    // CSV export. At most one runs at a time; progress is null while none is running.
+    private Disposable exportJob;
+    private final MutableLiveData<HistoryCsvExporter.Progress> exportProgress = new MutableLiveData<>();
+    private final MutableLiveData<File> exportedFile = new MutableLiveData<>();
+    // A failed export or import, or an empty export, as a message to show.
+    private final MutableLiveData<String> fileError = new MutableLiveData<>();
 
-    // MediatorLiveData observes the filter LiveData objects and updates the final history list accordingly.
-    private final MediatorLiveData<List<HistoryEntry>> filteredHistory = new MediatorLiveData<>();
-    private LiveData<List<HistoryEntry>> currentSource;
+    // Import, likewise one at a time.
+    private Disposable importJob;
+    private final MutableLiveData<HistoryImporter.Progress> importProgress = new MutableLiveData<>();
+    private final MutableLiveData<HistoryImporter.Progress> importResult = new MutableLiveData<>();
+
+    // Archived entries matching the last submitted search; the latest search replaces any running one.
+    private static final int ARCHIVE_SEARCH_LIMIT = 50;
+    private Disposable archiveSearch;
+    private final MutableLiveData<List<HistoryEntry>> archiveMatches = new MutableLiveData<>();
+
+    // Entries picked for a bulk action. Cleared whenever the filter changes, so an action
+    // never reaches entries that are no longer listed.
+    private final MutableLiveData<HistorySelection> selection = new MutableLiveData<>(HistorySelection.NONE);
+    // The outcome of the last bulk action, as a message to show.
+    private final MutableLiveData<String> bulkActionMessage = new MutableLiveData<>();
+    // When the last bulk delete happened, to undo it; 0 if the last bulk action was not one.
+    private long undoableDeletedAt;
 
     public HistoryViewModel(@NonNull Application application) {
         super(application);
         historyRepository = HistoryRepository.getInstance(application);
-        currentSource = new MutableLiveData<>(); // Initialize with a dummy source
 
-        // Add observers to the filter LiveData. Whenever a filter changes, updateDataSource() is called.
-        filteredHistory.addSource(sortOrder, order -> updateDataSource());
-        filteredHistory.addSource(searchQuery, query -> updateDataSource());
-        filteredHistory.addSource(showFavoritesOnly, showFavs -> updateDataSource());
+        Flowable<HistoryFilter> filters = filter.distinctUntilChanged();
+        pagedHistory = LiveDataReactiveStreams.fromPublisher(PagingRx.cachedIn(
+                filters.switchMap(historyRepository::getPagedHistory), ViewModelKt.getViewModelScope(this)));
     }
 
-    /**
-     * This is the core logic for filtering and sorting. It removes the old data source,
-     * determines the new data source from the repository based on the current filter values,
-     * and then begins observing it.
-     */
-    private void updateDataSource() {
-        // Stop observing the old LiveData source to prevent multiple streams from updating the UI.
-        filteredHistory.removeSource(currentSource);
-
-        String query = searchQuery.getValue();
-        Boolean favsOnly = showFavoritesOnly.getValue();
-        HistoryRepository.SortOrder order = sortOrder.getValue();
-
-        // Determine the correct data stream from the repository based on active filters.
-        if (query != null && !query.isEmpty()) {
-            // Search query takes precedence over all other filters.
-            currentSource = LiveDataReactiveStreams.fromPublisher(historyRepository.searchHistory(query));
-        } else if (favsOnly != null && favsOnly) {
-            // If not searching, check if the favorites filter is active.
-            currentSource = LiveDataReactiveStreams.fromPublisher(historyRepository.getFavoriteEntries());
-        } else {
-            // If no other filters are active, just sort the full list.
-            currentSource = LiveDataReactiveStreams.fromPublisher(historyRepository.getHistory(order != null ? order : HistoryRepository.SortOrder.BY_DATE));
+    private void updateFilter(UnaryOperator<HistoryFilter> change) {
+        HistoryFilter next = change.apply(filter.getValue());
+        if (!next.equals(filter.getValue())) {
+            clearSelection();
         }
-
-        // Start observing the new data source. When it emits data, update the UI's LiveData.
-        filteredHistory.addSource(currentSource, filteredHistory::setValue);
+        filter.onNext(next);
     }
 
     // --- Public methods for the Fragment to interact with the ViewModel ---
 
-    public LiveData<List<HistoryEntry>> getFilteredHistory() {
-        return filteredHistory;
+    public LiveData<PagingData<HistoryEntry>> getPagedHistory() {
+        return pagedHistory;
     }
 
     public void setSearchQuery(String query) {
-        searchQuery.setValue(query);
+        updateFilter(current -> current.withSearchText(query));
     }
 
-    public void setSortOrder(HistoryRepository.SortOrder order) {
-        sortOrder.setValue(order);
+    public void setSortOrder(HistoryFilter.SortOrder order) {
+        updateFilter(current -> current.withSortOrder(order));
     }
 
     public void toggleFavoritesFilter(boolean showOnlyFavorites) {
-        showFavoritesOnly.setValue(showOnlyFavorites);
+        updateFilter(current -> current.withFavoritesOnly(showOnlyFavorites));
+    }
+
+    // --- Export ---
+
+    /**
+     * Exports the history as currently filtered and sorted to a CSV file in the cache, in the
+     * background. Does nothing if an export is already running, so each request exports once.
+     */
+    public void exportHistory() {
+        if (exportJob != null && !exportJob.isDisposed()) {
+            return;
+        }
+        File file = exportFile("history.csv");
+        if (file != null) {
+            startExport(historyRepository.exportCsv(filter.getValue(), file), file);
+        }
+    }
+
+    /** Like {@link #exportHistory()}, for the selected entries only. */
+    public void exportSelected() {
+        if (exportJob != null && !exportJob.isDisposed()) {
+            return;
+        }
+        File file = exportFile("history-selected.csv");
+        if (file != null) {
+            startExport(historyRepository.exportCsv(getCurrentSelection(), file), file);
+        }
+    }
+
+    private void startExport(Flowable<HistoryCsvExporter.Progress> export, File file) {
+        exportJob = export
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        exportProgress::setValue,
+                        throwable -> {
+                            exportProgress.setValue(null);
+                            fileError.setValue(getApplication().getString(R.string.error_exporting_csv));
+                        },
+                        () -> {
+                            HistoryCsvExporter.Progress done = exportProgress.getValue();
+                            exportProgress.setValue(null);
+                            if (done == null || done.total == 0) {
+                                fileError.setValue(getApplication().getString(R.string.history_empty_for_export));
+                            } else {
+                                exportedFile.setValue(file);
+                            }
+                        });
+        disposables.add(exportJob);
+    }
+
+    /**
+     * Exports every archived entry to a CSV file in the cache, in the background, to be shared
+     * like a history export. Shares the history export's one-at-a-time rule.
+     */
+    public void exportArchive() {
+        if (exportJob != null && !exportJob.isDisposed()) {
+            return;
+        }
+        File file = exportFile("history-archive.csv");
+        if (file == null) {
+            return;
+        }
+        exportJob = historyRepository.exportArchiveCsv(file)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        written -> {
+                            if (written == 0) {
+                                fileError.setValue(getApplication().getString(R.string.archive_empty));
+                            } else {
+                                exportedFile.setValue(file);
+                            }
+                        },
+                        throwable -> fileError.setValue(getApplication().getString(R.string.error_exporting_csv)));
+        disposables.add(exportJob);
+    }
+
+    /** A file in the shared exports directory, or null, with the error reported, if it cannot be made. */
+    private File exportFile(String name) {
+        File dir = new File(getApplication().getCacheDir(), "exports");
+        if (!dir.exists() && !dir.mkdirs()) {
+            fileError.setValue(getApplication().getString(R.string.error_exporting_csv));
+            return null;
+        }
+        return new File(dir, name);
+    }
+
+    /** Stops a running export; no file is produced. */
+    public void cancelExport() {
+        if (exportJob != null) {
+            disposables.remove(exportJob); // Also disposes it.
+            exportJob = null;
+        }
+        exportProgress.setValue(null);
+    }
+
+    /** Progress of the running export, or null when none is running. */
+    public LiveData<HistoryCsvExporter.Progress> getExportProgress() {
+        return exportProgress;
+    }
+
+    /** The finished export, to be shared. Cleared with {@link #clearExportedFile()} once handled. */
+    public LiveData<File> getExportedFile() {
+        return exportedFile;
+    }
+
+    public void clearExportedFile() {
+        exportedFile.setValue(null);
+    }
+
+    /** A message about a failed export or import. Cleared with {@link #clearFileError()} once shown. */
+    public LiveData<String> getFileError() {
+        return fileError;
+    }
+
+    public void clearFileError() {
+        fileError.setValue(null);
+    }
+
+    // --- Import ---
+
+    /**
+     * Imports a CSV or JSON Lines file into the history, in the background. Does nothing if an
+     * import is already running. Errors are reported through {@link #getFileError()}.
+     */
+    public void importHistory(Uri uri) {
+        if (importJob != null && !importJob.isDisposed()) {
+            return;
+        }
+        importJob = historyRepository.importHistory(uri)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        progress -> {
+                            if (progress.done) {
+                                importProgress.setValue(null);
+                                importResult.setValue(progress);
+                            } else {
+                                importProgress.setValue(progress);
+                            }
+                        },
+                        throwable -> {
+                            importProgress.setValue(null);
+                            fileError.setValue(getApplication().getString(R.string.error_importing_history));
+                        });
+        disposables.add(importJob);
+    }
+
+    /** Stops a running import after its current chunk; what was saved by then stays. */
+    public void cancelImport() {
+        if (importJob != null) {
+            disposables.remove(importJob);
+            importJob = null;
+        }
+        importProgress.setValue(null);
+    }
+
+    /** Progress of the running import, or null when none is running. */
+    public LiveData<HistoryImporter.Progress> getImportProgress() {
+        return importProgress;
+    }
+
+    /** The totals of a finished import. Cleared with {@link #clearImportResult()} once shown. */
+    public LiveData<HistoryImporter.Progress> getImportResult() {
+        return importResult;
+    }
+
+    public void clearImportResult() {
+        importResult.setValue(null);
+    }
+
+    // --- Archive ---
+
+    /**
+     * Searches the archive for {@code text}, in the background. Meant for a submitted search
+     * rather than every keystroke, as it reads the archive files.
+     */
+    public void searchArchive(String text) {
+        if (archiveSearch != null) {
+            disposables.remove(archiveSearch);
+            archiveSearch = null;
+        }
+        if (text == null || text.trim().isEmpty()) {
+            return;
+        }
+        archiveSearch = historyRepository.searchArchive(text, ARCHIVE_SEARCH_LIMIT)
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        archiveMatches::setValue,
+                        throwable -> fileError.setValue(getApplication().getString(R.string.error_reading_archive)));
+        disposables.add(archiveSearch);
+    }
+
+    /** Archived entries found by the last search, newest first. Cleared with {@link #clearArchiveMatches()} once shown. */
+    public LiveData<List<HistoryEntry>> getArchiveMatches() {
+        return archiveMatches;
+    }
+
+    public void clearArchiveMatches() {
+        archiveMatches.setValue(null);
+    }
+
+    // --- Selection and bulk actions ---
+
+    /** The entries picked for a bulk action; {@link HistorySelection#NONE} outside selection mode. */
+    public LiveData<HistorySelection> getSelection() {
+        return selection;
+    }
+
+    private HistorySelection getCurrentSelection() {
+        HistorySelection current = selection.getValue();
+        return current == null ? HistorySelection.NONE : current;
+    }
+
+    public void toggleSelection(HistoryEntry entry) {
+        selection.setValue(getCurrentSelection().toggle(entry.getId()));
+    }
+
+    /** Selects every entry matching the current filter, including those not loaded yet. */
+    public void selectAll() {
+        selection.setValue(HistorySelection.allMatching(filter.getValue()));
+    }
+
+    public void clearSelection() {
+        if (!getCurrentSelection().isEmpty()) {
+            selection.setValue(HistorySelection.NONE);
+        }
+    }
+
+    /**
+     * Deletes the selected entries, as one write, and ends the selection. Can be undone with
+     * {@link #undoDeleteSelected()} until the next bulk action.
+     */
+    public void deleteSelected() {
+        long deletedAt = System.currentTimeMillis();
+        runBulkAction(historyRepository.deleteSelected(getCurrentSelection(), deletedAt), R.string.bulk_deleted);
+        undoableDeletedAt = deletedAt;
+    }
+
+    /** Whether the last bulk action was a delete that {@link #undoDeleteSelected()} can undo. */
+    public boolean canUndoDeleteSelected() {
+        return undoableDeletedAt != 0;
+    }
+
+    /** Brings back the entries removed by the last {@link #deleteSelected()}. */
+    public void undoDeleteSelected() {
+        if (undoableDeletedAt != 0) {
+            runBulkAction(historyRepository.restoreDeletedAt(undoableDeletedAt), R.string.bulk_restored);
+        }
+    }
+
+    /** Adds the selected entries to the favorites or removes them, as one write, and ends the selection. */
+    public void setSelectedFavorite(boolean favorite) {
+        runBulkAction(historyRepository.setFavorite(getCurrentSelection(), favorite),
+                favorite ? R.string.bulk_favorited : R.string.bulk_unfavorited);
+    }
+
+    private void runBulkAction(Single<Integer> action, int messageId) {
+        selection.setValue(HistorySelection.NONE);
+        undoableDeletedAt = 0;
+        disposables.add(action
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        count -> bulkActionMessage.setValue(getApplication().getString(messageId, count)),
+                        throwable -> bulkActionMessage.setValue(getApplication().getString(R.string.error_bulk_action))));
+    }
+
+    /** The outcome of the last bulk action. Cleared with {@link #clearBulkActionMessage()} once shown. */
+    public LiveData<String> getBulkActionMessage() {
+        return bulkActionMessage;
+    }
+
+    public void clearBulkActionMessage() {
+        bulkActionMessage.setValue(null);
     }
 
     public void delete(HistoryEntry entry) {
@@ -98,8 +393,14 @@ public class HistoryViewModel extends AndroidViewModel {
         historyRepository.insert(entry);
     }
 
-    public void update(HistoryEntry entry) {
-        historyRepository.update(entry);
+    /** Undoes {@link #delete}, putting the entry back where it was. */
+    public void restore(HistoryEntry entry) {
+        historyRepository.restore(entry);
+    }
+
+    /** Leaves {@code entry} as it is; the list shows the change once it is committed. */
+    public void setFavorite(HistoryEntry entry, boolean favorite) {
+        historyRepository.setFavorite(entry, favorite);
     }
 
     public void clearAllHistory() {
@@ -2,21 +2,30 @@ package in.udhaya.kaikanakku.ui.settings;
 
 import android.annotation.SuppressLint;
 import android.os.Bundle;
+import android.text.format.Formatter;
 import android.util.Log;
 import androidx.appcompat.app.AlertDialog;
 import androidx.preference.ListPreference;
 import androidx.preference.Preference;
 import androidx.preference.PreferenceFragmentCompat;
 import androidx.preference.SeekBarPreference;
+import androidx.preference.SwitchPreferenceCompat;
+
+import java.text.DateFormat;
+import java.util.Date;
+
 import in.udhaya.kaikanakku.R;
 import in.udhaya.kaikanakku.data.repository.SettingsRepository;
 import io.reactivex.rxjava3.android.schedulers.AndroidSchedulers;
+import io.reactivex.rxjava3.disposables.Disposable;
 import io.reactivex.rxjava3.schedulers.Schedulers;
 
 public class SettingsFragment extends PreferenceFragmentCompat {
 
     private static final String TAG = "SettingsFragment";
 
+    private Disposable maintenanceSummary;
+
     @SuppressLint("CheckResult")
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
@@ -67,10 +76,46 @@ public class SettingsFragment extends PreferenceFragmentCompat {
                 } else {
                     preference.setSummary(getString(R.string.settings_auto_delete_disabled));
                 }
+                // AutoDeleteWorker reads the period from the DataStore.
+                settingsRepository.updateAutoDeleteDays(days)
+                        .subscribeOn(Schedulers.io())
+                        .subscribe(
+                                () -> Log.d(TAG, "Auto-delete period updated successfully."),
+                                throwable -> Log.e(TAG, "Failed to update auto-delete period", throwable)
+                        );
                 return true;
             });
         }
 
+        SwitchPreferenceCompat archivePreference = findPreference("archive_old_history");
+        if (archivePreference != null) {
+            archivePreference.setOnPreferenceChangeListener((preference, newValue) -> {
+                settingsRepository.updateArchiveOldHistory((Boolean) newValue)
+                        .subscribeOn(Schedulers.io())
+                        .subscribe(
+                                () -> Log.d(TAG, "Archive setting updated successfully."),
+                                throwable -> Log.e(TAG, "Failed to update archive setting", throwable)
+                        );
+                return true;
+            });
+        }
+
+        // --- Storage maintenance, read-only: what the last run did ---
+        Preference maintenancePreference = findPreference("database_maintenance");
+        if (maintenancePreference != null) {
+            maintenanceSummary = settingsRepository.getLastMaintenance()
+                    .subscribeOn(Schedulers.io())
+                    .observeOn(AndroidSchedulers.mainThread())
+                    .subscribe(
+                            last -> last.ifPresent(report -> maintenancePreference.setSummary(getString(
+                                    R.string.settings_maintenance_summary,
+                                    DateFormat.getDateInstance(DateFormat.MEDIUM).format(new Date(report.finishedAt)),
+                                    Formatter.formatShortFileSize(requireContext(), report.freedBytes()),
+                                    report.durationMillis))),
+                            throwable -> Log.e(TAG, "Failed to read the last maintenance run", throwable)
+                    );
+        }
+
         // --- Reset Settings Preference ---
         Preference resetPreference = findPreference("reset_settings");
         if (resetPreference != null) {
@@ -81,6 +126,14 @@ public class SettingsFragment extends PreferenceFragmentCompat {
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (maintenanceSummary != null) {
+            maintenanceSummary.dispose();
+        }
+    }
+
     @SuppressLint("CheckResult")
     private void showResetConfirmationDialog(SettingsRepository settingsRepository) {
         new AlertDialog.Builder(requireContext())
@@ -0,0 +1,68 @@
+package in.udhaya.kaikanakku.ui.stats;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import in.udhaya.kaikanakku.R;
+import in.udhaya.kaikanakku.data.db.HistoryDailyStats;
+
+/**
+ * Adapter for the list of days on the statistics screen, one row per day with entries.
+ */
+public class DailyStatsAdapter extends ListAdapter<HistoryDailyStats, DailyStatsAdapter.DayViewHolder> {
+
+    public DailyStatsAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    @NonNull
+    @Override
+    public DayViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_daily_stats, parent, false);
+        return new DayViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull DayViewHolder holder, int position) {
+        holder.bind(getItem(position));
+    }
+
+    static class DayViewHolder extends RecyclerView.ViewHolder {
+        private final TextView dayTextView;
+        private final TextView countTextView;
+        private final TextView totalTextView;
+
+        DayViewHolder(@NonNull View itemView) {
+            super(itemView);
+            dayTextView = itemView.findViewById(R.id.text_view_day);
+            countTextView = itemView.findViewById(R.id.text_view_day_count);
+            totalTextView = itemView.findViewById(R.id.text_view_day_total);
+        }
+
+        void bind(HistoryDailyStats day) {
+            dayTextView.setText(day.getDay());
+            countTextView.setText(itemView.getContext().getString(R.string.stats_entry_count, day.getEntryCount()));
+            totalTextView.setText(StatsFragment.formatLength(day.getTotalCm()));
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<HistoryDailyStats> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryDailyStats>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HistoryDailyStats oldItem, @NonNull HistoryDailyStats newItem) {
+            return oldItem.getDay().equals(newItem.getDay());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HistoryDailyStats oldItem, @NonNull HistoryDailyStats newItem) {
+            return oldItem.getEntryCount() == newItem.getEntryCount()
+                    && oldItem.getTotalCm() == newItem.getTotalCm()
+                    && oldItem.getMaxCm() == newItem.getMaxCm();
+        }
+    };
+}
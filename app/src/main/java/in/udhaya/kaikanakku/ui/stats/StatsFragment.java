@@ -0,0 +1,79 @@
+package in.udhaya.kaikanakku.ui.stats;
+
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import in.udhaya.kaikanakku.R;
+import in.udhaya.kaikanakku.data.db.HistoryStatsSummary;
+import in.udhaya.kaikanakku.util.ConversionUtils;
+
+/**
+ * Shows statistics about the history: how many entries there are, their total, largest and
+ * average length, and a row per day. Everything comes from the daily statistics table, so the
+ * screen opens instantly however long the history is.
+ */
+public class StatsFragment extends Fragment {
+
+    private StatsViewModel statsViewModel;
+    private DailyStatsAdapter adapter;
+
+    private TextView entriesTextView;
+    private TextView totalTextView;
+    private TextView largestTextView;
+    private TextView averageTextView;
+    private RecyclerView recyclerView;
+    private View emptyView;
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_stats, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        statsViewModel = new ViewModelProvider(this).get(StatsViewModel.class);
+
+        entriesTextView = view.findViewById(R.id.text_view_stats_entries);
+        totalTextView = view.findViewById(R.id.text_view_stats_total);
+        largestTextView = view.findViewById(R.id.text_view_stats_largest);
+        averageTextView = view.findViewById(R.id.text_view_stats_average);
+        emptyView = view.findViewById(R.id.text_view_stats_empty);
+
+        recyclerView = view.findViewById(R.id.recycler_view_daily_stats);
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        adapter = new DailyStatsAdapter();
+        recyclerView.setAdapter(adapter);
+
+        statsViewModel.getSummary().observe(getViewLifecycleOwner(), this::showSummary);
+        statsViewModel.getDailyStats().observe(getViewLifecycleOwner(), days -> {
+            adapter.submitList(days);
+            boolean isEmpty = days.isEmpty();
+            recyclerView.setVisibility(isEmpty ? View.GONE : View.VISIBLE);
+            emptyView.setVisibility(isEmpty ? View.VISIBLE : View.GONE);
+        });
+    }
+
+    private void showSummary(HistoryStatsSummary summary) {
+        entriesTextView.setText(getString(R.string.stats_entries_on_days, summary.entryCount, summary.days));
+        totalTextView.setText(formatLength(summary.totalCm));
+        largestTextView.setText(formatLength(summary.maxCm));
+        averageTextView.setText(formatLength(summary.getAverageCm()));
+    }
+
+    /** A length as Kol, Viral and cm, followed by centimetres. */
+    static String formatLength(double cm) {
+        return ConversionUtils.cmToKolFormatted(cm, true, false) + " (" + ConversionUtils.formatCm(cm) + ")";
+    }
+}
@@ -0,0 +1,42 @@
+package in.udhaya.kaikanakku.ui.stats;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.LiveDataReactiveStreams;
+
+import java.util.List;
+
+import in.udhaya.kaikanakku.data.db.HistoryDailyStats;
+import in.udhaya.kaikanakku.data.db.HistoryStatsSummary;
+import in.udhaya.kaikanakku.data.repository.HistoryRepository;
+
+/**
+ * ViewModel for the StatsFragment. Both streams read the daily statistics table, which the
+ * database keeps up to date, so they are cheap to observe and refresh on every history change.
+ */
+public class StatsViewModel extends AndroidViewModel {
+
+    // A year of days with entries at most; a few hundred small rows.
+    private static final int DAYS_SHOWN = 365;
+
+    private final LiveData<HistoryStatsSummary> summary;
+    private final LiveData<List<HistoryDailyStats>> dailyStats;
+
+    public StatsViewModel(@NonNull Application application) {
+        super(application);
+        HistoryRepository historyRepository = HistoryRepository.getInstance(application);
+        summary = LiveDataReactiveStreams.fromPublisher(historyRepository.getStatsSummary());
+        dailyStats = LiveDataReactiveStreams.fromPublisher(historyRepository.getDailyStats(DAYS_SHOWN));
+    }
+
+    public LiveData<HistoryStatsSummary> getSummary() {
+        return summary;
+    }
+
+    public LiveData<List<HistoryDailyStats>> getDailyStats() {
+        return dailyStats;
+    }
+}
@@ -2,10 +2,10 @@ package in.udhaya.kaikanakku.util;
 
 /**
  * A final utility class for performing arithmetic operations on measurements.
- * All calculations are performed on the base unit (centimeters) to ensure accuracy and
- * simplify the logic, as complex carry-over rules are handled by the ConversionUtils class.
- * The ViewModel is responsible for converting all Kol/Viral inputs to total centimeters before
- * calling the methods in this class.
+ * All calculations are performed on exact fixed-point {@link Length} values, so results do not
+ * drift the way double centimetre arithmetic did, and carry-over is handled by plain integer
+ * division. The ViewModel is responsible for converting all Kol/Viral inputs to a Length
+ * (see {@link Measurement#toLength()}) before calling the methods in this class.
  */
 public final class CalculatorUtils {
 
@@ -20,36 +20,55 @@ public final class CalculatorUtils {
         public final int kol;
         public final int viral;
         public final double cm;
+        // The exact total of the three components, in Length sub-units.
+        public final long units;
 
         public Measurement(int kol, int viral, double cm) {
             this.kol = kol;
             this.viral = viral;
             this.cm = cm;
+            this.units = Length.toUnits(kol, viral, cm);
+        }
+
+        public Length toLength() {
+            return Length.ofUnits(units);
         }
     }
 
     /**
      * Adds two measurement values together.
      *
-     * @param cmA The first value in total centimeters.
-     * @param cmB The second value in total centimeters.
-     * @return The sum in total centimeters.
+     * @param a The first value.
+     * @param b The second value.
+     * @return The exact sum.
      */
-    public static double add(double cmA, double cmB) {
+    public static Length add(Length a, Length b) {
         // The ViewModel is responsible for validating against negative inputs before this call.
-        return cmA + cmB;
+        return a.plus(b);
     }
 
     /**
      * Subtracts the second measurement value from the first.
      *
-     * @param cmA The value to subtract from (minuend), in total centimeters.
-     * @param cmB The value to subtract (subtrahend), in total centimeters.
-     * @return The difference in total centimeters.
+     * @param a The value to subtract from (minuend).
+     * @param b The value to subtract (subtrahend).
+     * @return The exact difference.
      */
-    public static double subtract(double cmA, double cmB) {
-        // The ViewModel is responsible for ensuring cmA >= cmB before calling this method
+    public static Length subtract(Length a, Length b) {
+        // The ViewModel is responsible for ensuring a >= b before calling this method
         // to prevent negative length results, as specified in the project requirements.
-        return cmA - cmB;
+        return a.minus(b);
+    }
+
+    /**
+     * Multiplies a measurement value by a scalar, rounded to the nearest Length sub-unit.
+     *
+     * @param a          The value to multiply.
+     * @param multiplier The scalar factor.
+     * @return The product.
+     */
+    public static Length multiply(Length a, double multiplier) {
+        // The ViewModel is responsible for rejecting non-positive multipliers before this call.
+        return a.times(multiplier);
     }
 }
@@ -1,88 +1,146 @@
 package in.udhaya.kaikanakku.util;
 
-import java.util.Locale;
-
 public final class ConversionUtils {
 
     public static final double CM_PER_VIRAL = 3.0;
     public static final int VIRAL_PER_KOL = 24;
     public static final double CM_PER_KOL = CM_PER_VIRAL * VIRAL_PER_KOL; // 72.0
 
-    private ConversionUtils() {}
+    // Shared cache of formatted results; repeat conversions of the same length are a lookup.
+    private static final int FORMAT_CACHE_SIZE = 512;
+    private static final FormattedLengthCache FORMAT_CACHE = new FormattedLengthCache(FORMAT_CACHE_SIZE);
 
-    public static double kolToCm(int kol, int viral, double cm) {
-        int viralFromCm = (int) (cm / CM_PER_VIRAL);
-        double remainingCm = cm % CM_PER_VIRAL;
-        viral += viralFromCm;
+    private ConversionUtils() {}
 
-        int kolFromViral = viral / VIRAL_PER_KOL;
-        int remainingViral = viral % VIRAL_PER_KOL;
-        kol += kolFromViral;
+    /**
+     * Returns the cache used by {@link #cmToKolFormatted}, e.g. to read its hit/miss counters.
+     */
+    public static FormattedLengthCache getFormatCache() {
+        return FORMAT_CACHE;
+    }
 
-        return (kol * CM_PER_KOL) + (remainingViral * CM_PER_VIRAL) + remainingCm;
+    public static double kolToCm(int kol, int viral, double cm) {
+        // All components are scaled to exact fixed-point units, so carry-over is implicit.
+        return Length.unitsToCm(Length.toUnits(kol, viral, cm));
     }
 
     public static String cmToKolFormatted(double totalCm, boolean isPrecisionMode, boolean isRound) {
         if (totalCm < 0) return "0 cm";
+        return cmToKolFormatted(Length.ofCm(totalCm), isPrecisionMode, isRound);
+    }
 
-        int kols = (int) (totalCm / CM_PER_KOL);
-        double remainingCmAfterKols = totalCm % CM_PER_KOL;
-
-        int virals = (int) (remainingCmAfterKols / CM_PER_VIRAL);
-        double finalCm = remainingCmAfterKols % CM_PER_VIRAL;
-
-        if (!isPrecisionMode) {
-            finalCm = isRound ? Math.round(finalCm) : (int) finalCm;
-            if (finalCm >= CM_PER_VIRAL) {
-                virals += 1;
-                finalCm = 0;
-            }
-            if (virals >= VIRAL_PER_KOL) {
-                kols += 1;
-                virals = 0;
-            }
-        }
+    public static String cmToKolFormatted(Length length, boolean isPrecisionMode, boolean isRound) {
+        return FORMAT_CACHE.get(length.getUnits(), isPrecisionMode, isRound);
+    }
 
-        StringBuilder result = new StringBuilder();
-        if (kols > 0) {
-            result.append(kols).append(" kol ");
-        }
-        if (virals > 0) {
-            result.append(virals).append(" viral ");
-        }
+    public static String formatKolViralCmInput(int kol, int viral, double cm) {
+        return MeasurementFormatter.appendInput(MeasurementFormatter.buffer(), kol, viral, cm).toString();
+    }
 
-        if (finalCm > 0.001 || result.length() == 0) {
-            if (isPrecisionMode) {
-                result.append(String.format(Locale.US, finalCm % 1 == 0 ? "%.0f cm" : "%.1f cm", finalCm));
-            } else {
-                result.append(String.format(Locale.US, "%.0f cm", finalCm));
-            }
-        }
+    /**
+     * Formats a centimetre value with two decimal places, e.g. "151.00 cm".
+     */
+    public static String formatCm(double cm) {
+        return MeasurementFormatter.appendCm(MeasurementFormatter.buffer(), Length.cmToUnits(cm), 2).toString();
+    }
+
+    public static String multiplyKol(int kol, int viral, double multiplier) {
+        long units = Length.multiply(Length.toUnits(kol, viral, 0), multiplier);
+
+        // Round to the nearest whole Viral, then split into Kol and Viral with integer division.
+        long totalViral = (units + Length.UNITS_PER_VIRAL / 2) / Length.UNITS_PER_VIRAL;
+        long newKol = totalViral / VIRAL_PER_KOL;
+        long newViral = totalViral % VIRAL_PER_KOL;
 
-        return result.toString().trim();
+        return MeasurementFormatter.buffer()
+                .append(newKol).append(" kol ").append(newViral).append(" viral").toString();
     }
 
-    public static String formatKolViralCmInput(int kol, int viral, double cm) {
-        StringBuilder result = new StringBuilder();
-        if (kol > 0) {
-            result.append(kol).append(" kol ");
-        }
-        if (viral > 0) {
-            result.append(viral).append(" viral ");
-        }
-        if (cm > 0.001 || result.length() == 0) {
-            result.append(String.format(Locale.US, cm % 1 == 0 ? "%.0f cm" : "%.1f cm", cm));
+    // --- Bulk array conversions ---
+    // These work on whole measurement lists laid out as parallel primitive arrays
+    // (struct-of-arrays). They give exactly the same results as the per-value methods above,
+    // but run as tight, allocation-free loops that the JIT can unroll. Offsets and lengths let
+    // callers reuse large buffers across batches.
+
+    /**
+     * Splits each centimetre value into Kol, Viral and a cm remainder below one Viral.
+     * Element {@code i} matches {@code Length.ofCm(cm[cmOffset + i])} decomposed with
+     * {@link Length#getKol()}, {@link Length#getViral()} and {@link Length#getCm()}.
+     *
+     * @param cm          Source values in centimetres (non-negative).
+     * @param cmOffset    Index of the first source value.
+     * @param count       Number of values to convert.
+     * @param kolOut      Receives the whole Kols.
+     * @param viralOut    Receives the whole Virals (0-23).
+     * @param cmOut       Receives the cm remainders (below 3 cm).
+     * @param outOffset   Index of the first output slot in each output array.
+     */
+    public static void cmToKol(double[] cm, int cmOffset, int count,
+                               int[] kolOut, int[] viralOut, double[] cmOut, int outOffset) {
+        checkRange(cm.length, cmOffset, count);
+        checkRange(kolOut.length, outOffset, count);
+        checkRange(viralOut.length, outOffset, count);
+        checkRange(cmOut.length, outOffset, count);
+        for (int i = 0; i < count; i++) {
+            long units = Length.cmToUnits(cm[cmOffset + i]);
+            int o = outOffset + i;
+            kolOut[o] = (int) Length.kolOf(units);
+            viralOut[o] = Length.viralOf(units);
+            cmOut[o] = Length.unitsToCm(Length.cmUnitsOf(units));
         }
-        return result.toString().trim();
     }
 
-    public static String multiplyKol(int kol, int viral, double multiplier) {
-        double totalViral = (kol * VIRAL_PER_KOL) + viral;
-        totalViral *= multiplier;
+    /**
+     * Converts parallel Kol/Viral/cm arrays to total centimetres.
+     * Element {@code i} matches {@link #kolToCm(int, int, double)} for the same inputs.
+     *
+     * @param kol       Source Kols.
+     * @param viral     Source Virals.
+     * @param cm        Source cm parts.
+     * @param inOffset  Index of the first source value in each source array.
+     * @param count     Number of values to convert.
+     * @param cmOut     Receives the totals in centimetres.
+     * @param outOffset Index of the first output slot.
+     */
+    public static void kolToCm(int[] kol, int[] viral, double[] cm, int inOffset, int count,
+                               double[] cmOut, int outOffset) {
+        checkRange(kol.length, inOffset, count);
+        checkRange(viral.length, inOffset, count);
+        checkRange(cm.length, inOffset, count);
+        checkRange(cmOut.length, outOffset, count);
+        for (int i = 0; i < count; i++) {
+            int j = inOffset + i;
+            cmOut[outOffset + i] = Length.unitsToCm(Length.toUnits(kol[j], viral[j], cm[j]));
+        }
+    }
 
-        int newKol = (int) (totalViral / VIRAL_PER_KOL);
-        int newViral = (int) Math.round(totalViral % VIRAL_PER_KOL);
+    /**
+     * Multiplies each centimetre value by the same scalar. Element {@code i} matches
+     * {@code Length.ofCm(cm[cmOffset + i]).times(multiplier).toCm()}.
+     * The source and output arrays may be the same array.
+     *
+     * @param cm         Source values in centimetres.
+     * @param cmOffset   Index of the first source value.
+     * @param count      Number of values to multiply.
+     * @param multiplier The scalar factor.
+     * @param cmOut      Receives the products in centimetres.
+     * @param outOffset  Index of the first output slot.
+     */
+    public static void multiply(double[] cm, int cmOffset, int count, double multiplier,
+                                double[] cmOut, int outOffset) {
+        checkRange(cm.length, cmOffset, count);
+        checkRange(cmOut.length, outOffset, count);
+        for (int i = 0; i < count; i++) {
+            long units = Length.multiply(Length.cmToUnits(cm[cmOffset + i]), multiplier);
+            cmOut[outOffset + i] = Length.unitsToCm(units);
+        }
+    }
 
-        return String.format(Locale.US, "%d kol %d viral", newKol, newViral);
+    // Objects.checkFromIndexSize is only available from API 30, so bounds are checked by hand.
+    private static void checkRange(int arrayLength, int offset, int count) {
+        if (offset < 0 || count < 0 || offset > arrayLength - count) {
+            throw new ArrayIndexOutOfBoundsException(
+                    "Range [" + offset + ", " + offset + " + " + count + ") out of bounds for length " + arrayLength);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,491 @@
+package in.udhaya.kaikanakku.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plans how to cut a list of required pieces from stock lengths (e.g. timber) with as little
+ * waste as possible. Every saw cut removes the kerf width; the last piece in a stock length
+ * needs no cut if it ends exactly at the end of the stock.
+ *
+ * The optimizer first runs first-fit and best-fit decreasing heuristics, which give a good
+ * plan almost instantly. It then runs an exact branch-and-bound search over the same
+ * decisions, bounded by a time budget, and keeps the best plan found. When the search finishes
+ * inside the budget, or the heuristic already meets the lower bound, the plan is reported as
+ * optimal. The search can optionally be split over the common fork/join pool.
+ *
+ * All lengths are exact {@link Length} values, so the plan never depends on rounding.
+ */
+public final class CuttingOptimizer {
+
+    /** Time given to the exact search by {@link #optimize(Job)}. */
+    public static final long DEFAULT_TIME_BUDGET_MS = 80;
+
+    // In parallel mode, the first few levels of the search tree are forked as separate tasks.
+    private static final int PARALLEL_SPLIT_DEPTH = 3;
+    // The clock is read once every this many search nodes (a power of two, minus one).
+    private static final int CLOCK_CHECK_MASK = 0x3FF;
+
+    private CuttingOptimizer() {}
+
+    /**
+     * The pieces to cut, the stock lengths available and the saw kerf. Every stock length may
+     * be used any number of times.
+     */
+    public static final class Job {
+        private final long kerfUnits;
+        private final ArrayList<Long> pieceUnits = new ArrayList<>();
+        private final ArrayList<Integer> pieceCounts = new ArrayList<>();
+        private final ArrayList<Long> stockUnits = new ArrayList<>();
+
+        public Job(Length kerf) {
+            if (kerf.isNegative()) {
+                throw new IllegalArgumentException("Kerf cannot be negative");
+            }
+            this.kerfUnits = kerf.getUnits();
+        }
+
+        public Job addPiece(Length length, int count) {
+            if (length.getUnits() <= 0 || count <= 0) {
+                throw new IllegalArgumentException("Pieces need a positive length and count");
+            }
+            pieceUnits.add(length.getUnits());
+            pieceCounts.add(count);
+            return this;
+        }
+
+        public Job addStock(Length length) {
+            if (length.getUnits() <= 0) {
+                throw new IllegalArgumentException("Stock needs a positive length");
+            }
+            stockUnits.add(length.getUnits());
+            return this;
+        }
+    }
+
+    /** One way of cutting a stock length, used {@link #count} times. */
+    public static final class Pattern {
+        public final Length stock;
+        /** The pieces cut from the stock, longest first. */
+        public final List<Length> pieces;
+        /** What is left of the stock after the last cut. */
+        public final Length offcut;
+        public final int count;
+
+        Pattern(Length stock, List<Length> pieces, Length offcut, int count) {
+            this.stock = stock;
+            this.pieces = pieces;
+            this.offcut = offcut;
+            this.count = count;
+        }
+    }
+
+    /** The result of {@link #optimize}. */
+    public static final class Plan {
+        private final List<Pattern> patterns;
+        private final int stockCount;
+        private final Length stockUsed;
+        private final Length waste;
+        private final boolean optimal;
+
+        Plan(List<Pattern> patterns, int stockCount, Length stockUsed, Length waste, boolean optimal) {
+            this.patterns = Collections.unmodifiableList(patterns);
+            this.stockCount = stockCount;
+            this.stockUsed = stockUsed;
+            this.waste = waste;
+            this.optimal = optimal;
+        }
+
+        /** The distinct cutting patterns, longest stock first. */
+        public List<Pattern> getPatterns() {
+            return patterns;
+        }
+
+        /** Number of stock lengths used. */
+        public int getStockCount() {
+            return stockCount;
+        }
+
+        /** Total length of all stock used. */
+        public Length getStockUsed() {
+            return stockUsed;
+        }
+
+        /** Stock used minus the pieces: the offcuts plus the material lost to the saw. */
+        public Length getWaste() {
+            return waste;
+        }
+
+        /** Whether the plan is proven to use the least possible total stock length. */
+        public boolean isOptimal() {
+            return optimal;
+        }
+    }
+
+    /**
+     * Plans the job with the default time budget, on the calling thread.
+     *
+     * @throws IllegalArgumentException if the job has no stock or a piece is longer than every stock.
+     */
+    public static Plan optimize(Job job) {
+        return optimize(job, DEFAULT_TIME_BUDGET_MS, false);
+    }
+
+    /**
+     * Plans the job, giving the exact search at most {@code timeBudgetMs} milliseconds.
+     * A budget of 0 returns the best heuristic plan.
+     *
+     * @param parallel whether to split the exact search over the common fork/join pool.
+     * @throws IllegalArgumentException if the job has no stock or a piece is longer than every stock.
+     */
+    public static Plan optimize(Job job, long timeBudgetMs, boolean parallel) {
+        Problem problem = new Problem(job);
+        Best best = problem.heuristic();
+        boolean optimal = best.cost.get() <= problem.lowerBound(problem.totalSize);
+
+        if (!optimal && timeBudgetMs > 0) {
+            best.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+            Search root = new Search(problem, best, parallel ? PARALLEL_SPLIT_DEPTH : 0);
+            if (parallel) {
+                ForkJoinPool.commonPool().invoke(new SearchTask(root, 0, 0, 0, problem.totalSize, 0));
+            } else {
+                root.search(0, 0, 0, problem.totalSize, 0);
+            }
+            optimal = !best.timedOut;
+        }
+        return problem.toPlan(best, optimal);
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Problem setup and heuristics
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * The job in search form. Each piece is widened by the kerf, and each stock by one kerf
+     * (the cut that is not needed after the last piece), so a stock holds a set of pieces
+     * exactly when their widened sizes fit in its widened capacity.
+     */
+    static final class Problem {
+        final long kerf;
+        /** Piece lengths, longest first. */
+        final long[] lengths;
+        /** Piece lengths plus kerf, in the same order. */
+        final long[] sizes;
+        /** Stock lengths, shortest first. */
+        final long[] stocks;
+        /** Stock lengths plus kerf. */
+        final long[] capacities;
+        final long totalSize;
+
+        Problem(Job job) {
+            if (job.stockUnits.isEmpty()) {
+                throw new IllegalArgumentException("No stock lengths given");
+            }
+            kerf = job.kerfUnits;
+            stocks = job.stockUnits.stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+            capacities = new long[stocks.length];
+            for (int t = 0; t < stocks.length; t++) {
+                capacities[t] = stocks[t] + kerf;
+            }
+
+            int n = 0;
+            for (int count : job.pieceCounts) {
+                n = Math.addExact(n, count);
+            }
+            lengths = new long[n];
+            int k = 0;
+            for (int p = 0; p < job.pieceUnits.size(); p++) {
+                long length = job.pieceUnits.get(p);
+                if (length > stocks[stocks.length - 1]) {
+                    throw new IllegalArgumentException("A piece is longer than every stock length");
+                }
+                Arrays.fill(lengths, k, k + job.pieceCounts.get(p), length);
+                k += job.pieceCounts.get(p);
+            }
+            Arrays.sort(lengths);
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                long tmp = lengths[i];
+                lengths[i] = lengths[j];
+                lengths[j] = tmp;
+            }
+            sizes = new long[n];
+            long total = 0;
+            for (int i = 0; i < n; i++) {
+                sizes[i] = lengths[i] + kerf;
+                total = Math.addExact(total, sizes[i]);
+            }
+            totalSize = total;
+        }
+
+        /**
+         * A lower bound on the stock length needed to hold {@code size} more widened units.
+         * A stock of length s holds s + kerf, so the cheapest rate is that of the shortest stock.
+         */
+        long lowerBound(long size) {
+            if (size <= 0) return 0;
+            // floor(size * s / (s + kerf)), split so the product cannot overflow.
+            long s = stocks[0];
+            long c = s + kerf;
+            return size / c * s + size % c * s / c;
+        }
+
+        /** Index of the shortest stock whose capacity is at least {@code size}. */
+        int smallestStockFor(long size) {
+            for (int t = 0; t < capacities.length; t++) {
+                if (capacities[t] >= size) return t;
+            }
+            return -1;
+        }
+
+        /**
+         * Runs first-fit and best-fit decreasing once for every stock length as the length to
+         * open, shrinks every used stock to the shortest one its pieces fit, and keeps the
+         * cheapest result.
+         */
+        Best heuristic() {
+            int n = sizes.length;
+            Best best = new Best(n);
+            long[] remaining = new long[n];
+            long[] used = new long[n];
+            int[] assign = new int[n];
+            int[] types = new int[n];
+            for (int open = 0; open < stocks.length; open++) {
+                for (int bestFit = 0; bestFit < 2; bestFit++) {
+                    int bins = 0;
+                    for (int i = 0; i < n; i++) {
+                        long size = sizes[i];
+                        int target = -1;
+                        for (int b = 0; b < bins; b++) {
+                            if (remaining[b] >= size && (target < 0 || (bestFit == 1 && remaining[b] < remaining[target]))) {
+                                target = b;
+                                if (bestFit == 0) break;
+                            }
+                        }
+                        if (target < 0) {
+                            int type = capacities[open] >= size ? open : smallestStockFor(size);
+                            target = bins++;
+                            remaining[target] = capacities[type];
+                            used[target] = 0;
+                        }
+                        remaining[target] -= size;
+                        used[target] += size;
+                        assign[i] = target;
+                    }
+                    long cost = 0;
+                    for (int b = 0; b < bins; b++) {
+                        types[b] = smallestStockFor(used[b]);
+                        cost += stocks[types[b]];
+                    }
+                    best.offer(cost, assign, types, bins);
+                }
+            }
+            return best;
+        }
+
+        Plan toPlan(Best best, boolean optimal) {
+            int bins = best.binCount;
+            long[][] signatures = new long[bins][];
+            int[] fill = new int[bins];
+            for (int i = 0; i < lengths.length; i++) {
+                fill[best.assign[i]]++;
+            }
+            for (int b = 0; b < bins; b++) {
+                signatures[b] = new long[fill[b] + 1];
+                signatures[b][0] = stocks[best.types[b]];
+                fill[b] = 1;
+            }
+            // Pieces are visited longest first, so every pattern lists them longest first.
+            for (int i = 0; i < lengths.length; i++) {
+                int b = best.assign[i];
+                signatures[b][fill[b]++] = lengths[i];
+            }
+            Arrays.sort(signatures, (x, y) -> {
+                for (int k = 0; k < Math.min(x.length, y.length); k++) {
+                    if (x[k] != y[k]) return Long.compare(y[k], x[k]);
+                }
+                return Integer.compare(y.length, x.length);
+            });
+
+            List<Pattern> patterns = new ArrayList<>();
+            long stockUsed = 0;
+            long pieceTotal = 0;
+            for (int b = 0; b < bins; ) {
+                int end = b + 1;
+                while (end < bins && Arrays.equals(signatures[b], signatures[end])) end++;
+                long[] signature = signatures[b];
+                List<Length> pieces = new ArrayList<>(signature.length - 1);
+                long cut = 0;
+                for (int k = 1; k < signature.length; k++) {
+                    pieces.add(Length.ofUnits(signature[k]));
+                    cut += signature[k] + kerf;
+                }
+                long offcut = Math.max(0, signature[0] - cut);
+                patterns.add(new Pattern(Length.ofUnits(signature[0]), Collections.unmodifiableList(pieces),
+                        Length.ofUnits(offcut), end - b));
+                stockUsed += signature[0] * (end - b);
+                b = end;
+            }
+            for (long length : lengths) {
+                pieceTotal += length;
+            }
+            return new Plan(patterns, bins, Length.ofUnits(stockUsed), Length.ofUnits(stockUsed - pieceTotal), optimal);
+        }
+    }
+
+    /** The best plan found so far, shared by all search tasks. */
+    static final class Best {
+        final AtomicLong cost = new AtomicLong(Long.MAX_VALUE);
+        final int[] assign;
+        final int[] types;
+        int binCount;
+        long deadline;
+        volatile boolean timedOut;
+
+        Best(int n) {
+            assign = new int[n];
+            types = new int[n];
+        }
+
+        synchronized void offer(long newCost, int[] newAssign, int[] newTypes, int newBinCount) {
+            if (newCost < cost.get()) {
+                System.arraycopy(newAssign, 0, assign, 0, assign.length);
+                System.arraycopy(newTypes, 0, types, 0, newBinCount);
+                binCount = newBinCount;
+                cost.set(newCost);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Exact search
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Depth-first branch-and-bound. Pieces are placed longest first, either into an open stock
+     * or into a newly opened stock of any length. Two symmetries are cut: identical pieces are
+     * placed in non-decreasing stock order, and open stocks with the same space left are tried
+     * only once. A branch is dropped when its cost plus the lower bound for the pieces that do
+     * not fit in the open space cannot beat the best plan.
+     */
+    static final class Search {
+        private final Problem problem;
+        private final Best best;
+        private final int splitDepth;
+        private final long[] remaining;
+        private final int[] types;
+        private final int[] assign;
+        private int bins;
+        private int nodes;
+
+        Search(Problem problem, Best best, int splitDepth) {
+            this.problem = problem;
+            this.best = best;
+            this.splitDepth = splitDepth;
+            int n = problem.sizes.length;
+            remaining = new long[n];
+            types = new int[n];
+            assign = new int[n];
+        }
+
+        private Search copy() {
+            Search copy = new Search(problem, best, splitDepth);
+            System.arraycopy(remaining, 0, copy.remaining, 0, bins);
+            System.arraycopy(types, 0, copy.types, 0, bins);
+            System.arraycopy(assign, 0, copy.assign, 0, assign.length);
+            copy.bins = bins;
+            return copy;
+        }
+
+        /**
+         * @param free     space left in the open stocks.
+         * @param toPlace  total size of the pieces from {@code i} on.
+         */
+        void search(int i, long cost, long free, long toPlace, int depth) {
+            if (best.timedOut) return;
+            if ((++nodes & CLOCK_CHECK_MASK) == 0 && System.nanoTime() > best.deadline) {
+                best.timedOut = true;
+                return;
+            }
+            long[] sizes = problem.sizes;
+            if (i == sizes.length) {
+                best.offer(cost, assign, types, bins);
+                return;
+            }
+            if (cost + problem.lowerBound(toPlace - free) >= best.cost.get()) {
+                return;
+            }
+
+            List<SearchTask> forks = depth < splitDepth ? new ArrayList<>() : null;
+            long size = sizes[i];
+            int first = i > 0 && sizes[i] == sizes[i - 1] ? assign[i - 1] : 0;
+            for (int b = first; b < bins; b++) {
+                long r = remaining[b];
+                if (r < size || triedEarlier(first, b, r)) continue;
+                remaining[b] = r - size;
+                assign[i] = b;
+                if (forks != null) {
+                    forks.add(new SearchTask(copy(), i + 1, cost, free - size, toPlace - size, depth + 1));
+                } else {
+                    search(i + 1, cost, free - size, toPlace - size, depth + 1);
+                }
+                remaining[b] = r;
+            }
+            long[] capacities = problem.capacities;
+            for (int t = capacities.length - 1; t >= 0 && capacities[t] >= size; t--) {
+                int b = bins++;
+                remaining[b] = capacities[t] - size;
+                types[b] = t;
+                assign[i] = b;
+                long nextCost = cost + problem.stocks[t];
+                long nextFree = free + capacities[t] - size;
+                if (forks != null) {
+                    forks.add(new SearchTask(copy(), i + 1, nextCost, nextFree, toPlace - size, depth + 1));
+                } else {
+                    search(i + 1, nextCost, nextFree, toPlace - size, depth + 1);
+                }
+                bins--;
+            }
+            if (forks != null) {
+                ForkJoinTask.invokeAll(forks);
+            }
+        }
+
+        private boolean triedEarlier(int from, int b, long r) {
+            for (int k = from; k < b; k++) {
+                if (remaining[k] == r) return true;
+            }
+            return false;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class SearchTask extends RecursiveAction {
+        private final Search search;
+        private final int i;
+        private final long cost;
+        private final long free;
+        private final long toPlace;
+        private final int depth;
+
+        SearchTask(Search search, int i, long cost, long free, long toPlace, int depth) {
+            this.search = search;
+            this.i = i;
+            this.cost = cost;
+            this.free = free;
+            this.toPlace = toPlace;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            search.search(i, cost, free, toPlace, depth);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package in.udhaya.kaikanakku.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of "a kol b viral c cm" strings, keyed by the quantized length
+ * (in {@link Length} units) plus the precision and rounding flags that produced it.
+ *
+ * The same handful of lengths (recommendation chips, reused history entries, common carpentry
+ * sizes) are formatted over and over, so a repeat conversion becomes one array lookup:
+ * <ul>
+ *     <li>Whole-Viral lengths up to {@link #DENSE_MAX_KOL} Kol live in a dense table that is
+ *     allocated on first use and filled slot by slot. Their text does not depend on the
+ *     precision or rounding flags, so one slot serves every mode.</li>
+ *     <li>Every other length goes through a direct-mapped table of {@code maxSize} slots, where
+ *     a new key simply replaces whatever shared its slot.</li>
+ * </ul>
+ * Reads and writes take no locks. Cached text is always exactly what {@link MeasurementFormatter}
+ * produces, because a miss formats the value with it and stores the result.
+ */
+public final class FormattedLengthCache {
+
+    /** Largest whole-Kol value covered by the dense table. */
+    public static final int DENSE_MAX_KOL = 1000;
+    private static final int DENSE_SIZE = DENSE_MAX_KOL * ConversionUtils.VIRAL_PER_KOL + 1;
+
+    private static final class Entry {
+        final long key;
+        final String text;
+
+        Entry(long key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private volatile AtomicReferenceArray<String> dense;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxSize The maximum number of entries in the direct-mapped table. It is rounded up
+     *                to the next power of two.
+     */
+    public FormattedLengthCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        int capacity = 1;
+        while (capacity < maxSize && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the formatted text for a length, formatting and storing it on a miss.
+     */
+    public String get(long units, boolean isPrecisionMode, boolean isRound) {
+        if (units >= 0 && units % Length.UNITS_PER_VIRAL == 0 && units / Length.UNITS_PER_VIRAL < DENSE_SIZE) {
+            return getDense((int) (units / Length.UNITS_PER_VIRAL), units);
+        }
+
+        // The rounding flag only matters when precision mode is off.
+        long key = (units << 2) | (isPrecisionMode ? 2 : 0) | (!isPrecisionMode && isRound ? 1 : 0);
+        int index = indexFor(key);
+        Entry entry = slots.get(index);
+        if (entry != null && entry.key == key) {
+            hits.increment();
+            return entry.text;
+        }
+        misses.increment();
+        String text = format(units, isPrecisionMode, isRound);
+        slots.lazySet(index, new Entry(key, text));
+        return text;
+    }
+
+    private String getDense(int virals, long units) {
+        AtomicReferenceArray<String> table = dense;
+        if (table == null) {
+            synchronized (this) {
+                table = dense;
+                if (table == null) {
+                    dense = table = new AtomicReferenceArray<>(DENSE_SIZE);
+                }
+            }
+        }
+        String text = table.get(virals);
+        if (text != null) {
+            hits.increment();
+            return text;
+        }
+        misses.increment();
+        // A whole number of Virals has no cm remainder, so the flags do not affect the output.
+        text = format(units, true, false);
+        table.lazySet(virals, text);
+        return text;
+    }
+
+    private int indexFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static String format(long units, boolean isPrecisionMode, boolean isRound) {
+        return MeasurementFormatter.appendKolViralCm(new StringBuilder(24), units, isPrecisionMode, isRound).toString();
+    }
+
+    // --- Statistics ---
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Removes every cached entry and resets the counters.
+     */
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.lazySet(i, null);
+        }
+        dense = null;
+        hits.reset();
+        misses.reset();
+    }
+}
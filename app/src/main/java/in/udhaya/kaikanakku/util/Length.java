@@ -0,0 +1,178 @@
+package in.udhaya.kaikanakku.util;
+
+/**
+ * An immutable, exact length in the Kol/Viral/cm system.
+ * The value is stored as a whole number of fixed sub-units (hundredths of a centimetre,
+ * i.e. tenths of a millimetre) in a single {@code long}, so addition, subtraction and the
+ * Kol/Viral/cm decomposition are plain integer operations that give the same answer every
+ * time. This removes the floating-point drift of the old double path, where values such as
+ * 71.99999 cm were shown as "23 viral 3 cm" instead of "1 kol".
+ *
+ * The static {@code long}-based helpers perform the same arithmetic on raw unit counts and
+ * are intended for hot loops that must not allocate.
+ */
+public final class Length {
+
+    /** Number of fixed sub-units in one centimetre. */
+    public static final long UNITS_PER_CM = 100;
+    /** Number of fixed sub-units in one Viral (3 cm). */
+    public static final long UNITS_PER_VIRAL = 3 * UNITS_PER_CM;
+    /** Number of fixed sub-units in one Kol (24 Viral). */
+    public static final long UNITS_PER_KOL = ConversionUtils.VIRAL_PER_KOL * UNITS_PER_VIRAL;
+
+    public static final Length ZERO = new Length(0);
+
+    private final long units;
+
+    private Length(long units) {
+        this.units = units;
+    }
+
+    // --- Factories ---
+
+    public static Length ofUnits(long units) {
+        return units == 0 ? ZERO : new Length(units);
+    }
+
+    public static Length ofCm(double cm) {
+        return ofUnits(cmToUnits(cm));
+    }
+
+    public static Length of(int kol, int viral, double cm) {
+        return ofUnits(toUnits(kol, viral, cm));
+    }
+
+    // --- Allocation-free helpers on raw unit counts ---
+
+    /**
+     * Quantizes a centimetre value to the nearest whole sub-unit.
+     */
+    public static long cmToUnits(double cm) {
+        return Math.round(cm * UNITS_PER_CM);
+    }
+
+    /**
+     * Converts a Kol/Viral/cm triple to sub-units. Carry-over (e.g. 25 viral) is handled
+     * implicitly because every component is scaled to the same base unit.
+     */
+    public static long toUnits(int kol, int viral, double cm) {
+        return kol * UNITS_PER_KOL + viral * UNITS_PER_VIRAL + cmToUnits(cm);
+    }
+
+    public static double unitsToCm(long units) {
+        return (double) units / UNITS_PER_CM;
+    }
+
+    /** Whole Kols contained in a non-negative unit count. */
+    public static long kolOf(long units) {
+        return units / UNITS_PER_KOL;
+    }
+
+    /** Whole Virals left after removing the Kols from a non-negative unit count (0-23). */
+    public static int viralOf(long units) {
+        return (int) (units % UNITS_PER_KOL / UNITS_PER_VIRAL);
+    }
+
+    /** Sub-units left after removing the Kols and Virals (0-299, i.e. below 3 cm). */
+    public static int cmUnitsOf(long units) {
+        return (int) (units % UNITS_PER_VIRAL);
+    }
+
+    /**
+     * Multiplies a unit count by a scalar, rounding half away from zero to the nearest sub-unit.
+     */
+    public static long multiply(long units, double factor) {
+        return Math.round(units * factor);
+    }
+
+    /**
+     * Divides a unit count by a whole divisor, rounding half up to the nearest sub-unit.
+     */
+    public static long divide(long units, long divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("Division of a length by zero");
+        }
+        long q = units / divisor;
+        long r = units % divisor;
+        // Round half away from zero without going through floating point.
+        if (Math.abs(r) * 2 >= Math.abs(divisor)) {
+            q += ((units ^ divisor) < 0) ? -1 : 1;
+        }
+        return q;
+    }
+
+    // --- Instance API ---
+
+    public long getUnits() {
+        return units;
+    }
+
+    public double toCm() {
+        return unitsToCm(units);
+    }
+
+    public long getKol() {
+        return kolOf(units);
+    }
+
+    public int getViral() {
+        return viralOf(units);
+    }
+
+    /** The centimetre remainder (below one Viral) expressed in sub-units. */
+    public int getCmUnits() {
+        return cmUnitsOf(units);
+    }
+
+    /** The centimetre remainder (below one Viral). */
+    public double getCm() {
+        return unitsToCm(cmUnitsOf(units));
+    }
+
+    public boolean isZero() {
+        return units == 0;
+    }
+
+    public boolean isNegative() {
+        return units < 0;
+    }
+
+    public int compareTo(Length other) {
+        return Long.compare(units, other.units);
+    }
+
+    public Length plus(Length other) {
+        return ofUnits(Math.addExact(units, other.units));
+    }
+
+    public Length minus(Length other) {
+        return ofUnits(Math.subtractExact(units, other.units));
+    }
+
+    public Length times(double factor) {
+        return ofUnits(multiply(units, factor));
+    }
+
+    public Length times(long factor) {
+        return ofUnits(Math.multiplyExact(units, factor));
+    }
+
+    public Length dividedBy(long divisor) {
+        return ofUnits(divide(units, divisor));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Length && ((Length) o).units == units;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units);
+    }
+
+    @Override
+    public String toString() {
+        return units + " units";
+    }
+}
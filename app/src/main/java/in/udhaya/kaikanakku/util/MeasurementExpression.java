@@ -0,0 +1,417 @@
+package in.udhaya.kaikanakku.util;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compiled measurement expression such as "(3 kol 4 viral) + 2 × (1 kol 10 viral) − 5 cm".
+ *
+ * The source is parsed and type-checked once into a flat program: an {@code int[]} of opcodes
+ * over two primitive stacks, one of lengths (in {@link Length} units) and one of plain scalars.
+ * Every value's type is known at compile time, so evaluation is a single loop over the opcodes
+ * with no boxing, no tree walking and no allocation; the stacks are sized at compile time.
+ *
+ * Grammar (whitespace is ignored):
+ * <pre>
+ *   expression := term (('+' | '-' | '−') term)*
+ *   term       := factor (('*' | '×' | 'x' | '/' | '÷') factor)*
+ *   factor     := '(' expression ')' | measurement | number
+ *   measurement:= number unit (number unit)*      e.g. "3 kol 4 viral 2.5 cm", "3k 4v"
+ * </pre>
+ * Lengths may be added to and subtracted from lengths, multiplied by scalars on either side and
+ * divided by scalars. The whole expression must produce a length.
+ *
+ * Compiled expressions are immutable apart from their evaluation scratch space and can be
+ * shared through {@link #compileCached(CharSequence)}.
+ */
+public final class MeasurementExpression {
+
+    // --- Opcodes ---
+    private static final int PUSH_LENGTH = 0;   // operand: index into lengthConstants
+    private static final int PUSH_SCALAR = 1;   // operand: index into scalarConstants
+    private static final int ADD_LENGTH = 2;
+    private static final int SUB_LENGTH = 3;
+    private static final int MUL_LENGTH = 4;    // length * scalar, in either source order
+    private static final int DIV_LENGTH = 5;    // length / scalar
+    private static final int ADD_SCALAR = 6;
+    private static final int SUB_SCALAR = 7;
+    private static final int MUL_SCALAR = 8;
+    private static final int DIV_SCALAR = 9;
+
+    private static final int CACHE_SIZE = 64;
+    private static final Map<String, MeasurementExpression> CACHE =
+            new LinkedHashMap<String, MeasurementExpression>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MeasurementExpression> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private final String source;
+    private final int[] code;
+    private final long[] lengthConstants;
+    private final double[] scalarConstants;
+
+    // Evaluation scratch space, sized for the deepest point of the program.
+    private final long[] lengthStack;
+    private final double[] scalarStack;
+
+    private MeasurementExpression(String source, int[] code, long[] lengthConstants, double[] scalarConstants,
+                                  int maxLengthDepth, int maxScalarDepth) {
+        this.source = source;
+        this.code = code;
+        this.lengthConstants = lengthConstants;
+        this.scalarConstants = scalarConstants;
+        this.lengthStack = new long[maxLengthDepth];
+        this.scalarStack = new double[maxScalarDepth];
+    }
+
+    /**
+     * Compiles an expression.
+     *
+     * @throws ParseException if the text is malformed or does not produce a length. The error
+     *                        offset points at the offending character.
+     */
+    public static MeasurementExpression compile(CharSequence source) throws ParseException {
+        return new Compiler(source).compile();
+    }
+
+    /**
+     * Compiles an expression, reusing an earlier compilation of the same text when there is one.
+     * Only successful compilations are cached.
+     */
+    public static MeasurementExpression compileCached(CharSequence source) throws ParseException {
+        String key = source.toString();
+        synchronized (CACHE) {
+            MeasurementExpression cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MeasurementExpression compiled = compile(key);
+        synchronized (CACHE) {
+            CACHE.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Evaluates the expression.
+     *
+     * @return The resulting length in {@link Length} units. It may be negative.
+     * @throws ArithmeticException on division by zero or if the result does not fit in a long.
+     */
+    public synchronized long evaluate() {
+        final int[] code = this.code;
+        final long[] lengths = lengthStack;
+        final double[] scalars = scalarStack;
+        int lp = 0;
+        int sp = 0;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case PUSH_LENGTH:
+                    lengths[lp++] = lengthConstants[code[++pc]];
+                    break;
+                case PUSH_SCALAR:
+                    scalars[sp++] = scalarConstants[code[++pc]];
+                    break;
+                case ADD_LENGTH:
+                    lp--;
+                    lengths[lp - 1] = Math.addExact(lengths[lp - 1], lengths[lp]);
+                    break;
+                case SUB_LENGTH:
+                    lp--;
+                    lengths[lp - 1] = Math.subtractExact(lengths[lp - 1], lengths[lp]);
+                    break;
+                case MUL_LENGTH:
+                    lengths[lp - 1] = checkedRound(lengths[lp - 1] * scalars[--sp]);
+                    break;
+                case DIV_LENGTH: {
+                    double divisor = scalars[--sp];
+                    if (divisor == 0) throw new ArithmeticException("Division of a length by zero");
+                    lengths[lp - 1] = checkedRound(lengths[lp - 1] / divisor);
+                    break;
+                }
+                case ADD_SCALAR:
+                    sp--;
+                    scalars[sp - 1] += scalars[sp];
+                    break;
+                case SUB_SCALAR:
+                    sp--;
+                    scalars[sp - 1] -= scalars[sp];
+                    break;
+                case MUL_SCALAR:
+                    sp--;
+                    scalars[sp - 1] *= scalars[sp];
+                    break;
+                case DIV_SCALAR:
+                    sp--;
+                    if (scalars[sp] == 0) throw new ArithmeticException("Division by zero");
+                    scalars[sp - 1] /= scalars[sp];
+                    break;
+                default:
+                    throw new IllegalStateException("Bad opcode " + code[pc]);
+            }
+        }
+        return lengths[0];
+    }
+
+    /**
+     * Evaluates the expression and wraps the result as a {@link Length}.
+     */
+    public Length evaluateLength() {
+        return Length.ofUnits(evaluate());
+    }
+
+    private static long checkedRound(double value) {
+        if (!(Math.abs(value) < Long.MAX_VALUE)) {
+            throw new ArithmeticException("Length out of range");
+        }
+        return Math.round(value);
+    }
+
+    /**
+     * A single-use recursive-descent compiler that emits the flat program while it parses.
+     */
+    private static final class Compiler {
+        private static final boolean LENGTH = true;
+        private static final boolean SCALAR = false;
+
+        private final CharSequence text;
+        private final int end;
+        private int pos;
+
+        private int[] code = new int[32];
+        private int codeSize;
+        private long[] lengths = new long[8];
+        private int lengthCount;
+        private double[] scalars = new double[8];
+        private int scalarCount;
+
+        // Simulated stack depths, used to size the evaluation stacks.
+        private int lengthDepth, maxLengthDepth;
+        private int scalarDepth, maxScalarDepth;
+
+        // Result of the last readNumber call.
+        private final MeasurementParser.Decimal number = new MeasurementParser.Decimal();
+
+        Compiler(CharSequence text) {
+            this.text = text;
+            this.end = text.length();
+        }
+
+        MeasurementExpression compile() throws ParseException {
+            skipWhitespace();
+            if (pos == end) {
+                throw new ParseException("Empty expression", 0);
+            }
+            boolean type = expression();
+            skipWhitespace();
+            if (pos != end) {
+                throw new ParseException("Unexpected character", pos);
+            }
+            if (type != LENGTH) {
+                throw new ParseException("Expression must produce a length", 0);
+            }
+            int[] program = new int[codeSize];
+            System.arraycopy(code, 0, program, 0, codeSize);
+            long[] lengthConstants = new long[lengthCount];
+            System.arraycopy(lengths, 0, lengthConstants, 0, lengthCount);
+            double[] scalarConstants = new double[scalarCount];
+            System.arraycopy(scalars, 0, scalarConstants, 0, scalarCount);
+            return new MeasurementExpression(text.toString(), program, lengthConstants, scalarConstants,
+                    Math.max(1, maxLengthDepth), maxScalarDepth);
+        }
+
+        private boolean expression() throws ParseException {
+            boolean left = term();
+            while (true) {
+                skipWhitespace();
+                if (pos == end) return left;
+                char c = text.charAt(pos);
+                boolean subtract;
+                if (c == '+') {
+                    subtract = false;
+                } else if (c == '-' || c == '\u2212') {
+                    subtract = true;
+                } else {
+                    return left;
+                }
+                int operatorPos = pos++;
+                boolean right = term();
+                if (left != right) {
+                    throw new ParseException("Cannot add or subtract a length and a plain number", operatorPos);
+                }
+                if (left == LENGTH) {
+                    emit(subtract ? SUB_LENGTH : ADD_LENGTH);
+                    lengthDepth--;
+                } else {
+                    emit(subtract ? SUB_SCALAR : ADD_SCALAR);
+                    scalarDepth--;
+                }
+            }
+        }
+
+        private boolean term() throws ParseException {
+            boolean left = factor();
+            while (true) {
+                skipWhitespace();
+                if (pos == end) return left;
+                char c = text.charAt(pos);
+                boolean divide;
+                if (c == '*' || c == '\u00D7' || c == 'x' || c == 'X') {
+                    divide = false;
+                } else if (c == '/' || c == '\u00F7') {
+                    divide = true;
+                } else {
+                    return left;
+                }
+                int operatorPos = pos++;
+                boolean right = factor();
+                if (left == LENGTH && right == LENGTH) {
+                    throw new ParseException(divide ? "Cannot divide a length by a length"
+                            : "Cannot multiply a length by a length", operatorPos);
+                }
+                if (left == LENGTH || right == LENGTH) {
+                    if (divide && right == LENGTH) {
+                        throw new ParseException("Cannot divide a plain number by a length", operatorPos);
+                    }
+                    // The operands live on separate stacks, so "2 × length" and "length × 2" are
+                    // the same instruction.
+                    emit(divide ? DIV_LENGTH : MUL_LENGTH);
+                    scalarDepth--;
+                    left = LENGTH;
+                } else {
+                    emit(divide ? DIV_SCALAR : MUL_SCALAR);
+                    scalarDepth--;
+                }
+            }
+        }
+
+        private boolean factor() throws ParseException {
+            skipWhitespace();
+            if (pos == end) {
+                throw new ParseException("Missing value", pos);
+            }
+            if (text.charAt(pos) == '(') {
+                pos++;
+                boolean type = expression();
+                skipWhitespace();
+                if (pos == end || text.charAt(pos) != ')') {
+                    throw new ParseException("Missing ')'", pos);
+                }
+                pos++;
+                return type;
+            }
+
+            int numberStart = pos;
+            readNumber();
+            int unit = readUnit();
+            if (unit < 0) {
+                emitScalar((double) number.mantissa / MeasurementParser.POW10[number.fractionDigits]);
+                return SCALAR;
+            }
+
+            // A measurement literal: keep consuming "number unit" pairs that follow directly.
+            long units = toUnits(unit, numberStart);
+            while (true) {
+                int save = pos;
+                skipWhitespace();
+                if (pos == end || MeasurementParser.digit(text.charAt(pos)) < 0) {
+                    pos = save;
+                    break;
+                }
+                int pairStart = pos;
+                readNumber();
+                int nextUnit = readUnit();
+                if (nextUnit < 0) {
+                    pos = save;
+                    break;
+                }
+                units = Math.addExact(units, toUnits(nextUnit, pairStart));
+            }
+            emitLength(units);
+            return LENGTH;
+        }
+
+        private long toUnits(int unit, int at) throws ParseException {
+            long whole = number.mantissa / MeasurementParser.POW10[number.fractionDigits];
+            if (whole > Integer.MAX_VALUE) {
+                throw new ParseException("Number too large", at);
+            }
+            return MeasurementParser.scale(number.mantissa, number.fractionDigits, MeasurementParser.unitsPer(unit));
+        }
+
+        private void readNumber() throws ParseException {
+            int start = pos;
+            int next = MeasurementParser.readNumber(text, start, end, number);
+            if (next == -MeasurementParser.ERROR_OVERFLOW) {
+                throw new ParseException("Number too large", start);
+            }
+            if (next < 0) {
+                throw new ParseException(number.errorIndex == start ? "Expected a number" : "Malformed number",
+                        number.errorIndex);
+            }
+            pos = next;
+        }
+
+        /**
+         * Reads an optional unit word after a number. Returns the UNIT_* index or -1, leaving the
+         * position unchanged when there is no unit (so 'x' can still be read as an operator).
+         */
+        private int readUnit() {
+            int save = pos;
+            skipWhitespace();
+            int unitEnd = MeasurementParser.unitEnd(text, pos, end);
+            int unit = MeasurementParser.matchUnit(text, pos, unitEnd);
+            if (unit < 0) {
+                pos = save;
+                return -1;
+            }
+            pos = unitEnd;
+            return unit;
+        }
+
+        private void skipWhitespace() {
+            pos = MeasurementParser.skipWhitespace(text, pos, end);
+        }
+
+        private void emitLength(long units) {
+            if (lengthCount == lengths.length) {
+                long[] grown = new long[lengthCount * 2];
+                System.arraycopy(lengths, 0, grown, 0, lengthCount);
+                lengths = grown;
+            }
+            lengths[lengthCount] = units;
+            emit(PUSH_LENGTH);
+            emit(lengthCount++);
+            maxLengthDepth = Math.max(maxLengthDepth, ++lengthDepth);
+        }
+
+        private void emitScalar(double value) {
+            if (scalarCount == scalars.length) {
+                double[] grown = new double[scalarCount * 2];
+                System.arraycopy(scalars, 0, grown, 0, scalarCount);
+                scalars = grown;
+            }
+            scalars[scalarCount] = value;
+            emit(PUSH_SCALAR);
+            emit(scalarCount++);
+            maxScalarDepth = Math.max(maxScalarDepth, ++scalarDepth);
+        }
+
+        private void emit(int word) {
+            if (codeSize == code.length) {
+                int[] grown = new int[codeSize * 2];
+                System.arraycopy(code, 0, grown, 0, codeSize);
+                code = grown;
+            }
+            code[codeSize++] = word;
+        }
+    }
+}
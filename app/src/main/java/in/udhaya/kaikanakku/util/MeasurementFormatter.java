@@ -0,0 +1,139 @@
+package in.udhaya.kaikanakku.util;
+
+/**
+ * Renders measurements as text by writing digits straight into a caller-supplied
+ * {@link StringBuilder}. Decimal places are produced with integer arithmetic on the
+ * fixed-point {@link Length} units, so no {@link java.util.Formatter}, format-string parsing
+ * or temporary strings are involved. The output is identical to the "%.0f"/"%.1f"/"%.2f"
+ * patterns it replaces (half-up rounding, US digits).
+ *
+ * The {@code append*} methods never allocate beyond growing the supplied builder; callers
+ * that need a String can use the ConversionUtils wrappers, which reuse a per-thread buffer.
+ */
+public final class MeasurementFormatter {
+
+    private static final String KOL = " kol";
+    private static final String VIRAL = " viral";
+    private static final String CM = " cm";
+
+    // Powers of ten for the supported number of fixed decimal places (0-2).
+    private static final int[] POW10 = {1, 10, 100};
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    private MeasurementFormatter() {}
+
+    /**
+     * Returns this thread's scratch builder, cleared and ready for reuse.
+     */
+    static StringBuilder buffer() {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    /**
+     * Appends a non-negative length in the "a kol b viral c cm" form used for results.
+     * In precision mode the cm remainder keeps one decimal place (dropped when it is zero);
+     * otherwise it is rounded or truncated to whole centimetres. Remainders that reach a full
+     * Viral (or Virals that reach a full Kol) are carried over. Negative lengths render as "0 cm".
+     */
+    public static StringBuilder appendKolViralCm(StringBuilder out, long units, boolean isPrecisionMode, boolean isRound) {
+        if (units < 0) {
+            return out.append('0').append(CM);
+        }
+
+        long kols = Length.kolOf(units);
+        int virals = Length.viralOf(units);
+        int cmUnits = Length.cmUnitsOf(units);
+
+        // The remainder is rendered either in tenths (precision mode) or whole centimetres.
+        int cmTenths;
+        if (isPrecisionMode) {
+            cmTenths = (cmUnits + 5) / 10;
+        } else {
+            int wholeCm = isRound ? (cmUnits + 50) / 100 : cmUnits / 100;
+            cmTenths = wholeCm * 10;
+        }
+        if (cmTenths >= 30) {
+            virals += 1;
+            cmTenths = 0;
+        }
+        if (virals >= ConversionUtils.VIRAL_PER_KOL) {
+            kols += 1;
+            virals = 0;
+        }
+        return appendParts(out, kols, virals, cmTenths);
+    }
+
+    /**
+     * Appends the components of a user-entered measurement exactly as typed, without carrying
+     * over. The cm part is shown with at most one decimal place.
+     */
+    public static StringBuilder appendInput(StringBuilder out, int kol, int viral, double cm) {
+        int cmTenths = (int) ((Length.cmToUnits(cm) + 5) / 10);
+        return appendParts(out, Math.max(kol, 0), Math.max(viral, 0), cmTenths);
+    }
+
+    /**
+     * Appends a length in plain centimetres with a fixed number of decimal places (0-2),
+     * followed by " cm". Equivalent to {@code String.format(Locale.US, "%.Nf cm", cm)}.
+     */
+    public static StringBuilder appendCm(StringBuilder out, long units, int decimals) {
+        appendFixed(out, units, decimals);
+        return out.append(CM);
+    }
+
+    /**
+     * Appends a unit count as a centimetre number with a fixed number of decimal places (0-2),
+     * rounding half away from zero like {@link java.util.Formatter}.
+     */
+    public static StringBuilder appendFixed(StringBuilder out, long units, int decimals) {
+        if (decimals < 0 || decimals > 2) {
+            throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+        }
+        if (units < 0) {
+            out.append('-');
+            units = -units;
+        }
+        // Scale from hundredths down to the requested number of places, rounding half up.
+        int drop = POW10[2 - decimals];
+        long scaled = (units + drop / 2) / drop;
+        int pow = POW10[decimals];
+        out.append(scaled / pow);
+        if (decimals > 0) {
+            out.append('.');
+            long fraction = scaled % pow;
+            // Left-pad the fractional digits with zeros.
+            for (int p = pow / 10; p > 0; p /= 10) {
+                out.append((char) ('0' + (fraction / p) % 10));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Shared layout for "a kol b viral c cm": zero parts are skipped, but "0 cm" is written when
+     * everything is zero. The cm part is given in tenths and its ".0" is dropped.
+     */
+    private static StringBuilder appendParts(StringBuilder out, long kols, long virals, int cmTenths) {
+        int start = out.length();
+        if (kols > 0) {
+            out.append(kols).append(KOL);
+        }
+        if (virals > 0) {
+            if (out.length() > start) out.append(' ');
+            out.append(virals).append(VIRAL);
+        }
+        if (cmTenths > 0 || out.length() == start) {
+            if (out.length() > start) out.append(' ');
+            out.append(cmTenths / 10);
+            if (cmTenths % 10 != 0) {
+                out.append('.').append((char) ('0' + cmTenths % 10));
+            }
+            out.append(CM);
+        }
+        return out;
+    }
+}
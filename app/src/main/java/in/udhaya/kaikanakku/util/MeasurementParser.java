@@ -0,0 +1,389 @@
+package in.udhaya.kaikanakku.util;
+
+/**
+ * A hand-written, allocation-free parser for measurement text. It reads directly from a
+ * {@link CharSequence} (an {@code Editable} from an EditText can be passed as is), so no
+ * intermediate Strings, regular expressions or boxed numbers are created, and no
+ * {@link NumberFormatException} is ever thrown.
+ *
+ * Two entry points are provided:
+ * <ul>
+ *     <li>{@link #parseNumber(CharSequence)} for a single input field, e.g. "12" or "2.5".</li>
+ *     <li>{@link #parseMeasurement(CharSequence)} for mixed text such as "3 kol 4 viral 2.5 cm",
+ *     "3k 4v" or "൩ കോൽ ൪ വിരൽ".</li>
+ * </ul>
+ * Both accept ASCII and Malayalam digits and return a status code. The parsed values are kept
+ * in primitive fields of this instance and read back through the getters, so a single parser
+ * can be reused for every parse. Instances are not thread-safe; keep one per screen or thread.
+ */
+public final class MeasurementParser {
+
+    // --- Status codes ---
+    public static final int OK = 0;
+    /** The text was empty or contained only whitespace. Callers usually treat this as zero. */
+    public static final int EMPTY = 1;
+    /** A number was malformed (e.g. "1.2.3", a sign, or no digits). */
+    public static final int ERROR_INVALID_NUMBER = 2;
+    /** A unit word was not recognised, or a number had no unit in measurement text. */
+    public static final int ERROR_UNKNOWN_UNIT = 3;
+    /** A Kol or Viral amount had a fractional part. */
+    public static final int ERROR_NOT_INTEGER = 4;
+    /** A number was too large to represent. */
+    public static final int ERROR_OVERFLOW = 5;
+
+    // Fractional digits beyond this are ignored; they are far below the Length resolution.
+    static final int MAX_FRACTION_DIGITS = 9;
+    static final long[] POW10 = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    // Largest whole amount of any unit accepted in measurement text, so totals stay within a long.
+    private static final long MAX_WHOLE_AMOUNT = Integer.MAX_VALUE;
+
+    static final int UNIT_KOL = 0;
+    static final int UNIT_VIRAL = 1;
+    static final int UNIT_CM = 2;
+
+    // Accepted spellings for each unit, indexed by UNIT_*. ASCII words match case-insensitively.
+    private static final String[][] UNIT_WORDS = {
+            {"kol", "kols", "k", "കോൽ", "കോല്", "കോല്‍", "കോൽ."},
+            {"viral", "virals", "v", "വിരൽ", "വിരല്", "വിരല്‍"},
+            {"cm", "cms", "c", "സെ.മീ", "സെ.മീ.", "സെമീ", "സെന്റിമീറ്റർ"},
+    };
+
+    /**
+     * An unsigned decimal number as read by {@link #readNumber}: {@code mantissa} divided by
+     * 10^{@code fractionDigits}, or where reading it failed.
+     */
+    static final class Decimal {
+        long mantissa;
+        int fractionDigits;
+        int errorIndex;
+    }
+
+    // --- Number result ---
+    private final Decimal number = new Decimal();
+    private long mantissa;
+    private int fractionDigits;
+
+    // --- Measurement result ---
+    private long kol;
+    private long viral;
+    private long cmUnits;
+
+    private int errorIndex;
+
+    // ---------------------------------------------------------------------------------------
+    // Single numbers
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Parses a whole field as one non-negative decimal number, ignoring surrounding whitespace.
+     * A null text is treated as empty.
+     *
+     * @return {@link #OK}, {@link #EMPTY} or an error code.
+     */
+    public int parseNumber(CharSequence text) {
+        reset();
+        if (text == null) {
+            return EMPTY;
+        }
+        int end = text.length();
+        int i = skipWhitespace(text, 0, end);
+        if (i == end) {
+            return EMPTY;
+        }
+        int next = readNumber(text, i, end);
+        if (next < 0) {
+            return -next;
+        }
+        if (skipWhitespace(text, next, end) != end) {
+            errorIndex = next;
+            return ERROR_INVALID_NUMBER;
+        }
+        return OK;
+    }
+
+    /**
+     * The last number, as a double.
+     */
+    public double getDouble() {
+        return (double) mantissa / POW10[fractionDigits];
+    }
+
+    /**
+     * The last number as an int, or -1 if it has a fractional part or does not fit.
+     */
+    public int getInt() {
+        if (fractionDigits != 0 || mantissa > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return (int) mantissa;
+    }
+
+    /**
+     * Whether the last number has no fractional part.
+     */
+    public boolean isInteger() {
+        return fractionDigits == 0;
+    }
+
+    /**
+     * The last number read as centimetres, in {@link Length} units (rounded half up).
+     */
+    public long getNumberAsUnits() {
+        return scale(mantissa, fractionDigits, Length.UNITS_PER_CM);
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Mixed measurement text
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Parses text made of "number unit" pairs, e.g. "3 kol 4 viral 2.5 cm", "3k4v",
+     * "2.5cm" or their Malayalam forms. Pairs may be separated by whitespace or commas, and
+     * repeated units are added together.
+     *
+     * @return {@link #OK}, {@link #EMPTY} or an error code. On error, {@link #getErrorIndex()}
+     *         gives the position of the offending character. A null text is treated as empty.
+     */
+    public int parseMeasurement(CharSequence text) {
+        if (text == null) {
+            reset();
+            return EMPTY;
+        }
+        return parseMeasurement(text, 0, text.length());
+    }
+
+    /**
+     * Parses the region {@code [start, end)} of {@code text} like
+     * {@link #parseMeasurement(CharSequence)}, so a measurement inside a longer line can be read
+     * without copying it out. Error indices are positions in {@code text}.
+     */
+    public int parseMeasurement(CharSequence text, int start, int end) {
+        reset();
+        int i = skipSeparators(text, start, end);
+        if (i == end) {
+            return EMPTY;
+        }
+        while (i < end) {
+            int next = readNumber(text, i, end);
+            if (next < 0) {
+                return -next;
+            }
+            long value = mantissa;
+            int digits = fractionDigits;
+            if (value / POW10[digits] > MAX_WHOLE_AMOUNT) {
+                errorIndex = i;
+                return ERROR_OVERFLOW;
+            }
+
+            int unitStart = skipWhitespace(text, next, end);
+            int unitEnd = unitEnd(text, unitStart, end);
+            int unit = matchUnit(text, unitStart, unitEnd);
+            if (unit < 0) {
+                errorIndex = unitStart;
+                return ERROR_UNKNOWN_UNIT;
+            }
+
+            if (unit == UNIT_CM) {
+                cmUnits += scale(value, digits, Length.UNITS_PER_CM);
+            } else if (digits != 0) {
+                errorIndex = i;
+                return ERROR_NOT_INTEGER;
+            } else if (unit == UNIT_KOL) {
+                kol += value;
+            } else {
+                viral += value;
+            }
+            i = skipSeparators(text, unitEnd, end);
+        }
+        mantissa = 0;
+        fractionDigits = 0;
+        return OK;
+    }
+
+    /** Kol parsed from the last measurement, as written (no carry-over applied). */
+    public long getKol() {
+        return kol;
+    }
+
+    /** Viral parsed from the last measurement, as written (no carry-over applied). */
+    public long getViral() {
+        return viral;
+    }
+
+    /** The cm part of the last measurement, in {@link Length} units. */
+    public long getCmUnits() {
+        return cmUnits;
+    }
+
+    /** The cm part of the last measurement. */
+    public double getCm() {
+        return Length.unitsToCm(cmUnits);
+    }
+
+    /** The whole last measurement in {@link Length} units. */
+    public long getTotalUnits() {
+        return kol * Length.UNITS_PER_KOL + viral * Length.UNITS_PER_VIRAL + cmUnits;
+    }
+
+    /** Position of the character that caused the last error, or -1. */
+    public int getErrorIndex() {
+        return errorIndex;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Scanning helpers
+    // ---------------------------------------------------------------------------------------
+
+    private void reset() {
+        mantissa = 0;
+        fractionDigits = 0;
+        kol = 0;
+        viral = 0;
+        cmUnits = 0;
+        errorIndex = -1;
+    }
+
+    /** {@link #readNumber(CharSequence, int, int, Decimal)} into mantissa/fractionDigits. */
+    private int readNumber(CharSequence text, int start, int end) {
+        int next = readNumber(text, start, end, number);
+        if (next < 0) {
+            errorIndex = number.errorIndex;
+            return next;
+        }
+        mantissa = number.mantissa;
+        fractionDigits = number.fractionDigits;
+        return next;
+    }
+
+    /**
+     * Reads an unsigned decimal number starting at {@code start} into {@code out}. Shared with
+     * {@link MeasurementExpression}, so a number means the same in both.
+     *
+     * @return The index after the number, or {@code -}{@link #ERROR_INVALID_NUMBER} or
+     *         {@code -}{@link #ERROR_OVERFLOW}, with {@code out.errorIndex} set.
+     */
+    static int readNumber(CharSequence text, int start, int end, Decimal out) {
+        long value = 0;
+        int fraction = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        int i = start;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            int d = digit(c);
+            if (d >= 0) {
+                seenDigit = true;
+                if (seenPoint) {
+                    if (fraction == MAX_FRACTION_DIGITS) continue;
+                    fraction++;
+                }
+                if (value > (Long.MAX_VALUE - d) / 10) {
+                    out.errorIndex = i;
+                    return -ERROR_OVERFLOW;
+                }
+                value = value * 10 + d;
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            out.errorIndex = start;
+            return -ERROR_INVALID_NUMBER;
+        }
+        // A second decimal point directly after the number is a malformed number, not a unit.
+        if (i < end && text.charAt(i) == '.') {
+            out.errorIndex = i;
+            return -ERROR_INVALID_NUMBER;
+        }
+        out.mantissa = value;
+        out.fractionDigits = fraction;
+        return i;
+    }
+
+    static int digit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= '\u0D66' && c <= '\u0D6F') return c - '\u0D66'; // Malayalam digits
+        return -1;
+    }
+
+    private static boolean isMalayalam(char c) {
+        // The Malayalam block, excluding its digits.
+        return (c >= '\u0D00' && c <= '\u0D65') || (c >= '\u0D70' && c <= '\u0D7F');
+    }
+
+    /**
+     * Finds the end of a unit word: ASCII letters, or Malayalam letters/signs together with
+     * joiners and the dot used in abbreviations such as "സെ.മീ".
+     */
+    static int unitEnd(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end) {
+            char c = text.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isMalayalam(c)
+                    || c == '\u200C' || c == '\u200D'
+                    || (c == '.' && i > start && isMalayalam(text.charAt(i - 1)))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    static int matchUnit(CharSequence text, int start, int end) {
+        if (start == end) return -1;
+        for (int unit = 0; unit < UNIT_WORDS.length; unit++) {
+            for (String word : UNIT_WORDS[unit]) {
+                if (regionEqualsIgnoreAsciiCase(text, start, end, word)) {
+                    return unit;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionEqualsIgnoreAsciiCase(CharSequence text, int start, int end, String word) {
+        if (end - start != word.length()) return false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = text.charAt(start + i);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    static int skipWhitespace(CharSequence text, int i, int end) {
+        while (i < end && Character.isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+
+    private static int skipSeparators(CharSequence text, int i, int end) {
+        while (i < end) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c) && c != ',') break;
+            i++;
+        }
+        return i;
+    }
+
+    /** Length units in one Kol, Viral or cm, indexed by UNIT_*. */
+    static long unitsPer(int unit) {
+        return unit == UNIT_KOL ? Length.UNITS_PER_KOL : unit == UNIT_VIRAL ? Length.UNITS_PER_VIRAL : Length.UNITS_PER_CM;
+    }
+
+    /**
+     * Scales mantissa / 10^digits by {@code factor}, rounding half up. The integer and fractional
+     * parts are scaled separately so the intermediate product cannot overflow.
+     */
+    static long scale(long mantissa, int digits, long factor) {
+        long divisor = POW10[digits];
+        long whole = mantissa / divisor;
+        long fraction = mantissa % divisor;
+        return whole * factor + (fraction * factor + divisor / 2) / divisor;
+    }
+}
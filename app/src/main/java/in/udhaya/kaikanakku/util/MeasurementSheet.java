@@ -0,0 +1,464 @@
+package in.udhaya.kaikanakku.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Evaluates a whole sheet of measurements, such as a list sent in from a site, in one pass.
+ * Each line of the sheet has the form
+ * <pre>
+ *     [group:] measurement [x quantity]
+ * </pre>
+ * for example "Kitchen: 3 kol 4 viral 2 cm x 4" or "൨ കോൽ ൬ വിരൽ". The measurement is read by
+ * {@link MeasurementParser}; the quantity defaults to 1 and may also be written with "×" or "*".
+ * Blank lines and lines starting with '#' are skipped. Lines that cannot be read are reported
+ * in {@link Result#getRejected()} instead of failing the whole sheet.
+ *
+ * The stream is read in chunks of lines. While one chunk is being read, the previous one is
+ * evaluated on a {@link ForkJoinPool} by splitting its line range in halves. All arithmetic is
+ * done in exact {@link Length} units, and partial results are merged left to right, so a
+ * parallel run gives exactly the same totals, group order and rejected lines as a
+ * sequential one.
+ */
+public final class MeasurementSheet {
+
+    /** Receives progress between chunks and is polled for cancellation. */
+    public interface Listener {
+        /** Called after every chunk with the number of lines evaluated so far. */
+        void onProgress(long linesDone);
+
+        /** Returning true stops the evaluation with a {@link CancellationException}. */
+        boolean isCancelled();
+    }
+
+    /** The group used for lines without a "group:" prefix. */
+    public static final String DEFAULT_GROUP = "";
+
+    /** Value of {@link Result#getLineUnits(int)} for skipped or rejected lines. */
+    public static final long NO_VALUE = -1;
+
+    private static final int DEFAULT_CHUNK_LINES = 4096;
+    private static final int DEFAULT_LEAF_LINES = 256;
+
+    private final ForkJoinPool pool;
+    private final int chunkLines;
+    private final int leafLines;
+
+    private MeasurementSheet(ForkJoinPool pool, int chunkLines, int leafLines) {
+        this.pool = pool;
+        this.chunkLines = chunkLines;
+        this.leafLines = leafLines;
+    }
+
+    /** An evaluator that spreads the work over the common fork/join pool. */
+    public static MeasurementSheet parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /** An evaluator that spreads the work over the given pool. */
+    public static MeasurementSheet parallel(ForkJoinPool pool) {
+        if (pool == null) throw new NullPointerException("pool");
+        return new MeasurementSheet(pool, DEFAULT_CHUNK_LINES, DEFAULT_LEAF_LINES);
+    }
+
+    /** An evaluator that does all the work on the calling thread. */
+    public static MeasurementSheet sequential() {
+        return new MeasurementSheet(null, DEFAULT_CHUNK_LINES, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads and evaluates a UTF-8 sheet. The stream is read to the end but not closed.
+     *
+     * @param listener may be null.
+     * @throws CancellationException if the listener asked to cancel.
+     */
+    public Result evaluate(InputStream in, Listener listener) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Accumulator total = new Accumulator();
+        ChunkTask pending = null;
+        int lineNumber = 0;
+
+        while (true) {
+            checkCancelled(listener);
+            String[] lines = new String[chunkLines];
+            int count = 0;
+            String line;
+            while (count < chunkLines && (line = reader.readLine()) != null) {
+                lines[count++] = line;
+            }
+
+            // Start this chunk before collecting the previous one, so reading overlaps evaluation.
+            ChunkTask next = null;
+            if (count > 0) {
+                next = new ChunkTask(lines, new long[count], 0, count, lineNumber + 1, leafLines);
+                lineNumber += count;
+                if (pool != null) {
+                    pool.execute(next);
+                } else {
+                    next.invoke();
+                }
+            }
+            if (pending != null) {
+                total.add(pending);
+                report(listener, total.lineCount);
+            }
+            if (next == null) {
+                return total.toResult();
+            }
+            pending = next;
+        }
+    }
+
+    private static void checkCancelled(Listener listener) {
+        if (listener != null && listener.isCancelled()) {
+            throw new CancellationException("Sheet evaluation cancelled");
+        }
+    }
+
+    private static void report(Listener listener, long linesDone) {
+        if (listener != null) {
+            listener.onProgress(linesDone);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Results
+    // ---------------------------------------------------------------------------------------
+
+    /**
+     * Count, total, minimum, maximum and mean of a set of lines. Min, max and mean are per
+     * piece; the total includes the quantities.
+     */
+    public static final class Summary {
+        private long lines;
+        private long pieces;
+        private long totalUnits;
+        private long minUnits = Long.MAX_VALUE;
+        private long maxUnits = Long.MIN_VALUE;
+
+        Summary() {}
+
+        void add(long pieceUnits, long quantity, long lineUnits) {
+            lines++;
+            pieces = Math.addExact(pieces, quantity);
+            totalUnits = Math.addExact(totalUnits, lineUnits);
+            if (pieceUnits < minUnits) minUnits = pieceUnits;
+            if (pieceUnits > maxUnits) maxUnits = pieceUnits;
+        }
+
+        void merge(Summary other) {
+            lines += other.lines;
+            pieces = Math.addExact(pieces, other.pieces);
+            totalUnits = Math.addExact(totalUnits, other.totalUnits);
+            if (other.minUnits < minUnits) minUnits = other.minUnits;
+            if (other.maxUnits > maxUnits) maxUnits = other.maxUnits;
+        }
+
+        /** Number of measurement lines. */
+        public long getLineCount() {
+            return lines;
+        }
+
+        /** Number of pieces, i.e. the sum of the quantities. */
+        public long getPieceCount() {
+            return pieces;
+        }
+
+        public Length getTotal() {
+            return Length.ofUnits(totalUnits);
+        }
+
+        /** The shortest piece, or zero if there are no lines. */
+        public Length getMin() {
+            return Length.ofUnits(lines == 0 ? 0 : minUnits);
+        }
+
+        /** The longest piece, or zero if there are no lines. */
+        public Length getMax() {
+            return Length.ofUnits(lines == 0 ? 0 : maxUnits);
+        }
+
+        /** The mean piece length, or zero if there are no lines. */
+        public Length getMean() {
+            return Length.ofUnits(pieces == 0 ? 0 : Length.divide(totalUnits, pieces));
+        }
+
+        public String formatTotal(boolean isPrecisionMode, boolean isRound) {
+            return ConversionUtils.cmToKolFormatted(getTotal(), isPrecisionMode, isRound);
+        }
+
+        public String formatMin(boolean isPrecisionMode, boolean isRound) {
+            return ConversionUtils.cmToKolFormatted(getMin(), isPrecisionMode, isRound);
+        }
+
+        public String formatMax(boolean isPrecisionMode, boolean isRound) {
+            return ConversionUtils.cmToKolFormatted(getMax(), isPrecisionMode, isRound);
+        }
+
+        public String formatMean(boolean isPrecisionMode, boolean isRound) {
+            return ConversionUtils.cmToKolFormatted(getMean(), isPrecisionMode, isRound);
+        }
+    }
+
+    /** A line that could not be read. */
+    public static final class Rejected {
+        /** 1-based line number in the sheet. */
+        public final int lineNumber;
+        /** One of the {@link MeasurementParser} status codes. */
+        public final int status;
+
+        Rejected(int lineNumber, int status) {
+            this.lineNumber = lineNumber;
+            this.status = status;
+        }
+    }
+
+    /** The evaluated sheet. */
+    public static final class Result {
+        private final long[] lineUnits;
+        private final int lineCount;
+        private final Summary summary;
+        private final Map<String, Summary> groups;
+        private final List<Rejected> rejected;
+
+        Result(long[] lineUnits, int lineCount, Summary summary, Map<String, Summary> groups, List<Rejected> rejected) {
+            this.lineUnits = lineUnits;
+            this.lineCount = lineCount;
+            this.summary = summary;
+            this.groups = Collections.unmodifiableMap(groups);
+            this.rejected = Collections.unmodifiableList(rejected);
+        }
+
+        /** Number of lines read, including skipped and rejected ones. */
+        public int getLineCount() {
+            return lineCount;
+        }
+
+        /**
+         * The total (piece length times quantity) of the line at the 0-based {@code index}, in
+         * {@link Length} units, or {@link #NO_VALUE} if the line was skipped or rejected.
+         */
+        public long getLineUnits(int index) {
+            if (index < 0 || index >= lineCount) {
+                throw new IndexOutOfBoundsException("Line " + index + " out of " + lineCount);
+            }
+            return lineUnits[index];
+        }
+
+        /** The total of the line at the 0-based {@code index} in cm, or -1 if it has none. */
+        public double getLineCm(int index) {
+            long units = getLineUnits(index);
+            return units == NO_VALUE ? -1 : Length.unitsToCm(units);
+        }
+
+        /** Totals over the whole sheet. */
+        public Summary getSummary() {
+            return summary;
+        }
+
+        /** Subtotals per group, in the order the groups first appear in the sheet. */
+        public Map<String, Summary> getGroups() {
+            return groups;
+        }
+
+        public List<Rejected> getRejected() {
+            return rejected;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Evaluation
+    // ---------------------------------------------------------------------------------------
+
+    /** The result of a run of lines. Merging keeps first-appearance order of groups. */
+    static final class Partial {
+        final Summary summary = new Summary();
+        final LinkedHashMap<String, Summary> groups = new LinkedHashMap<>();
+        final ArrayList<Rejected> rejected = new ArrayList<>();
+
+        Partial merge(Partial right) {
+            summary.merge(right.summary);
+            for (Map.Entry<String, Summary> entry : right.groups.entrySet()) {
+                Summary group = groups.get(entry.getKey());
+                if (group == null) {
+                    groups.put(entry.getKey(), entry.getValue());
+                } else {
+                    group.merge(entry.getValue());
+                }
+            }
+            rejected.addAll(right.rejected);
+            return this;
+        }
+    }
+
+    /** Evaluates lines [from, to) of a chunk, writing each line's total into {@code out}. */
+    @SuppressWarnings("serial")
+    static final class ChunkTask extends RecursiveTask<Partial> {
+        private final String[] lines;
+        final long[] out;
+        private final int from;
+        private final int to;
+        private final int firstLineNumber;
+        private final int leafLines;
+
+        ChunkTask(String[] lines, long[] out, int from, int to, int firstLineNumber, int leafLines) {
+            this.lines = lines;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.firstLineNumber = firstLineNumber;
+            this.leafLines = leafLines;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= leafLines) {
+                return evaluateRange();
+            }
+            int mid = (from + to) >>> 1;
+            ChunkTask left = new ChunkTask(lines, out, from, mid, firstLineNumber, leafLines);
+            ChunkTask right = new ChunkTask(lines, out, mid, to, firstLineNumber, leafLines);
+            left.fork();
+            Partial rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+
+        private Partial evaluateRange() {
+            Partial partial = new Partial();
+            LineReader reader = new LineReader();
+            for (int i = from; i < to; i++) {
+                String line = lines[i];
+                int status = reader.read(line);
+                if (status == MeasurementParser.EMPTY) {
+                    out[i] = NO_VALUE;
+                } else if (status != MeasurementParser.OK) {
+                    out[i] = NO_VALUE;
+                    partial.rejected.add(new Rejected(firstLineNumber + i, status));
+                } else {
+                    out[i] = reader.lineUnits;
+                    partial.summary.add(reader.pieceUnits, reader.quantity, reader.lineUnits);
+                    String name = reader.groupEnd < 0 ? DEFAULT_GROUP : line.substring(reader.groupStart, reader.groupEnd);
+                    Summary group = partial.groups.get(name);
+                    if (group == null) {
+                        group = new Summary();
+                        partial.groups.put(name, group);
+                    }
+                    group.add(reader.pieceUnits, reader.quantity, reader.lineUnits);
+                }
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Splits one line into its group, measurement and quantity. Not thread-safe; each leaf
+     * task uses its own.
+     */
+    static final class LineReader {
+        private final MeasurementParser parser = new MeasurementParser();
+
+        int groupStart;
+        int groupEnd;
+        long pieceUnits;
+        long quantity;
+        long lineUnits;
+
+        /**
+         * @return {@link MeasurementParser#OK}, {@link MeasurementParser#EMPTY} for blank and
+         *         comment lines, or an error code.
+         */
+        int read(String line) {
+            groupEnd = -1;
+            int end = line.length();
+            int start = MeasurementParser.skipWhitespace(line, 0, end);
+            if (start == end || line.charAt(start) == '#') {
+                return MeasurementParser.EMPTY;
+            }
+
+            int colon = line.indexOf(':', start);
+            if (colon >= 0) {
+                groupStart = start;
+                groupEnd = colon;
+                while (groupEnd > groupStart && Character.isWhitespace(line.charAt(groupEnd - 1))) groupEnd--;
+                start = colon + 1;
+            }
+
+            // An optional trailing "x 4", "× 4" or "* 4".
+            quantity = 1;
+            int i = end;
+            while (i > start && Character.isWhitespace(line.charAt(i - 1))) i--;
+            int digitsEnd = i;
+            while (i > start && MeasurementParser.digit(line.charAt(i - 1)) >= 0) i--;
+            int digitsStart = i;
+            while (i > start && Character.isWhitespace(line.charAt(i - 1))) i--;
+            if (digitsStart < digitsEnd && i > start && isTimes(line.charAt(i - 1))) {
+                long value = 0;
+                for (int d = digitsStart; d < digitsEnd; d++) {
+                    value = value * 10 + MeasurementParser.digit(line.charAt(d));
+                    if (value > Integer.MAX_VALUE) {
+                        return MeasurementParser.ERROR_OVERFLOW;
+                    }
+                }
+                if (value == 0) {
+                    return MeasurementParser.ERROR_INVALID_NUMBER;
+                }
+                quantity = value;
+                end = i - 1;
+            }
+
+            int status = parser.parseMeasurement(line, start, end);
+            if (status == MeasurementParser.EMPTY) {
+                // A group or quantity with no measurement.
+                return MeasurementParser.ERROR_INVALID_NUMBER;
+            }
+            if (status != MeasurementParser.OK) {
+                return status;
+            }
+            pieceUnits = parser.getTotalUnits();
+            if (pieceUnits > Long.MAX_VALUE / quantity) {
+                return MeasurementParser.ERROR_OVERFLOW;
+            }
+            lineUnits = pieceUnits * quantity;
+            return MeasurementParser.OK;
+        }
+
+        private static boolean isTimes(char c) {
+            return c == 'x' || c == 'X' || c == '*' || c == '\u00D7';
+        }
+    }
+
+    /** Collects chunk results in sheet order. */
+    private static final class Accumulator {
+        private long[] lineUnits = new long[DEFAULT_CHUNK_LINES];
+        private int lineCount;
+        private Partial partial;
+
+        void add(ChunkTask chunk) {
+            Partial result = chunk.join();
+            partial = partial == null ? result : partial.merge(result);
+            long[] out = chunk.out;
+            if (lineCount + out.length > lineUnits.length) {
+                lineUnits = Arrays.copyOf(lineUnits, Math.max(lineUnits.length * 2, lineCount + out.length));
+            }
+            System.arraycopy(out, 0, lineUnits, lineCount, out.length);
+            lineCount += out.length;
+        }
+
+        Result toResult() {
+            Partial p = partial != null ? partial : new Partial();
+            return new Result(lineUnits, lineCount, p.summary, p.groups, p.rejected);
+        }
+    }
+}
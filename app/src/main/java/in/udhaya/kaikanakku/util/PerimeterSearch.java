@@ -0,0 +1,342 @@
+package in.udhaya.kaikanakku.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds every room size (length, width), in whole Viral, whose perimeter (chuttu) satisfies a
+ * set of traditional modular rules such as yoni or aayam/vyayam. The way these are reckoned
+ * differs between traditions, so the rules are given as plain remainders of the perimeter in
+ * Viral, e.g. {@code Rule.remainder(3, 8, 2, 6)} or {@code Rule.greaterRemainder(8, 12, 3, 14)}.
+ *
+ * Each {@link Rule} looks at the perimeter modulo some number, so whether a room is valid
+ * depends only on the half-perimeter (length + width) modulo the least common multiple of
+ * all rule moduli. That residue table is computed once. For a given length the valid widths
+ * then form whole residue classes, which are walked directly; widths in invalid classes are
+ * never looked at. Results come from a lazily evaluated {@link Stream} whose spliterator
+ * splits the length range, so a parallel stream spreads the search over the fork/join pool,
+ * and {@link #count()} counts every class in closed form without visiting the candidates.
+ */
+public final class PerimeterSearch {
+
+    /** Largest residue table accepted, i.e. the largest LCM of the rule moduli. */
+    public static final int MAX_PERIOD = 1 << 20;
+
+    // Lengths per leaf task in count().
+    private static final int COUNT_LEAF_LENGTHS = 64;
+
+    /**
+     * A condition on the perimeter, expressed in Viral. It must depend only on the perimeter
+     * modulo {@link #modulus}.
+     */
+    public abstract static class Rule {
+        final int modulus;
+
+        Rule(int modulus) {
+            if (modulus <= 0) throw new IllegalArgumentException("Modulus must be positive");
+            this.modulus = modulus;
+        }
+
+        /** Whether a perimeter p with {@code p % modulus == residue} is acceptable. */
+        abstract boolean accepts(int residue);
+
+        /**
+         * Accepts a perimeter p when {@code (p * multiplier) % modulus} is one of {@code allowed}.
+         */
+        public static Rule remainder(int multiplier, int modulus, int... allowed) {
+            boolean[] ok = new boolean[modulus];
+            for (int a : allowed) {
+                if (a < 0 || a >= modulus) throw new IllegalArgumentException("Remainder out of range: " + a);
+                ok[a] = true;
+            }
+            return new Rule(modulus) {
+                @Override
+                boolean accepts(int residue) {
+                    return ok[(int) ((long) residue * multiplier % modulus)];
+                }
+            };
+        }
+
+        /**
+         * Accepts a perimeter p when {@code (p * multiplierA) % modulusA} is greater than
+         * {@code (p * multiplierB) % modulusB}.
+         */
+        public static Rule greaterRemainder(int multiplierA, int modulusA, int multiplierB, int modulusB) {
+            return new Rule(lcm(modulusA, modulusB)) {
+                @Override
+                boolean accepts(int residue) {
+                    return (long) residue * multiplierA % modulusA > (long) residue * multiplierB % modulusB;
+                }
+            };
+        }
+    }
+
+    /** One valid room size. */
+    public static final class Candidate {
+        public final int lengthViral;
+        public final int widthViral;
+
+        Candidate(int lengthViral, int widthViral) {
+            this.lengthViral = lengthViral;
+            this.widthViral = widthViral;
+        }
+
+        public Length getLength() {
+            return Length.ofUnits(lengthViral * Length.UNITS_PER_VIRAL);
+        }
+
+        public Length getWidth() {
+            return Length.ofUnits(widthViral * Length.UNITS_PER_VIRAL);
+        }
+
+        public long getPerimeterViral() {
+            return 2L * (lengthViral + widthViral);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Candidate)) return false;
+            Candidate other = (Candidate) o;
+            return lengthViral == other.lengthViral && widthViral == other.widthViral;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * lengthViral + widthViral;
+        }
+
+        @Override
+        public String toString() {
+            return lengthViral + " x " + widthViral + " viral";
+        }
+    }
+
+    private final int minLength;
+    private final int maxLength;
+    private final int minWidth;
+    private final int maxWidth;
+    private final boolean widthAtMostLength;
+    private final int period;
+    /** Valid half-perimeter residues modulo {@link #period}, ascending. */
+    private final int[] validSums;
+
+    /**
+     * Prepares a search. Bounds are rounded inwards to whole Viral.
+     *
+     * @param widthAtMostLength if true, only sizes with width &lt;= length are listed, so each
+     *                          room shape appears once.
+     * @throws IllegalArgumentException if a range is empty or negative, or the rule moduli
+     *                                  have a common multiple above {@link #MAX_PERIOD}.
+     */
+    public PerimeterSearch(Length minLength, Length maxLength, Length minWidth, Length maxWidth,
+                           boolean widthAtMostLength, List<Rule> rules) {
+        this.minLength = viralAtLeast(minLength);
+        this.maxLength = viralAtMost(maxLength);
+        this.minWidth = viralAtLeast(minWidth);
+        this.maxWidth = viralAtMost(maxWidth);
+        if (this.minLength < 0 || this.minWidth < 0 || this.minLength > this.maxLength || this.minWidth > this.maxWidth) {
+            throw new IllegalArgumentException("Empty or negative range");
+        }
+        this.widthAtMostLength = widthAtMostLength;
+
+        int p = 1;
+        for (Rule rule : rules) {
+            p = lcm(p, rule.modulus);
+        }
+        period = p;
+
+        // The perimeter is 2 * sum, so one table over sum modulo the period covers every rule.
+        int[] sums = new int[period];
+        int count = 0;
+        for (int s = 0; s < period; s++) {
+            if (acceptsAll(rules, 2L * s)) {
+                sums[count++] = s;
+            }
+        }
+        validSums = Arrays.copyOf(sums, count);
+    }
+
+    private static boolean acceptsAll(List<Rule> rules, long perimeter) {
+        for (Rule rule : rules) {
+            if (!rule.accepts((int) (perimeter % rule.modulus))) return false;
+        }
+        return true;
+    }
+
+    private static int viralAtLeast(Length length) {
+        return Math.toIntExact(-Math.floorDiv(-length.getUnits(), Length.UNITS_PER_VIRAL));
+    }
+
+    private static int viralAtMost(Length length) {
+        return Math.toIntExact(Math.floorDiv(length.getUnits(), Length.UNITS_PER_VIRAL));
+    }
+
+    static int lcm(int a, int b) {
+        int x = a, y = b;
+        while (y != 0) {
+            int t = x % y;
+            x = y;
+            y = t;
+        }
+        long lcm = (long) a / x * b;
+        if (lcm > MAX_PERIOD) {
+            throw new IllegalArgumentException("Rule moduli have too large a common multiple: " + lcm);
+        }
+        return (int) lcm;
+    }
+
+    /**
+     * All valid sizes, by length and then width ascending. The stream is lazy, so the first
+     * results are available at once; call {@code parallel()} on it to search with all cores.
+     */
+    public Stream<Candidate> stream() {
+        return StreamSupport.stream(new CandidateSpliterator(minLength, maxLength + 1), false);
+    }
+
+    /** The number of valid sizes, counted on the common fork/join pool. */
+    public long count() {
+        return ForkJoinPool.commonPool().invoke(new CountTask(minLength, maxLength + 1));
+    }
+
+    /** Counts the valid widths for one length in closed form. */
+    private long countForLength(int length) {
+        int hi = widthAtMostLength ? Math.min(maxWidth, length) : maxWidth;
+        if (hi < minWidth) return 0;
+        long total = 0;
+        int shift = length % period;
+        for (int s : validSums) {
+            // Widths w with (length + w) % period == s, i.e. w = s - length (mod period).
+            int r = Math.floorMod(s - shift, period);
+            total += Math.floorDiv(hi - r, period) - Math.floorDiv(minWidth - 1 - r, period);
+        }
+        return total;
+    }
+
+    @SuppressWarnings("serial")
+    private final class CountTask extends RecursiveTask<Long> {
+        private final int from;
+        private final int to;
+
+        CountTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= COUNT_LEAF_LENGTHS) {
+                long total = 0;
+                for (int length = from; length < to; length++) {
+                    total += countForLength(length);
+                }
+                return total;
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(from, mid);
+            left.fork();
+            long right = new CountTask(mid, to).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Walks lengths [length, end). For each length the valid width residues are a rotation of
+     * {@link #validSums}, so walking blocks of {@link #period} widths in rotated order gives
+     * the valid widths in ascending order.
+     */
+    private final class CandidateSpliterator implements Spliterator<Candidate> {
+        private int length;
+        private int end;
+        // Position within the current length: block start and index into the rotated residues.
+        private long blockStart;
+        private int index;
+        private int rotation;
+        private int shift;
+        private int widthLimit;
+        private boolean started;
+
+        CandidateSpliterator(int from, int end) {
+            this.length = from;
+            this.end = end;
+        }
+
+        private void startLength() {
+            shift = length % period;
+            widthLimit = widthAtMostLength ? Math.min(maxWidth, length) : maxWidth;
+            // First valid sum >= shift; residues from there on come first once shifted.
+            int k = Arrays.binarySearch(validSums, shift);
+            rotation = k >= 0 ? k : -k - 1;
+            blockStart = minWidth - Math.floorMod(minWidth, period);
+            index = 0;
+            started = true;
+        }
+
+        private int residue(int i) {
+            int k = rotation + i;
+            return k < validSums.length ? validSums[k] - shift : validSums[k - validSums.length] - shift + period;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Candidate> action) {
+            if (validSums.length == 0) {
+                length = end;
+                return false;
+            }
+            while (length < end) {
+                if (!started) startLength();
+                while (blockStart <= widthLimit) {
+                    if (index == validSums.length) {
+                        index = 0;
+                        blockStart += period;
+                        continue;
+                    }
+                    long width = blockStart + residue(index++);
+                    if (width > widthLimit) {
+                        break;
+                    }
+                    if (width >= minWidth) {
+                        action.accept(new Candidate(length, (int) width));
+                        return true;
+                    }
+                }
+                length++;
+                started = false;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Candidate> trySplit() {
+            if (end - length < 2) return null;
+            int mid = (length + end) >>> 1;
+            // The prefix takes over the current position; this spliterator keeps [mid, end).
+            CandidateSpliterator prefix = new CandidateSpliterator(length, mid);
+            prefix.blockStart = blockStart;
+            prefix.index = index;
+            prefix.rotation = rotation;
+            prefix.shift = shift;
+            prefix.widthLimit = widthLimit;
+            prefix.started = started;
+            length = mid;
+            started = false;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) (end - length) * (maxWidth - minWidth + 1) / period * validSums.length;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE | DISTINCT;
+        }
+    }
+}
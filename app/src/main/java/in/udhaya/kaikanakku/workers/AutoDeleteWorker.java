@@ -16,8 +16,11 @@ import io.reactivex.rxjava3.core.Flowable;
 
 /**
  * A background worker, managed by Android's WorkManager, that periodically deletes old entries
- * from the history database. This task is designed to be battery-efficient and will run
- * approximately once a day, even if the app is not open.
+ * from the history database, or moves them to the history archive if the user has chosen to
+ * keep them. It also removes for good the entries the user deleted more than
+ * {@link HistoryRepository#DELETED_GRACE_PERIOD_MS} ago, whatever the setting. This task is
+ * designed to be battery-efficient and will run approximately once a day, even if the app is
+ * not open.
  */
 public class AutoDeleteWorker extends Worker {
 
@@ -47,6 +50,12 @@ public class AutoDeleteWorker extends Worker {
         Log.i(TAG, "Auto-delete background worker started.");
 
         try {
+            // Entries deleted by the user are only marked, so they can be restored; once the
+            // grace period is over they go for good.
+            int purged = historyRepository.purgeDeleted(
+                    System.currentTimeMillis() - HistoryRepository.DELETED_GRACE_PERIOD_MS);
+            Log.i(TAG, "Purged " + purged + " deleted history entries.");
+
             // The SettingsRepository provides a reactive Flowable stream for the preference.
             // Since the doWork() method is synchronous, we must block the current background
             // thread to get the latest value from the DataStore. This is a safe and intended
@@ -67,11 +76,16 @@ public class AutoDeleteWorker extends Worker {
             // this will be deleted.
             long cutoffMillis = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysToKeep);
 
-            // Execute the delete operation via the repository. This is a blocking database call
-            // which is safe to run here on the worker's background thread.
-            historyRepository.deleteOlderThan(cutoffMillis);
-
-            Log.i(TAG, "Successfully deleted old history entries. Worker finishing.");
+            // Execute the delete or archive operation via the repository. These are blocking
+            // database calls which are safe to run here on the worker's background thread.
+            Boolean archive = settingsRepository.isArchiveOldHistoryEnabled().blockingFirst();
+            if (Boolean.TRUE.equals(archive)) {
+                int archived = historyRepository.archiveOlderThan(cutoffMillis);
+                Log.i(TAG, "Successfully archived " + archived + " old history entries. Worker finishing.");
+            } else {
+                int deleted = historyRepository.deleteOlderThan(cutoffMillis);
+                Log.i(TAG, "Successfully deleted " + deleted + " old history entries. Worker finishing.");
+            }
             return Result.success();
 
         } catch (Exception e) {
@@ -0,0 +1,51 @@
+package in.udhaya.kaikanakku.workers;
+
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import in.udhaya.kaikanakku.data.db.DatabaseMaintenance;
+import in.udhaya.kaikanakku.data.repository.HistoryRepository;
+import in.udhaya.kaikanakku.data.repository.SettingsRepository;
+
+/**
+ * A background worker that compacts the database and refreshes its query statistics (see
+ * {@link DatabaseMaintenance}). It is scheduled to run about once a day, only while the
+ * device is idle and charging, so the occasional full VACUUM never competes with the user.
+ * What each run freed and how long it took is logged and saved in the settings.
+ */
+public class DatabaseMaintenanceWorker extends Worker {
+
+    private static final String TAG = "DatabaseMaintenance";
+
+    private final HistoryRepository historyRepository;
+    private final SettingsRepository settingsRepository;
+
+    public DatabaseMaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+        Application application = (Application) context.getApplicationContext();
+        historyRepository = HistoryRepository.getInstance(application);
+        settingsRepository = SettingsRepository.getInstance(application);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        try {
+            DatabaseMaintenance.Report report = historyRepository.runMaintenance();
+            Log.i(TAG, "Database maintenance freed " + report.freedBytes() + " bytes ("
+                    + report.bytesBefore + " -> " + report.bytesAfter + ") in " + report.durationMillis + " ms"
+                    + (report.enabledIncrementalVacuum ? ", incremental vacuum enabled." : "."));
+            settingsRepository.recordMaintenance(report).blockingAwait();
+            return Result.success();
+        } catch (Exception e) {
+            Log.e(TAG, "Database maintenance failed.", e);
+            // Nothing is lost by waiting for the next idle window.
+            return Result.retry();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package in.udhaya.kaikanakku.data.archive;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.util.Length;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryArchive} and its segment format.
+ */
+public class HistoryArchiveTest {
+
+    private static List<HistoryEntry> sampleEntries() {
+        List<HistoryEntry> entries = new ArrayList<>();
+        entries.add(HistoryEntry.cmToKol(Length.ofCm(151), "151.00 cm", "2 kol 1 viral 7 cm", true, false, 1_000));
+        entries.add(HistoryEntry.kolToCm(Length.of(3, 4, 0), "3 kol 4 viral", "228.00 cm", 1_000));
+        entries.add(HistoryEntry.calculation(HistoryEntry.KIND_MULTIPLY, Length.of(1, 0, 0), Length.ZERO, 2.5,
+                Length.ofCm(180), "(1 kol) * 2.5", "2 kol 4 viral", 61_000));
+        HistoryEntry favorite = HistoryEntry.calculation(HistoryEntry.KIND_ADD, Length.of(1, 0, 0), Length.of(0, 2, 0),
+                1, Length.of(1, 2, 0), "(1 kol) + (2 viral)", "1 kol 2 viral", 3_600_000);
+        favorite.setFavorite(true);
+        entries.add(favorite);
+        // Same text as the first, later: shares its dictionary entries.
+        entries.add(HistoryEntry.cmToKol(Length.ofCm(151), "151.00 cm", "2 kol 1 viral 7 cm", true, false, 3_600_500));
+        return entries;
+    }
+
+    @Test
+    public void segment_roundTripsEveryField() throws IOException {
+        List<HistoryEntry> entries = sampleEntries();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistoryArchiveSegment.write(entries, out);
+
+        List<HistoryEntry> read = HistoryArchiveSegment.read(new ByteArrayInputStream(out.toByteArray()), HistoryArchiveSegment.ALL);
+        assertEquals(entries.size(), read.size());
+        for (int i = 0; i < entries.size(); i++) {
+            HistoryEntry expected = entries.get(i);
+            HistoryEntry actual = read.get(i);
+            assertEquals(expected.getInputText(), actual.getInputText());
+            assertEquals(expected.getOutputText(), actual.getOutputText());
+            assertEquals(expected.getTotalCm(), actual.getTotalCm(), 0);
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.isFavorite(), actual.isFavorite());
+            assertEquals(expected.getKind(), actual.getKind());
+            assertEquals(expected.getOperandA(), actual.getOperandA());
+            assertEquals(expected.getOperandB(), actual.getOperandB());
+            assertEquals(expected.getMultiplier(), actual.getMultiplier(), 0);
+            assertEquals(expected.isPrecision(), actual.isPrecision());
+            assertEquals(expected.isRounded(), actual.isRounded());
+            assertEquals(expected.getContentHash(), actual.getContentHash());
+        }
+    }
+
+    @Test
+    public void segment_isSmallerThanItsText() throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        int textBytes = 0;
+        for (int i = 0; i < 1000; i++) {
+            Length length = Length.ofCm(100 + i % 50);
+            HistoryEntry entry = HistoryEntry.kolToCm(length, length.getKol() + " kol " + length.getViral() + " viral",
+                    length.toCm() + " cm", 1_700_000_000_000L + i * 1000L);
+            textBytes += entry.getInputText().length() + entry.getOutputText().length() + 8;
+            entries.add(entry);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistoryArchiveSegment.write(entries, out);
+        assertTrue("segment of " + out.size() + " bytes", out.size() < textBytes / 10);
+    }
+
+    @Test
+    public void segment_rejectsDamage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HistoryArchiveSegment.write(sampleEntries(), out);
+        byte[] bytes = out.toByteArray();
+        bytes[bytes.length - 3] ^= 0x55;
+        try {
+            HistoryArchiveSegment.read(new ByteArrayInputStream(bytes), HistoryArchiveSegment.ALL);
+            fail("Expected a checksum error");
+        } catch (IOException expected) {
+            // The body no longer matches its CRC.
+        }
+    }
+
+    @Test
+    public void zigzagVarLongs_roundTrip() throws IOException {
+        long[] values = {0, 1, -1, 63, -64, 64, 1_700_000_000_000L, Long.MAX_VALUE, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) HistoryArchiveSegment.writeVarLong(out, HistoryArchiveSegment.zigzag(value));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, HistoryArchiveSegment.unzigzag(HistoryArchiveSegment.readVarLong(in)));
+        }
+
+        // Values of either sign up to 63 take one byte.
+        bytes.reset();
+        for (int i = 0; i < 5; i++) HistoryArchiveSegment.writeVarLong(out, HistoryArchiveSegment.zigzag(values[i]));
+        assertEquals(5, bytes.size());
+    }
+
+    @Test
+    public void archive_searchesNewestFirstAndExportsOldestFirst() throws IOException {
+        File dir = Files.createTempDirectory("archive").toFile();
+        try {
+            HistoryArchive archive = new HistoryArchive(dir);
+            List<HistoryEntry> entries = sampleEntries();
+            archive.prepare(entries.subList(0, 3)).commit();
+            archive.prepare(entries.subList(3, 5)).commit();
+            // Never committed, so never read.
+            archive.prepare(entries.subList(0, 1));
+
+            assertEquals(5, archive.count());
+
+            List<HistoryEntry> found = archive.search("KOL", 10);
+            // The repeated 151 cm conversion is returned once, at its later time.
+            assertEquals(4, found.size());
+            assertEquals(3_600_500, found.get(0).getTimestamp());
+            assertEquals("(1 kol) + (2 viral)", found.get(1).getInputText());
+            assertTrue(found.get(1).isFavorite());
+
+            assertEquals(1, archive.search("* 2.5", 10).size());
+            assertEquals(2, archive.search("kol", 2).size());
+            assertTrue(archive.search("nothing like this", 10).isEmpty());
+
+            List<Long> times = new ArrayList<>();
+            assertEquals(5, archive.forEach(entry -> times.add(entry.getTimestamp())));
+            assertEquals(List.of(1_000L, 1_000L, 61_000L, 3_600_000L, 3_600_500L), times);
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
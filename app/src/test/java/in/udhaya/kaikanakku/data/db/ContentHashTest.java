@@ -0,0 +1,40 @@
+package in.udhaya.kaikanakku.data.db;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ContentHash}.
+ */
+public class ContentHashTest {
+
+    @Test
+    public void of_isStable() {
+        // The hash is stored in the database, so it must never change between releases.
+        assertEquals(0x7bc210046bd616ccL, ContentHash.of("", ""));
+        assertEquals(0x6ba06d5b2b640e19L, ContentHash.of("500 cm", "6 kol 22 viral 2 cm"));
+    }
+
+    @Test
+    public void of_separatesInputFromOutput() {
+        assertNotEquals(ContentHash.of("ab", "c"), ContentHash.of("a", "bc"));
+        assertNotEquals(ContentHash.of("1 kol", "72.00 cm"), ContentHash.of("72.00 cm", "1 kol"));
+    }
+
+    @Test
+    public void of_hasNoCollisionsOnSimilarEntries() {
+        Set<Long> seen = new HashSet<>();
+        for (int kol = 0; kol < 100; kol++) {
+            for (int viral = 0; viral < 24; viral++) {
+                for (int cm = 0; cm < 3; cm++) {
+                    String input = kol + " kol " + viral + " viral " + cm + " cm";
+                    assertTrue(seen.add(ContentHash.of(input, (kol * 72 + viral * 3 + cm) + ".00 cm")));
+                }
+            }
+        }
+    }
+}
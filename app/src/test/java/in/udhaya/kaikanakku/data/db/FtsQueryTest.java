@@ -0,0 +1,38 @@
+package in.udhaya.kaikanakku.data.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FtsQuery}.
+ */
+public class FtsQueryTest {
+
+    @Test
+    public void toMatchExpression_makesPrefixPhrasePerWord() {
+        assertEquals("\"6*\" \"ko*\"", FtsQuery.toMatchExpression("6 ko"));
+        assertEquals("\"viral*\"", FtsQuery.toMatchExpression("  viral "));
+    }
+
+    @Test
+    public void toMatchExpression_splitsNumbersFromUnits() {
+        assertEquals("\"6 kol*\"", FtsQuery.toMatchExpression("6kol"));
+        assertEquals("\"2.5 cm*\"", FtsQuery.toMatchExpression("2.5cm"));
+        assertEquals("\"\u0D6C \u0D15\u0D4B\u0D7D*\"", FtsQuery.toMatchExpression("\u0D6C\u0D15\u0D4B\u0D7D"));
+    }
+
+    @Test
+    public void toMatchExpression_neutralisesOperators() {
+        assertEquals("\"kol*\" \"viral*\"", FtsQuery.toMatchExpression("\"kol\" -viral*"));
+        assertEquals("\"a*\" \"b*\"", FtsQuery.toMatchExpression("(a) + (b)"));
+        assertNull(FtsQuery.toMatchExpression(" +-*\"() "));
+        assertNull(FtsQuery.toMatchExpression(null));
+    }
+
+    @Test
+    public void toRankPhrase_trimsAndLowerCases() {
+        assertEquals("6 kol", FtsQuery.toRankPhrase("  6 KOL "));
+        assertEquals("", FtsQuery.toRankPhrase(null));
+    }
+}
@@ -0,0 +1,82 @@
+package in.udhaya.kaikanakku.data.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the SQL built by {@link HistoryFilter}.
+ */
+public class HistoryFilterTest {
+
+    @Test
+    public void all_listsEverythingNewestFirst() {
+        assertEquals("SELECT history_table.* FROM history_table WHERE history_table.deletedAt = 0 "
+                        + "ORDER BY history_table.timestamp DESC",
+                HistoryFilter.ALL.sql());
+        assertEquals(0, HistoryFilter.ALL.args().length);
+    }
+
+    @Test
+    public void filters_combineInOneStatement() {
+        HistoryFilter filter = HistoryFilter.ALL
+                .withSearchText("6kol")
+                .withFavoritesOnly(true)
+                .withSortOrder(HistoryFilter.SortOrder.BY_SIZE_DESC)
+                .withSizeRange(100, Double.POSITIVE_INFINITY);
+        assertEquals("SELECT history_table.* FROM history_table "
+                + "JOIN history_fts ON history_fts.rowid = history_table.id "
+                + "WHERE history_fts MATCH ? AND history_table.deletedAt = 0 AND history_table.isFavorite = 1 "
+                + "AND history_table.totalCm >= ? "
+                + "ORDER BY history_table.totalCm DESC", filter.sql());
+        assertArrayEquals(new Object[]{"\"6 kol*\"", 100.0}, filter.args());
+    }
+
+    @Test
+    public void searchInDateOrder_ranksPhraseHitsFirst() {
+        HistoryFilter filter = HistoryFilter.ALL.withSearchText(" 6 KOL ").withDateRange(10, Long.MAX_VALUE);
+        assertTrue(filter.sql(), filter.sql().endsWith("ORDER BY (instr(lower(history_table.inputText), ?) > 0) "
+                + "+ (instr(lower(history_table.outputText), ?) > 0) DESC, history_table.timestamp DESC"));
+        // The tokenizer folds case, so only the ranking phrase needs lower-casing.
+        assertArrayEquals(new Object[]{"\"6*\" \"KOL*\"", 10L, "6 kol", "6 kol"}, filter.args());
+    }
+
+    @Test
+    public void unsearchableText_matchesNothing() {
+        HistoryFilter filter = HistoryFilter.ALL.withSearchText("+-");
+        assertEquals("SELECT history_table.* FROM history_table WHERE history_table.deletedAt = 0 AND 0 "
+                + "ORDER BY history_table.timestamp DESC", filter.sql());
+        assertEquals(0, filter.args().length);
+        // Blank text is no search at all.
+        assertEquals(HistoryFilter.ALL, HistoryFilter.ALL.withSearchText("   "));
+    }
+
+    @Test
+    public void idSql_dropsOrderAndRanking() {
+        HistoryFilter filter = HistoryFilter.ALL.withSearchText("6 kol").withDateRange(10, 20);
+        assertEquals("SELECT history_table.id FROM history_table "
+                + "JOIN history_fts ON history_fts.rowid = history_table.id "
+                + "WHERE history_fts MATCH ? AND history_table.deletedAt = 0 "
+                + "AND history_table.timestamp >= ? AND history_table.timestamp < ?",
+                filter.idSql());
+        assertArrayEquals(new Object[]{"\"6*\" \"kol*\"", 10L, 20L}, filter.whereArgs());
+        assertSame(filter.idSql(), filter.withSortOrder(HistoryFilter.SortOrder.BY_SIZE_ASC).idSql());
+    }
+
+    @Test
+    public void sameShape_reusesStatement() {
+        HistoryFilter a = HistoryFilter.ALL.withSearchText("kol").withFavoritesOnly(true);
+        HistoryFilter b = HistoryFilter.ALL.withFavoritesOnly(true).withSearchText("viral");
+        assertNotEquals(a, b);
+        assertSame(a.sql(), b.sql());
+        assertNotSame(a.sql(), HistoryFilter.ALL.withSearchText("kol").sql());
+    }
+
+    @Test
+    public void equalFilters_areEqual() {
+        HistoryFilter a = HistoryFilter.ALL.withSortOrder(HistoryFilter.SortOrder.BY_SIZE_ASC).withFavoritesOnly(true);
+        HistoryFilter b = HistoryFilter.ALL.withFavoritesOnly(true).withSortOrder(HistoryFilter.SortOrder.BY_SIZE_ASC);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+}
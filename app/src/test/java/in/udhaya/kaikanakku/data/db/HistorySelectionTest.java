@@ -0,0 +1,67 @@
+package in.udhaya.kaikanakku.data.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the statements built by {@link HistorySelection}.
+ */
+public class HistorySelectionTest {
+
+    @Test
+    public void toggle_addsAndRemovesIds() {
+        HistorySelection selection = HistorySelection.NONE.toggle(3).toggle(7);
+        assertTrue(selection.contains(3));
+        assertTrue(selection.contains(7));
+        assertEquals(2, selection.getIdCount());
+
+        selection = selection.toggle(3).toggle(7);
+        assertTrue(selection.isEmpty());
+        assertEquals(HistorySelection.NONE, selection);
+    }
+
+    @Test
+    public void ids_areOneStatementWithoutArguments() {
+        HistorySelection selection = HistorySelection.NONE.toggle(5);
+        assertEquals("UPDATE history_table SET deletedAt = 99 WHERE deletedAt = 0 AND id IN (5)",
+                selection.toDeleteStatement(99).getSql());
+        assertEquals("UPDATE history_table SET isFavorite = 1 WHERE isFavorite = 0 AND deletedAt = 0 AND id IN (5)",
+                selection.toFavoriteStatement(true).getSql());
+        assertEquals(0, selection.toDeleteStatement(99).getArgCount());
+
+        // More ids than SQLite allows arguments.
+        HistorySelection many = HistorySelection.NONE;
+        for (long id = 1; id <= 2000; id++) {
+            many = many.toggle(id);
+        }
+        assertEquals(0, many.toDeleteStatement(99).getArgCount());
+        assertTrue(many.toDeleteStatement(99).getSql().contains(",2000"));
+    }
+
+    @Test
+    public void allMatching_usesTheFilterAsSubquery() {
+        HistoryFilter filter = HistoryFilter.ALL.withSearchText("kol").withFavoritesOnly(true);
+        HistorySelection selection = HistorySelection.allMatching(filter);
+        assertTrue(selection.contains(42));
+        assertFalse(selection.isEmpty());
+        assertEquals("UPDATE history_table SET isFavorite = 0 WHERE isFavorite = 1 AND deletedAt = 0 AND id IN ("
+                        + "SELECT history_table.id FROM history_table "
+                        + "JOIN history_fts ON history_fts.rowid = history_table.id "
+                        + "WHERE history_fts MATCH ? AND history_table.deletedAt = 0 AND history_table.isFavorite = 1)",
+                selection.toFavoriteStatement(false).getSql());
+        assertEquals(1, selection.toFavoriteStatement(false).getArgCount());
+
+        // Unticking an entry leaves it out.
+        selection = selection.toggle(42);
+        assertFalse(selection.contains(42));
+        assertTrue(selection.toDeleteStatement(99).getSql().endsWith(" AND id NOT IN (42)"));
+    }
+
+    @Test
+    public void allMatching_exportKeepsNewestFirst() {
+        assertEquals("SELECT * FROM history_table WHERE deletedAt = 0 AND id IN ("
+                + "SELECT history_table.id FROM history_table WHERE history_table.deletedAt = 0) "
+                + "ORDER BY timestamp DESC", HistorySelection.allMatching(HistoryFilter.ALL).toQuery().getSql());
+    }
+}
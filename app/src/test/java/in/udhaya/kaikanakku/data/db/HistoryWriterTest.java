@@ -0,0 +1,118 @@
+package in.udhaya.kaikanakku.data.db;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the batch coalescing in {@link HistoryWriter}.
+ */
+public class HistoryWriterTest {
+
+    private static final HistoryEntry A = entry(1, "1 kol", "72.00 cm");
+    private static final HistoryEntry B = entry(2, "2 kol", "144.00 cm");
+
+    @Test
+    public void coalesce_keepsIndependentWritesInOrder() {
+        List<HistoryWriter.Op> batch = List.of(insert(A), update(B), delete(A));
+        assertEquals(List.of("UPDATE 2", "DELETE 1"), describe(HistoryWriter.coalesce(batch)));
+
+        batch = List.of(insert(entry(0, "3 kol", "216.00 cm")), update(A), delete(B));
+        assertEquals(List.of("INSERT 0", "UPDATE 1", "DELETE 2"), describe(HistoryWriter.coalesce(batch)));
+    }
+
+    @Test
+    public void coalesce_keepsOnlyLastUpdate() {
+        // Toggling a favorite on and off again.
+        List<HistoryWriter.Op> batch = List.of(update(A), update(B), update(A), update(A));
+        List<HistoryWriter.Op> ops = HistoryWriter.coalesce(batch);
+        assertEquals(List.of("UPDATE 2", "UPDATE 1"), describe(ops));
+        assertSame(batch.get(3), ops.get(1));
+    }
+
+    @Test
+    public void coalesce_dropsWritesToDeletedRows() {
+        // The first update stays, in case the row is restored; the second would restore it.
+        List<HistoryWriter.Op> batch = List.of(update(A), delete(A), update(A), delete(A));
+        assertEquals(List.of("UPDATE 1", "DELETE 1"), describe(HistoryWriter.coalesce(batch)));
+    }
+
+    @Test
+    public void coalesce_keepsOnlyLastFavoriteToggle() {
+        List<HistoryWriter.Op> batch = List.of(favorite(A, true), favorite(B, true), favorite(A, false));
+        List<HistoryWriter.Op> ops = HistoryWriter.coalesce(batch);
+        assertEquals(List.of("FAVORITE 2", "FAVORITE 1"), describe(ops));
+        assertFalse(ops.get(1).favorite);
+
+        batch = List.of(favorite(A, true), delete(A), favorite(A, false));
+        assertEquals(List.of("FAVORITE 1", "DELETE 1"), describe(HistoryWriter.coalesce(batch)));
+    }
+
+    @Test
+    public void coalesce_keepsWritesAfterRestore() {
+        List<HistoryWriter.Op> batch = List.of(delete(A), restore(A), update(A), delete(A));
+        assertEquals(List.of("DELETE 1", "RESTORE 1", "UPDATE 1", "DELETE 1"), describe(HistoryWriter.coalesce(batch)));
+    }
+
+    @Test
+    public void coalesce_dropsDuplicateInserts() {
+        HistoryEntry copy = entry(0, "1 kol", "72.00 cm");
+        List<HistoryWriter.Op> batch = List.of(insert(copy), insert(B), insert(copy));
+        assertEquals(List.of("INSERT 0", "INSERT 2"), describe(HistoryWriter.coalesce(batch)));
+    }
+
+    @Test
+    public void coalesce_keepsUndo() {
+        // Swipe to delete, then undo, then update the restored row.
+        List<HistoryWriter.Op> batch = List.of(delete(A), insert(A), update(A));
+        assertEquals(List.of("DELETE 1", "INSERT 1", "UPDATE 1"), describe(HistoryWriter.coalesce(batch)));
+
+        // Deleted again after the undo: both deletes and the re-insert must run.
+        batch = List.of(delete(A), insert(A), delete(A), insert(A));
+        assertEquals(List.of("DELETE 1", "INSERT 1", "DELETE 1", "INSERT 1"), describe(HistoryWriter.coalesce(batch)));
+    }
+
+    @Test
+    public void coalesce_deleteAllDropsEverythingBefore() {
+        List<HistoryWriter.Op> batch = List.of(insert(A), update(B), delete(B),
+                new HistoryWriter.Op(HistoryWriter.Kind.DELETE_ALL, null), insert(B));
+        assertEquals(List.of("DELETE_ALL", "INSERT 2"), describe(HistoryWriter.coalesce(batch)));
+    }
+
+    private static HistoryEntry entry(long id, String input, String output) {
+        HistoryEntry entry = new HistoryEntry(input, output, 0, 0, false);
+        entry.setId(id);
+        return entry;
+    }
+
+    private static HistoryWriter.Op insert(HistoryEntry entry) {
+        return new HistoryWriter.Op(HistoryWriter.Kind.INSERT, entry);
+    }
+
+    private static HistoryWriter.Op update(HistoryEntry entry) {
+        return new HistoryWriter.Op(HistoryWriter.Kind.UPDATE, entry);
+    }
+
+    private static HistoryWriter.Op favorite(HistoryEntry entry, boolean favorite) {
+        return new HistoryWriter.Op(HistoryWriter.Kind.FAVORITE, entry, favorite);
+    }
+
+    private static HistoryWriter.Op delete(HistoryEntry entry) {
+        return new HistoryWriter.Op(HistoryWriter.Kind.DELETE, entry);
+    }
+
+    private static HistoryWriter.Op restore(HistoryEntry entry) {
+        return new HistoryWriter.Op(HistoryWriter.Kind.RESTORE, entry);
+    }
+
+    private static List<String> describe(List<HistoryWriter.Op> ops) {
+        List<String> result = new ArrayList<>();
+        for (HistoryWriter.Op op : ops) {
+            result.add(op.entry == null ? op.kind.name() : op.kind + " " + op.entry.getId());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+package in.udhaya.kaikanakku.data.db;
+
+import org.junit.Test;
+
+import in.udhaya.kaikanakku.util.Length;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LegacyEntryParser}, on text as the converter and calculator
+ * write it.
+ */
+public class LegacyEntryParserTest {
+
+    private final LegacyEntryParser parser = new LegacyEntryParser();
+
+    @Test
+    public void parse_cmToKol() {
+        assertEquals(HistoryEntry.KIND_CM_TO_KOL, parser.parse("151.00 cm", 151));
+        assertEquals(Length.ofCm(151).getUnits(), parser.getOperandA());
+        assertEquals(0, parser.getOperandB());
+    }
+
+    @Test
+    public void parse_kolToCm() {
+        assertEquals(HistoryEntry.KIND_KOL_TO_CM, parser.parse("2 kol 1 viral 1.5 cm", 148.5));
+        assertEquals(Length.of(2, 1, 1.5).getUnits(), parser.getOperandA());
+
+        // Only cm entered in Kol mode: one decimal at most, so not mistaken for cm-to-Kol.
+        assertEquals(HistoryEntry.KIND_KOL_TO_CM, parser.parse("2.5 cm", 2.5));
+        assertEquals(HistoryEntry.KIND_KOL_TO_CM, parser.parse("2 cm", 2));
+    }
+
+    @Test
+    public void parse_addAndSubtract() {
+        assertEquals(HistoryEntry.KIND_ADD, parser.parse("(1 kol) + (5 viral 1 cm)", 88));
+        assertEquals(Length.of(1, 0, 0).getUnits(), parser.getOperandA());
+        assertEquals(Length.of(0, 5, 1).getUnits(), parser.getOperandB());
+
+        assertEquals(HistoryEntry.KIND_SUBTRACT, parser.parse("(2 kol) - (1 kol 3 viral)", 63));
+        assertEquals(Length.of(2, 0, 0).getUnits(), parser.getOperandA());
+        assertEquals(Length.of(1, 3, 0).getUnits(), parser.getOperandB());
+    }
+
+    @Test
+    public void parse_multiply() {
+        assertEquals(HistoryEntry.KIND_MULTIPLY, parser.parse("(1 kol 2 viral) * 2.5", 195));
+        assertEquals(Length.of(1, 2, 0).getUnits(), parser.getOperandA());
+        assertEquals(2.5, parser.getMultiplier(), 0);
+    }
+
+    @Test
+    public void parse_expressionKeepsOnlyResult() {
+        assertEquals(HistoryEntry.KIND_EXPRESSION, parser.parse("(3 kol 4 viral) + 2 \u00d7 (1 kol 10 viral) - 5 cm", 424));
+        assertEquals(Length.ofCm(424).getUnits(), parser.getOperandA());
+        assertEquals(0, parser.getOperandB());
+        assertEquals(1, parser.getMultiplier(), 0);
+    }
+
+    @Test
+    public void parse_unknownTextKeepsResult() {
+        assertEquals(HistoryEntry.KIND_UNKNOWN, parser.parse("hello", 12.5));
+        assertEquals(Length.ofCm(12.5).getUnits(), parser.getOperandA());
+        assertEquals(HistoryEntry.KIND_UNKNOWN, parser.parse(null, 0));
+    }
+
+    @Test
+    public void parse_resetsBetweenEntries() {
+        parser.parse("(1 kol) * 3.0", 216);
+        assertEquals(HistoryEntry.KIND_ADD, parser.parse("(1 kol) + (1 kol)", 144));
+        assertEquals(1, parser.getMultiplier(), 0);
+    }
+
+    @Test
+    public void textConstructor_fillsNumbers() {
+        HistoryEntry entry = new HistoryEntry("(1 kol) + (5 viral 1 cm)", "1 kol 5 viral 1 cm", 88, 0, false);
+        assertEquals(HistoryEntry.KIND_ADD, entry.getKind());
+        assertEquals(Length.of(0, 5, 1).getUnits(), entry.getOperandB());
+        assertTrue(entry.isPrecision());
+        assertFalse(entry.isRounded());
+    }
+}
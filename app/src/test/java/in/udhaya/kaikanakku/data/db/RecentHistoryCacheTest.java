@@ -0,0 +1,148 @@
+package in.udhaya.kaikanakku.data.db;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RecentHistoryCache}, against an in-memory list standing in for
+ * the database. Reloads run at once on the calling thread.
+ */
+public class RecentHistoryCacheTest {
+
+    // What the database holds.
+    private final List<HistoryEntry> rows = new ArrayList<>();
+    private int loads;
+    private final RecentHistoryCache cache = new RecentHistoryCache(2, 3, limit -> {
+        loads++;
+        List<HistoryEntry> newest = new ArrayList<>(rows);
+        newest.sort(Comparator.comparingLong(HistoryEntry::getTimestamp).reversed());
+        return new ArrayList<>(newest.subList(0, Math.min(limit, newest.size())));
+    }, Runnable::run);
+
+    @Test
+    public void loadsOnceThenFollowsWrites() {
+        row(1, 10);
+        cache.reload();
+        assertEquals(List.of(1L), ids());
+
+        HistoryEntry newer = entry(2, 20);
+        cache.onInserted(newer, 2);
+        assertEquals(List.of(2L, 1L), ids());
+
+        newer.setFavorite(true);
+        cache.onUpdated(newer);
+        assertTrue(cache.getRecent().blockingFirst().get(0).isFavorite());
+
+        cache.onDeleted(2);
+        assertEquals(List.of(1L), ids());
+        cache.onRestored(newer);
+        assertEquals(List.of(2L, 1L), ids());
+
+        cache.onDeletedAll();
+        assertEquals(List.of(), ids());
+        assertEquals(1, loads);
+    }
+
+    @Test
+    public void publishesCopies() {
+        row(1, 10);
+        cache.reload();
+        cache.getRecent().blockingFirst().get(0).setFavorite(true);
+        cache.onInserted(entry(2, 20), 2);
+        assertFalse(cache.getRecent().blockingFirst().get(1).isFavorite());
+    }
+
+    @Test
+    public void olderInsertsAreIgnoredWhenEntriesAreMissing() {
+        for (int i = 1; i <= 5; i++) row(i, i * 10);
+        cache.reload();
+        assertEquals(List.of(5L, 4L), ids());
+
+        // Older than the three entries kept, with two more in the database: its place is unknown.
+        cache.onInserted(entry(0, 5), 6);
+        cache.onDeleted(5);
+        assertEquals(List.of(4L, 3L), ids());
+        assertEquals(1, loads);
+    }
+
+    @Test
+    public void reloadsOnceSpareEntriesRunOut() {
+        for (int i = 1; i <= 5; i++) row(i, i * 10);
+        cache.reload();
+
+        // The database changes first; listeners hear of it after the commit.
+        rows.remove(4);
+        cache.onDeleted(5);
+        assertEquals(1, loads);
+        rows.remove(3);
+        cache.onDeleted(4);
+        assertEquals(2, loads);
+        assertEquals(List.of(3L, 2L), ids());
+    }
+
+    @Test
+    public void deleteOlderThan_keepsWhatIsLeftComplete() {
+        for (int i = 1; i <= 5; i++) row(i, i * 10);
+        cache.reload();
+
+        cache.onDeletedOlderThan(45);
+        assertEquals(List.of(5L), ids());
+        // Nothing older is left, so an old entry now has a known place.
+        cache.onInserted(entry(0, 1), 6);
+        assertEquals(List.of(5L, 6L), ids());
+        assertEquals(1, loads);
+    }
+
+    @Test
+    public void changed_reloads() {
+        row(1, 10);
+        cache.reload();
+        row(2, 20);
+        cache.onChanged();
+        assertEquals(List.of(2L, 1L), ids());
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void changed_holdsBackTheOldListUntilReloaded() {
+        List<Runnable> reloads = new ArrayList<>();
+        RecentHistoryCache deferred = new RecentHistoryCache(2, 3, limit -> new ArrayList<>(rows), reloads::add);
+        row(1, 10);
+        deferred.reload();
+        reloads.remove(0).run();
+
+        row(2, 20);
+        deferred.onChanged();
+        List<List<HistoryEntry>> received = new ArrayList<>();
+        deferred.getRecent().subscribe(received::add);
+        assertTrue(received.isEmpty());
+
+        reloads.remove(0).run();
+        assertEquals(1, received.size());
+        assertEquals(2, received.get(0).size());
+    }
+
+    private void row(long id, long timestamp) {
+        HistoryEntry entry = entry(id, timestamp);
+        rows.add(entry);
+    }
+
+    private List<Long> ids() {
+        List<Long> ids = new ArrayList<>();
+        for (HistoryEntry entry : cache.getRecent().blockingFirst()) {
+            ids.add(entry.getId());
+        }
+        return ids;
+    }
+
+    private static HistoryEntry entry(long id, long timestamp) {
+        HistoryEntry entry = new HistoryEntry(id + " kol", (id * 72) + ".00 cm", id * 72, timestamp, false);
+        entry.setId(id);
+        return entry;
+    }
+}
@@ -0,0 +1,95 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryCsv}.
+ */
+public class HistoryCsvTest {
+
+    @Test
+    public void appendRow_writesPlainFieldsAsIs() {
+        String row = HistoryCsv.appendRow(new StringBuilder(), "151.00 cm", "2 kol 2 viral 1 cm", true, 151, 1700000000000L)
+                .toString();
+        assertEquals("151.00 cm,2 kol 2 viral 1 cm,true,151.00,1700000000000\r\n", row);
+    }
+
+    @Test
+    public void appendRow_formatsTotalWithoutLocale() {
+        String row = HistoryCsv.appendRow(new StringBuilder(), "a", "b", false, 1234.5, 0).toString();
+        assertEquals("a,b,false,1234.50,0\r\n", row);
+    }
+
+    @Test
+    public void appendField_quotesWhenNeeded() {
+        assertEquals("\"1,5 cm\"", field("1,5 cm"));
+        assertEquals("\"say \"\"hi\"\"\"", field("say \"hi\""));
+        assertEquals("\"two\nlines\"", field("two\nlines"));
+        assertEquals("\"cr\rhere\"", field("cr\rhere"));
+        assertEquals("\" padded \"", field(" padded "));
+        assertEquals("(1 kol) + (2 viral)", field("(1 kol) + (2 viral)"));
+    }
+
+    @Test
+    public void appendField_nullAndEmptyAreEmpty() {
+        assertEquals("", field(null));
+        assertEquals("", field(""));
+    }
+
+    @Test
+    public void appendField_keepsMalayalam() {
+        String text = "\u0d69 \u0d15\u0d4b\u0d7d";
+        assertEquals(text, field(text));
+    }
+
+    private static String field(String value) {
+        return HistoryCsv.appendField(new StringBuilder(), value).toString();
+    }
+
+    @Test
+    public void recordReader_readsBackWhatIsWritten() throws IOException {
+        StringBuilder csv = new StringBuilder(HistoryCsv.HEADER).append(HistoryCsv.LINE_END);
+        HistoryCsv.appendRow(csv, "say \"hi\", twice", "two\nlines", true, 1.5, 7);
+        HistoryCsv.appendRow(csv, "151.00 cm", "2 kol 2 viral 1 cm", false, 151, 8);
+
+        HistoryCsv.RecordReader reader = new HistoryCsv.RecordReader(new StringReader(csv.toString()));
+        List<String> fields = new ArrayList<>();
+        assertTrue(reader.next(fields));
+        assertEquals(List.of("Input", "Output", "Is Favorite", "Total cm", "Timestamp"), fields);
+        assertTrue(reader.next(fields));
+        assertEquals(List.of("say \"hi\", twice", "two\nlines", "true", "1.50", "7"), fields);
+        assertEquals(2, reader.getLine());
+        assertTrue(reader.next(fields));
+        assertEquals("151.00 cm", fields.get(0));
+        // The quoted line break moved the third record down a line.
+        assertEquals(4, reader.getLine());
+        assertFalse(reader.next(fields));
+    }
+
+    @Test
+    public void recordReader_acceptsSpreadsheetQuirks() throws IOException {
+        String csv = "\uFEFFa,b\n\n\"c\",,\r\nlast";
+        HistoryCsv.RecordReader reader = new HistoryCsv.RecordReader(new StringReader(csv));
+        List<String> fields = new ArrayList<>();
+        assertTrue(reader.next(fields));
+        assertEquals(List.of("a", "b"), fields);
+        assertTrue(reader.next(fields));
+        assertEquals(List.of("c", "", ""), fields);
+        assertEquals(3, reader.getLine());
+        assertTrue(reader.next(fields));
+        assertEquals(List.of("last"), fields);
+        assertFalse(reader.next(fields));
+    }
+
+    @Test(expected = IOException.class)
+    public void recordReader_rejectsUnclosedQuote() throws IOException {
+        new HistoryCsv.RecordReader(new StringReader("\"never closed\n")).next(new ArrayList<>());
+    }
+}
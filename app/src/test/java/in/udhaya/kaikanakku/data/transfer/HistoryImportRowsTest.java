@@ -0,0 +1,75 @@
+package in.udhaya.kaikanakku.data.transfer;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+import in.udhaya.kaikanakku.util.Length;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryImportRows}.
+ */
+public class HistoryImportRowsTest {
+
+    private final HistoryImportRows rows = new HistoryImportRows();
+
+    @Test
+    public void columnsOf_mapsHeaderInAnyOrder() {
+        int[] columns = HistoryImportRows.columnsOf(List.of("Timestamp", "notes", "INPUT", "Output"));
+        assertNotNull(columns);
+        assertEquals(2, columns[HistoryImportRows.INPUT]);
+        assertEquals(3, columns[HistoryImportRows.OUTPUT]);
+        assertEquals(0, columns[HistoryImportRows.TIMESTAMP]);
+        assertEquals(-1, columns[HistoryImportRows.FAVORITE]);
+
+        assertNull(HistoryImportRows.columnsOf(List.of("3 kol", "216.00 cm")));
+    }
+
+    @Test
+    public void toEntry_usesAllFields() throws Exception {
+        HistoryEntry entry = rows.toEntry("(1 kol) + (2 viral)", "1 kol 2 viral", "true", "78.00", "1700000000000", 5);
+        assertEquals(78, entry.getTotalCm(), 0);
+        assertEquals(1700000000000L, entry.getTimestamp());
+        assertTrue(entry.isFavorite());
+        assertEquals(HistoryEntry.KIND_ADD, entry.getKind());
+    }
+
+    @Test
+    public void toEntry_fillsMissingFields() throws Exception {
+        // An export from an earlier version: no total and no timestamp.
+        HistoryEntry entry = rows.toEntry("78.00 cm", "1 kol 2 viral", "false", null, null, 5);
+        assertEquals(78, entry.getTotalCm(), 0);
+        assertEquals(5, entry.getTimestamp());
+        assertFalse(entry.isFavorite());
+
+        // A bare measurement typed on a PC becomes a Kol-to-cm conversion.
+        entry = rows.toEntry(" 3 kol 4 viral ", "", "", "", "", 5);
+        assertEquals("3 kol 4 viral", entry.getInputText());
+        assertEquals("228.00 cm", entry.getOutputText());
+        assertEquals(HistoryEntry.KIND_KOL_TO_CM, entry.getKind());
+        assertEquals(Length.of(3, 4, 0).getUnits(), entry.getOperandA());
+    }
+
+    @Test
+    public void toEntry_rejectsUnusableLines() {
+        assertRejected("", "1 kol", null, null, null);
+        assertRejected("hello", "", null, null, null);
+        assertRejected("a", "not a length", null, null, null);
+        assertRejected("1 kol", "72.00 cm", "maybe", null, null);
+        assertRejected("1 kol", "72.00 cm", null, "-1", null);
+        assertRejected("1 kol", "72.00 cm", null, "NaN", null);
+        assertRejected("1 kol", "72.00 cm", null, null, "yesterday");
+    }
+
+    private void assertRejected(String input, String output, String favorite, String totalCm, String timestamp) {
+        try {
+            rows.toEntry(input, output, favorite, totalCm, timestamp, 0);
+            fail("Accepted " + input + " / " + output);
+        } catch (HistoryImportRows.RowException expected) {
+            assertNotNull(expected.getMessage());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package in.udhaya.kaikanakku.ui.history;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import in.udhaya.kaikanakku.data.db.HistoryChange;
+import in.udhaya.kaikanakku.data.db.HistoryEntry;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryListModel}: the list it keeps and the row notifications
+ * it sends for each change.
+ */
+public class HistoryListModelTest {
+
+    private final List<String> notified = new ArrayList<>();
+    private final HistoryListModel model = new HistoryListModel(3);
+
+    {
+        model.setCallback(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notified.add("insert " + position + "+" + count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notified.add("remove " + position + "+" + count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notified.add("move " + fromPosition + ">" + toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notified.add("change " + position + "+" + count);
+            }
+        });
+    }
+
+    @Test
+    public void insert_notifiesOneRow() {
+        assertTrue(model.replace(List.of(entry(2, 20), entry(1, 10))));
+        notified.clear();
+
+        assertTrue(model.apply(HistoryChange.inserted(entry(3, 30))));
+        assertEquals(List.of(3L, 2L, 1L), ids());
+        assertEquals(List.of("insert 0+1"), notified);
+
+        // Full now, so the oldest row makes room.
+        notified.clear();
+        assertTrue(model.apply(HistoryChange.inserted(entry(4, 15))));
+        assertEquals(List.of(3L, 2L, 4L), ids());
+        assertEquals(List.of("insert 2+1", "remove 3+1"), notified);
+
+        // Older than every row kept, with more in the database than are kept.
+        notified.clear();
+        assertTrue(model.apply(HistoryChange.inserted(entry(5, 5))));
+        assertEquals(List.of(3L, 2L, 4L), ids());
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void update_changesOrMovesTheRow() {
+        model.replace(List.of(entry(2, 20), entry(1, 10)));
+        notified.clear();
+
+        HistoryEntry favorite = entry(1, 10);
+        favorite.setFavorite(true);
+        assertTrue(model.apply(HistoryChange.updated(favorite)));
+        assertTrue(model.get(1).isFavorite());
+        assertEquals(List.of("change 1+1"), notified);
+
+        notified.clear();
+        assertTrue(model.apply(HistoryChange.updated(entry(1, 30))));
+        assertEquals(List.of(1L, 2L), ids());
+        assertEquals(List.of("move 1>0", "change 0+1"), notified);
+    }
+
+    @Test
+    public void delete_asksForARead_onlyWhenRowsAreMissing() {
+        model.replace(List.of(entry(2, 20), entry(1, 10)));
+        assertTrue(model.apply(HistoryChange.deleted(2)));
+        assertEquals(List.of(1L), ids());
+
+        model.replace(List.of(entry(5, 50), entry(4, 40), entry(3, 30), entry(2, 20)));
+        notified.clear();
+        assertFalse(model.apply(HistoryChange.deleted(5)));
+        assertEquals(List.of("remove 0+1"), notified);
+
+        // Changes made while the list is read are applied on top of it, even if it has them.
+        notified.clear();
+        assertTrue(model.apply(HistoryChange.inserted(entry(6, 60))));
+        assertTrue(notified.isEmpty());
+        assertTrue(model.replace(List.of(entry(6, 60), entry(4, 40), entry(3, 30))));
+        assertEquals(List.of(6L, 4L, 3L), ids());
+        // [4, 3] became [6, 4, 3] in place, then the held back insert rebinds its row.
+        assertEquals(List.of("change 0+2", "insert 2+1", "change 0+1"), notified);
+    }
+
+    @Test
+    public void replace_onlyReportsRowsThatDiffer() {
+        model.replace(List.of(entry(3, 30), entry(2, 20)));
+        notified.clear();
+        model.replace(List.of(entry(3, 30), entry(2, 20), entry(1, 10)));
+        assertEquals(List.of("insert 2+1"), notified);
+    }
+
+    @Test
+    public void deleteOlderThan_removesTheTail() {
+        model.replace(List.of(entry(3, 30), entry(2, 20), entry(1, 10)));
+        notified.clear();
+        assertTrue(model.apply(HistoryChange.deletedOlderThan(25)));
+        assertEquals(List.of(3L), ids());
+        assertEquals(List.of("remove 1+2"), notified);
+
+        // Nothing older is left, so an old entry has a known place again.
+        assertTrue(model.apply(HistoryChange.inserted(entry(4, 1))));
+        assertEquals(List.of(3L, 4L), ids());
+
+        assertTrue(model.apply(HistoryChange.cleared()));
+        assertTrue(model.isEmpty());
+        assertFalse(model.apply(HistoryChange.invalidated()));
+    }
+
+    private List<Long> ids() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < model.size(); i++) {
+            ids.add(model.get(i).getId());
+        }
+        return ids;
+    }
+
+    private static HistoryEntry entry(long id, long timestamp) {
+        HistoryEntry entry = new HistoryEntry(id + " kol", (id * 72) + ".00 cm", id * 72, timestamp, false);
+        entry.setId(id);
+        return entry;
+    }
+}
@@ -0,0 +1,80 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests checking that the bulk array conversions in {@link ConversionUtils}
+ * agree with the per-value methods.
+ */
+public class ConversionUtilsBulkTest {
+
+    private static final int COUNT = 5_000;
+    private static final int OFFSET = 7;
+
+    @Test
+    public void cmToKol_matchesPerValue() {
+        double[] cm = randomCm(new Random(1));
+        int[] kol = new int[COUNT + OFFSET];
+        int[] viral = new int[COUNT + OFFSET];
+        double[] rest = new double[COUNT + OFFSET];
+
+        ConversionUtils.cmToKol(cm, 0, COUNT, kol, viral, rest, OFFSET);
+
+        for (int i = 0; i < COUNT; i++) {
+            Length length = Length.ofCm(cm[i]);
+            assertEquals(length.getKol(), kol[OFFSET + i]);
+            assertEquals(length.getViral(), viral[OFFSET + i]);
+            assertEquals(length.getCm(), rest[OFFSET + i], 0.0);
+        }
+    }
+
+    @Test
+    public void kolToCm_matchesPerValue() {
+        Random random = new Random(2);
+        int[] kol = new int[COUNT];
+        int[] viral = new int[COUNT];
+        double[] cm = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            kol[i] = random.nextInt(500);
+            viral[i] = random.nextInt(24);
+            cm[i] = random.nextInt(300) / 100.0;
+        }
+        double[] out = new double[COUNT];
+
+        ConversionUtils.kolToCm(kol, viral, cm, 0, COUNT, out, 0);
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(ConversionUtils.kolToCm(kol[i], viral[i], cm[i]), out[i], 0.0);
+        }
+    }
+
+    @Test
+    public void multiply_inPlaceMatchesPerValue() {
+        double[] cm = randomCm(new Random(3));
+        double[] expected = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            expected[i] = Length.ofCm(cm[i]).times(1.75).toCm();
+        }
+
+        ConversionUtils.multiply(cm, 0, COUNT, 1.75, cm, 0);
+
+        assertArrayEquals(expected, cm, 0.0);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void outOfRange_isRejected() {
+        ConversionUtils.multiply(new double[4], 2, 3, 2.0, new double[4], 0);
+    }
+
+    private static double[] randomCm(Random random) {
+        double[] cm = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            cm[i] = random.nextInt(5_000_000) / 100.0;
+        }
+        return cm;
+    }
+}
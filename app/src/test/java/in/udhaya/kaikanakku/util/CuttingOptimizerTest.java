@@ -0,0 +1,149 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CuttingOptimizer}.
+ */
+public class CuttingOptimizerTest {
+
+    private static final Length NO_KERF = Length.ZERO;
+
+    @Test
+    public void optimize_findsPerfectPacking() {
+        // 4 x 3 kol + 4 x 1 kol fit exactly into 4 stocks of 4 kol.
+        CuttingOptimizer.Job job = new CuttingOptimizer.Job(NO_KERF)
+                .addPiece(Length.of(3, 0, 0), 4)
+                .addPiece(Length.of(1, 0, 0), 4)
+                .addStock(Length.of(4, 0, 0));
+        CuttingOptimizer.Plan plan = CuttingOptimizer.optimize(job);
+
+        assertTrue(plan.isOptimal());
+        assertEquals(4, plan.getStockCount());
+        assertTrue(plan.getWaste().isZero());
+        assertEquals(1, plan.getPatterns().size());
+        CuttingOptimizer.Pattern pattern = plan.getPatterns().get(0);
+        assertEquals(4, pattern.count);
+        assertEquals(List.of(Length.of(3, 0, 0), Length.of(1, 0, 0)), pattern.pieces);
+    }
+
+    @Test
+    public void optimize_beatsFirstFitDecreasing() {
+        // First-fit decreasing needs 3 stocks of 10 for {5, 4, 4, 3, 2, 2}; {5, 3, 2} + {4, 4, 2} needs 2.
+        CuttingOptimizer.Job job = new CuttingOptimizer.Job(NO_KERF)
+                .addPiece(Length.ofUnits(5), 1)
+                .addPiece(Length.ofUnits(4), 2)
+                .addPiece(Length.ofUnits(3), 1)
+                .addPiece(Length.ofUnits(2), 2)
+                .addStock(Length.ofUnits(10));
+        CuttingOptimizer.Plan plan = CuttingOptimizer.optimize(job);
+        assertTrue(plan.isOptimal());
+        assertEquals(2, plan.getStockCount());
+    }
+
+    @Test
+    public void optimize_accountsForKerf() {
+        // Two 2-kol pieces need one cut, so they no longer fit a 4-kol stock with a 1 cm kerf
+        // unless the second piece ends exactly at the stock end.
+        Length kerf = Length.ofCm(1);
+        CuttingOptimizer.Plan plan = CuttingOptimizer.optimize(new CuttingOptimizer.Job(kerf)
+                .addPiece(Length.of(2, 0, 0), 2)
+                .addStock(Length.of(4, 0, 0)));
+        assertEquals(2, plan.getStockCount());
+
+        plan = CuttingOptimizer.optimize(new CuttingOptimizer.Job(kerf)
+                .addPiece(Length.of(2, 0, 0), 2)
+                .addStock(Length.of(4, 0, 1)));
+        assertEquals(1, plan.getStockCount());
+        assertTrue(plan.getPatterns().get(0).offcut.isZero());
+        assertEquals(Length.ofCm(1), plan.getWaste());
+    }
+
+    @Test
+    public void optimize_choosesCheapestStockMix() {
+        CuttingOptimizer.Plan plan = CuttingOptimizer.optimize(new CuttingOptimizer.Job(NO_KERF)
+                .addPiece(Length.ofUnits(6), 1)
+                .addPiece(Length.ofUnits(3), 1)
+                .addStock(Length.ofUnits(10))
+                .addStock(Length.ofUnits(6))
+                .addStock(Length.ofUnits(3)));
+        assertEquals(Length.ofUnits(9), plan.getStockUsed());
+        assertTrue(plan.getWaste().isZero());
+    }
+
+    @Test
+    public void optimize_matchesBruteForceOnSmallJobs() {
+        Random random = new Random(3);
+        for (int round = 0; round < 40; round++) {
+            long[] stocks = {20 + random.nextInt(10), 30 + random.nextInt(10)};
+            long kerf = random.nextInt(2);
+            List<Long> pieces = new ArrayList<>();
+            CuttingOptimizer.Job job = new CuttingOptimizer.Job(Length.ofUnits(kerf))
+                    .addStock(Length.ofUnits(stocks[0]))
+                    .addStock(Length.ofUnits(stocks[1]));
+            for (int p = 0; p < 7; p++) {
+                long length = 3 + random.nextInt(18);
+                pieces.add(length);
+                job.addPiece(Length.ofUnits(length), 1);
+            }
+            CuttingOptimizer.Plan plan = CuttingOptimizer.optimize(job, 10_000, round % 2 == 0);
+            assertTrue(plan.isOptimal());
+            assertEquals(bruteForce(pieces, stocks, kerf), plan.getStockUsed().getUnits());
+
+            int cut = 0;
+            for (CuttingOptimizer.Pattern pattern : plan.getPatterns()) {
+                cut += pattern.pieces.size() * pattern.count;
+            }
+            assertEquals(pieces.size(), cut);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void optimize_rejectsPieceLongerThanStock() {
+        CuttingOptimizer.optimize(new CuttingOptimizer.Job(NO_KERF)
+                .addPiece(Length.of(5, 0, 0), 1)
+                .addStock(Length.of(4, 0, 0)));
+    }
+
+    /** Tries every assignment of pieces to stocks and every stock length per stock. */
+    private static long bruteForce(List<Long> pieces, long[] stocks, long kerf) {
+        Collections.sort(pieces);
+        return bruteForce(pieces, 0, new ArrayList<>(), stocks, kerf);
+    }
+
+    private static long bruteForce(List<Long> pieces, int i, List<Long> used, long[] stocks, long kerf) {
+        if (i == pieces.size()) {
+            long total = 0;
+            for (long u : used) {
+                long cheapest = Long.MAX_VALUE;
+                for (long s : stocks) {
+                    if (s + kerf >= u) cheapest = Math.min(cheapest, s);
+                }
+                if (cheapest == Long.MAX_VALUE) return Long.MAX_VALUE;
+                total += cheapest;
+            }
+            return total;
+        }
+        long size = pieces.get(i) + kerf;
+        long best = Long.MAX_VALUE;
+        for (int b = 0; b <= used.size(); b++) {
+            if (b == used.size()) {
+                used.add(size);
+                best = Math.min(best, bruteForce(pieces, i + 1, used, stocks, kerf));
+                used.remove(used.size() - 1);
+            } else {
+                used.set(b, used.get(b) + size);
+                best = Math.min(best, bruteForce(pieces, i + 1, used, stocks, kerf));
+                used.set(b, used.get(b) - size);
+            }
+        }
+        return best;
+    }
+}
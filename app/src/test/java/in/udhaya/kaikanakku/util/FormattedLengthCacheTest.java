@@ -0,0 +1,44 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link FormattedLengthCache}.
+ */
+public class FormattedLengthCacheTest {
+
+    @Test
+    public void cachedText_matchesFormatter() {
+        FormattedLengthCache cache = new FormattedLengthCache(64);
+        Random random = new Random(4);
+        for (int i = 0; i < 50_000; i++) {
+            // Mix viral-aligned values (dense table) with arbitrary ones (direct-mapped table).
+            long units = random.nextBoolean()
+                    ? random.nextInt(2_000 * 24) * Length.UNITS_PER_VIRAL
+                    : random.nextInt(300) * 100L + random.nextInt(100);
+            boolean precision = random.nextBoolean();
+            boolean round = random.nextBoolean();
+            String expected = MeasurementFormatter.appendKolViralCm(new StringBuilder(), units, precision, round).toString();
+            assertEquals(expected, cache.get(units, precision, round));
+        }
+    }
+
+    @Test
+    public void repeatLookup_isCountedAsHit() {
+        FormattedLengthCache cache = new FormattedLengthCache(16);
+        cache.get(12_345, true, false);
+        cache.get(12_345, true, false);
+        cache.get(12_345, true, true); // Rounding is ignored in precision mode.
+        cache.get(7_200, false, true);
+        cache.get(7_200, true, false); // Whole Virals share one slot across modes.
+        assertEquals(3, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        cache.clear();
+        assertEquals(0, cache.getHitCount());
+    }
+}
@@ -0,0 +1,38 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the fixed-point {@link Length} type and the conversions built on it.
+ */
+public class LengthTest {
+
+    @Test
+    public void decomposition_usesIntegerCarry() {
+        Length length = Length.of(1, 25, 4.0);
+        assertEquals(2, length.getKol());
+        assertEquals(2, length.getViral());
+        assertEquals(100, length.getCmUnits());
+        assertEquals(151.0, length.toCm(), 0.0);
+    }
+
+    @Test
+    public void nearlyWholeKol_isNotShownAsRemainder() {
+        assertEquals("1 kol", ConversionUtils.cmToKolFormatted(71.99999, true, false));
+        assertEquals("6 kol 22 viral 2 cm", ConversionUtils.cmToKolFormatted(500, true, false));
+    }
+
+    @Test
+    public void arithmetic_isExact() {
+        Length a = Length.ofCm(0.1);
+        Length sum = Length.ZERO;
+        for (int i = 0; i < 720; i++) {
+            sum = sum.plus(a);
+        }
+        assertEquals(Length.of(1, 0, 0), sum);
+        assertEquals(Length.ofCm(36), Length.ofCm(72).dividedBy(2));
+        assertEquals(Length.ofCm(180), Length.ofCm(72).times(2.5));
+    }
+}
@@ -0,0 +1,78 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MeasurementExpression}.
+ */
+public class MeasurementExpressionTest {
+
+    @Test
+    public void evaluate_wholeWallExpression() throws ParseException {
+        MeasurementExpression expression =
+                MeasurementExpression.compile("(3 kol 4 viral) + 2 × (1 kol 10 viral) − 5 cm");
+        long expected = Length.toUnits(3, 4, 0) + 2 * Length.toUnits(1, 10, 0) - Length.cmToUnits(5);
+        assertEquals(expected, expression.evaluate());
+        // Re-evaluation gives the same answer.
+        assertEquals(expected, expression.evaluate());
+    }
+
+    @Test
+    public void evaluate_respectsPrecedenceAndScalarArithmetic() throws ParseException {
+        assertEquals(Length.toUnits(1, 0, 0) + 3 * Length.toUnits(0, 1, 0),
+                MeasurementExpression.compile("1k + 3v * 1").evaluate());
+        assertEquals(Length.toUnits(0, 0, 36),
+                MeasurementExpression.compile("1 kol / (1 + 1)").evaluate());
+        assertEquals(Length.toUnits(2, 0, 0),
+                MeasurementExpression.compile("2x1k").evaluate());
+        assertEquals(Length.toUnits(1, 12, 0),
+                MeasurementExpression.compile("1.5 × 1 kol").evaluate());
+    }
+
+    @Test
+    public void compile_rejectsIllTypedExpressions() {
+        assertCompileError("1 kol * 2 viral", 6);
+        assertCompileError("2 + 1 kol", 2);
+        assertCompileError("2 * 3", 0);
+        assertCompileError("(1 kol", 6);
+        assertCompileError("1 kol +", 7);
+        assertCompileError("", 0);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void evaluate_divisionByZero() throws ParseException {
+        MeasurementExpression.compile("1 kol / 0").evaluate();
+    }
+
+    @Test
+    public void compileCached_reusesCompiledForm() throws ParseException {
+        MeasurementExpression first = MeasurementExpression.compileCached("3 kol + 4 viral");
+        assertSame(first, MeasurementExpression.compileCached(new StringBuilder("3 kol + 4 viral")));
+    }
+
+    @Test
+    public void compile_readsNumbersLikeTheParser() {
+        // A second decimal point makes the number malformed, as in MeasurementParser, rather
+        // than ending it.
+        try {
+            MeasurementExpression.compile("1.2.3 cm");
+            fail("Expected a ParseException");
+        } catch (ParseException e) {
+            assertEquals("Malformed number", e.getMessage());
+            assertEquals(3, e.getErrorOffset());
+        }
+    }
+
+    private static void assertCompileError(String source, int offset) {
+        try {
+            MeasurementExpression.compile(source);
+            fail("Expected a ParseException for: " + source);
+        } catch (ParseException e) {
+            assertEquals(source, offset, e.getErrorOffset());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests checking that {@link MeasurementFormatter} matches the String.format
+ * output it replaces.
+ */
+public class MeasurementFormatterTest {
+
+    @Test
+    public void appendCm_matchesStringFormat() {
+        for (long units = 0; units < 20_000; units++) {
+            double cm = units / 100.0;
+            StringBuilder sb = new StringBuilder();
+            MeasurementFormatter.appendCm(sb, units, 2);
+            assertEquals(String.format(Locale.US, "%.2f cm", cm), sb.toString());
+        }
+    }
+
+    @Test
+    public void appendKolViralCm_respectsPrecisionAndRounding() {
+        long units = Length.cmToUnits(500.25);
+        assertEquals("6 kol 22 viral 2.3 cm", format(units, true, false));
+        assertEquals("6 kol 22 viral 2 cm", format(units, false, true));
+        assertEquals("23 viral 2 cm", format(Length.cmToUnits(71.6), false, false));
+        assertEquals("1 kol", format(Length.cmToUnits(71.6), false, true));
+        assertEquals("0 cm", format(0, true, true));
+    }
+
+    @Test
+    public void appendInput_skipsZeroParts() {
+        StringBuilder sb = new StringBuilder("x=");
+        MeasurementFormatter.appendInput(sb, 0, 3, 1.5);
+        assertEquals("x=3 viral 1.5 cm", sb.toString());
+    }
+
+    private static String format(long units, boolean precision, boolean round) {
+        return MeasurementFormatter.appendKolViralCm(new StringBuilder(), units, precision, round).toString();
+    }
+}
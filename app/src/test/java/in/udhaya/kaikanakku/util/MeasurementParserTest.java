@@ -0,0 +1,61 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MeasurementParser}.
+ */
+public class MeasurementParserTest {
+
+    private final MeasurementParser parser = new MeasurementParser();
+
+    @Test
+    public void parseMeasurement_readsMixedUnits() {
+        assertEquals(MeasurementParser.OK, parser.parseMeasurement("3 kol 4 viral 2.5 cm"));
+        assertEquals(3, parser.getKol());
+        assertEquals(4, parser.getViral());
+        assertEquals(250, parser.getCmUnits());
+        assertEquals(Length.toUnits(3, 4, 2.5), parser.getTotalUnits());
+    }
+
+    @Test
+    public void parseMeasurement_readsShortFormsAndMalayalam() {
+        assertEquals(MeasurementParser.OK, parser.parseMeasurement("3k4V"));
+        assertEquals(3, parser.getKol());
+        assertEquals(4, parser.getViral());
+
+        assertEquals(MeasurementParser.OK, parser.parseMeasurement("൩ കോൽ ൧൨ വിരൽ ൧.൫ സെ.മീ"));
+        assertEquals(3, parser.getKol());
+        assertEquals(12, parser.getViral());
+        assertEquals(150, parser.getCmUnits());
+    }
+
+    @Test
+    public void parseMeasurement_reportsErrorsWithoutThrowing() {
+        assertEquals(MeasurementParser.EMPTY, parser.parseMeasurement("  "));
+        assertEquals(MeasurementParser.ERROR_UNKNOWN_UNIT, parser.parseMeasurement("3 feet"));
+        assertEquals(2, parser.getErrorIndex());
+        assertEquals(MeasurementParser.ERROR_INVALID_NUMBER, parser.parseMeasurement("(1 kol) + (2 viral)"));
+        assertEquals(MeasurementParser.ERROR_INVALID_NUMBER, parser.parseMeasurement("1.2.3 cm"));
+        assertEquals(MeasurementParser.ERROR_NOT_INTEGER, parser.parseMeasurement("1.5 kol"));
+        assertEquals(MeasurementParser.ERROR_UNKNOWN_UNIT, parser.parseMeasurement("12"));
+    }
+
+    @Test
+    public void parseNumber_handlesFieldInput() {
+        assertEquals(MeasurementParser.EMPTY, parser.parseNumber(""));
+        assertEquals(MeasurementParser.OK, parser.parseNumber(" 42 "));
+        assertEquals(42, parser.getInt());
+        assertEquals(MeasurementParser.OK, parser.parseNumber("2.75"));
+        assertEquals(2.75, parser.getDouble(), 0.0);
+        assertEquals(-1, parser.getInt());
+        assertEquals(275, parser.getNumberAsUnits());
+        assertEquals(MeasurementParser.OK, parser.parseNumber(".5"));
+        assertEquals(0.5, parser.getDouble(), 0.0);
+        assertEquals(MeasurementParser.ERROR_INVALID_NUMBER, parser.parseNumber("-3"));
+        assertEquals(MeasurementParser.ERROR_INVALID_NUMBER, parser.parseNumber("3a"));
+        assertEquals(MeasurementParser.ERROR_OVERFLOW, parser.parseNumber("99999999999999999999"));
+    }
+}
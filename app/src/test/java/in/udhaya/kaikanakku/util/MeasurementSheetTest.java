@@ -0,0 +1,132 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MeasurementSheet}.
+ */
+public class MeasurementSheetTest {
+
+    @Test
+    public void evaluate_readsGroupsQuantitiesAndRejectedLines() throws IOException {
+        String sheet = "# Site 4\n"
+                + "Kitchen: 3 kol 4 viral x 2\n"
+                + "Hall: 1 kol 2 cm\n"
+                + "\n"
+                + "Kitchen: 12 viral × 3\n"
+                + "Hall: 3 feet\n"
+                + "5 cm * 4\n";
+        MeasurementSheet.Result result = MeasurementSheet.sequential().evaluate(stream(sheet), null);
+
+        assertEquals(7, result.getLineCount());
+        assertEquals(MeasurementSheet.NO_VALUE, result.getLineUnits(0));
+        assertEquals(2 * Length.toUnits(3, 4, 0), result.getLineUnits(1));
+        assertEquals(Length.toUnits(1, 0, 2), result.getLineUnits(2));
+        assertEquals(20.0, result.getLineCm(6), 0.0);
+
+        MeasurementSheet.Summary summary = result.getSummary();
+        assertEquals(4, summary.getLineCount());
+        assertEquals(10, summary.getPieceCount());
+        long total = 2 * Length.toUnits(3, 4, 0) + Length.toUnits(1, 0, 2) + 3 * Length.toUnits(0, 12, 0) + 4 * Length.cmToUnits(5);
+        assertEquals(total, summary.getTotal().getUnits());
+        assertEquals(Length.cmToUnits(5), summary.getMin().getUnits());
+        assertEquals(Length.toUnits(3, 4, 0), summary.getMax().getUnits());
+        assertEquals(Length.divide(total, 10), summary.getMean().getUnits());
+        assertEquals(ConversionUtils.cmToKolFormatted(summary.getTotal(), false, true), summary.formatTotal(false, true));
+
+        Map<String, MeasurementSheet.Summary> groups = result.getGroups();
+        assertEquals(List.of("Kitchen", "Hall", MeasurementSheet.DEFAULT_GROUP), new ArrayList<>(groups.keySet()));
+        assertEquals(5, groups.get("Kitchen").getPieceCount());
+
+        assertEquals(1, result.getRejected().size());
+        assertEquals(6, result.getRejected().get(0).lineNumber);
+        assertEquals(MeasurementParser.ERROR_UNKNOWN_UNIT, result.getRejected().get(0).status);
+    }
+
+    @Test
+    public void evaluate_parallelMatchesSequentialExactly() throws IOException {
+        byte[] sheet = generateSheet(50_000, 7);
+        MeasurementSheet.Result sequential = MeasurementSheet.sequential().evaluate(new ByteArrayInputStream(sheet), null);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MeasurementSheet.Result parallel = MeasurementSheet.parallel(pool).evaluate(new ByteArrayInputStream(sheet), null);
+
+            assertEquals(sequential.getLineCount(), parallel.getLineCount());
+            for (int i = 0; i < sequential.getLineCount(); i++) {
+                assertEquals(sequential.getLineUnits(i), parallel.getLineUnits(i));
+            }
+            assertSameSummary(sequential.getSummary(), parallel.getSummary());
+            assertEquals(new ArrayList<>(sequential.getGroups().keySet()), new ArrayList<>(parallel.getGroups().keySet()));
+            for (String group : sequential.getGroups().keySet()) {
+                assertSameSummary(sequential.getGroups().get(group), parallel.getGroups().get(group));
+            }
+            assertEquals(sequential.getRejected().size(), parallel.getRejected().size());
+            for (int i = 0; i < sequential.getRejected().size(); i++) {
+                assertEquals(sequential.getRejected().get(i).lineNumber, parallel.getRejected().get(i).lineNumber);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void evaluate_stopsWhenCancelled() throws IOException {
+        MeasurementSheet.parallel().evaluate(new ByteArrayInputStream(generateSheet(20_000, 1)), new MeasurementSheet.Listener() {
+            private long done;
+
+            @Override
+            public void onProgress(long linesDone) {
+                done = linesDone;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return done > 0;
+            }
+        });
+    }
+
+    private static void assertSameSummary(MeasurementSheet.Summary expected, MeasurementSheet.Summary actual) {
+        assertEquals(expected.getLineCount(), actual.getLineCount());
+        assertEquals(expected.getPieceCount(), actual.getPieceCount());
+        assertEquals(expected.getTotal(), actual.getTotal());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getMean(), actual.getMean());
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] generateSheet(int lines, long seed) {
+        Random random = new Random(seed);
+        String[] groups = {"Kitchen", "Hall", "Bedroom", "Pooja", "Verandah"};
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (random.nextInt(50) == 0) {
+                sb.append("bad line\n");
+                continue;
+            }
+            sb.append(groups[random.nextInt(groups.length)]).append(": ")
+                    .append(random.nextInt(20)).append(" kol ")
+                    .append(random.nextInt(24)).append(" viral ")
+                    .append(random.nextInt(3)).append('.').append(random.nextInt(10)).append(" cm")
+                    .append(" x ").append(1 + random.nextInt(9)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,85 @@
+package in.udhaya.kaikanakku.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PerimeterSearch}, cross-checked against a brute-force scan.
+ */
+public class PerimeterSearchTest {
+
+    private static final List<PerimeterSearch.Rule> RULES = List.of(
+            PerimeterSearch.Rule.remainder(3, 8, 2, 6),
+            PerimeterSearch.Rule.greaterRemainder(8, 12, 3, 14),
+            PerimeterSearch.Rule.remainder(8, 27, 0, 1, 3, 5, 7, 9, 11, 13, 15, 17, 19, 21));
+
+    @Test
+    public void stream_matchesBruteForce() {
+        for (boolean widthAtMostLength : new boolean[]{false, true}) {
+            PerimeterSearch search = new PerimeterSearch(viral(37), viral(250), viral(5), viral(190),
+                    widthAtMostLength, RULES);
+            List<PerimeterSearch.Candidate> expected = bruteForce(37, 250, 5, 190, widthAtMostLength);
+            assertFalse(expected.isEmpty());
+
+            assertEquals(expected, search.stream().collect(Collectors.toList()));
+            // A parallel stream keeps the encounter order.
+            assertEquals(expected, search.stream().parallel().collect(Collectors.toList()));
+            assertEquals(expected.size(), search.count());
+        }
+    }
+
+    @Test
+    public void stream_isOrderedAndLazy() {
+        PerimeterSearch search = new PerimeterSearch(viral(0), viral(1_000_000), viral(0), viral(1_000_000), true, RULES);
+        List<PerimeterSearch.Candidate> first = search.stream().limit(50).collect(Collectors.toList());
+        assertEquals(50, first.size());
+        List<PerimeterSearch.Candidate> sorted = new ArrayList<>(first);
+        sorted.sort(Comparator.<PerimeterSearch.Candidate>comparingInt(c -> c.lengthViral).thenComparingInt(c -> c.widthViral));
+        assertEquals(sorted, first);
+    }
+
+    @Test
+    public void constructor_roundsBoundsInwards() {
+        // 10 cm is 3 viral 1 cm, so the first whole length is 4 viral; 20 cm holds 6 whole viral.
+        PerimeterSearch search = new PerimeterSearch(Length.ofCm(10), Length.ofCm(20), Length.ofCm(10), Length.ofCm(20),
+                false, List.of());
+        assertEquals(9, search.count());
+        PerimeterSearch.Candidate first = search.stream().findFirst().get();
+        assertEquals(4, first.lengthViral);
+        assertEquals(4, first.widthViral);
+        assertEquals(Length.of(0, 4, 0), first.getLength());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsEmptyRange() {
+        new PerimeterSearch(viral(10), viral(5), viral(0), viral(5), false, RULES);
+    }
+
+    private static Length viral(int viral) {
+        return Length.of(0, viral, 0);
+    }
+
+    private static List<PerimeterSearch.Candidate> bruteForce(int minL, int maxL, int minW, int maxW, boolean widthAtMostLength) {
+        List<PerimeterSearch.Candidate> result = new ArrayList<>();
+        for (int l = minL; l <= maxL; l++) {
+            for (int w = minW; w <= maxW; w++) {
+                if (widthAtMostLength && w > l) continue;
+                long p = 2L * (l + w);
+                long yoni = (p * 3) % 8;
+                boolean aayam = (p * 8) % 12 > (p * 3) % 14;
+                long star = (p * 8) % 27;
+                boolean nakshatra = star <= 21 && (star == 0 || star % 2 == 1);
+                if ((yoni == 2 || yoni == 6) && aayam && nakshatra) {
+                    result.add(new PerimeterSearch.Candidate(l, w));
+                }
+            }
+        }
+        return result;
+    }
+}
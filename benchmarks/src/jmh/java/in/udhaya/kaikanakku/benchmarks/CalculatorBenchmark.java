@@ -0,0 +1,55 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import in.udhaya.kaikanakku.util.CalculatorUtils;
+import in.udhaya.kaikanakku.util.Length;
+
+/**
+ * Benchmarks for the {@link CalculatorUtils} operations on exact lengths.
+ */
+@State(Scope.Thread)
+public class CalculatorBenchmark {
+
+    @Param({"SMALL", "LARGE", "FRACTIONAL"})
+    public Inputs.Kind lengths;
+
+    private Length[] values;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        double[] cm = Inputs.cm(lengths);
+        values = new Length[Inputs.SIZE];
+        for (int i = 0; i < Inputs.SIZE; i++) {
+            values[i] = Length.ofCm(cm[i]);
+        }
+    }
+
+    @Benchmark
+    public Length add() {
+        int i = index++;
+        return CalculatorUtils.add(values[i & Inputs.MASK], values[(i + 1) & Inputs.MASK]);
+    }
+
+    @Benchmark
+    public Length subtract() {
+        int i = index++;
+        return CalculatorUtils.subtract(values[i & Inputs.MASK], values[(i + 1) & Inputs.MASK]);
+    }
+
+    @Benchmark
+    public Length multiply() {
+        return CalculatorUtils.multiply(values[index++ & Inputs.MASK], 2.5);
+    }
+
+    @Benchmark
+    public long addUnits() {
+        int i = index++;
+        return values[i & Inputs.MASK].getUnits() + values[(i + 1) & Inputs.MASK].getUnits();
+    }
+}
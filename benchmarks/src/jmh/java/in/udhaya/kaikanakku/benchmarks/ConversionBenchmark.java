@@ -0,0 +1,69 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import in.udhaya.kaikanakku.util.ConversionUtils;
+import in.udhaya.kaikanakku.util.Length;
+
+/**
+ * Benchmarks for the numeric Kol/Viral/cm conversions in {@link ConversionUtils}.
+ */
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+    @Param({"SMALL", "LARGE", "FRACTIONAL"})
+    public Inputs.Kind lengths;
+
+    private double[] cm;
+    private int[] kol;
+    private int[] viral;
+    private double[] cmPart;
+    private double[] bulkOut;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        cm = Inputs.cm(lengths);
+        kol = new int[Inputs.SIZE];
+        viral = new int[Inputs.SIZE];
+        cmPart = new double[Inputs.SIZE];
+        bulkOut = new double[Inputs.SIZE];
+        ConversionUtils.cmToKol(cm, 0, Inputs.SIZE, kol, viral, cmPart, 0);
+    }
+
+    @Benchmark
+    public double kolToCm() {
+        int i = index++ & Inputs.MASK;
+        return ConversionUtils.kolToCm(kol[i], viral[i], cmPart[i]);
+    }
+
+    @Benchmark
+    public long cmToLength() {
+        return Length.cmToUnits(cm[index++ & Inputs.MASK]);
+    }
+
+    @Benchmark
+    public String multiplyKol() {
+        int i = index++ & Inputs.MASK;
+        return ConversionUtils.multiplyKol(kol[i], viral[i], 2.5);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Inputs.SIZE)
+    public double[] bulkKolToCm() {
+        ConversionUtils.kolToCm(kol, viral, cmPart, 0, Inputs.SIZE, bulkOut, 0);
+        return bulkOut;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Inputs.SIZE)
+    public int[] bulkCmToKol() {
+        ConversionUtils.cmToKol(cm, 0, Inputs.SIZE, kol, viral, cmPart, 0);
+        return kol;
+    }
+}
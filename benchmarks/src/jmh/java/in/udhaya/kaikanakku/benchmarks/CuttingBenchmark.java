@@ -0,0 +1,63 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import in.udhaya.kaikanakku.util.CuttingOptimizer;
+import in.udhaya.kaikanakku.util.Length;
+
+/**
+ * Benchmarks {@link CuttingOptimizer} on generated carpentry jobs: the heuristics alone, and
+ * the full optimizer with its default time budget, sequentially and in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CuttingBenchmark {
+
+    /** Total number of pieces in the job. */
+    @Param({"50", "300"})
+    public int pieces;
+
+    private CuttingOptimizer.Job job;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        job = new CuttingOptimizer.Job(Length.ofCm(0.3))
+                .addStock(Length.of(4, 0, 0))
+                .addStock(Length.of(6, 0, 0))
+                .addStock(Length.of(8, 0, 0));
+        // A realistic job has a few dozen distinct lengths, each needed several times.
+        int added = 0;
+        while (added < pieces) {
+            int count = Math.min(pieces - added, 1 + random.nextInt(15));
+            job.addPiece(Length.of(random.nextInt(4), random.nextInt(24), 3), count);
+            added += count;
+        }
+    }
+
+    @Benchmark
+    public CuttingOptimizer.Plan heuristicOnly() {
+        return CuttingOptimizer.optimize(job, 0, false);
+    }
+
+    @Benchmark
+    public CuttingOptimizer.Plan sequential() {
+        return CuttingOptimizer.optimize(job, CuttingOptimizer.DEFAULT_TIME_BUDGET_MS, false);
+    }
+
+    @Benchmark
+    public CuttingOptimizer.Plan parallel() {
+        return CuttingOptimizer.optimize(job, CuttingOptimizer.DEFAULT_TIME_BUDGET_MS, true);
+    }
+}
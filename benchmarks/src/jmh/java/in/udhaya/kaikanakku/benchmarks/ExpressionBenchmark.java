@@ -0,0 +1,42 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import java.text.ParseException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import in.udhaya.kaikanakku.util.MeasurementExpression;
+
+/**
+ * Benchmarks for {@link MeasurementExpression}: compiling a typical calculator expression,
+ * looking it up in the compiled-form cache, and re-evaluating an already compiled program.
+ */
+@State(Scope.Thread)
+public class ExpressionBenchmark {
+
+    private static final String SOURCE = "(3 kol 4 viral) + 2 × (1 kol 10 viral) − 5 cm + 12.5 cm / 2";
+
+    private MeasurementExpression compiled;
+
+    @Setup
+    public void setUp() throws ParseException {
+        compiled = MeasurementExpression.compile(SOURCE);
+    }
+
+    @Benchmark
+    public MeasurementExpression compile() throws ParseException {
+        return MeasurementExpression.compile(SOURCE);
+    }
+
+    @Benchmark
+    public long compileCachedAndEvaluate() throws ParseException {
+        return MeasurementExpression.compileCached(SOURCE).evaluate();
+    }
+
+    @Benchmark
+    public long evaluate() {
+        return compiled.evaluate();
+    }
+}
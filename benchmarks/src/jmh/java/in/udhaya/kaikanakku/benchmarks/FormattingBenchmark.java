@@ -0,0 +1,67 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import in.udhaya.kaikanakku.util.ConversionUtils;
+import in.udhaya.kaikanakku.util.Length;
+import in.udhaya.kaikanakku.util.MeasurementFormatter;
+
+/**
+ * Benchmarks for turning lengths into display text, with precision and rounding on and off.
+ * {@code cmToKolFormatted} goes through the shared format cache; {@code appendKolViralCm}
+ * measures the uncached formatter on its own.
+ */
+@State(Scope.Thread)
+public class FormattingBenchmark {
+
+    @Param({"SMALL", "LARGE", "FRACTIONAL"})
+    public Inputs.Kind lengths;
+
+    @Param({"true", "false"})
+    public boolean precision;
+
+    @Param({"true", "false"})
+    public boolean round;
+
+    private double[] cm;
+    private long[] units;
+    private int[] kol;
+    private int[] viral;
+    private double[] cmPart;
+    private final StringBuilder buffer = new StringBuilder(32);
+    private int index;
+
+    @Setup
+    public void setUp() {
+        cm = Inputs.cm(lengths);
+        units = new long[Inputs.SIZE];
+        kol = new int[Inputs.SIZE];
+        viral = new int[Inputs.SIZE];
+        cmPart = new double[Inputs.SIZE];
+        for (int i = 0; i < Inputs.SIZE; i++) {
+            units[i] = Length.cmToUnits(cm[i]);
+        }
+        ConversionUtils.cmToKol(cm, 0, Inputs.SIZE, kol, viral, cmPart, 0);
+    }
+
+    @Benchmark
+    public String cmToKolFormatted() {
+        return ConversionUtils.cmToKolFormatted(cm[index++ & Inputs.MASK], precision, round);
+    }
+
+    @Benchmark
+    public int appendKolViralCm() {
+        buffer.setLength(0);
+        return MeasurementFormatter.appendKolViralCm(buffer, units[index++ & Inputs.MASK], precision, round).length();
+    }
+
+    @Benchmark
+    public String formatKolViralCmInput() {
+        int i = index++ & Inputs.MASK;
+        return ConversionUtils.formatKolViralCmInput(kol[i], viral[i], cmPart[i]);
+    }
+}
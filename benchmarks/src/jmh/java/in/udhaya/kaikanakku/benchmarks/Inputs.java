@@ -0,0 +1,37 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates the input lengths shared by the benchmarks. A fixed seed keeps runs comparable.
+ */
+final class Inputs {
+
+    /** Number of values each benchmark cycles through, so the JIT cannot fold a constant input. */
+    static final int SIZE = 1024;
+    static final int MASK = SIZE - 1;
+
+    enum Kind {
+        /** Whole centimetres below one Kol. */
+        SMALL,
+        /** Whole centimetres from roughly 140 to 14,000 Kol. */
+        LARGE,
+        /** Centimetres with two decimal places, up to about 700 Kol. */
+        FRACTIONAL
+    }
+
+    private Inputs() {}
+
+    static double[] cm(Kind kind) {
+        Random random = new Random(42);
+        double[] values = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = switch (kind) {
+                case SMALL -> random.nextInt(72);
+                case LARGE -> 10_000 + random.nextInt(1_000_000);
+                case FRACTIONAL -> random.nextInt(5_000_000) / 100.0;
+            };
+        }
+        return values;
+    }
+}
@@ -0,0 +1,62 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import in.udhaya.kaikanakku.util.Length;
+import in.udhaya.kaikanakku.util.PerimeterSearch;
+
+/**
+ * Benchmarks {@link PerimeterSearch} over a square range of lengths and widths: the closed-form
+ * count, streaming every result sequentially and in parallel, and the latency of the first result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PerimeterBenchmark {
+
+    /** Largest length and width in Viral; 8000 gives 64 million candidates. */
+    @Param({"1000", "8000"})
+    public int maxViral;
+
+    private PerimeterSearch search;
+
+    @Setup
+    public void setUp() {
+        List<PerimeterSearch.Rule> rules = List.of(
+                PerimeterSearch.Rule.remainder(3, 8, 2, 6),
+                PerimeterSearch.Rule.greaterRemainder(8, 12, 3, 14),
+                PerimeterSearch.Rule.remainder(8, 27, 0, 1, 3, 5, 7, 9, 11, 13, 15, 17, 19, 21));
+        search = new PerimeterSearch(Length.ZERO, Length.of(0, maxViral, 0), Length.ZERO, Length.of(0, maxViral, 0),
+                false, rules);
+    }
+
+    @Benchmark
+    public long count() {
+        return search.count();
+    }
+
+    @Benchmark
+    public long streamSequential() {
+        return search.stream().mapToInt(c -> c.widthViral).sum();
+    }
+
+    @Benchmark
+    public long streamParallel() {
+        return search.stream().parallel().mapToInt(c -> c.widthViral).sum();
+    }
+
+    @Benchmark
+    public PerimeterSearch.Candidate firstResult() {
+        return search.stream().findFirst().orElse(null);
+    }
+}
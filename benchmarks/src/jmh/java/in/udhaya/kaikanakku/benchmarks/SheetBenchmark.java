@@ -0,0 +1,58 @@
+package in.udhaya.kaikanakku.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import in.udhaya.kaikanakku.util.MeasurementSheet;
+
+/**
+ * Benchmarks {@link MeasurementSheet} on a generated sheet, sequentially and on the common
+ * fork/join pool, to show how the evaluation scales with the available cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SheetBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int lines;
+
+    private byte[] sheet;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String[] groups = {"Kitchen", "Hall", "Bedroom", "Pooja", "Verandah"};
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            sb.append(groups[random.nextInt(groups.length)]).append(": ")
+                    .append(random.nextInt(20)).append(" kol ")
+                    .append(random.nextInt(24)).append(" viral ")
+                    .append(random.nextInt(300) / 100.0).append(" cm x ")
+                    .append(1 + random.nextInt(9)).append('\n');
+        }
+        sheet = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public MeasurementSheet.Result sequential() throws IOException {
+        return MeasurementSheet.sequential().evaluate(new ByteArrayInputStream(sheet), null);
+    }
+
+    @Benchmark
+    public MeasurementSheet.Result parallel() throws IOException {
+        return MeasurementSheet.parallel().evaluate(new ByteArrayInputStream(sheet), null);
+    }
+}